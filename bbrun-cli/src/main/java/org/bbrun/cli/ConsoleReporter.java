@@ -3,9 +3,24 @@ package org.bbrun.cli;
 import org.bbrun.ExecutionResult;
 import org.bbrun.RequestMetric;
 import org.bbrun.Warning;
+import org.bbrun.baseline.BaselineComparison;
 import org.bbrun.interpreter.ExecutionProgress;
+import org.bbrun.metrics.GeneratorMonitor;
+import org.bbrun.metrics.LatencyHistogram;
+import org.bbrun.metrics.RunStatistics.EndpointStats;
+import org.bbrun.parser.AstCache;
+import org.bbrun.suite.SuiteResult;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializer;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Formats and prints console output with colors and progress bars.
@@ -33,8 +48,35 @@ public class ConsoleReporter {
     private boolean colorEnabled = true;
     private boolean verbose = false;
     private boolean quiet = false;
+    private Path workingDirectory;
+
+    private final PrintStream out;
+    private final PrintStream err;
+
+    private final Gson gson = new GsonBuilder()
+            .setPrettyPrinting()
+            .registerTypeHierarchyAdapter(Path.class,
+                    (JsonSerializer<Path>) (src, type, ctx) -> new JsonPrimitive(display(src)))
+            .registerTypeHierarchyAdapter(Throwable.class,
+                    (JsonSerializer<Throwable>) (src, type, ctx) -> new JsonPrimitive(String.valueOf(src.getMessage())))
+            .create();
 
-    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    public ConsoleReporter() {
+        this(System.out, System.err);
+    }
+
+    public ConsoleReporter(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    /**
+     * Show script paths under this directory relative to it, as if the
+     * process had been started there.
+     */
+    public void setWorkingDirectory(Path workingDirectory) {
+        this.workingDirectory = workingDirectory;
+    }
 
     public void setColorEnabled(boolean enabled) {
         this.colorEnabled = enabled;
@@ -80,8 +122,8 @@ public class ConsoleReporter {
         bar.append(String.format(" %3.0f%% (%d/%d)", pct, completed, total));
 
         // Overwrite previous line
-        System.out.print("\r" + bar);
-        System.out.flush();
+        out.print("\r" + bar);
+        out.flush();
     }
 
     public void printRequest(RequestMetric metric) {
@@ -135,21 +177,213 @@ public class ConsoleReporter {
         println("");
     }
 
-    public void printResultJson(ExecutionResult result) {
-        System.out.println(gson.toJson(result));
+    public void printProviders(String httpClient, String executor) {
+        println(color(" Providers: ", BOLD) + "HTTP " + httpClient + ", executor " + executor);
+    }
+
+    public void printParseStats(AstCache.Stats stats) {
+        println(color(" Parse: ", BOLD) +
+                stats.parsed() + " parsed " + color(formatNanos(stats.parseNanos()), DIM) + ", " +
+                stats.diskHits() + " from disk " + color(formatNanos(stats.diskNanos()), DIM) + ", " +
+                stats.memoryHits() + " from memory " + color(formatNanos(stats.memoryNanos()), DIM));
+        println("");
+    }
+
+    public void printResultJson(Object result) {
+        out.println(gson.toJson(result));
+    }
+
+    public void printSuiteHeader(int scriptCount, int jobs) {
+        if (quiet)
+            return;
+        println("");
+        println(color(ARROW, CYAN) + " Running " + color(scriptCount + " scripts", BOLD) +
+                color(" (" + jobs + " concurrent)", DIM));
+        println("");
+    }
+
+    public synchronized void printScriptResult(SuiteResult.ScriptResult scriptResult) {
+        if (quiet && scriptResult.isSuccess())
+            return;
+
+        if (scriptResult.isSuccess()) {
+            ExecutionResult result = scriptResult.result();
+            println(" " + color(CHECK, GREEN) + " " + display(scriptResult.script()) +
+                    color(" (" + result.passedAssertions() + " passed, " +
+                            formatDuration(result.durationMs()) + ")", DIM));
+        } else {
+            Throwable error = scriptResult.error() != null ? scriptResult.error()
+                    : scriptResult.result() != null ? scriptResult.result().error() : null;
+            String reason = error != null ? error.getMessage()
+                    : scriptResult.result().failedAssertions() + " failed";
+            println(" " + color(CROSS, RED) + " " + display(scriptResult.script()) + color(": " + reason, RED));
+        }
+    }
+
+    public void printSuiteResult(SuiteResult result) {
+        println("");
+        println(color("──────────────────────────────────────────────", DIM));
+        println(color(" Scripts: ", BOLD) +
+                color(result.passedScripts() + " passed", GREEN) +
+                (result.failedScripts() == 0 ? ""
+                        : ", " + color(result.failedScripts() + " failed", RED)));
+        println(color(" Assertions: ", BOLD) +
+                color(result.passedAssertions() + " passed", GREEN) +
+                (result.failedAssertions() == 0 ? ""
+                        : ", " + color(result.failedAssertions() + " failed", RED)) +
+                (result.totalWarnings() == 0 ? ""
+                        : ", " + color(result.totalWarnings() + " warnings", YELLOW)));
+        println(color(" Requests: ", BOLD) + result.totalRequests());
+        if (result.initRuns() > 0) {
+            println(color(" Setup: ", BOLD) + result.initRuns() + " init chains run once, " +
+                    color(result.setupRequestsAvoided() + " setup requests avoided", GREEN));
+        }
+        println(color(" Duration: ", BOLD) + formatDuration(result.durationMs()));
+        println(color("──────────────────────────────────────────────", DIM));
+        println("");
+    }
+
+    public void printCoordinatorHeader(String scriptPath, String placement) {
+        if (quiet)
+            return;
+        println("");
+        println(color(ARROW, CYAN) + " Running " + color(scriptPath, BOLD) + color(" " + placement, DIM));
+        println("");
+    }
+
+    /**
+     * Table of requests, errors and latency per endpoint, busiest first.
+     */
+    public void printEndpoints(List<EndpointStats> endpoints) {
+        if (quiet || endpoints.isEmpty())
+            return;
+        List<EndpointStats> sorted = new ArrayList<>(endpoints);
+        sorted.sort(Comparator.comparingLong(EndpointStats::count).reversed());
+        println("");
+        println(color(String.format(" %-36s %9s %7s %9s %9s %9s %9s", "Endpoint", "Requests", "Errors",
+                "p50 ms", "p95 ms", "p99 ms", "max ms"), BOLD));
+        for (EndpointStats stats : sorted) {
+            LatencyHistogram latency = stats.latency();
+            println(String.format(" %-36s %9d %7d %9.2f %9.2f %9.2f %9.2f",
+                    stats.method() + " " + stats.endpoint(), stats.count(), stats.errors(),
+                    latency.valueAtPercentile(50) / 1e6, latency.valueAtPercentile(95) / 1e6,
+                    latency.valueAtPercentile(99) / 1e6, latency.max() / 1e6));
+        }
+    }
+
+    /**
+     * Load-generator warnings of the workers of a distributed run.
+     */
+    public void printWorkerGenerators(Map<String, List<String>> warnings) {
+        if (quiet || warnings.isEmpty())
+            return;
+        for (Map.Entry<String, List<String>> worker : warnings.entrySet()) {
+            String name = Character.toUpperCase(worker.getKey().charAt(0)) + worker.getKey().substring(1);
+            println(color(" " + WARNING + " " + name + " may have distorted these results:", YELLOW));
+            for (String warning : worker.getValue()) {
+                println("   • " + warning);
+            }
+        }
+        println("");
+    }
+
+    /**
+     * Announce the metrics endpoint on stderr, keeping stdout clean for
+     * {@code --json}.
+     */
+    public void printMetricsEndpoint(String url) {
+        if (quiet)
+            return;
+        err.println(color(ARROW, CYAN) + " Metrics at " + color(url, BOLD));
+    }
+
+    public void printWaitingForDaemon() {
+        if (quiet)
+            return;
+        err.println(color(ARROW, CYAN) + " Waiting for other runs on the daemon to finish");
+    }
+
+    public void printRecording(Path file) {
+        if (quiet)
+            return;
+        err.println(color(ARROW, CYAN) + " Flight recording written to " + color(display(file), BOLD));
+    }
+
+    public void printProfileStacks(Path file) {
+        if (quiet)
+            return;
+        err.println(color(ARROW, CYAN) + " Profile stacks written to " + color(display(file), BOLD));
+    }
+
+    public void printReport(Path file) {
+        if (quiet)
+            return;
+        err.println(color(ARROW, CYAN) + " Report written to " + color(display(file), BOLD));
+    }
+
+    public void printBaselineSaved(Path file) {
+        if (quiet)
+            return;
+        err.println(color(ARROW, CYAN) + " Baseline written to " + color(display(file), BOLD));
+    }
+
+    /**
+     * Print the comparison table and verdict; on stderr when stdout carries
+     * machine-readable output.
+     */
+    public void printBaselineComparison(BaselineComparison comparison, boolean toStdout) {
+        boolean regressed = comparison.hasRegression();
+        if (quiet && !regressed)
+            return;
+        PrintStream stream = toStdout ? out : err;
+        StringBuilder report = new StringBuilder();
+        comparison.writeReport(report);
+        stream.print(report);
+        stream.println(regressed
+                ? color(CROSS + " Latency regressed against the baseline", RED)
+                : color(CHECK + " No significant regression against the baseline", GREEN));
+        stream.println();
+    }
+
+    /**
+     * Warn when the load generator likely distorted the measurements; in
+     * verbose mode, always show its figures. On stderr when stdout carries
+     * machine-readable output.
+     */
+    public void printGenerator(GeneratorMonitor.Report report, boolean toStdout) {
+        if (quiet || !verbose && !report.saturated())
+            return;
+        PrintStream stream = toStdout ? out : err;
+        if (verbose) {
+            stream.println(color(" Generator: ", BOLD) + report.summary());
+        }
+        if (report.saturated()) {
+            stream.println(color(" " + WARNING + " The load generator may have distorted these results:", YELLOW));
+            for (String warning : report.warnings()) {
+                stream.println("   • " + warning);
+            }
+        }
+        stream.println();
     }
 
     public void printError(Exception e) {
         println("");
         println(color(CROSS + " Error: ", RED) + e.getMessage());
         if (verbose && e.getCause() != null) {
-            e.getCause().printStackTrace();
+            e.getCause().printStackTrace(err);
         }
         println("");
     }
 
     private void println(String message) {
-        System.out.println(message);
+        out.println(message);
+    }
+
+    private String display(Path path) {
+        if (workingDirectory != null && path.isAbsolute() && path.startsWith(workingDirectory)) {
+            return workingDirectory.relativize(path).toString();
+        }
+        return path.toString();
     }
 
     private String color(String text, String color) {
@@ -158,6 +392,10 @@ public class ConsoleReporter {
         return color + text + RESET;
     }
 
+    private String formatNanos(long nanos) {
+        return String.format("(%.1fms)", nanos / 1_000_000.0);
+    }
+
     private String formatDuration(long ms) {
         if (ms < 1000) {
             return ms + "ms";
@@ -0,0 +1,461 @@
+package org.bbrun.cli;
+
+import org.bbrun.BBRunException;
+import org.bbrun.ExecutionResult;
+import org.bbrun.Warning;
+import org.bbrun.ast.ScriptNode;
+import org.bbrun.metrics.LatencyHistogram;
+import org.bbrun.metrics.RunStatistics.EndpointStats;
+import org.bbrun.metrics.SlidingWindow;
+import org.bbrun.parser.AstCodec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs one script as a single load test across several {@link Worker}s,
+ * see {@code bbrun coordinate}.
+ *
+ * <p>
+ * Every worker gets the parsed script and its part: each {@code parallel}
+ * block's users and rate are split evenly among the workers. A block
+ * starts on all of them at once, {@link #START_DELAY} after the last one
+ * reached it, with each worker's half round trip taken off so the start
+ * frames take effect together. When a block ends, its latency histograms
+ * are merged and sent back, so thresholds and {@code stats} see the
+ * whole load; an abort on one worker stops the block on all. Results,
+ * per-endpoint histograms and counters are merged into one outcome.
+ */
+final class Coordinator {
+
+    /**
+     * Lead time between releasing a block and its start, for the start
+     * frames to reach every worker.
+     */
+    static final Duration START_DELAY = Duration.ofMillis(250);
+
+    private static final int PINGS = 5;
+    private static final int CONNECT_TIMEOUT_MILLIS = 5_000;
+
+    /**
+     * The merged result of all workers, their endpoints combined, and the
+     * load-generator warnings of each worker that had any, by its name in
+     * messages.
+     */
+    record Outcome(ExecutionResult result, List<EndpointStats> endpoints,
+            Map<String, List<String>> generatorWarnings) {
+    }
+
+    private final List<InetSocketAddress> addresses;
+    private final String token;
+    private final PrintStream out;
+    private List<String> names;
+    private final List<Connection> connections = new ArrayList<>();
+
+    // Guarded by this
+    private int nextStage;
+    private final Map<Integer, List<Connection>> participants = new HashMap<>();
+    private final Map<Integer, Boolean> aborted = new HashMap<>();
+
+    /**
+     * @param token the token the workers were started with
+     */
+    Coordinator(List<InetSocketAddress> addresses, String token, PrintStream out) {
+        this.addresses = addresses;
+        this.token = token;
+        this.out = out;
+    }
+
+    /**
+     * Name the workers in output and messages, in the order of their
+     * addresses; by default they go by {@code worker HOST:PORT}.
+     */
+    Coordinator names(List<String> names) {
+        this.names = names;
+        return this;
+    }
+
+    /**
+     * Run the script on every worker and wait for all of them.
+     *
+     * @param duration default duration of parallel blocks, or null
+     * @param rps      default rate of parallel blocks, or null
+     */
+    Outcome run(ScriptNode script, String scriptPath, int threads, Duration duration, Integer rps,
+            Map<String, String> environment) throws IOException {
+        byte[] ast = AstCodec.encode(script);
+        try {
+            for (int i = 0; i < addresses.size(); i++) {
+                connections.add(connect(addresses.get(i), names != null ? names.get(i) : null));
+            }
+            for (int i = 0; i < connections.size(); i++) {
+                int index = i;
+                byte[] job = WorkerProtocol.payload(data -> {
+                    DaemonProtocol.writeString(data, scriptPath);
+                    data.writeInt(ast.length);
+                    data.write(ast);
+                    data.writeInt(index);
+                    data.writeInt(connections.size());
+                    data.writeInt(threads);
+                    data.writeLong(duration != null ? duration.toMillis() : -1);
+                    data.writeInt(rps != null ? rps : -1);
+                    data.writeInt(environment.size());
+                    for (Map.Entry<String, String> entry : environment.entrySet()) {
+                        DaemonProtocol.writeString(data, entry.getKey());
+                        DaemonProtocol.writeString(data, entry.getValue());
+                    }
+                });
+                connections.get(i).send(WorkerProtocol.JOB, job);
+            }
+
+            List<Thread> readers = new ArrayList<>();
+            for (Connection connection : connections) {
+                Thread reader = new Thread(() -> receive(connection), "bbrun-coordinator-" + connection.name);
+                reader.setDaemon(true);
+                reader.start();
+                readers.add(reader);
+            }
+            for (Thread reader : readers) {
+                reader.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BBRunException("Interrupted while waiting for the workers", e);
+        } finally {
+            for (Connection connection : connections) {
+                connection.close();
+            }
+        }
+        return merge();
+    }
+
+    private Connection connect(InetSocketAddress address, String name) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(address, CONNECT_TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+            Connection connection = new Connection(address, name, socket);
+            connection.output.writeInt(WorkerProtocol.MAGIC);
+            connection.send(WorkerProtocol.HELLO,
+                    WorkerProtocol.payload(data -> DaemonProtocol.writeString(data, token)));
+
+            // Keep the fastest round trip; slower ones include scheduling noise
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i < PINGS; i++) {
+                long sent = System.nanoTime();
+                connection.send(WorkerProtocol.PING, new byte[0]);
+                WorkerProtocol.Frame answer = WorkerProtocol.read(connection.in);
+                if (answer.type() == WorkerProtocol.ABORT) {
+                    DataInputStream reason = WorkerProtocol.reader(answer.payload());
+                    reason.readInt();
+                    throw new IOException(WorkerProtocol.readString(reason));
+                }
+                if (answer.type() != WorkerProtocol.PONG) {
+                    throw new IOException("unexpected answer");
+                }
+                best = Math.min(best, System.nanoTime() - sent);
+            }
+            connection.roundTripNanos = best;
+            return connection;
+        } catch (IOException e) {
+            socket.close();
+            throw new IOException("Cannot reach " + (name != null ? name
+                    : "worker " + address.getHostString() + ":" + address.getPort()) + ": " + e.getMessage(), e);
+        }
+    }
+
+    // ========== Frames ==========
+
+    private void receive(Connection connection) {
+        try {
+            while (connection.result == null) {
+                WorkerProtocol.Frame frame = WorkerProtocol.read(connection.in);
+                DataInputStream payload = WorkerProtocol.reader(frame.payload());
+                switch (frame.type()) {
+                    case WorkerProtocol.READY -> ready(connection, payload.readInt());
+                    case WorkerProtocol.FIGURES -> figures(connection, payload.readInt(),
+                            WorkerProtocol.readSnapshot(payload));
+                    case WorkerProtocol.ABORT -> abort(connection, payload.readInt(),
+                            WorkerProtocol.readString(payload));
+                    case WorkerProtocol.OUTPUT -> connection.print(frame.payload());
+                    case WorkerProtocol.RESULT -> finish(connection, payload);
+                    default -> {
+                        // Unknown frames are skipped
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            connection.error = connection.label + " disconnected"
+                    + (e.getMessage() != null ? ": " + e.getMessage() : "");
+        } finally {
+            connection.flushOutput();
+            synchronized (this) {
+                connection.finished = true;
+                release();
+                participants.keySet().forEach(this::combine);
+            }
+        }
+    }
+
+    private synchronized void ready(Connection connection, int stage) {
+        connection.ready = stage;
+        release();
+    }
+
+    /**
+     * Start the next block once every worker still running has reached it.
+     */
+    private void release() {
+        List<Connection> running = new ArrayList<>();
+        for (Connection connection : connections) {
+            if (!connection.finished) {
+                if (connection.ready != nextStage) {
+                    return;
+                }
+                running.add(connection);
+            }
+        }
+        if (running.isEmpty()) {
+            return;
+        }
+        int stage = nextStage++;
+        participants.put(stage, running);
+        for (Connection connection : running) {
+            long delay = START_DELAY.toNanos() - connection.roundTripNanos / 2;
+            connection.trySend(WorkerProtocol.START, WorkerProtocol.payload(data -> {
+                data.writeInt(stage);
+                data.writeLong(Math.max(0, delay));
+            }));
+        }
+    }
+
+    private synchronized void figures(Connection connection, int stage, SlidingWindow.Snapshot snapshot) {
+        connection.figures.put(stage, snapshot);
+        combine(stage);
+    }
+
+    /**
+     * Send the block's merged figures once every worker that ran it has
+     * reported, or ended without.
+     */
+    private void combine(int stage) {
+        List<Connection> ran = participants.get(stage);
+        if (ran == null || ran.isEmpty()) {
+            return;
+        }
+        SlidingWindow.Snapshot total = null;
+        for (Connection connection : ran) {
+            SlidingWindow.Snapshot snapshot = connection.figures.get(stage);
+            if (snapshot == null && !connection.finished) {
+                return;
+            }
+            if (snapshot != null) {
+                total = total == null ? snapshot : total.plus(snapshot);
+            }
+        }
+        participants.put(stage, List.of());
+        if (total == null) {
+            return;
+        }
+        SlidingWindow.Snapshot merged = total;
+        byte[] payload = WorkerProtocol.payload(data -> {
+            data.writeInt(stage);
+            WorkerProtocol.writeSnapshot(data, merged);
+        });
+        for (Connection connection : ran) {
+            if (!connection.finished) {
+                connection.trySend(WorkerProtocol.TOTALS, payload);
+            }
+        }
+    }
+
+    private synchronized void abort(Connection from, int stage, String reason) {
+        if (aborted.putIfAbsent(stage, true) != null) {
+            return;
+        }
+        byte[] payload = WorkerProtocol.payload(data -> {
+            data.writeInt(stage);
+            DaemonProtocol.writeString(data, "Aborted by " + from.label + ": " + reason);
+        });
+        for (Connection connection : connections) {
+            if (connection != from && !connection.finished) {
+                connection.trySend(WorkerProtocol.ABORT, payload);
+            }
+        }
+    }
+
+    private void finish(Connection connection, DataInputStream in) throws IOException {
+        boolean success = in.readBoolean();
+        int statements = in.readInt();
+        int passed = in.readInt();
+        int failed = in.readInt();
+        long durationMs = in.readLong();
+        String error = WorkerProtocol.readString(in);
+        List<Warning> warnings = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            String message = WorkerProtocol.readString(in);
+            int line = in.readInt();
+            String expression = WorkerProtocol.readString(in);
+            warnings.add(new Warning(message, line, expression.isEmpty() ? null : expression));
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            String method = WorkerProtocol.readString(in);
+            String endpoint = WorkerProtocol.readString(in);
+            long errors = in.readLong();
+            connection.endpoints.add(new EndpointStats(method, endpoint, errors, WorkerProtocol.readHistogram(in)));
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            connection.generatorWarnings.add(WorkerProtocol.readString(in));
+        }
+        long requests = connection.endpoints.stream().mapToLong(stats -> stats.latency().count()).sum();
+        connection.result = new ExecutionResult(success, statements, passed, failed, warnings, List.of(), requests,
+                durationMs, error.isEmpty() ? null : new BBRunException(connection.label + ": " + error));
+    }
+
+    // ========== Outcome ==========
+
+    private Outcome merge() {
+        boolean success = true;
+        int statements = 0;
+        int passed = 0;
+        int failed = 0;
+        long requests = 0;
+        long durationMs = 0;
+        Throwable error = null;
+        Throwable lost = null;
+        List<Warning> warnings = new ArrayList<>();
+        Map<String, EndpointStats> endpoints = new LinkedHashMap<>();
+        Map<String, List<String>> generatorWarnings = new LinkedHashMap<>();
+
+        for (Connection connection : connections) {
+            ExecutionResult result = connection.result;
+            if (result == null) {
+                // A lost worker explains whatever failed on the others
+                success = false;
+                if (lost == null) {
+                    lost = new BBRunException(connection.error != null ? connection.error
+                            : connection.label + " sent no result");
+                }
+                continue;
+            }
+            success &= result.isSuccess();
+            statements = Math.max(statements, result.totalStatements());
+            passed += result.passedAssertions();
+            failed += result.failedAssertions();
+            requests += result.requestCount();
+            durationMs = Math.max(durationMs, result.durationMs());
+            warnings.addAll(result.warnings());
+            if (error == null) {
+                error = result.error();
+            }
+            for (EndpointStats stats : connection.endpoints) {
+                endpoints.merge(stats.method() + ' ' + stats.endpoint(), stats, (a, b) -> {
+                    LatencyHistogram latency = new LatencyHistogram();
+                    latency.merge(a.latency());
+                    latency.merge(b.latency());
+                    return new EndpointStats(a.method(), a.endpoint(), a.errors() + b.errors(), latency);
+                });
+            }
+            if (!connection.generatorWarnings.isEmpty()) {
+                generatorWarnings.put(connection.label, connection.generatorWarnings);
+            }
+        }
+        ExecutionResult result = new ExecutionResult(success, statements, passed, failed, warnings, List.of(),
+                requests, durationMs, lost != null ? lost : error);
+        return new Outcome(result, new ArrayList<>(endpoints.values()), generatorWarnings);
+    }
+
+    /**
+     * One worker: its socket and what it has reported.
+     */
+    private final class Connection {
+        // Marks its output lines
+        final String name;
+        // Names it in messages
+        final String label;
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream output;
+        final DaemonProtocol.FrameWriter frames;
+        final Map<Integer, SlidingWindow.Snapshot> figures = new HashMap<>();
+        final List<EndpointStats> endpoints = new ArrayList<>();
+        final List<String> generatorWarnings = new ArrayList<>();
+        final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        long roundTripNanos;
+        int ready = -1;
+        boolean finished;
+        volatile ExecutionResult result;
+        volatile String error;
+
+        Connection(InetSocketAddress address, String name, Socket socket) throws IOException {
+            this.name = name != null ? name : address.getHostString() + ":" + address.getPort();
+            this.label = name != null ? name : "worker " + this.name;
+            this.socket = socket;
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            this.frames = new DaemonProtocol.FrameWriter(output);
+        }
+
+        void send(byte type, byte[] payload) throws IOException {
+            frames.write(type, payload, 0, payload.length);
+        }
+
+        /**
+         * Send, leaving a failure to the connection's reader to notice.
+         */
+        void trySend(byte type, byte[] payload) {
+            try {
+                send(type, payload);
+            } catch (IOException e) {
+                // The reader sees the connection end
+            }
+        }
+
+        /**
+         * Print the worker's output line by line, each marked with the
+         * worker it came from.
+         */
+        void print(byte[] bytes) {
+            for (byte b : bytes) {
+                if (b == '\n') {
+                    flushOutput();
+                } else {
+                    line.write(b);
+                }
+            }
+        }
+
+        void flushOutput() {
+            if (line.size() == 0) {
+                return;
+            }
+            String text = line.toString(StandardCharsets.UTF_8);
+            line.reset();
+            synchronized (out) {
+                out.println("[" + name + "] " + text);
+            }
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package org.bbrun.cli;
+
+import org.bbrun.BBRunEngine;
+import org.bbrun.parser.AstCache;
+import org.bbrun.parser.ScriptLoader;
+import picocli.CommandLine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Background process that keeps a warm {@link BBRunEngine} and serves CLI
+ * invocations from {@link DaemonClient} over a Unix-domain socket.
+ *
+ * <p>
+ * Each connection runs one {@link Main} command on the shared engine, with
+ * the client's working directory, environment and output streams. The
+ * parser, providers and parse cache stay initialized between runs, so a
+ * script executes without paying JVM and ANTLR warm-up again.
+ *
+ * <p>
+ * A client that disconnects cancels its run. Runs that measure the JVM
+ * itself get it to themselves; {@code --jfr} and the {@code worker},
+ * {@code coordinate} and {@code cds-train} subcommands are not served.
+ *
+ * <p>
+ * The socket is only accessible to the owning user. The daemon exits after
+ * {@code BBRUN_DAEMON_IDLE_MINUTES} (default 30) without connections, or on
+ * {@code bbrun --daemon-stop}.
+ */
+public final class Daemon {
+
+    private static final Duration DEFAULT_IDLE = Duration.ofMinutes(30);
+
+    private final Path socket;
+    private final Duration idleTimeout;
+    private final BBRunEngine engine;
+    private final ExecutorService connections;
+    private final AtomicInteger active = new AtomicInteger();
+    private volatile Instant lastActivity = Instant.now();
+    private volatile boolean running = true;
+    private ServerSocketChannel server;
+
+    public Daemon(Path socket, Duration idleTimeout) {
+        this.socket = socket;
+        this.idleTimeout = idleTimeout;
+        this.engine = new BBRunEngine();
+        this.connections = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "bbrun-daemon-connection");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Accept connections until stopped or idle.
+     */
+    public void serve() throws IOException {
+        if (isListening()) {
+            log("Another daemon is already listening on " + socket);
+            return;
+        }
+        Files.createDirectories(socket.toAbsolutePath().getParent());
+        Files.deleteIfExists(socket);
+
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socket));
+        try {
+            Files.setPosixFilePermissions(socket, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+            // Non-POSIX file system; rely on the directory permissions
+        }
+        log("Listening on " + socket);
+
+        warmUp();
+        ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bbrun-daemon-idle");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watchdog.scheduleWithFixedDelay(this::stopIfIdle, 1, 1, TimeUnit.MINUTES);
+
+        try {
+            while (running) {
+                SocketChannel channel;
+                try {
+                    channel = server.accept();
+                } catch (IOException e) {
+                    if (!running) {
+                        break;
+                    }
+                    throw e;
+                }
+                active.incrementAndGet();
+                lastActivity = Instant.now();
+                connections.execute(() -> handle(channel));
+            }
+        } finally {
+            watchdog.shutdownNow();
+            stop();
+            engine.close();
+            Files.deleteIfExists(socket);
+            log("Stopped");
+        }
+    }
+
+    private void handle(SocketChannel channel) {
+        try (channel) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            DaemonProtocol.FrameWriter frames = new DaemonProtocol.FrameWriter(
+                    new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel))));
+
+            if (in.readInt() != DaemonProtocol.MAGIC) {
+                return;
+            }
+            byte command = in.readByte();
+            if (command == DaemonProtocol.STOP) {
+                frames.exit(0);
+                stop();
+                return;
+            }
+
+            Path workingDirectory = Path.of(DaemonProtocol.readString(in));
+            Charset charset = Charset.forName(DaemonProtocol.readString(in));
+            String[] args = new String[in.readInt()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = DaemonProtocol.readString(in);
+            }
+            int envSize = in.readInt();
+            Map<String, String> environment = new HashMap<>(envSize * 2);
+            for (int i = 0; i < envSize; i++) {
+                environment.put(DaemonProtocol.readString(in), DaemonProtocol.readString(in));
+            }
+
+            PrintStream out = new PrintStream(new BufferedOutputStream(frames.stream(DaemonProtocol.STDOUT)),
+                    true, charset);
+            PrintStream err = new PrintStream(new BufferedOutputStream(frames.stream(DaemonProtocol.STDERR)),
+                    true, charset);
+
+            String inProcess = DaemonClient.inProcessCommand(args);
+            if (inProcess != null) {
+                // Sent by a client that predates the check
+                err.println("bbrun: '" + inProcess + "' does not run in the daemon; unset BBRUN_DAEMON");
+                err.flush();
+                frames.exit(2);
+                return;
+            }
+
+            Main main = new Main(engine, out, err, workingDirectory, environment);
+            watchClient(channel, main);
+            int exitCode = new CommandLine(main)
+                    .setOut(new PrintWriter(out, true))
+                    .setErr(new PrintWriter(err, true))
+                    .execute(args);
+            out.flush();
+            err.flush();
+            frames.exit(exitCode);
+
+        } catch (IOException e) {
+            // Client went away; nothing to report to
+        } finally {
+            lastActivity = Instant.now();
+            active.decrementAndGet();
+        }
+    }
+
+    /**
+     * Cancel the command once the client closes its end, e.g. on Ctrl-C.
+     * The client sends nothing after its request, so any read that returns
+     * means it is gone. Reads the channel directly: its input stream would
+     * hold the lock its output stream needs.
+     */
+    private void watchClient(SocketChannel channel, Main main) {
+        Thread watcher = new Thread(() -> {
+            ByteBuffer buffer = ByteBuffer.allocate(1);
+            try {
+                while (channel.read(buffer) >= 0) {
+                    buffer.clear();
+                }
+            } catch (IOException e) {
+                if (!channel.isOpen()) {
+                    // Closed by handle() after the run
+                    return;
+                }
+            }
+            main.cancel();
+        }, "bbrun-daemon-client-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * Initialize the parser and providers before the first client arrives.
+     */
+    private void warmUp() {
+        connections.execute(() -> {
+            try {
+                new ScriptLoader(new AstCache(null)).parse("let warmup = 1 + 2\n", "warmup.bbrun");
+            } catch (RuntimeException e) {
+                log("Warm-up failed: " + e.getMessage());
+            }
+        });
+    }
+
+    private void stopIfIdle() {
+        if (active.get() == 0 && Duration.between(lastActivity, Instant.now()).compareTo(idleTimeout) > 0) {
+            log("Idle for " + idleTimeout.toMinutes() + " minutes");
+            stop();
+        }
+    }
+
+    private void stop() {
+        running = false;
+        try {
+            if (server != null) {
+                server.close();
+            }
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+
+    private boolean isListening() {
+        if (!Files.exists(socket)) {
+            return false;
+        }
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(socket));
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void log(String message) {
+        System.out.println(Instant.now() + " " + message);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path socket = args.length > 0 ? Path.of(args[0]) : DaemonProtocol.socketPath();
+        Duration idle = DEFAULT_IDLE;
+        String configured = System.getenv("BBRUN_DAEMON_IDLE_MINUTES");
+        if (configured != null && !configured.isBlank()) {
+            idle = Duration.ofMinutes(Long.parseLong(configured.trim()));
+        }
+        new Daemon(socket, idle).serve();
+        System.exit(0);
+    }
+}
@@ -0,0 +1,234 @@
+package org.bbrun.cli;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Thin client that forwards a CLI invocation to the {@link Daemon}.
+ *
+ * <p>
+ * Only JDK classes are touched here, so a client run costs little more than
+ * JVM boot. If no daemon is listening, one is started in the background and
+ * the client waits for its socket to appear.
+ */
+final class DaemonClient {
+
+    private static final String DAEMON_FLAG = "--daemon";
+    private static final String STOP_FLAG = "--daemon-stop";
+    private static final long START_TIMEOUT_MS = 10_000;
+
+    // Subcommands that serve, coordinate or train for long and hold
+    // process-wide state, so they always run in their own process
+    private static final Set<String> IN_PROCESS = Set.of("worker", "coordinate", "cds-train");
+
+    // Flight Recorder stays initialized in a JVM once started, so every later run would emit events
+    private static final String JFR_FLAG = "--jfr";
+
+    private DaemonClient() {
+    }
+
+    /**
+     * Whether this invocation should go through the daemon.
+     */
+    static boolean isRequested(String[] args) {
+        if (inProcessCommand(args) != null) {
+            return false;
+        }
+        for (String arg : args) {
+            if (arg.equals(DAEMON_FLAG) || arg.equals(STOP_FLAG)) {
+                return true;
+            }
+        }
+        String env = System.getenv("BBRUN_DAEMON");
+        return "1".equals(env) || "true".equalsIgnoreCase(env);
+    }
+
+    /**
+     * The subcommand or option of this invocation that must not run in the
+     * daemon, or null.
+     */
+    static String inProcessCommand(String[] args) {
+        for (String arg : args) {
+            if (IN_PROCESS.contains(arg)) {
+                return arg;
+            }
+            if (arg.startsWith(JFR_FLAG)) {
+                return JFR_FLAG;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Run the invocation on the daemon and return its exit code.
+     */
+    static int run(String[] args) {
+        Path socket = DaemonProtocol.socketPath();
+        List<String> forwarded = new ArrayList<>(args.length);
+        boolean stop = false;
+        for (String arg : args) {
+            if (arg.equals(STOP_FLAG)) {
+                stop = true;
+            } else if (!arg.equals(DAEMON_FLAG)) {
+                forwarded.add(arg);
+            }
+        }
+
+        try {
+            if (stop) {
+                return stop(socket);
+            }
+            try (SocketChannel channel = connectOrStart(socket)) {
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(channel)));
+                out.writeInt(DaemonProtocol.MAGIC);
+                out.writeByte(DaemonProtocol.RUN);
+                DaemonProtocol.writeString(out, Path.of("").toAbsolutePath().toString());
+                DaemonProtocol.writeString(out, outputCharset());
+                out.writeInt(forwarded.size());
+                for (String arg : forwarded) {
+                    DaemonProtocol.writeString(out, arg);
+                }
+                Map<String, String> env = System.getenv();
+                out.writeInt(env.size());
+                for (Map.Entry<String, String> entry : env.entrySet()) {
+                    DaemonProtocol.writeString(out, entry.getKey());
+                    DaemonProtocol.writeString(out, entry.getValue());
+                }
+                out.flush();
+                return pump(channel);
+            }
+        } catch (IOException e) {
+            System.err.println("bbrun: daemon unavailable (" + socket + "): " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Copy output frames to this process' stdout/stderr until the exit frame.
+     */
+    private static int pump(SocketChannel channel) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        byte[] buffer = new byte[8192];
+        try {
+            while (true) {
+                byte type = in.readByte();
+                int length = in.readInt();
+                if (type == DaemonProtocol.EXIT) {
+                    return in.readInt();
+                }
+                if (length > buffer.length) {
+                    buffer = new byte[length];
+                }
+                in.readFully(buffer, 0, length);
+                PrintStream target = type == DaemonProtocol.STDERR ? System.err : System.out;
+                target.write(buffer, 0, length);
+                target.flush();
+            }
+        } catch (EOFException e) {
+            System.err.println("bbrun: daemon closed the connection");
+            return 1;
+        }
+    }
+
+    private static int stop(Path socket) throws IOException {
+        SocketChannel channel = connect(socket);
+        if (channel == null) {
+            System.err.println("bbrun: no daemon running");
+            return 0;
+        }
+        try (channel) {
+            DataOutputStream out = new DataOutputStream(Channels.newOutputStream(channel));
+            out.writeInt(DaemonProtocol.MAGIC);
+            out.writeByte(DaemonProtocol.STOP);
+            out.flush();
+            return pump(channel);
+        }
+    }
+
+    private static SocketChannel connectOrStart(Path socket) throws IOException {
+        SocketChannel channel = connect(socket);
+        if (channel != null) {
+            return channel;
+        }
+
+        startDaemon(socket);
+        long deadline = System.currentTimeMillis() + START_TIMEOUT_MS;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(25);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            channel = connect(socket);
+            if (channel != null) {
+                return channel;
+            }
+        }
+        throw new IOException("daemon did not start within " + START_TIMEOUT_MS + "ms, see "
+                + logFile(socket));
+    }
+
+    /**
+     * Connect to a listening daemon, or return null if there is none.
+     */
+    private static SocketChannel connect(Path socket) throws IOException {
+        if (!Files.exists(socket)) {
+            return null;
+        }
+        SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            channel.connect(UnixDomainSocketAddress.of(socket));
+            return channel;
+        } catch (IOException e) {
+            // Stale socket file left by a daemon that died
+            channel.close();
+            return null;
+        }
+    }
+
+    private static void startDaemon(Path socket) throws IOException {
+        Files.createDirectories(socket.toAbsolutePath().getParent());
+        String java = ProcessHandle.current().info().command()
+                .orElse(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+
+        Process process = new ProcessBuilder(java,
+                "-cp", System.getProperty("java.class.path"),
+                Daemon.class.getName(), socket.toString())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(logFile(socket)))
+                .start();
+        process.getOutputStream().close();
+    }
+
+    /**
+     * Charset this process would print with, so daemon output is encoded
+     * exactly as a local run's would be.
+     */
+    private static String outputCharset() {
+        String stdout = System.getProperty("sun.stdout.encoding");
+        return stdout != null ? stdout : Charset.defaultCharset().name();
+    }
+
+    static File logFile(Path socket) {
+        return socket.resolveSibling("daemon.log").toFile();
+    }
+}
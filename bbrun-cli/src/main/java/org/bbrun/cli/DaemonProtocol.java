@@ -0,0 +1,105 @@
+package org.bbrun.cli;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Wire format between {@link DaemonClient} and {@link Daemon}.
+ *
+ * <p>
+ * The client sends one request: magic, command and, for {@link #RUN}, its
+ * working directory, output charset, arguments and environment. The daemon
+ * answers with a stream of frames ({@code type, length, payload}): stdout
+ * and stderr chunks as they are produced, then a single {@link #EXIT} frame
+ * carrying the exit code. Strings are length-prefixed UTF-8.
+ */
+final class DaemonProtocol {
+
+    static final int MAGIC = 0x42424431; // "BBD1"
+
+    // Commands
+    static final byte RUN = 1;
+    static final byte STOP = 2;
+
+    // Response frames
+    static final byte STDOUT = 1;
+    static final byte STDERR = 2;
+    static final byte EXIT = 3;
+
+    private DaemonProtocol() {
+    }
+
+    /**
+     * Socket location: {@code BBRUN_DAEMON_SOCKET}, else
+     * {@code ~/.cache/bbrun/daemon.sock}.
+     */
+    static Path socketPath() {
+        String configured = System.getenv("BBRUN_DAEMON_SOCKET");
+        if (configured != null && !configured.isBlank()) {
+            return Path.of(configured);
+        }
+        return Path.of(System.getProperty("user.home"), ".cache", "bbrun", "daemon.sock");
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Daemon side of a connection. Frames may be written from several
+     * threads, e.g. suite callbacks, so each frame is written atomically.
+     */
+    static final class FrameWriter {
+
+        private final DataOutputStream out;
+
+        FrameWriter(DataOutputStream out) {
+            this.out = out;
+        }
+
+        synchronized void write(byte type, byte[] bytes, int offset, int length) throws IOException {
+            out.writeByte(type);
+            out.writeInt(length);
+            out.write(bytes, offset, length);
+            out.flush();
+        }
+
+        synchronized void exit(int code) throws IOException {
+            out.writeByte(EXIT);
+            out.writeInt(Integer.BYTES);
+            out.writeInt(code);
+            out.flush();
+        }
+
+        /**
+         * Stream that turns every write into one frame of the given type.
+         */
+        OutputStream stream(byte type) {
+            return new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    FrameWriter.this.write(type, new byte[] { (byte) b }, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] bytes, int offset, int length) throws IOException {
+                    if (length > 0) {
+                        FrameWriter.this.write(type, bytes, offset, length);
+                    }
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.bbrun.cli;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.LocalDateTime;
+
+/**
+ * Java Flight Recorder recording covering one CLI run, written to a file
+ * when the run ends.
+ *
+ * <p>
+ * Uses the JDK's {@code profile} settings, so alongside the bbrun.*
+ * events the file shows socket I/O, allocation and GC, e.g. to tell time
+ * spent waiting on the target from time spent parsing JSON.
+ */
+final class FlightRecording {
+
+    private final Recording recording;
+    private final Path destination;
+
+    private FlightRecording(Recording recording, Path destination) {
+        this.recording = recording;
+        this.destination = destination;
+    }
+
+    /**
+     * Start recording. Without a file name the recording goes to
+     * {@code bbrun-<timestamp>.jfr} in the given directory.
+     */
+    static FlightRecording start(Path directory, String fileName) throws IOException {
+        Path destination = directory.resolve(fileName != null
+                ? fileName
+                : "bbrun-" + LocalDateTime.now().format(Main.FILE_TIMESTAMP) + ".jfr");
+        Configuration configuration;
+        try {
+            configuration = Configuration.getConfiguration("profile");
+        } catch (ParseException e) {
+            throw new IOException("Cannot read JFR profile settings: " + e.getMessage(), e);
+        }
+        Recording recording = new Recording(configuration);
+        recording.setName("bbrun");
+        recording.start();
+        return new FlightRecording(recording, destination);
+    }
+
+    /**
+     * Stop recording and write the file.
+     *
+     * @return where the recording was written
+     */
+    Path finish() throws IOException {
+        try (recording) {
+            recording.stop();
+            recording.dump(destination);
+        }
+        return destination;
+    }
+}
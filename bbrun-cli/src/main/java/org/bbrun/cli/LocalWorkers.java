@@ -0,0 +1,206 @@
+package org.bbrun.cli;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
+
+/**
+ * Child JVMs on this host running a {@link Worker} each, see
+ * {@code bbrun coordinate --processes}.
+ *
+ * <p>
+ * Every child has a heap of its own, a fraction of the one a single
+ * generator would need, so its collections stay short and a pause stalls
+ * only its share of the users. A child listens on a loopback port it
+ * announces on its first line of output, serves one run and exits; it also
+ * exits when this process goes away, as its standard input then closes. The
+ * last lines of the rest of its output explain a crash. The children share
+ * a token made up for the run.
+ */
+final class LocalWorkers implements AutoCloseable {
+
+    private static final Pattern HEAP = Pattern.compile("\\d+[kKmMgG]?");
+    private static final long MIN_HEAP_MB = 64;
+    private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration EXIT_TIMEOUT = Duration.ofSeconds(5);
+    private static final int TAIL_LINES = 5;
+
+    private final List<Child> children = new ArrayList<>();
+    private final String token = WorkerProtocol.newToken();
+
+    private LocalWorkers() {
+    }
+
+    /**
+     * Start the children and wait until all of them listen.
+     *
+     * @param heap maximum heap of each child as for {@code -Xmx}, or null
+     *             to split this JVM's maximum heap among them
+     */
+    static LocalWorkers start(int count, String heap) throws IOException {
+        if (heap != null && !HEAP.matcher(heap).matches()) {
+            throw new IllegalArgumentException("Invalid heap size: " + heap);
+        }
+        String maxHeap = heap != null ? heap
+                : Math.max(MIN_HEAP_MB, Runtime.getRuntime().maxMemory() / count >> 20) + "m";
+        String java = ProcessHandle.current().info().command()
+                .orElse(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+
+        LocalWorkers workers = new LocalWorkers();
+        try {
+            for (int i = 1; i <= count; i++) {
+                ProcessBuilder builder = new ProcessBuilder(java, "-Xmx" + maxHeap,
+                        "-cp", System.getProperty("java.class.path"),
+                        Main.class.getName(), "worker", "--listen", "127.0.0.1:0", "--parent")
+                        .redirectErrorStream(true);
+                // The child must serve, not hand its run to a daemon
+                builder.environment().remove("BBRUN_DAEMON");
+                builder.environment().put(WorkerProtocol.TOKEN_VARIABLE, workers.token);
+                workers.children.add(new Child("process " + i, builder.start()));
+            }
+            long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+            for (Child child : workers.children) {
+                child.awaitPort(deadline);
+            }
+            return workers;
+        } catch (IOException | RuntimeException e) {
+            workers.close();
+            throw e;
+        }
+    }
+
+    List<InetSocketAddress> addresses() {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (Child child : children) {
+            addresses.add(new InetSocketAddress("127.0.0.1", child.port.join()));
+        }
+        return addresses;
+    }
+
+    String token() {
+        return token;
+    }
+
+    List<String> names() {
+        return children.stream().map(child -> child.name).toList();
+    }
+
+    /**
+     * Describe each child that has exited with an error, waiting briefly
+     * for those still finishing their run.
+     */
+    List<String> crashes() {
+        List<String> crashes = new ArrayList<>();
+        for (Child child : children) {
+            try {
+                if (child.process.waitFor(EXIT_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)
+                        && child.process.exitValue() != 0) {
+                    crashes.add(child.name + " exited with code " + child.process.exitValue() + child.tail());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return crashes;
+    }
+
+    @Override
+    public void close() {
+        for (Child child : children) {
+            try {
+                child.process.getOutputStream().close();
+            } catch (IOException e) {
+                // Already gone
+            }
+        }
+        for (Child child : children) {
+            try {
+                if (!child.process.waitFor(EXIT_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                    child.process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                child.process.destroyForcibly();
+            }
+        }
+    }
+
+    /**
+     * One child: its port once announced, and the last lines it printed.
+     */
+    private static final class Child {
+        final String name;
+        final Process process;
+        final CompletableFuture<Integer> port = new CompletableFuture<>();
+        // Guarded by itself
+        private final Deque<String> lines = new ArrayDeque<>();
+
+        Child(String name, Process process) {
+            this.name = name;
+            this.process = process;
+            Thread reader = new Thread(this::read, "bbrun-" + name.replace(' ', '-'));
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        private void read() {
+            try (BufferedReader in = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (!port.isDone()) {
+                        try {
+                            port.complete(Integer.parseInt(line.trim()));
+                            continue;
+                        } catch (NumberFormatException e) {
+                            // Something went wrong first; kept below
+                        }
+                    }
+                    synchronized (lines) {
+                        lines.addLast(line);
+                        if (lines.size() > TAIL_LINES) {
+                            lines.removeFirst();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                // The child is gone
+            }
+            port.completeExceptionally(new IOException("exited before listening"));
+        }
+
+        void awaitPort(long deadlineNanos) throws IOException {
+            try {
+                port.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException e) {
+                throw new IOException("Cannot start " + name + ": " + e.getCause().getMessage() + tail(), e);
+            } catch (TimeoutException e) {
+                throw new IOException("Cannot start " + name + ": not listening after "
+                        + STARTUP_TIMEOUT.toSeconds() + "s" + tail(), e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while starting " + name, e);
+            }
+        }
+
+        String tail() {
+            synchronized (lines) {
+                return lines.isEmpty() ? "" : "; last output:\n  " + String.join("\n  ", lines);
+            }
+        }
+    }
+}
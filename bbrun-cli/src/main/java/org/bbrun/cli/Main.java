@@ -1,16 +1,64 @@
 package org.bbrun.cli;
 
-import org.bbrun.BBRun;
+import org.bbrun.BBRunEngine;
+import org.bbrun.BBRunException;
 import org.bbrun.ExecutionResult;
+import org.bbrun.ast.ScriptNode;
+import org.bbrun.baseline.Baseline;
+import org.bbrun.baseline.BaselineComparison;
+import org.bbrun.baseline.BaselineView;
+import org.bbrun.events.BackpressurePolicy;
+import org.bbrun.events.EventListener;
+import org.bbrun.events.JsonLinesSink;
 import org.bbrun.interpreter.ExecutionHandle;
+import org.bbrun.interpreter.ExecutionOptions;
 import org.bbrun.interpreter.ExecutionProgress;
+import org.bbrun.metrics.GeneratorMonitor;
+import org.bbrun.metrics.LiveMetrics;
+import org.bbrun.metrics.MetricsServer;
+import org.bbrun.metrics.RunStatistics;
+import org.bbrun.metrics.TimeSeries;
+import org.bbrun.parser.AstCache;
+import org.bbrun.parser.ScriptLoader;
+import org.bbrun.profile.LineProfiler;
+import org.bbrun.report.HtmlReport;
+import org.bbrun.results.BinaryResultsReader;
+import org.bbrun.results.BinaryResultsWriter;
+import org.bbrun.results.ResultsAnalysis;
+import org.bbrun.spi.JavaHttpClientImpl;
+import org.bbrun.spi.ProviderRegistry;
+import org.bbrun.suite.ScriptDiscovery;
+import org.bbrun.suite.SuiteResult;
+import org.bbrun.suite.SuiteRunner;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
 import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
 import picocli.CommandLine.Parameters;
+import picocli.CommandLine.Spec;
 
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * BBRun CLI entry point.
@@ -18,8 +66,25 @@ import java.util.concurrent.Callable;
 @Command(name = "bbrun", mixinStandardHelpOptions = true, version = "bbrun 0.1.0", description = "Execute BBRun API test scripts")
 public class Main implements Callable<Integer> {
 
-    @Parameters(index = "0", description = "Script file to execute")
-    private Path script;
+    private static final String STDOUT = "-";
+
+    // Events buffered per recording sink, enough to ride out a slow disk for a moment
+    private static final int SINK_BUFFER = 16 * 1024;
+
+    private static final Pattern DURATION = Pattern.compile("(\\d+)(ms|s|m|h)");
+
+    // Runs on a daemon share its JVM, and the generator monitor measures all of it,
+    // so a monitored run has the JVM to itself; --no-monitor runs may overlap
+    private static final ReadWriteLock DAEMON_RUNS = new ReentrantReadWriteLock(true);
+
+    static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    @Spec
+    private CommandSpec spec;
+
+    // Optional so subcommands parse without scripts; checked in call()
+    @Parameters(arity = "0..*", description = "Script files, directories or glob patterns to execute")
+    private List<String> scripts;
 
     @Option(names = { "-v", "--verbose" }, description = "Show detailed output")
     private boolean verbose;
@@ -33,36 +98,465 @@ public class Main implements Callable<Integer> {
     @Option(names = { "-q", "--quiet" }, description = "Only show errors")
     private boolean quiet;
 
-    @Option(names = { "--threads" }, description = "Number of parallel threads", defaultValue = "1")
+    @Option(names = { "--threads" }, description = "Virtual users of parallel blocks that set no threads",
+            defaultValue = "1")
     private int threads;
 
-    @Option(names = { "--duration" }, description = "Duration for load testing (e.g., 1m, 30s)")
+    @Option(names = { "--duration" }, description = "Duration of parallel blocks that set none (e.g., 1m, 30s)")
     private String duration;
 
-    @Option(names = { "--rps" }, description = "Requests per second limit")
+    @Option(names = { "--rps" }, description = "Iterations started per second by parallel blocks that set no rate")
     private Integer rps;
 
+    @Option(names = { "--no-cache" }, description = "Do not read or write the on-disk parse cache")
+    private boolean noCache;
+
+    @Option(names = { "-j", "--jobs" }, description = "Scripts to run concurrently in suite mode", defaultValue = "8")
+    private int jobs;
+
+    @Option(names = { "--share-init" }, description = "Run each _init.bbrun chain once per suite and share its state")
+    private boolean shareInit;
+
+    @Option(names = { "--daemon" }, description = "Run through a background daemon that keeps the engine warm "
+            + "(started on first use; also enabled by BBRUN_DAEMON=1)")
+    private boolean daemon;
+
+    @Option(names = { "--daemon-stop" }, description = "Stop the background daemon")
+    private boolean daemonStop;
+
+    @Option(names = { "--metrics" }, paramLabel = "[HOST:]PORT", description = "Serve live metrics in "
+            + "OpenMetrics format at http://HOST:PORT/metrics while running (host defaults to 127.0.0.1)")
+    private String metricsAddress;
+
+    @Option(names = { "--no-monitor" }, description = "Do not watch bbrun's own GC pauses, hiccups and CPU "
+            + "for signs that the load generator distorted the results")
+    private boolean noMonitor;
+
+    @Option(names = { "--jfr" }, description = "Record the run with Java Flight Recorder, including "
+            + "bbrun.* statement, request, assertion and JSON parse events")
+    private boolean jfr;
+
+    @Option(names = { "--jfr-file" }, paramLabel = "FILE", description = "Where --jfr writes the recording "
+            + "(default: bbrun-<timestamp>.jfr next to --results, --binary-results or --report, else in the working "
+            + "directory)")
+    private String jfrFile;
+
+    @Option(names = { "--profile" }, description = "Profile time and allocation per script line; prints an "
+            + "annotated listing and writes collapsed stacks for flame graphs")
+    private boolean profile;
+
+    @Option(names = { "--profile-stacks" }, paramLabel = "FILE", description = "Where --profile writes collapsed "
+            + "stacks (default: bbrun-<timestamp>.collapsed in the working directory)")
+    private String profileStacksFile;
+
+    @Option(names = { "--results" }, paramLabel = "FILE", description = "Stream each request, assertion and "
+            + "warning as a JSON line to FILE while running, ending with a summary line (- for stdout)")
+    private String resultsFile;
+
+    @Option(names = { "--binary-results" }, paramLabel = "FILE", description = "Record every request to a compact "
+            + "binary file for 'bbrun analyze'")
+    private String binaryResultsFile;
+
+    @Option(names = { "--baseline" }, paramLabel = "FILE", description = "Compare latency and throughput "
+            + "per endpoint with a saved baseline; fails on a significant p95 regression. Scripts can use "
+            + "baseline.p95Delta(\"#path\") and similar")
+    private String baselineFile;
+
+    @Option(names = { "--save-baseline" }, paramLabel = "FILE", description = "Save per-endpoint latency "
+            + "histograms and throughput of this run as a baseline")
+    private String saveBaselineFile;
+
+    @Option(names = { "--max-regression" }, paramLabel = "PERCENT", description = "p95 increase over the "
+            + "baseline allowed before failing (default: ${DEFAULT-VALUE})", defaultValue = "10")
+    private double maxRegression;
+
+    @Option(names = { "--report" }, paramLabel = "FILE", description = "Write a self-contained HTML report "
+            + "with throughput, latency and error charts per second and per-endpoint histograms")
+    private String reportFile;
+
     private final ConsoleReporter reporter;
+    private final BBRunEngine sharedEngine;
+    private final PrintStream out;
+    private final PrintStream err;
+    private final Path workingDirectory;
+    private final Map<String, String> environment;
+    private volatile boolean cancelled;
+    private volatile ExecutionHandle running;
+    private volatile SuiteRunner runningSuite;
 
     public Main() {
-        this.reporter = new ConsoleReporter();
+        this(null, System.out, System.err, Path.of(""), System.getenv());
+    }
+
+    /**
+     * Create a command that runs on an engine owned by the caller, on behalf
+     * of a client with its own output streams, directory and environment.
+     * Used by {@link Daemon}.
+     */
+    Main(BBRunEngine sharedEngine, PrintStream out, PrintStream err, Path workingDirectory,
+            Map<String, String> environment) {
+        this.reporter = new ConsoleReporter(out, err);
+        this.sharedEngine = sharedEngine;
+        this.out = out;
+        this.err = err;
+        this.workingDirectory = workingDirectory;
+        this.environment = environment;
+        if (workingDirectory.isAbsolute()) {
+            reporter.setWorkingDirectory(workingDirectory);
+        }
+    }
+
+    /**
+     * Cancel the run of this command, e.g. when the daemon client it runs
+     * for goes away. May be called from any thread.
+     */
+    void cancel() {
+        cancelled = true;
+        ExecutionHandle handle = running;
+        if (handle != null) {
+            handle.cancel();
+        }
+        SuiteRunner suite = runningSuite;
+        if (suite != null) {
+            suite.cancel();
+        }
     }
 
     @Override
     public Integer call() {
+        if (scripts == null || scripts.isEmpty()) {
+            throw new ParameterException(spec.commandLine(), "Missing required parameter: '<scripts>'");
+        }
         reporter.setColorEnabled(!noColor);
         reporter.setVerbose(verbose);
         reporter.setQuiet(quiet);
 
-        if (!json) {
-            reporter.printHeader(script.toString());
+        ExecutionOptions options = new ExecutionOptions().output(out).threads(threads).rps(rps);
+        if (duration != null) {
+            try {
+                options.duration(parseDuration(duration));
+            } catch (IllegalArgumentException e) {
+                throw new ParameterException(spec.commandLine(), e.getMessage());
+            }
+        }
+        // The whole environment of the caller, not the daemon's when run by one
+        environment.forEach(options::env);
+        options.inheritEnvironment(false);
+        // Only the --json document lists every request; everything else counts, streams or aggregates them
+        options.retainRequests(json);
+        if (profile || profileStacksFile != null) {
+            options.profiler(new LineProfiler());
+        }
+
+        RunStatistics statistics = null;
+        Baseline baseline = null;
+        if (baselineFile != null || saveBaselineFile != null || reportFile != null) {
+            statistics = new RunStatistics();
+        }
+        TimeSeries timeSeries = null;
+        if (reportFile != null) {
+            timeSeries = new TimeSeries();
+        }
+        if (baselineFile != null) {
+            try {
+                baseline = Baseline.load(workingDirectory.resolve(baselineFile));
+            } catch (IOException | BBRunException e) {
+                reporter.printError(new IOException("Cannot read baseline " + baselineFile + ": " + e.getMessage(), e));
+                return 1;
+            }
+            options.variable("baseline", new BaselineView(baseline, statistics, maxRegression));
+        }
+
+        JsonLinesSink results = null;
+        if (resultsFile != null) {
+            if (json && STDOUT.equals(resultsFile)) {
+                reporter.printError(new IllegalArgumentException("--results - cannot be combined with --json"));
+                return 1;
+            }
+            try {
+                results = STDOUT.equals(resultsFile)
+                        ? new JsonLinesSink(out, false, JsonLinesSink.DEFAULT_FLUSH_INTERVAL)
+                        : JsonLinesSink.open(workingDirectory.resolve(resultsFile));
+            } catch (IOException e) {
+                reporter.printError(new IOException("Cannot write results to " + resultsFile + ": " + e.getMessage(), e));
+                return 1;
+            }
+        }
+
+        BinaryResultsWriter binaryResults = null;
+        if (binaryResultsFile != null) {
+            try {
+                binaryResults = BinaryResultsWriter.open(workingDirectory.resolve(binaryResultsFile));
+            } catch (IOException e) {
+                reporter.printError(new IOException(
+                        "Cannot write results to " + binaryResultsFile + ": " + e.getMessage(), e));
+                closeResults(results);
+                return 1;
+            }
+        }
+
+        MetricsServer metricsServer = null;
+        LiveMetrics metrics = null;
+        if (metricsAddress != null) {
+            try {
+                metrics = new LiveMetrics();
+                metricsServer = MetricsServer.start(parseAddress(metricsAddress), metrics);
+                options.listener(metrics);
+                InetSocketAddress bound = metricsServer.getAddress();
+                reporter.printMetricsEndpoint("http://" + bound.getHostString() + ":" + bound.getPort() + "/metrics");
+            } catch (IOException | IllegalArgumentException e) {
+                reporter.printError(new IllegalArgumentException(
+                        "Cannot serve metrics on " + metricsAddress + ": " + e.getMessage(), e));
+                closeResults(results);
+                closeBinaryResults(binaryResults);
+                return 1;
+            }
+        }
+
+        FlightRecording recording = null;
+        if (jfr || jfrFile != null) {
+            try {
+                Path directory = jfrFile != null ? workingDirectory : recordingDirectory();
+                recording = FlightRecording.start(directory, jfrFile);
+            } catch (IOException | IllegalStateException | SecurityException e) {
+                reporter.printError(new IllegalStateException("Cannot start flight recording: " + e.getMessage(), e));
+                if (metricsServer != null) {
+                    metricsServer.close();
+                }
+                closeResults(results);
+                closeBinaryResults(binaryResults);
+                return 1;
+            }
+        }
+
+        // Recording sinks are fed from their own threads so writing them adds nothing to request latency.
+        // The baseline view reads statistics while the script runs, so those must be up to date.
+        if (statistics != null) {
+            if (baseline != null) {
+                options.listener(statistics);
+            } else {
+                options.asyncListener(statistics, BackpressurePolicy.BLOCK, SINK_BUFFER);
+            }
+        }
+        for (EventListener sink : Arrays.asList(timeSeries, results, binaryResults)) {
+            if (sink != null) {
+                options.asyncListener(sink, BackpressurePolicy.BLOCK, SINK_BUFFER);
+            }
+        }
+
+        Lock daemonRun = null;
+        if (sharedEngine != null) {
+            daemonRun = noMonitor ? DAEMON_RUNS.readLock() : DAEMON_RUNS.writeLock();
+            if (!daemonRun.tryLock()) {
+                reporter.printWaitingForDaemon();
+                daemonRun.lock();
+            }
+        }
+
+        // Watches bbrun itself, so a stalled or saturated generator is not mistaken for a slow server
+        GeneratorMonitor monitor = null;
+        if (!noMonitor) {
+            monitor = GeneratorMonitor.start();
+            options.monitor(monitor);
+            if (results != null) {
+                monitor.onSample(results::generator);
+            }
+            if (metrics != null) {
+                metrics.generator(monitor);
+            }
+        }
+
+        try {
+            int exitCode;
+            // The daemon's engine keeps its parse cache warm across runs
+            if (sharedEngine != null && !noCache) {
+                exitCode = run(sharedEngine, options);
+            } else {
+                ScriptLoader loader = noCache ? new ScriptLoader(new AstCache(null)) : new ScriptLoader();
+                try (BBRunEngine engine = new BBRunEngine(options, loader)) {
+                    exitCode = run(engine, options);
+                }
+            }
+            options.closeAsyncListeners();
+            GeneratorMonitor.Report generator = null;
+            if (monitor != null) {
+                monitor.close();
+                generator = monitor.report();
+                reporter.printGenerator(generator, consoleOutput());
+                if (results != null) {
+                    results.generator(generator);
+                }
+            }
+            if (timeSeries != null) {
+                exitCode = Math.max(exitCode, writeReport(timeSeries, statistics, generator));
+            }
+            return statistics != null ? finishBaseline(statistics, baseline, exitCode) : exitCode;
+        } finally {
+            options.closeAsyncListeners();
+            if (monitor != null) {
+                monitor.close();
+            }
+            if (metricsServer != null) {
+                metricsServer.close();
+            }
+            if (recording != null) {
+                finishRecording(recording);
+            }
+            closeResults(results);
+            closeBinaryResults(binaryResults);
+            if (daemonRun != null) {
+                daemonRun.unlock();
+            }
+        }
+    }
+
+    /**
+     * @param generator figures of the load generator, null with {@code --no-monitor}
+     */
+    private int writeReport(TimeSeries timeSeries, RunStatistics statistics, GeneratorMonitor.Report generator) {
+        HtmlReport report = new HtmlReport()
+                .title("BBRun report: " + String.join(", ", scripts))
+                .configuration("Scripts", String.join(" ", scripts))
+                .configuration("Threads", String.valueOf(threads))
+                .configuration("Duration", duration != null ? duration : "-")
+                .configuration("Rate", rps != null ? rps + " iterations/s" : "-")
+                .configuration("Concurrent scripts (suites)", String.valueOf(jobs))
+                .configuration("Load generator", generator != null ? generator.summary() : "not monitored")
+                .configuration("Generator health", generator == null ? "-" : generator.saturated()
+                        ? "likely distorted: " + String.join("; ", generator.warnings())
+                        : "ok");
+        Path file = workingDirectory.resolve(reportFile);
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            report.write(writer, timeSeries, statistics);
+        } catch (IOException e) {
+            reporter.printError(new IOException("Cannot write report: " + e.getMessage(), e));
+            return 1;
+        }
+        reporter.printReport(file);
+        return 0;
+    }
+
+    /**
+     * Save and/or compare the run's statistics; a regression fails the run.
+     */
+    private int finishBaseline(RunStatistics statistics, Baseline baseline, int exitCode) {
+        Baseline current = Baseline.of(statistics);
+        if (saveBaselineFile != null) {
+            Path file = workingDirectory.resolve(saveBaselineFile);
+            try {
+                current.save(file);
+                reporter.printBaselineSaved(file);
+            } catch (IOException e) {
+                reporter.printError(new IOException("Cannot write baseline: " + e.getMessage(), e));
+                exitCode = Math.max(exitCode, 1);
+            }
+        }
+        if (baseline != null) {
+            BaselineComparison comparison = BaselineComparison.of(baseline, current, maxRegression);
+            reporter.printBaselineComparison(comparison, consoleOutput());
+            if (comparison.hasRegression()) {
+                exitCode = Math.max(exitCode, 1);
+            }
+        }
+        return exitCode;
+    }
+
+    private void closeResults(JsonLinesSink results) {
+        if (results == null) {
+            return;
+        }
+        try {
+            results.close();
+        } catch (IOException e) {
+            reporter.printError(new IOException("Cannot write results to " + resultsFile + ": " + e.getMessage(), e));
+        }
+    }
+
+    private void closeBinaryResults(BinaryResultsWriter binaryResults) {
+        if (binaryResults == null) {
+            return;
+        }
+        try {
+            binaryResults.close();
+        } catch (IOException e) {
+            reporter.printError(new IOException(
+                    "Cannot write results to " + binaryResultsFile + ": " + e.getMessage(), e));
+        }
+    }
+
+    /**
+     * Whether human-readable output goes to stdout, i.e. it is not taken by
+     * {@code --json} or {@code --results -}.
+     */
+    private boolean consoleOutput() {
+        return !json && !STDOUT.equals(resultsFile);
+    }
+
+    /**
+     * Where the flight recording goes without {@code --jfr-file}: next to
+     * the run's other output files, else the working directory.
+     */
+    private Path recordingDirectory() {
+        for (String file : Arrays.asList(resultsFile, binaryResultsFile, reportFile)) {
+            if (file != null && !STDOUT.equals(file)) {
+                Path parent = workingDirectory.resolve(file).getParent();
+                return parent != null ? parent : workingDirectory;
+            }
+        }
+        return workingDirectory;
+    }
+
+    private void finishRecording(FlightRecording recording) {
+        try {
+            reporter.printRecording(recording.finish());
+        } catch (IOException e) {
+            reporter.printError(new IOException("Cannot write flight recording: " + e.getMessage(), e));
+        }
+    }
+
+    /**
+     * Parse {@code [host:]port}; a bare port binds to loopback only.
+     */
+    static InetSocketAddress parseAddress(String address) {
+        int colon = address.lastIndexOf(':');
+        String host = colon < 0 ? "127.0.0.1" : address.substring(0, colon);
+        int port;
+        try {
+            port = Integer.parseInt(address.substring(colon + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid port");
+        }
+        return new InetSocketAddress(host, port);
+    }
+
+    private int run(BBRunEngine engine, ExecutionOptions options) {
+        // A single script file runs as before; anything else is a suite
+        Path script = workingDirectory.resolve(scripts.get(0));
+        if (scripts.size() != 1 || !Files.isRegularFile(script)) {
+            return runSuite(engine, options);
         }
 
-        BBRun bbrun = new BBRun();
-        ExecutionHandle handle = bbrun.execute(script);
+        if (consoleOutput()) {
+            reporter.printHeader(scripts.get(0));
+        }
+
+        ExecutionHandle handle;
+        LineProfiler profiler = options.getProfiler();
+        if (profiler != null) {
+            // Loaded here so init-chain lines are attributed to their files
+            ScriptLoader.LoadedScript loaded = engine.getScriptLoader().load(script);
+            profiler.register(loaded);
+            handle = engine.execute(loaded.merged(), options);
+        } else {
+            handle = engine.execute(script, options);
+        }
+        running = handle;
+        if (cancelled) {
+            handle.cancel();
+        }
 
         // Poll for progress
-        if (!json && !quiet) {
+        if (consoleOutput() && !quiet) {
             while (!handle.isComplete()) {
                 ExecutionProgress progress = handle.poll();
                 reporter.printProgress(progress);
@@ -80,8 +574,14 @@ public class Main implements Callable<Integer> {
 
             if (json) {
                 reporter.printResultJson(result);
-            } else {
+            } else if (consoleOutput()) {
                 reporter.printResult(result);
+                if (verbose) {
+                    printDiagnostics(engine);
+                }
+            }
+            if (profiler != null) {
+                writeProfile(profiler);
             }
 
             return result.isSuccess() ? 0 : 1;
@@ -92,7 +592,270 @@ public class Main implements Callable<Integer> {
         }
     }
 
+    private int runSuite(BBRunEngine engine, ExecutionOptions options) {
+        if (options.getProfiler() != null) {
+            reporter.printError(new IllegalArgumentException("--profile runs a single script"));
+            return 1;
+        }
+
+        List<Path> suite;
+        try {
+            suite = ScriptDiscovery.expand(workingDirectory, scripts);
+        } catch (Exception e) {
+            reporter.printError(e);
+            return 1;
+        }
+
+        if (consoleOutput()) {
+            reporter.printSuiteHeader(suite.size(), jobs);
+        }
+
+        SuiteRunner runner = new SuiteRunner(engine, options, jobs).shareInit(shareInit);
+        runningSuite = runner;
+        if (cancelled) {
+            runner.cancel();
+        }
+        SuiteResult result = runner.run(suite, scriptResult -> {
+            if (consoleOutput()) {
+                reporter.printScriptResult(scriptResult);
+            }
+        });
+
+        if (json) {
+            reporter.printResultJson(result);
+        } else if (consoleOutput()) {
+            reporter.printSuiteResult(result);
+            if (verbose) {
+                printDiagnostics(engine);
+            }
+        }
+
+        return result.isSuccess() ? 0 : 1;
+    }
+
+    /**
+     * Print the annotated listing (unless the output is JSON) and write the
+     * collapsed stacks file.
+     */
+    private void writeProfile(LineProfiler profiler) {
+        if (consoleOutput()) {
+            StringBuilder listing = new StringBuilder();
+            profiler.writeListing(listing);
+            out.print(listing);
+        }
+
+        Path stacks = workingDirectory.resolve(profileStacksFile != null
+                ? profileStacksFile
+                : "bbrun-" + LocalDateTime.now().format(FILE_TIMESTAMP) + ".collapsed");
+        StringBuilder collapsed = new StringBuilder();
+        profiler.writeCollapsedStacks(collapsed);
+        try {
+            Files.writeString(stacks, collapsed);
+            reporter.printProfileStacks(stacks);
+        } catch (IOException e) {
+            reporter.printError(new IOException("Cannot write profile stacks: " + e.getMessage(), e));
+        }
+    }
+
+    @Command(name = "analyze", description = "Report percentiles, endpoints and time windows of a "
+            + "--binary-results file")
+    int analyze(
+            @Parameters(paramLabel = "FILE", description = "Binary results file") String file,
+            @Option(names = { "--window" }, paramLabel = "DURATION", description = "Length of the time "
+                    + "windows, e.g. 10s, 1m (default: about 60 windows over the run)") String window) {
+        reporter.setColorEnabled(!noColor);
+        try (BinaryResultsReader reader = BinaryResultsReader.open(workingDirectory.resolve(file))) {
+            ResultsAnalysis analysis = ResultsAnalysis.of(reader, window != null ? parseDuration(window) : null);
+            StringBuilder report = new StringBuilder();
+            analysis.writeReport(report);
+            out.print(report);
+            return 0;
+        } catch (IOException | RuntimeException e) {
+            reporter.printError(e);
+            return 1;
+        }
+    }
+
+    @Command(name = "worker", description = "Serve runs of 'bbrun coordinate' over TCP until stopped. Coordinators "
+            + "must present the token in " + WorkerProtocol.TOKEN_VARIABLE + "; without one, a token is made up "
+            + "and printed")
+    int worker(
+            @Option(names = { "--listen" }, paramLabel = "[HOST:]PORT", defaultValue = "127.0.0.1:7420",
+                    description = "Address to listen on; 0.0.0.0:PORT accepts coordinators on other machines "
+                            + "(default: ${DEFAULT-VALUE})") String listen,
+            @Option(names = { "--parent" }, hidden = true, description = "Serve one run for the process that "
+                    + "started this one, exiting when its standard input closes") boolean parent) {
+        if (parent) {
+            Thread watcher = new Thread(() -> {
+                try {
+                    while (System.in.read() >= 0) {
+                        // Only the end matters
+                    }
+                } catch (IOException e) {
+                    // Treated as the end
+                }
+                System.exit(1);
+            }, "bbrun-parent-watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+        }
+        String token = environment.get(WorkerProtocol.TOKEN_VARIABLE);
+        if (token == null || token.isBlank()) {
+            token = WorkerProtocol.newToken();
+            if (!parent) {
+                out.println("Worker token: " + token + " (set " + WorkerProtocol.TOKEN_VARIABLE
+                        + " to it for 'bbrun coordinate')");
+            }
+        }
+        try {
+            new Worker(parseAddress(listen), out, parent, token).serve();
+            return 0;
+        } catch (IOException | RuntimeException e) {
+            reporter.printError(new IOException("Cannot serve on " + listen + ": " + e.getMessage(), e));
+            return 1;
+        }
+    }
+
+    @Command(name = "cds-train", hidden = true, description = "Run the training scripts of the class-data "
+            + "sharing archive against a loopback stub, see bin/bbrun-cli")
+    int cdsTrain(@Parameters(paramLabel = "DIR", description = "Training scripts") String directory) {
+        try (TrainingServer server = TrainingServer.start()) {
+            Map<String, String> trainingEnvironment = new HashMap<>(environment);
+            trainingEnvironment.put("BBRUN_TRAINING_URL", server.url());
+            Main run = new Main(sharedEngine, out, err, workingDirectory, trainingEnvironment);
+            return new CommandLine(run).execute("-q", "--no-color", directory);
+        } catch (IOException e) {
+            reporter.printError(new IOException("Cannot start the training server: " + e.getMessage(), e));
+            return 1;
+        }
+    }
+
+    @Command(name = "coordinate", description = "Run a script as one load test across 'bbrun worker' processes, "
+            + "or child JVMs on this host, splitting the users and rate of each parallel block among them")
+    int coordinate(
+            @Parameters(paramLabel = "SCRIPT", description = "Script file to run") String script,
+            @Option(names = { "--workers" }, split = ",", paramLabel = "HOST:PORT",
+                    description = "Workers to run on, comma-separated") List<String> workers,
+            @Option(names = { "--processes" }, paramLabel = "N", description = "Run on N child JVMs on this host "
+                    + "instead, each with a small heap of its own") Integer processes,
+            @Option(names = { "--process-heap" }, paramLabel = "SIZE", description = "Maximum heap of each child "
+                    + "JVM, e.g. 512m (default: this JVM's maximum heap split among them)") String processHeap,
+            @Option(names = { "--env" }, paramLabel = "NAME[=VALUE]", description = "Environment variable for "
+                    + "the workers' scripts, by default with this process' value") List<String> env) {
+        reporter.setColorEnabled(!noColor);
+        reporter.setVerbose(verbose);
+        reporter.setQuiet(quiet);
+
+        if ((workers == null) == (processes == null)) {
+            throw new ParameterException(spec.commandLine(), "Use either --workers or --processes");
+        }
+        if (processes != null && processes < 1) {
+            throw new ParameterException(spec.commandLine(), "--processes must be at least 1");
+        }
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        Duration length;
+        try {
+            for (String worker : workers != null ? workers : List.<String>of()) {
+                addresses.add(parseAddress(worker));
+            }
+            length = duration != null ? parseDuration(duration) : null;
+        } catch (IllegalArgumentException e) {
+            throw new ParameterException(spec.commandLine(), e.getMessage());
+        }
+        Map<String, String> shipped = new LinkedHashMap<>();
+        for (String entry : env != null ? env : List.<String>of()) {
+            int equals = entry.indexOf('=');
+            String name = equals < 0 ? entry : entry.substring(0, equals);
+            String value = equals >= 0 ? entry.substring(equals + 1)
+                    : environment.get(name);
+            if (value != null) {
+                shipped.put(name, value);
+            }
+        }
+
+        String token = environment.get(WorkerProtocol.TOKEN_VARIABLE);
+        if (workers != null && (token == null || token.isBlank())) {
+            throw new ParameterException(spec.commandLine(), "Set " + WorkerProtocol.TOKEN_VARIABLE
+                    + " to the token the workers were started with");
+        }
+
+        LocalWorkers children = null;
+        try {
+            ScriptLoader loader = noCache ? new ScriptLoader(new AstCache(null)) : new ScriptLoader();
+            ScriptNode merged = loader.loadWithInit(workingDirectory.resolve(script));
+            Coordinator coordinator;
+            if (processes != null) {
+                children = LocalWorkers.start(processes, processHeap);
+                coordinator = new Coordinator(children.addresses(), children.token(), out).names(children.names());
+                if (consoleOutput()) {
+                    reporter.printCoordinatorHeader(script,
+                            "in " + processes + (processes == 1 ? " process" : " processes"));
+                }
+            } else {
+                coordinator = new Coordinator(addresses, token, out);
+                if (consoleOutput()) {
+                    reporter.printCoordinatorHeader(script,
+                            "on " + addresses.size() + (addresses.size() == 1 ? " worker" : " workers"));
+                }
+            }
+            Coordinator.Outcome outcome = coordinator.run(merged, script, threads, length, rps, shipped);
+            if (children != null) {
+                // Whatever the others reported still stands, so say what it lacks
+                for (String crash : children.crashes()) {
+                    reporter.printError(new IllegalStateException(crash + "\nResults cover the other processes only"));
+                }
+            }
+            if (json) {
+                reporter.printResultJson(outcome.result());
+            } else {
+                reporter.printEndpoints(outcome.endpoints());
+                reporter.printResult(outcome.result());
+                reporter.printWorkerGenerators(outcome.generatorWarnings());
+                if (outcome.result().error() != null) {
+                    reporter.printError(new IllegalStateException(outcome.result().error().getMessage()));
+                }
+            }
+            return outcome.result().isSuccess() ? 0 : 1;
+        } catch (IOException | RuntimeException e) {
+            reporter.printError(e);
+            return 1;
+        } finally {
+            if (children != null) {
+                children.close();
+            }
+        }
+    }
+
+    /**
+     * Parse durations such as {@code 500ms}, {@code 30s}, {@code 5m} or
+     * {@code 1h}.
+     */
+    static Duration parseDuration(String text) {
+        Matcher m = DURATION.matcher(text.trim());
+        if (!m.matches()) {
+            throw new IllegalArgumentException("Invalid duration: " + text);
+        }
+        long amount = Long.parseLong(m.group(1));
+        return switch (m.group(2)) {
+            case "ms" -> Duration.ofMillis(amount);
+            case "m" -> Duration.ofMinutes(amount);
+            case "h" -> Duration.ofHours(amount);
+            default -> Duration.ofSeconds(amount);
+        };
+    }
+
+    private void printDiagnostics(BBRunEngine engine) {
+        ProviderRegistry registry = ProviderRegistry.getInstance();
+        reporter.printProviders(registry.getHttpClientName(), registry.getExecutorName());
+        reporter.printParseStats(engine.getScriptLoader().getCache().stats());
+    }
+
     public static void main(String[] args) {
+        // Hand off to the daemon before any engine or picocli class loads
+        if (DaemonClient.isRequested(args)) {
+            System.exit(DaemonClient.run(args));
+        }
+        JavaHttpClientImpl.prewarm();
         int exitCode = new CommandLine(new Main()).execute(args);
         System.exit(exitCode);
     }
@@ -0,0 +1,51 @@
+package org.bbrun.cli;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Loopback stub the class-data sharing archive is trained against, see
+ * {@code bbrun cds-train}. Every request gets a small JSON object, so the
+ * training scripts go through the whole request path without leaving the
+ * machine.
+ */
+final class TrainingServer implements AutoCloseable {
+
+    private static final byte[] BODY = "{\"id\": 1, \"name\": \"Alice\", \"active\": true, \"items\": [1, 2, 3]}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final HttpServer server;
+
+    private TrainingServer(HttpServer server) {
+        this.server = server;
+    }
+
+    static TrainingServer start() throws IOException {
+        // Otherwise Nagle holds back each response body behind its headers
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders("POST".equals(exchange.getRequestMethod()) ? 201 : 200, BODY.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(BODY);
+            }
+        });
+        server.start();
+        return new TrainingServer(server);
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,359 @@
+package org.bbrun.cli;
+
+import org.bbrun.BBRunEngine;
+import org.bbrun.BBRunException;
+import org.bbrun.ExecutionResult;
+import org.bbrun.Warning;
+import org.bbrun.ast.ScriptNode;
+import org.bbrun.interpreter.ExecutionHandle;
+import org.bbrun.interpreter.ExecutionOptions;
+import org.bbrun.interpreter.LoadShare;
+import org.bbrun.metrics.GeneratorMonitor;
+import org.bbrun.metrics.RunStatistics;
+import org.bbrun.metrics.RunStatistics.EndpointStats;
+import org.bbrun.metrics.SlidingWindow;
+import org.bbrun.parser.AstCodec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generator process of a distributed load test: runs its part of the
+ * scripts a {@link Coordinator} sends, see {@code bbrun worker}.
+ *
+ * <p>
+ * One run is served at a time, on an engine kept warm between runs. The
+ * script arrives parsed, with its {@code _init.bbrun} chain merged in, so
+ * workers need no copy of the files. Each worker watches its own health
+ * with a {@link GeneratorMonitor} and reports any warnings with its result.
+ * A worker started by {@link LocalWorkers} serves a single run instead.
+ *
+ * <p>
+ * Only coordinators that present the worker's token are served. A
+ * connection that breaks the protocol is dropped and logged; the worker
+ * goes on serving.
+ */
+final class Worker {
+
+    // How often a wait for the coordinator checks that it is still there
+    private static final long POLL_MILLIS = 100;
+
+    // How long a new connection may take to show the token
+    private static final int HANDSHAKE_TIMEOUT_MILLIS = 10_000;
+
+    private final InetSocketAddress address;
+    private final PrintStream log;
+    private final boolean once;
+    private final String token;
+
+    Worker(InetSocketAddress address, PrintStream log, String token) {
+        this(address, log, false, token);
+    }
+
+    /**
+     * @param once  serve a single run, announcing the bound port alone on
+     *              the first line of the log
+     * @param token what coordinators must present
+     */
+    Worker(InetSocketAddress address, PrintStream log, boolean once, String token) {
+        this.address = address;
+        this.log = log;
+        this.once = once;
+        this.token = token;
+    }
+
+    /**
+     * Serve runs until the process is stopped, or the one run.
+     */
+    void serve() throws IOException {
+        try (ServerSocket server = new ServerSocket();
+                BBRunEngine engine = new BBRunEngine()) {
+            server.bind(address);
+            if (once) {
+                log.println(server.getLocalPort());
+                log.flush();
+            } else {
+                log("Worker listening on " + server.getLocalSocketAddress());
+            }
+            do {
+                try (Socket socket = server.accept()) {
+                    socket.setTcpNoDelay(true);
+                    handle(socket, engine);
+                } catch (IOException e) {
+                    log("Coordinator connection lost: " + e.getMessage());
+                } catch (RuntimeException e) {
+                    // Malformed frames must not take the worker down
+                    log("Coordinator connection failed: " + e);
+                }
+            } while (!once);
+        }
+    }
+
+    private void handle(Socket socket, BBRunEngine engine) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DaemonProtocol.FrameWriter frames = new DaemonProtocol.FrameWriter(
+                new DataOutputStream(new BufferedOutputStream(socket.getOutputStream())));
+        socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+        if (in.readInt() != WorkerProtocol.MAGIC) {
+            return;
+        }
+        if (!authenticated(WorkerProtocol.read(in, WorkerProtocol.MAX_HELLO_BYTES))) {
+            log("Rejected coordinator " + socket.getRemoteSocketAddress() + ": wrong token");
+            byte[] payload = WorkerProtocol.payload(out -> {
+                out.writeInt(-1);
+                DaemonProtocol.writeString(out, "wrong token, see " + WorkerProtocol.TOKEN_VARIABLE);
+            });
+            frames.write(WorkerProtocol.ABORT, payload, 0, payload.length);
+            return;
+        }
+        socket.setSoTimeout(0);
+
+        WorkerProtocol.Frame frame;
+        while ((frame = WorkerProtocol.read(in)).type() == WorkerProtocol.PING) {
+            frames.write(WorkerProtocol.PONG, frame.payload(), 0, frame.payload().length);
+        }
+        if (frame.type() != WorkerProtocol.JOB) {
+            return;
+        }
+
+        DataInputStream job = WorkerProtocol.reader(frame.payload());
+        String scriptPath = WorkerProtocol.readString(job);
+        byte[] ast = WorkerProtocol.readBytes(job);
+        int index = job.readInt();
+        int count = job.readInt();
+        int threads = job.readInt();
+        long durationMs = job.readLong();
+        int rps = job.readInt();
+
+        RemoteShare share = new RemoteShare(index, count, frames);
+        PrintStream output = new PrintStream(new BufferedOutputStream(frames.stream(WorkerProtocol.OUTPUT)),
+                true, StandardCharsets.UTF_8);
+        ExecutionOptions options = new ExecutionOptions()
+                .output(output)
+                .threads(threads)
+                .rps(rps > 0 ? rps : null)
+                .share(share)
+                // Only what the coordinator shipped, the same on every worker
+                .inheritEnvironment(false)
+                // Requests are summed up per endpoint instead
+                .retainRequests(false);
+        if (durationMs > 0) {
+            options.duration(Duration.ofMillis(durationMs));
+        }
+        int envSize = job.readInt();
+        for (int i = 0; i < envSize; i++) {
+            options.env(WorkerProtocol.readString(job), WorkerProtocol.readString(job));
+        }
+        RunStatistics statistics = new RunStatistics();
+        options.listener(statistics);
+
+        log("Running part " + (index + 1) + " of " + count + " of " + scriptPath);
+        ExecutionResult result;
+        GeneratorMonitor monitor = GeneratorMonitor.start();
+        options.monitor(monitor);
+        try {
+            ScriptNode script = AstCodec.decode(ast, scriptPath);
+            ExecutionHandle handle = engine.execute(script, options);
+            Thread reader = new Thread(() -> receive(in, share, handle), "bbrun-worker-reader");
+            reader.setDaemon(true);
+            reader.start();
+            result = handle.future().get();
+        } catch (ExecutionException e) {
+            result = ExecutionResult.failure(0, 0, 0, List.of(), List.of(), 0, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result = ExecutionResult.failure(0, 0, 0, List.of(), List.of(), 0, e);
+        } catch (IOException | RuntimeException e) {
+            result = ExecutionResult.failure(0, 0, 0, List.of(), List.of(), 0, e);
+        } finally {
+            monitor.close();
+        }
+        output.flush();
+
+        ExecutionResult finished = result;
+        GeneratorMonitor.Report generator = monitor.report();
+        List<EndpointStats> endpoints = statistics.snapshot();
+        byte[] payload = WorkerProtocol.payload(out -> writeResult(out, finished, endpoints, generator));
+        frames.write(WorkerProtocol.RESULT, payload, 0, payload.length);
+        log("Finished part " + (index + 1) + (finished.isSuccess() ? "" : ", failed"));
+    }
+
+    private boolean authenticated(WorkerProtocol.Frame hello) throws IOException {
+        if (hello.type() != WorkerProtocol.HELLO) {
+            return false;
+        }
+        String presented = WorkerProtocol.readString(WorkerProtocol.reader(hello.payload()));
+        return WorkerProtocol.tokenMatches(token, presented);
+    }
+
+    /**
+     * Hand the coordinator's frames to the share until the connection
+     * ends; losing the coordinator cancels the run.
+     */
+    private static void receive(DataInputStream in, RemoteShare share, ExecutionHandle handle) {
+        try {
+            while (true) {
+                WorkerProtocol.Frame frame = WorkerProtocol.read(in);
+                DataInputStream payload = WorkerProtocol.reader(frame.payload());
+                switch (frame.type()) {
+                    case WorkerProtocol.START -> {
+                        long received = System.nanoTime();
+                        payload.readInt();
+                        share.starts.add(received + payload.readLong());
+                    }
+                    case WorkerProtocol.TOTALS -> {
+                        payload.readInt();
+                        share.totals.add(WorkerProtocol.readSnapshot(payload));
+                    }
+                    case WorkerProtocol.ABORT -> {
+                        if (payload.readInt() == share.stage) {
+                            share.abortedBy = WorkerProtocol.readString(payload);
+                        }
+                    }
+                    default -> {
+                        // Unknown frames are skipped
+                    }
+                }
+            }
+        } catch (IOException e) {
+            share.lost = true;
+            if (!handle.isComplete()) {
+                handle.cancel();
+            }
+        }
+    }
+
+    private static void writeResult(DataOutputStream out, ExecutionResult result, List<EndpointStats> endpoints,
+            GeneratorMonitor.Report generator) throws IOException {
+        out.writeBoolean(result.isSuccess());
+        out.writeInt(result.totalStatements());
+        out.writeInt(result.passedAssertions());
+        out.writeInt(result.failedAssertions());
+        out.writeLong(result.durationMs());
+        DaemonProtocol.writeString(out, result.error() != null ? String.valueOf(result.error().getMessage()) : "");
+        out.writeInt(result.warnings().size());
+        for (Warning warning : result.warnings()) {
+            DaemonProtocol.writeString(out, warning.message());
+            out.writeInt(warning.line());
+            DaemonProtocol.writeString(out, warning.expression() != null ? warning.expression() : "");
+        }
+        out.writeInt(endpoints.size());
+        for (EndpointStats endpoint : endpoints) {
+            DaemonProtocol.writeString(out, endpoint.method());
+            DaemonProtocol.writeString(out, endpoint.endpoint());
+            out.writeLong(endpoint.errors());
+            WorkerProtocol.writeHistogram(out, endpoint.latency());
+        }
+        out.writeInt(generator.warnings().size());
+        for (String warning : generator.warnings()) {
+            DaemonProtocol.writeString(out, warning);
+        }
+    }
+
+    private void log(String message) {
+        log.println(Instant.now() + " " + message);
+    }
+
+    /**
+     * This worker's part, in step with the others through the coordinator.
+     */
+    private static final class RemoteShare implements LoadShare {
+
+        private final int index;
+        private final int count;
+        private final DaemonProtocol.FrameWriter frames;
+        final BlockingQueue<Long> starts = new LinkedBlockingQueue<>();
+        final BlockingQueue<SlidingWindow.Snapshot> totals = new LinkedBlockingQueue<>();
+        volatile int stage = -1;
+        volatile String abortedBy;
+        volatile boolean lost;
+
+        RemoteShare(int index, int count, DaemonProtocol.FrameWriter frames) {
+            this.index = index;
+            this.count = count;
+            this.frames = frames;
+        }
+
+        @Override
+        public int index() {
+            return index;
+        }
+
+        @Override
+        public int count() {
+            return count;
+        }
+
+        @Override
+        public long awaitStart() {
+            // No abort of the new block can arrive before it is started
+            abortedBy = null;
+            stage++;
+            int current = stage;
+            send(WorkerProtocol.READY, WorkerProtocol.payload(out -> out.writeInt(current)));
+            return take(starts);
+        }
+
+        @Override
+        public void abort(String reason) {
+            int current = stage;
+            send(WorkerProtocol.ABORT, WorkerProtocol.payload(out -> {
+                out.writeInt(current);
+                DaemonProtocol.writeString(out, reason);
+            }));
+        }
+
+        @Override
+        public String abortedBy() {
+            return abortedBy;
+        }
+
+        @Override
+        public SlidingWindow.Snapshot combine(SlidingWindow.Snapshot local) {
+            int current = stage;
+            send(WorkerProtocol.FIGURES, WorkerProtocol.payload(out -> {
+                out.writeInt(current);
+                WorkerProtocol.writeSnapshot(out, local);
+            }));
+            return take(totals);
+        }
+
+        private void send(byte type, byte[] payload) {
+            try {
+                frames.write(type, payload, 0, payload.length);
+            } catch (IOException e) {
+                throw new BBRunException("Lost the coordinator: " + e.getMessage(), e);
+            }
+        }
+
+        private <T> T take(BlockingQueue<T> queue) {
+            try {
+                T value;
+                while ((value = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+                    if (lost) {
+                        throw new BBRunException("Lost the coordinator");
+                    }
+                }
+                return value;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BBRunException("Interrupted while waiting for the coordinator", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package org.bbrun.cli;
+
+import org.bbrun.BBRunException;
+import org.bbrun.metrics.LatencyHistogram;
+import org.bbrun.metrics.SlidingWindow;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.HexFormat;
+
+/**
+ * Wire format between {@link Coordinator} and {@link Worker}, over plain
+ * TCP.
+ *
+ * <p>
+ * Both sides exchange frames ({@code type, length, payload}) as in
+ * {@link DaemonProtocol}. The coordinator opens with {@link #MAGIC} and a
+ * {@link #HELLO} frame carrying the shared token both sides were given;
+ * a worker answers a wrong token with {@link #ABORT} and hangs up. The
+ * coordinator then measures the round trip with {@link #PING} frames and
+ * sends a
+ * {@link #JOB} frame: the script's parsed AST, the worker's part and the
+ * run's defaults. The worker then runs the script. At each parallel block the worker
+ * reports {@link #READY} and waits for {@link #START}, sends its figures
+ * of the block as {@link #FIGURES} and receives those of all workers as
+ * {@link #TOTALS}; {@link #ABORT} travels both ways. Script output comes
+ * back as {@link #OUTPUT} frames and the run ends with one {@link #RESULT}
+ * frame.
+ *
+ * <p>
+ * Frame and string lengths are checked before anything is allocated for
+ * them, so a peer cannot make the other side run out of memory.
+ */
+final class WorkerProtocol {
+
+    static final int MAGIC = 0x42425732; // "BBW2"
+
+    /**
+     * Environment variable holding the token shared by a coordinator and
+     * its workers.
+     */
+    static final String TOKEN_VARIABLE = "BBRUN_WORKER_TOKEN";
+
+    /**
+     * Largest frame accepted; a job frame carries the whole parsed script.
+     */
+    static final int MAX_FRAME_BYTES = 64 * 1024 * 1024;
+
+    /**
+     * Largest frame accepted before the peer has shown the token.
+     */
+    static final int MAX_HELLO_BYTES = 1024;
+
+    // Coordinator to worker
+    static final byte JOB = 1;
+    static final byte HELLO = 5;
+    static final byte PING = 2;
+    static final byte START = 3;
+    static final byte TOTALS = 4;
+
+    // Worker to coordinator
+    static final byte PONG = 11;
+    static final byte READY = 12;
+    static final byte FIGURES = 13;
+    static final byte OUTPUT = 14;
+    static final byte RESULT = 15;
+
+    // Either way
+    static final byte ABORT = 20;
+
+    private WorkerProtocol() {
+    }
+
+    /**
+     * One frame as read from the other side.
+     */
+    record Frame(byte type, byte[] payload) {
+    }
+
+    static Frame read(DataInputStream in) throws IOException {
+        return read(in, MAX_FRAME_BYTES);
+    }
+
+    static Frame read(DataInputStream in, int maxBytes) throws IOException {
+        byte type = in.readByte();
+        int length = in.readInt();
+        if (length < 0 || length > maxBytes) {
+            throw new IOException("Invalid frame length " + length);
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return new Frame(type, payload);
+    }
+
+    /**
+     * A new random token, for workers started without one.
+     */
+    static String newToken() {
+        byte[] bytes = new byte[16];
+        new SecureRandom().nextBytes(bytes);
+        return HexFormat.of().formatHex(bytes);
+    }
+
+    /**
+     * Compare tokens in constant time.
+     */
+    static boolean tokenMatches(String expected, String actual) {
+        return MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8),
+                actual.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // ========== Payloads ==========
+
+    /**
+     * Writes the payload of one frame.
+     */
+    @FunctionalInterface
+    interface PayloadWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    static byte[] payload(PayloadWriter writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writer.write(out);
+        } catch (IOException e) {
+            throw new BBRunException("Cannot encode frame", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static DataInputStream reader(byte[] payload) {
+        return new DataInputStream(new ByteArrayInputStream(payload));
+    }
+
+    /**
+     * A length-prefixed string of a payload from {@link #reader}.
+     */
+    static String readString(DataInputStream payload) throws IOException {
+        return new String(readBytes(payload), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A length-prefixed byte array of a payload from {@link #reader}, which
+     * knows exactly how many bytes remain.
+     */
+    static byte[] readBytes(DataInputStream payload) throws IOException {
+        int length = payload.readInt();
+        if (length < 0 || length > payload.available()) {
+            throw new IOException("Invalid length " + length);
+        }
+        byte[] bytes = new byte[length];
+        payload.readFully(bytes);
+        return bytes;
+    }
+
+    static void writeSnapshot(DataOutputStream out, SlidingWindow.Snapshot snapshot) throws IOException {
+        out.writeLong(snapshot.fromNanos());
+        out.writeLong(snapshot.toNanos());
+        out.writeLong(snapshot.errors());
+        writeHistogram(out, snapshot.latency());
+    }
+
+    static SlidingWindow.Snapshot readSnapshot(DataInputStream in) throws IOException {
+        long from = in.readLong();
+        long to = in.readLong();
+        long errors = in.readLong();
+        return new SlidingWindow.Snapshot(from, to, errors, readHistogram(in));
+    }
+
+    /**
+     * A histogram as its non-empty buckets, see
+     * {@link LatencyHistogram#forEachBucket}.
+     */
+    static void writeHistogram(DataOutputStream out, LatencyHistogram histogram) throws IOException {
+        int[] buckets = { 0 };
+        histogram.forEachBucket((value, count) -> buckets[0]++);
+        out.writeInt(buckets[0]);
+        IOException[] error = { null };
+        histogram.forEachBucket((value, count) -> {
+            try {
+                out.writeLong(value);
+                out.writeLong(count);
+            } catch (IOException e) {
+                error[0] = e;
+            }
+        });
+        if (error[0] != null) {
+            throw error[0];
+        }
+    }
+
+    static LatencyHistogram readHistogram(DataInputStream in) throws IOException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        int buckets = in.readInt();
+        if (buckets < 0 || buckets > in.available() / (2 * Long.BYTES)) {
+            throw new IOException("Invalid bucket count " + buckets);
+        }
+        for (int i = 0; i < buckets; i++) {
+            long value = in.readLong();
+            histogram.record(value, in.readLong());
+        }
+        return histogram;
+    }
+}
@@ -0,0 +1,163 @@
+package org.bbrun.cli;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.bbrun.ast.ScriptNode;
+import org.bbrun.metrics.RunStatistics.EndpointStats;
+import org.bbrun.parser.AstCache;
+import org.bbrun.parser.ScriptLoader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A coordinated run across two in-process workers against a loopback
+ * server, and workers turning away connections that break the protocol.
+ */
+class DistributedRunTest {
+
+    private static final String TOKEN = "test-token";
+    private static final int USERS = 4;
+    private static final int ITERATIONS = 5;
+    private static final long TIMEOUT_MILLIS = 10_000;
+    private static final Pattern LISTENING = Pattern.compile("listening on .*:(\\d+)");
+    private static final ScriptLoader LOADER = new ScriptLoader(new AstCache(null));
+
+    static {
+        // Otherwise Nagle holds back each response body behind its headers
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private HttpServer server;
+    private final AtomicInteger served = new AtomicInteger();
+    private String baseUrl;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            served.incrementAndGet();
+            byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+    }
+
+    @Test
+    void blockIsSplitAndFiguresAreMerged() throws Exception {
+        ScriptNode script = LOADER.parse("baseUrl \"" + baseUrl + "\"\n"
+                + "parallel threads: " + USERS + ", iterations: " + ITERATIONS + " {\n"
+                + "  get #items\n"
+                + "}\n"
+                // Every worker sees the figures of both
+                + "assert stats.requests == " + USERS * ITERATIONS + "\n", "split.bbrun");
+
+        List<InetSocketAddress> workers = List.of(startWorker(), startWorker());
+        Coordinator.Outcome outcome = new Coordinator(workers, TOKEN, discard())
+                .run(script, "split.bbrun", 1, null, null, Map.of());
+
+        int total = USERS * ITERATIONS;
+        assertTrue(outcome.result().isSuccess(), String.valueOf(outcome.result().error()));
+        assertEquals(2, outcome.result().passedAssertions());
+        assertEquals(total, outcome.result().requestCount());
+        assertEquals(total, served.get());
+        assertEquals(1, outcome.endpoints().size());
+        EndpointStats items = outcome.endpoints().get(0);
+        assertEquals("/items", items.endpoint());
+        assertEquals(total, items.latency().count());
+        assertEquals(0, items.errors());
+    }
+
+    @Test
+    void wrongTokenIsRejected() throws Exception {
+        List<InetSocketAddress> workers = List.of(startWorker());
+        ScriptNode script = LOADER.parse("assert 1 == 1", "token.bbrun");
+
+        IOException error = assertThrows(IOException.class,
+                () -> new Coordinator(workers, "guess", discard()).run(script, "token.bbrun", 1, null, null, Map.of()));
+        assertTrue(error.getMessage().contains("wrong token"), error.getMessage());
+    }
+
+    @Test
+    void malformedFramesDoNotStopTheWorker() throws Exception {
+        InetSocketAddress worker = startWorker();
+
+        // A negative length, then one far beyond what an unauthenticated peer may send
+        for (int length : new int[] { -1, Integer.MAX_VALUE }) {
+            try (Socket socket = new Socket(worker.getAddress(), worker.getPort())) {
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                out.writeInt(WorkerProtocol.MAGIC);
+                out.writeByte(WorkerProtocol.HELLO);
+                out.writeInt(length);
+                out.flush();
+                assertEquals(-1, socket.getInputStream().read());
+            }
+        }
+
+        ScriptNode script = LOADER.parse("assert 1 == 1", "after.bbrun");
+        Coordinator.Outcome outcome = new Coordinator(List.of(worker), TOKEN, discard())
+                .run(script, "after.bbrun", 1, null, null, Map.of());
+        assertTrue(outcome.result().isSuccess());
+    }
+
+    // ========== Helpers ==========
+
+    private static PrintStream discard() {
+        return new PrintStream(OutputStream.nullOutputStream());
+    }
+
+    /**
+     * Start a worker on an ephemeral loopback port and return its address
+     * once it listens.
+     */
+    private static InetSocketAddress startWorker() throws Exception {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        PrintStream logStream = new PrintStream(log, true, StandardCharsets.UTF_8);
+        Worker worker = new Worker(new InetSocketAddress("127.0.0.1", 0), logStream, TOKEN);
+        Thread thread = new Thread(() -> {
+            try {
+                worker.serve();
+            } catch (IOException e) {
+                logStream.println(e);
+            }
+        }, "test-worker");
+        thread.setDaemon(true);
+        thread.start();
+
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            Matcher matcher = LISTENING.matcher(log.toString(StandardCharsets.UTF_8));
+            if (matcher.find()) {
+                return new InetSocketAddress("127.0.0.1", Integer.parseInt(matcher.group(1)));
+            }
+            Thread.sleep(10);
+        }
+        throw new IllegalStateException("Worker did not start");
+    }
+}
@@ -28,6 +28,9 @@ statement
     | macroDecl
     | runStatement
     | cleanupBlock
+    | limitStatement
+    | paceStatement
+    | thinkStatement
     | expression NEWLINE?
     | NEWLINE
     ;
@@ -51,17 +54,22 @@ oauthStatement
 
 // Variables
 variableDecl
-    : 'let' IDENTIFIER '=' expression NEWLINE?
+    : 'let' name '=' expression NEWLINE?
     ;
 
 // HTTP Requests
 requestStatement
-    : httpVerb path NEWLINE?
-    | httpVerb path 'with' authClause NEWLINE?
-    | httpVerb expression 'to' path NEWLINE?
-    | httpVerb expression 'to' path 'with' authClause NEWLINE?
-    | 'delete' path NEWLINE?
-    | 'delete' path 'with' authClause NEWLINE?
+    : httpVerb path requestLimit? NEWLINE?
+    | httpVerb path 'with' authClause requestLimit? NEWLINE?
+    | httpVerb expression 'to' path requestLimit? NEWLINE?
+    | httpVerb expression 'to' path 'with' authClause requestLimit? NEWLINE?
+    | 'delete' path requestLimit? NEWLINE?
+    | 'delete' path 'with' authClause requestLimit? NEWLINE?
+    ;
+
+// Cap on this request, shared by every virtual user: get #search limit 50/s
+requestLimit
+    : 'limit' rate
     ;
 
 httpVerb
@@ -94,6 +102,17 @@ keyword
     | 'let' | 'baseUrl' | 'true' | 'false' | 'null'
     | 'response' | 'params' | 'thread' | 'stats' | 'timing' | 'metrics'
     | 'is' | 'contains' | 'matches' | 'schema' | 'not' | 'and' | 'or'
+    | cadenceKeyword
+    ;
+
+// Keywords newer than many scripts' variables and keys, so still allowed as names
+cadenceKeyword
+    : 'limit' | 'pace' | 'think'
+    ;
+
+name
+    : IDENTIFIER
+    | cadenceKeyword
     ;
 
 interpolation
@@ -105,7 +124,7 @@ queryParams
     ;
 
 queryParam
-    : IDENTIFIER '=' (IDENTIFIER | STRING | interpolation)
+    : name '=' (name | STRING | interpolation)
     ;
 
 authClause
@@ -143,7 +162,7 @@ parallelOptions
     ;
 
 parallelOption
-    : IDENTIFIER ':' expression
+    : name ':' expression
     ;
 
 expectBlock
@@ -168,6 +187,29 @@ cleanupBlock
     : 'cleanup' block
     ;
 
+// Rate limits and user cadence
+limitStatement
+    : 'limit' rate NEWLINE?
+    ;
+
+paceStatement
+    : 'pace' duration NEWLINE?
+    ;
+
+thinkStatement
+    : 'think' duration ('..' duration)? NEWLINE?
+    ;
+
+// 50/s, 600/m
+rate
+    : NUMBER '/' IDENTIFIER
+    ;
+
+// 500ms, 2s, 1.5m
+duration
+    : NUMBER IDENTIFIER
+    ;
+
 // Print
 printStatement
     : 'print' expression NEWLINE?
@@ -184,7 +226,7 @@ block
 
 expression
     : primary
-    | expression '.' IDENTIFIER                           // member access
+    | expression '.' name                                 // member access
     | expression '[' expression ']'                       // index access
     | expression '(' argumentList? ')'                    // function call
     | expression ('==' | '!=' | '<' | '>' | '<=' | '>=') expression
@@ -203,7 +245,7 @@ expression
     ;
 
 primary
-    : IDENTIFIER
+    : name
     | NUMBER
     | STRING
     | 'true'
@@ -242,7 +284,7 @@ objectLiteral
     ;
 
 objectProperty
-    : (STRING | IDENTIFIER) ':' expression
+    : (STRING | name) ':' expression
     ;
 
 arrayLiteral
@@ -308,6 +350,9 @@ HEADERS     : 'headers' ;
 USING       : 'using' ;
 WITHOUT     : 'without' ;
 LOAD        : 'load' ;
+LIMIT       : 'limit' ;
+PACE        : 'pace' ;
+THINK       : 'think' ;
 
 // Types
 NUMBER_TYPE : 'number' ;
@@ -352,6 +397,7 @@ STRING      : '"' (~["\r\n] | '\\"')* '"' ;
 
 // Symbols
 HASH        : '#' ;
+RANGE       : '..' ;
 DOT         : '.' ;
 COMMA       : ',' ;
 COLON       : ':' ;
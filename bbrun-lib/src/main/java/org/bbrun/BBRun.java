@@ -22,13 +22,22 @@ import java.nio.file.Path;
  * 
  * ExecutionResult result = handle.future().get();
  * }</pre>
+ *
+ * <p>
+ * Every execution gets its own executor and HTTP client, released when it
+ * completes. Hosts that run many scripts should use {@link BBRunEngine}
+ * instead, which shares one set of resources between executions.
  */
 public class BBRun {
 
     private final ScriptLoader scriptLoader;
 
     public BBRun() {
-        this.scriptLoader = new ScriptLoader();
+        this(new ScriptLoader());
+    }
+
+    public BBRun(ScriptLoader scriptLoader) {
+        this.scriptLoader = scriptLoader;
     }
 
     /**
@@ -47,7 +56,9 @@ public class BBRun {
 
         // Create interpreter and start async execution
         var interpreter = new Interpreter(options);
-        return interpreter.executeAsync(ast);
+        ExecutionHandle handle = interpreter.executeAsync(ast);
+        handle.future().whenComplete((result, error) -> interpreter.shutdown());
+        return handle;
     }
 
     /**
@@ -0,0 +1,207 @@
+package org.bbrun;
+
+import org.bbrun.ast.ScriptNode;
+import org.bbrun.interpreter.Context;
+import org.bbrun.interpreter.ExecutionHandle;
+import org.bbrun.interpreter.ExecutionOptions;
+import org.bbrun.interpreter.Interpreter;
+import org.bbrun.parser.ScriptLoader;
+import org.bbrun.spi.HttpClient;
+import org.bbrun.spi.ProviderRegistry;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Long-lived, thread-safe execution engine for embedding BBRun.
+ *
+ * <p>
+ * An engine owns one executor, one HTTP client and one script loader (with
+ * its parse cache) and runs any number of concurrent executions on them.
+ * Unlike {@link BBRun}, which sets up and tears down these resources for
+ * every script, an engine is meant to be created once and closed when the
+ * host application shuts down.
+ *
+ * <pre>{@code
+ * try (BBRunEngine engine = new BBRunEngine()) {
+ *     ExecutionResult result = engine.executeSync(Path.of("test.bbrun"));
+ *     EngineMetrics metrics = engine.metrics();
+ * }
+ * }</pre>
+ *
+ * <p>
+ * Per-execution {@link ExecutionOptions} control variables, fail-fast and
+ * the like. Options that configure the shared resources themselves, such
+ * as the HTTP timeout, are taken from the options the engine was created
+ * with.
+ */
+public class BBRunEngine implements AutoCloseable {
+
+    private final ExecutionOptions options;
+    private final ScriptLoader scriptLoader;
+    private final ExecutorService executor;
+    private final HttpClient httpClient;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile boolean closed = false;
+
+    public BBRunEngine() {
+        this(new ExecutionOptions());
+    }
+
+    public BBRunEngine(ExecutionOptions options) {
+        this(options, new ScriptLoader());
+    }
+
+    public BBRunEngine(ExecutionOptions options, ScriptLoader scriptLoader) {
+        this.options = options;
+        this.scriptLoader = scriptLoader;
+
+        ProviderRegistry registry = ProviderRegistry.getInstance();
+        this.executor = registry.createExecutor(options);
+        this.httpClient = registry.createHttpClient(options);
+    }
+
+    // ========== Execution ==========
+
+    /**
+     * Execute a script with the engine's default options.
+     */
+    public ExecutionHandle execute(Path script) {
+        return execute(script, options);
+    }
+
+    /**
+     * Execute a script, with _init.bbrun files merged, using custom options.
+     */
+    public ExecutionHandle execute(Path script, ExecutionOptions options) {
+        ensureOpen();
+        return execute(scriptLoader.loadWithInit(script), options);
+    }
+
+    /**
+     * Execute an already parsed script.
+     */
+    public ExecutionHandle execute(ScriptNode script, ExecutionOptions options) {
+        return execute(script, new Context(options), options);
+    }
+
+    /**
+     * Execute an already parsed script starting from the given context,
+     * which is left in its final state once the execution completes.
+     */
+    public ExecutionHandle execute(ScriptNode script, Context context, ExecutionOptions options) {
+        ensureOpen();
+        active.incrementAndGet();
+        ExecutionHandle handle;
+        try {
+            handle = new Interpreter(options, executor, httpClient).executeAsync(script, context);
+        } catch (RuntimeException e) {
+            active.decrementAndGet();
+            throw e;
+        }
+        handle.future().whenComplete((result, error) -> {
+            active.decrementAndGet();
+            if (error == null && result.isSuccess()) {
+                completed.incrementAndGet();
+            } else {
+                failed.incrementAndGet();
+            }
+        });
+        return handle;
+    }
+
+    /**
+     * Execute a script synchronously with the engine's default options.
+     */
+    public ExecutionResult executeSync(Path script) {
+        return executeSync(script, options);
+    }
+
+    /**
+     * Execute a script synchronously with custom options.
+     */
+    public ExecutionResult executeSync(Path script, ExecutionOptions options) {
+        try {
+            return execute(script, options).future().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BBRunException("Execution interrupted", e);
+        } catch (Exception e) {
+            throw new BBRunException("Execution failed", e);
+        }
+    }
+
+    // ========== Accessors ==========
+
+    public ExecutionOptions getOptions() {
+        return options;
+    }
+
+    public ScriptLoader getScriptLoader() {
+        return scriptLoader;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Snapshot of execution counts and executor pool usage.
+     */
+    public EngineMetrics metrics() {
+        int poolSize = -1;
+        int activeThreads = -1;
+        int queued = -1;
+        if (executor instanceof ThreadPoolExecutor pool) {
+            poolSize = pool.getPoolSize();
+            activeThreads = pool.getActiveCount();
+            queued = pool.getQueue().size();
+        }
+        return new EngineMetrics(active.get(), completed.get(), failed.get(),
+                poolSize, activeThreads, queued, closed);
+    }
+
+    // ========== Lifecycle ==========
+
+    /**
+     * Stop accepting executions, wait up to the configured timeout for
+     * running ones to finish, then release the executor and HTTP client.
+     * Calling close more than once has no effect.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+
+        executor.shutdown();
+        try {
+            Duration grace = options.getTimeout();
+            if (!executor.awaitTermination(grace.toMillis(), TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        } finally {
+            httpClient.close();
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Engine is closed");
+        }
+    }
+}
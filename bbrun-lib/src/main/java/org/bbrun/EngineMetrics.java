@@ -0,0 +1,25 @@
+package org.bbrun;
+
+/**
+ * Point-in-time snapshot of a {@link BBRunEngine}.
+ *
+ * <p>
+ * Pool figures are {@code -1} when the executor does not expose them,
+ * e.g. a virtual-thread executor.
+ */
+public record EngineMetrics(
+        int activeExecutions,
+        long completedExecutions,
+        long failedExecutions,
+        int poolSize,
+        int activeThreads,
+        int queuedTasks,
+        boolean closed) {
+
+    /**
+     * Executions started since the engine was created.
+     */
+    public long totalExecutions() {
+        return activeExecutions + completedExecutions + failedExecutions;
+    }
+}
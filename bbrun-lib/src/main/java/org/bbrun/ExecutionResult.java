@@ -2,6 +2,11 @@ package org.bbrun;
 
 /**
  * Result of a completed script execution.
+ *
+ * <p>
+ * {@code requestCount} counts every request sent; {@code requests} lists
+ * them only when {@link org.bbrun.interpreter.ExecutionOptions#retainRequests}
+ * is on, and is empty otherwise.
  */
 public record ExecutionResult(
         boolean success,
@@ -10,8 +15,26 @@ public record ExecutionResult(
         int failedAssertions,
         java.util.List<Warning> warnings,
         java.util.List<RequestMetric> requests,
+        long requestCount,
         long durationMs,
         Throwable error) {
+
+    /**
+     * A result whose request count is the number of listed requests.
+     */
+    public ExecutionResult(
+            boolean success,
+            int totalStatements,
+            int passedAssertions,
+            int failedAssertions,
+            java.util.List<Warning> warnings,
+            java.util.List<RequestMetric> requests,
+            long durationMs,
+            Throwable error) {
+        this(success, totalStatements, passedAssertions, failedAssertions, warnings, requests, requests.size(),
+                durationMs, error);
+    }
+
     public boolean isSuccess() {
         return success && error == null;
     }
@@ -22,9 +45,31 @@ public record ExecutionResult(
             java.util.List<Warning> warnings,
             java.util.List<RequestMetric> requests,
             long durationMs) {
+        return success(totalStatements, passedAssertions, warnings, requests, requests.size(), durationMs);
+    }
+
+    public static ExecutionResult success(
+            int totalStatements,
+            int passedAssertions,
+            java.util.List<Warning> warnings,
+            java.util.List<RequestMetric> requests,
+            long requestCount,
+            long durationMs) {
         return new ExecutionResult(
                 true, totalStatements, passedAssertions, 0,
-                warnings, requests, durationMs, null);
+                warnings, requests, requestCount, durationMs, null);
+    }
+
+    public static ExecutionResult failure(
+            int totalStatements,
+            int passedAssertions,
+            int failedAssertions,
+            java.util.List<Warning> warnings,
+            java.util.List<RequestMetric> requests,
+            long durationMs,
+            Throwable error) {
+        return failure(totalStatements, passedAssertions, failedAssertions, warnings, requests, requests.size(),
+                durationMs, error);
     }
 
     public static ExecutionResult failure(
@@ -33,10 +78,11 @@ public record ExecutionResult(
             int failedAssertions,
             java.util.List<Warning> warnings,
             java.util.List<RequestMetric> requests,
+            long requestCount,
             long durationMs,
             Throwable error) {
         return new ExecutionResult(
                 false, totalStatements, passedAssertions, failedAssertions,
-                warnings, requests, durationMs, error);
+                warnings, requests, requestCount, durationMs, error);
     }
 }
@@ -1,12 +1,37 @@
 package org.bbrun;
 
 /**
- * Metrics for an HTTP request.
+ * Metrics for an HTTP request. {@code path} is the URL requested and
+ * {@code endpoint} its path template, e.g. {@code /users/{}}.
  */
 public record RequestMetric(
         String method,
         String path,
         int status,
         long durationMs,
-        boolean success) {
+        boolean success,
+        String endpoint) {
+
+    /**
+     * A request without a template, grouped by its URL path.
+     */
+    public RequestMetric(String method, String path, int status, long durationMs, boolean success) {
+        this(method, path, status, durationMs, success, pathOf(path));
+    }
+
+    /**
+     * Path of a URL, without scheme, host or query string.
+     */
+    public static String pathOf(String url) {
+        int start = 0;
+        int scheme = url.indexOf("://");
+        if (scheme >= 0) {
+            start = url.indexOf('/', scheme + 3);
+            if (start < 0) {
+                return "/";
+            }
+        }
+        int query = url.indexOf('?', start);
+        return url.substring(start, query < 0 ? url.length() : query);
+    }
 }
@@ -2,7 +2,23 @@ package org.bbrun.ast;
 
 import java.util.List;
 
-public record InterpolatedStringNode(List<StringPart> parts) implements ExpressionNode {
+/**
+ * String with embedded {@code ${...}} expressions, precompiled into a sequence
+ * of literal chunks and expression slots.
+ *
+ * <p>
+ * {@code sizeHint} is the initial capacity used when rendering: the literal
+ * length plus a small allowance per slot, so typical values fit without
+ * resizing the builder.
+ */
+public record InterpolatedStringNode(List<StringPart> parts, int sizeHint) implements ExpressionNode {
+
+    private static final int SLOT_ALLOWANCE = 16;
+
+    public InterpolatedStringNode(List<StringPart> parts) {
+        this(parts, sizeHint(parts));
+    }
+
     public sealed interface StringPart permits TextPart, ExpressionPart {
     }
 
@@ -11,4 +27,12 @@ public record InterpolatedStringNode(List<StringPart> parts) implements Expressi
 
     public record ExpressionPart(ExpressionNode expression) implements StringPart {
     }
+
+    private static int sizeHint(List<StringPart> parts) {
+        int size = 0;
+        for (StringPart part : parts) {
+            size += part instanceof TextPart text ? text.text().length() : SLOT_ALLOWANCE;
+        }
+        return size;
+    }
 }
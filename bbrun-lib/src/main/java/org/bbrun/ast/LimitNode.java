@@ -0,0 +1,5 @@
+package org.bbrun.ast;
+
+/** Cap on the requests that follow, shared by every virtual user: {@code limit 50/s}. */
+public record LimitNode(double perSecond, int line) implements StatementNode {
+}
@@ -0,0 +1,8 @@
+package org.bbrun.ast;
+
+import java.util.List;
+
+/** Call of a method on a value, e.g. {@code baseline.p95Delta("#users")}. */
+public record MethodCallNode(ExpressionNode object, String name, List<ExpressionNode> arguments)
+        implements ExpressionNode {
+}
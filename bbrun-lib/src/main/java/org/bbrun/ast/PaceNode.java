@@ -0,0 +1,7 @@
+package org.bbrun.ast;
+
+import java.time.Duration;
+
+/** Wait until the current iteration has lasted at least {@code interval}: {@code pace 2s}. */
+public record PaceNode(Duration interval, int line) implements StatementNode {
+}
@@ -1,10 +1,35 @@
 package org.bbrun.ast;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
-/** Path node for URL construction. */
-public record PathNode(List<PathSegment> segments, Map<String, ExpressionNode> queryParams, int line) {
+/**
+ * Path node for URL construction.
+ *
+ * <p>
+ * {@code template} is the precompiled form of the path: segments joined with
+ * {@code /} into literal chunks and expression slots, rendered per request.
+ * {@code endpoint} names the path for aggregation, with every interpolation
+ * shown as {@code {}}, e.g. {@code /users/{}/posts} for
+ * {@code #users/${id}/posts}; it has no host or query.
+ */
+public record PathNode(
+        List<PathSegment> segments,
+        Map<String, ExpressionNode> queryParams,
+        InterpolatedStringNode template,
+        String endpoint,
+        int line) {
+
+    public PathNode(List<PathSegment> segments, Map<String, ExpressionNode> queryParams, int line) {
+        this(segments, queryParams, compile(segments), line);
+    }
+
+    public PathNode(List<PathSegment> segments, Map<String, ExpressionNode> queryParams,
+            InterpolatedStringNode template, int line) {
+        this(segments, queryParams, template, endpoint(segments), line);
+    }
+
     public sealed interface PathSegment permits LiteralSegment, InterpolatedSegment {
     }
 
@@ -13,4 +38,78 @@ public record PathNode(List<PathSegment> segments, Map<String, ExpressionNode> q
 
     public record InterpolatedSegment(ExpressionNode expression) implements PathSegment {
     }
+
+    /**
+     * Join segments into a template. Full URLs are kept as-is, every other
+     * segment is prefixed with {@code /}.
+     */
+    private static InterpolatedStringNode compile(List<PathSegment> segments) {
+        List<InterpolatedStringNode.StringPart> parts = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+
+        for (PathSegment segment : segments) {
+            if (segment instanceof LiteralSegment lit) {
+                String value = lit.value();
+                if (!value.startsWith("http://") && !value.startsWith("https://")) {
+                    text.append('/');
+                }
+                text.append(value);
+            } else if (segment instanceof InterpolatedSegment interp) {
+                text.append('/');
+                parts.add(new InterpolatedStringNode.TextPart(text.toString()));
+                text.setLength(0);
+                parts.add(new InterpolatedStringNode.ExpressionPart(interp.expression()));
+            }
+        }
+
+        if (text.length() > 0) {
+            parts.add(new InterpolatedStringNode.TextPart(text.toString()));
+        }
+        return new InterpolatedStringNode(List.copyOf(parts));
+    }
+
+    /**
+     * Endpoint name of segments. Interpolations inside full URL strings
+     * become {@code {}} too, then scheme, host and query are dropped.
+     */
+    private static String endpoint(List<PathSegment> segments) {
+        StringBuilder text = new StringBuilder();
+        for (PathSegment segment : segments) {
+            if (segment instanceof LiteralSegment lit) {
+                String value = lit.value();
+                if (!value.startsWith("http://") && !value.startsWith("https://")) {
+                    text.append('/');
+                }
+                appendWithSlots(text, value);
+            } else {
+                text.append("/{}");
+            }
+        }
+
+        int start = 0;
+        int scheme = text.indexOf("://");
+        if (scheme >= 0) {
+            start = text.indexOf("/", scheme + 3);
+            if (start < 0) {
+                return "/";
+            }
+        }
+        int query = text.indexOf("?", start);
+        String path = text.substring(start, query < 0 ? text.length() : query);
+        return path.startsWith("/") ? path : "/" + path;
+    }
+
+    private static void appendWithSlots(StringBuilder text, String value) {
+        int from = 0;
+        int open;
+        while ((open = value.indexOf("${", from)) >= 0) {
+            int close = value.indexOf('}', open);
+            if (close < 0) {
+                break;
+            }
+            text.append(value, from, open).append("{}");
+            from = close + 1;
+        }
+        text.append(value, from, value.length());
+    }
 }
@@ -1,10 +1,11 @@
 package org.bbrun.ast;
 
-/** HTTP request statement. */
+/** HTTP request statement; {@code limit} is its rate cap per second, or null. */
 public record RequestNode(
         String method,
         PathNode path,
         ExpressionNode body,
         AuthClauseNode authClause,
+        Double limit,
         int line) implements StatementNode {
 }
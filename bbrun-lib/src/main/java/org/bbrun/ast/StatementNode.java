@@ -19,6 +19,9 @@ public sealed interface StatementNode permits
         MacroNode,
         RunNode,
         CleanupNode,
+        LimitNode,
+        PaceNode,
+        ThinkNode,
         ExpressionStatementNode {
 
     int line();
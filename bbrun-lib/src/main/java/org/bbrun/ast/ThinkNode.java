@@ -0,0 +1,7 @@
+package org.bbrun.ast;
+
+import java.time.Duration;
+
+/** Wait a random time between {@code min} and {@code max}: {@code think 500ms..1500ms}. */
+public record ThinkNode(Duration min, Duration max, int line) implements StatementNode {
+}
@@ -0,0 +1,129 @@
+package org.bbrun.baseline;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.bbrun.BBRunException;
+import org.bbrun.metrics.LatencyHistogram;
+import org.bbrun.metrics.RunStatistics;
+import org.bbrun.metrics.RunStatistics.EndpointStats;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Per-endpoint latency histograms and throughput of a run, saved to compare
+ * later runs against.
+ *
+ * <p>
+ * Files are JSON with each histogram stored as its non-empty buckets, a few
+ * KB per endpoint whatever the number of requests.
+ */
+public final class Baseline {
+
+    private static final int FORMAT_VERSION = 1;
+    private static final Gson GSON = new Gson();
+
+    private final long createdAt;
+    private final long durationMs;
+    private final List<EndpointStats> endpoints;
+
+    public Baseline(long createdAt, long durationMs, List<EndpointStats> endpoints) {
+        this.createdAt = createdAt;
+        this.durationMs = durationMs;
+        this.endpoints = List.copyOf(endpoints);
+    }
+
+    /**
+     * Snapshot of a run so far.
+     */
+    public static Baseline of(RunStatistics statistics) {
+        return new Baseline(System.currentTimeMillis(), statistics.elapsedMs(), statistics.snapshot());
+    }
+
+    public long createdAt() {
+        return createdAt;
+    }
+
+    /**
+     * Length of the run, which throughput is measured over.
+     */
+    public long durationMs() {
+        return durationMs;
+    }
+
+    public List<EndpointStats> endpoints() {
+        return endpoints;
+    }
+
+    /**
+     * Figures of the endpoints matching a key such as {@code GET #users},
+     * {@code #users} or {@code /users}; without a method, all methods of
+     * the path are combined. Null if none match.
+     */
+    public EndpointStats find(String key) {
+        String trimmed = key.trim();
+        int space = trimmed.indexOf(' ');
+        String method = space < 0 ? null : trimmed.substring(0, space).toUpperCase(Locale.ROOT);
+        String path = space < 0 ? trimmed : trimmed.substring(space + 1).trim();
+        if (path.startsWith("#")) {
+            path = "/" + path.substring(1);
+        }
+
+        LatencyHistogram latency = new LatencyHistogram();
+        long errors = 0;
+        boolean found = false;
+        for (EndpointStats stats : endpoints) {
+            if (stats.endpoint().equals(path) && (method == null || stats.method().equals(method))) {
+                latency.merge(stats.latency());
+                errors += stats.errors();
+                found = true;
+            }
+        }
+        return found ? new EndpointStats(method != null ? method : "*", path, errors, latency) : null;
+    }
+
+    // ========== Files ==========
+
+    private record FileFormat(int version, long createdAt, long durationMs, List<EndpointFormat> endpoints) {
+    }
+
+    // Buckets as [value, count] pairs, see LatencyHistogram.forEachBucket
+    private record EndpointFormat(String method, String endpoint, long errors, List<long[]> latencyNanos) {
+    }
+
+    public void save(Path file) throws IOException {
+        List<EndpointFormat> entries = new ArrayList<>();
+        for (EndpointStats stats : endpoints) {
+            List<long[]> buckets = new ArrayList<>();
+            stats.latency().forEachBucket((value, count) -> buckets.add(new long[] { value, count }));
+            entries.add(new EndpointFormat(stats.method(), stats.endpoint(), stats.errors(), buckets));
+        }
+        Files.writeString(file, GSON.toJson(new FileFormat(FORMAT_VERSION, createdAt, durationMs, entries)));
+    }
+
+    public static Baseline load(Path file) throws IOException {
+        FileFormat format;
+        try {
+            format = GSON.fromJson(Files.readString(file), FileFormat.class);
+        } catch (JsonParseException e) {
+            throw new BBRunException("Invalid baseline file " + file + ": " + e.getMessage(), e);
+        }
+        if (format == null || format.version() != FORMAT_VERSION || format.endpoints() == null) {
+            throw new BBRunException("Unsupported baseline file " + file);
+        }
+
+        List<EndpointStats> endpoints = new ArrayList<>();
+        for (EndpointFormat entry : format.endpoints()) {
+            LatencyHistogram latency = new LatencyHistogram();
+            for (long[] bucket : entry.latencyNanos()) {
+                latency.record(bucket[0], bucket[1]);
+            }
+            endpoints.add(new EndpointStats(entry.method(), entry.endpoint(), entry.errors(), latency));
+        }
+        return new Baseline(format.createdAt(), format.durationMs(), endpoints);
+    }
+}
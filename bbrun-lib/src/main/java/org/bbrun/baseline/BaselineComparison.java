@@ -0,0 +1,165 @@
+package org.bbrun.baseline;
+
+import org.bbrun.metrics.LatencyHistogram;
+import org.bbrun.metrics.RunStatistics.EndpointStats;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Per-endpoint differences between a run and a baseline.
+ *
+ * <p>
+ * An endpoint has regressed when its p95 rose by more than the allowed
+ * percentage and a one-sided Mann-Whitney U test over the two latency
+ * distributions says the slowdown is significant ({@code p < 0.05}). The
+ * test compares whole distributions, so a shift in a few outliers or in
+ * noise between runs does not fail the gate on its own. Endpoints with
+ * fewer than {@link #MIN_SAMPLES} requests on either side are reported but
+ * never fail.
+ */
+public final class BaselineComparison {
+
+    public static final double ALPHA = 0.05;
+    public static final int MIN_SAMPLES = 20;
+
+    private final Baseline baseline;
+    private final double maxRegressionPercent;
+    private final List<Delta> deltas;
+
+    public enum Verdict {
+        OK, REGRESSED, INSUFFICIENT_DATA, NEW, MISSING
+    }
+
+    /**
+     * Differences for one endpoint; percentages are relative to the
+     * baseline, NaN where either side has no data.
+     */
+    public record Delta(
+            String method,
+            String endpoint,
+            long baselineCount,
+            long currentCount,
+            double throughputPercent,
+            double p50Percent,
+            double p95Percent,
+            double p99Percent,
+            double errorRatePoints,
+            double pValue,
+            Verdict verdict) {
+    }
+
+    private BaselineComparison(Baseline baseline, double maxRegressionPercent, List<Delta> deltas) {
+        this.baseline = baseline;
+        this.maxRegressionPercent = maxRegressionPercent;
+        this.deltas = deltas;
+    }
+
+    /**
+     * Compare every endpoint of both runs.
+     */
+    public static BaselineComparison of(Baseline baseline, Baseline current, double maxRegressionPercent) {
+        List<Delta> deltas = new ArrayList<>();
+        for (EndpointStats stats : current.endpoints()) {
+            EndpointStats base = baseline.find(stats.method() + ' ' + stats.endpoint());
+            deltas.add(delta(base, baseline.durationMs(), stats, current.durationMs(), maxRegressionPercent));
+        }
+        for (EndpointStats base : baseline.endpoints()) {
+            if (current.find(base.method() + ' ' + base.endpoint()) == null) {
+                deltas.add(delta(base, baseline.durationMs(), null, current.durationMs(), maxRegressionPercent));
+            }
+        }
+        deltas.sort(Comparator.comparing(Delta::endpoint).thenComparing(Delta::method));
+        return new BaselineComparison(baseline, maxRegressionPercent, deltas);
+    }
+
+    /**
+     * Compare one endpoint; either side may be null.
+     */
+    static Delta delta(EndpointStats base, long baseDurationMs, EndpointStats current, long currentDurationMs,
+            double maxRegressionPercent) {
+        EndpointStats named = current != null ? current : base;
+        if (base == null || current == null) {
+            return new Delta(named.method(), named.endpoint(), base != null ? base.count() : 0,
+                    current != null ? current.count() : 0, Double.NaN, Double.NaN, Double.NaN, Double.NaN,
+                    Double.NaN, Double.NaN, base == null ? Verdict.NEW : Verdict.MISSING);
+        }
+
+        LatencyHistogram b = base.latency();
+        LatencyHistogram c = current.latency();
+        double throughput = percent(rate(base.count(), baseDurationMs), rate(current.count(), currentDurationMs));
+        double p95 = percent(b.valueAtPercentile(95), c.valueAtPercentile(95));
+        double errorPoints = 100.0 * current.errors() / Math.max(1, current.count())
+                - 100.0 * base.errors() / Math.max(1, base.count());
+        double pValue = 1 - normalCdf(LatencyHistogram.mannWhitneyZ(b, c));
+
+        Verdict verdict;
+        if (base.count() < MIN_SAMPLES || current.count() < MIN_SAMPLES) {
+            verdict = Verdict.INSUFFICIENT_DATA;
+        } else if (p95 > maxRegressionPercent && pValue < ALPHA) {
+            verdict = Verdict.REGRESSED;
+        } else {
+            verdict = Verdict.OK;
+        }
+        return new Delta(current.method(), current.endpoint(), base.count(), current.count(), throughput,
+                percent(b.valueAtPercentile(50), c.valueAtPercentile(50)), p95,
+                percent(b.valueAtPercentile(99), c.valueAtPercentile(99)), errorPoints, pValue, verdict);
+    }
+
+    private static double rate(long count, long durationMs) {
+        return durationMs <= 0 ? Double.NaN : count * 1000.0 / durationMs;
+    }
+
+    private static double percent(double base, double current) {
+        return base == 0 || Double.isNaN(base) ? Double.NaN : (current - base) / base * 100;
+    }
+
+    /**
+     * Standard normal CDF, via the Abramowitz-Stegun 7.1.26 erf
+     * approximation (error below 1.5e-7).
+     */
+    static double normalCdf(double z) {
+        if (Double.isNaN(z)) {
+            return Double.NaN;
+        }
+        double x = Math.abs(z) / Math.sqrt(2);
+        double t = 1 / (1 + 0.3275911 * x);
+        double erf = 1 - t * (0.254829592 + t * (-0.284496736 + t * (1.421413741
+                + t * (-1.453152027 + t * 1.061405429)))) * Math.exp(-x * x);
+        return z >= 0 ? (1 + erf) / 2 : (1 - erf) / 2;
+    }
+
+    // ========== Results ==========
+
+    public List<Delta> deltas() {
+        return deltas;
+    }
+
+    public boolean hasRegression() {
+        return deltas.stream().anyMatch(d -> d.verdict() == Verdict.REGRESSED);
+    }
+
+    /**
+     * Append a table of the deltas.
+     */
+    public void writeReport(StringBuilder out) {
+        out.append(String.format("Baseline of %s, max p95 regression %.1f%%%n",
+                Instant.ofEpochMilli(baseline.createdAt()), maxRegressionPercent));
+        out.append(String.format("%-32s %9s %9s %8s %8s %8s %8s %8s %8s  %s%n", "endpoint", "base n", "n",
+                "rps Δ%", "p50 Δ%", "p95 Δ%", "p99 Δ%", "err Δpp", "p-value", "verdict"));
+        for (Delta d : deltas) {
+            out.append(String.format("%-32s %9d %9d %8s %8s %8s %8s %8s %8s  %s%n",
+                    d.method() + ' ' + d.endpoint(), d.baselineCount(), d.currentCount(),
+                    signed(d.throughputPercent()), signed(d.p50Percent()), signed(d.p95Percent()),
+                    signed(d.p99Percent()), signed(d.errorRatePoints()),
+                    Double.isNaN(d.pValue()) ? "-" : String.format("%.4f", d.pValue()),
+                    d.verdict().name().toLowerCase().replace('_', ' ')));
+        }
+    }
+
+    private static String signed(double value) {
+        return Double.isNaN(value) ? "-" : String.format("%+.1f", value);
+    }
+}
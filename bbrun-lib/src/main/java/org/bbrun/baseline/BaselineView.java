@@ -0,0 +1,68 @@
+package org.bbrun.baseline;
+
+import org.bbrun.BBRunException;
+import org.bbrun.interpreter.ScriptObject;
+import org.bbrun.metrics.RunStatistics;
+import org.bbrun.metrics.RunStatistics.EndpointStats;
+
+import java.util.List;
+
+/**
+ * The {@code baseline} object of scripts: compares the run so far with a
+ * baseline, e.g. {@code assert baseline.p95Delta("#users") < 10}.
+ *
+ * <p>
+ * Methods take an endpoint such as {@code "#users"} or
+ * {@code "POST #users"} and return a percentage change relative to the
+ * baseline ({@code p50Delta}, {@code p95Delta}, {@code p99Delta},
+ * {@code throughputDelta}), the change in error rate in percentage points
+ * ({@code errorRateDelta}) or the significance of a slowdown
+ * ({@code pValue}, see {@link BaselineComparison}).
+ */
+public class BaselineView implements ScriptObject {
+
+    private final Baseline baseline;
+    private final RunStatistics current;
+    private final double maxRegressionPercent;
+
+    public BaselineView(Baseline baseline, RunStatistics current, double maxRegressionPercent) {
+        this.baseline = baseline;
+        this.current = current;
+        this.maxRegressionPercent = maxRegressionPercent;
+    }
+
+    @Override
+    public Object call(String name, List<Object> arguments) {
+        if (arguments.size() != 1 || !(arguments.get(0) instanceof String endpoint)) {
+            throw new BBRunException("baseline." + name + "() takes an endpoint, e.g. \"#users\"");
+        }
+        BaselineComparison.Delta delta = delta(endpoint);
+        double value = switch (name) {
+            case "p50Delta" -> delta.p50Percent();
+            case "p95Delta" -> delta.p95Percent();
+            case "p99Delta" -> delta.p99Percent();
+            case "throughputDelta" -> delta.throughputPercent();
+            case "errorRateDelta" -> delta.errorRatePoints();
+            case "pValue" -> delta.pValue();
+            default -> throw new BBRunException("Unknown method baseline." + name + "()");
+        };
+        if (Double.isNaN(value)) {
+            throw new BBRunException("No comparable data for " + endpoint + " in baseline." + name + "()");
+        }
+        return value;
+    }
+
+    private BaselineComparison.Delta delta(String endpoint) {
+        EndpointStats base = baseline.find(endpoint);
+        if (base == null) {
+            throw new BBRunException("Endpoint " + endpoint + " is not in the baseline");
+        }
+        Baseline now = Baseline.of(current);
+        EndpointStats stats = now.find(endpoint);
+        if (stats == null) {
+            throw new BBRunException("Endpoint " + endpoint + " has not been called yet");
+        }
+        return BaselineComparison.delta(base, baseline.durationMs(), stats, now.durationMs(),
+                maxRegressionPercent);
+    }
+}
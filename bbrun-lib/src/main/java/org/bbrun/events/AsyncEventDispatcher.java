@@ -0,0 +1,459 @@
+package org.bbrun.events;
+
+import org.bbrun.RequestMetric;
+import org.bbrun.Warning;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Delivers events to one {@link EventListener} on a dedicated consumer
+ * thread, so a slow listener does not add to measured request latency.
+ *
+ * <p>
+ * Producers (script threads) write event fields into preallocated slots of
+ * a bounded lock-free ring buffer and never allocate; the consumer drains
+ * the buffer in batches, builds the event records and calls the listener.
+ * When the buffer is full the listener's {@link BackpressurePolicy}
+ * decides whether the producer waits or the event is dropped. Dropped
+ * events are counted in {@link #droppedEvents()}.
+ *
+ * <p>
+ * Events are delivered in publication order, possibly after the script has
+ * finished. {@link #close()} waits until everything published has been
+ * delivered.
+ */
+public final class AsyncEventDispatcher implements AutoCloseable {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /**
+     * Under {@link BackpressurePolicy#SAMPLE}, one in this many events
+     * waits for space while the buffer is full.
+     */
+    public static final int SAMPLE_RATE = 16;
+
+    private static final int BATCH_SIZE = 256;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    // Event kinds
+    private static final byte SCRIPT_START = 1;
+    private static final byte REQUEST_START = 2;
+    private static final byte REQUEST_COMPLETE = 3;
+    private static final byte ASSERTION_PASS = 4;
+    private static final byte ASSERTION_FAIL = 5;
+    private static final byte WARNING = 6;
+    private static final byte SCRIPT_COMPLETE = 7;
+    private static final byte USER_START = 8;
+    private static final byte USER_COMPLETE = 9;
+
+    private final EventListener listener;
+    private final BackpressurePolicy policy;
+    private final int mask;
+
+    // Slot sequences (Vyukov bounded queue): seq == pos means free for the
+    // producer claiming pos, seq == pos + 1 means published for the consumer
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+
+    // Slot fields, one array per field to avoid per-event objects
+    private final byte[] kinds;
+    private final String[] text1;
+    private final String[] text2;
+    private final Object[] refs;
+    private final String[] scripts;
+    private final int[] num1;
+    private final int[] num2;
+    private final long[] durations;
+    private final boolean[] flags;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private long sampleCounter; // racy increments are harmless for sampling
+
+    private final Thread consumer;
+    private volatile boolean consumerParked = false;
+    private volatile boolean shutdown = false;
+
+    public AsyncEventDispatcher(EventListener listener) {
+        this(listener, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity buffer size, rounded up to a power of two
+     */
+    public AsyncEventDispatcher(EventListener listener, int capacity) {
+        this(listener, listener.backpressurePolicy(), capacity);
+    }
+
+    /**
+     * @param policy   overrides the listener's own {@link EventListener#backpressurePolicy()}
+     * @param capacity buffer size, rounded up to a power of two
+     */
+    public AsyncEventDispatcher(EventListener listener, BackpressurePolicy policy, int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("capacity must be at least 2");
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+
+        this.listener = listener;
+        this.policy = policy;
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.kinds = new byte[size];
+        this.text1 = new String[size];
+        this.text2 = new String[size];
+        this.refs = new Object[size];
+        this.scripts = new String[size];
+        this.num1 = new int[size];
+        this.num2 = new int[size];
+        this.durations = new long[size];
+        this.flags = new boolean[size];
+
+        this.consumer = new Thread(this::drainLoop, "bbrun-events-" + listener.getClass().getSimpleName());
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+    }
+
+    // ========== Producer side ==========
+
+    public void scriptStart(String scriptPath, int totalStatements) {
+        long pos = claim(SCRIPT_START);
+        if (pos < 0) {
+            return;
+        }
+        int i = (int) pos & mask;
+        text1[i] = scriptPath;
+        num1[i] = totalStatements;
+        publish(pos);
+    }
+
+    /**
+     * Publish the start of a request without a template, grouped by its URL
+     * path.
+     */
+    public void requestStart(String method, String path, int line) {
+        requestStart(method, path, line, RequestMetric.pathOf(path));
+    }
+
+    public void requestStart(String method, String path, int line, String endpoint) {
+        requestStart(method, path, line, endpoint, null);
+    }
+
+    public void requestStart(String method, String path, int line, String endpoint, String scriptPath) {
+        long pos = claim(REQUEST_START);
+        if (pos < 0) {
+            return;
+        }
+        int i = (int) pos & mask;
+        text1[i] = method;
+        text2[i] = path;
+        refs[i] = endpoint;
+        scripts[i] = scriptPath;
+        num2[i] = line;
+        publish(pos);
+    }
+
+    /**
+     * Publish a completed request without a template, grouped by its URL
+     * path.
+     */
+    public void requestComplete(String method, String path, int status, long durationMs, boolean success,
+            int line) {
+        requestComplete(method, path, status, durationMs, success, line, RequestMetric.pathOf(path));
+    }
+
+    public void requestComplete(String method, String path, int status, long durationMs, boolean success,
+            int line, String endpoint) {
+        requestComplete(method, path, status, durationMs, success, line, endpoint, null);
+    }
+
+    public void requestComplete(String method, String path, int status, long durationMs, boolean success,
+            int line, String endpoint, String scriptPath) {
+        long pos = claim(REQUEST_COMPLETE);
+        if (pos < 0) {
+            return;
+        }
+        int i = (int) pos & mask;
+        text1[i] = method;
+        text2[i] = path;
+        refs[i] = endpoint;
+        scripts[i] = scriptPath;
+        num1[i] = status;
+        durations[i] = durationMs;
+        flags[i] = success;
+        num2[i] = line;
+        publish(pos);
+    }
+
+    /**
+     * Publish an assertion result. The expression is converted to its
+     * string form on the consumer thread.
+     */
+    public void assertion(Object expression, boolean passed, String message, int line) {
+        assertion(expression, passed, message, line, null);
+    }
+
+    public void assertion(Object expression, boolean passed, String message, int line, String scriptPath) {
+        long pos = claim(passed ? ASSERTION_PASS : ASSERTION_FAIL);
+        if (pos < 0) {
+            return;
+        }
+        int i = (int) pos & mask;
+        refs[i] = expression;
+        flags[i] = passed;
+        text1[i] = message;
+        scripts[i] = scriptPath;
+        num2[i] = line;
+        publish(pos);
+    }
+
+    public void warning(Warning warning) {
+        warning(warning, null);
+    }
+
+    public void warning(Warning warning, String scriptPath) {
+        long pos = claim(WARNING);
+        if (pos < 0) {
+            return;
+        }
+        int i = (int) pos & mask;
+        refs[i] = warning;
+        scripts[i] = scriptPath;
+        publish(pos);
+    }
+
+    public void scriptComplete(boolean success, int passedAssertions, int failedAssertions, long durationMs) {
+        scriptComplete(success, passedAssertions, failedAssertions, durationMs, null);
+    }
+
+    public void scriptComplete(boolean success, int passedAssertions, int failedAssertions, long durationMs,
+            String scriptPath) {
+        long pos = claim(SCRIPT_COMPLETE);
+        if (pos < 0) {
+            return;
+        }
+        int i = (int) pos & mask;
+        scripts[i] = scriptPath;
+        flags[i] = success;
+        num1[i] = passedAssertions;
+        num2[i] = failedAssertions;
+        durations[i] = durationMs;
+        publish(pos);
+    }
+
+    public void userStart(int user, String scriptPath) {
+        user(USER_START, user, scriptPath);
+    }
+
+    public void userComplete(int user, String scriptPath) {
+        user(USER_COMPLETE, user, scriptPath);
+    }
+
+    private void user(byte kind, int user, String scriptPath) {
+        long pos = claim(kind);
+        if (pos < 0) {
+            return;
+        }
+        int i = (int) pos & mask;
+        num1[i] = user;
+        scripts[i] = scriptPath;
+        publish(pos);
+    }
+
+    /**
+     * Claim the next slot, applying the backpressure policy when the buffer
+     * is full. Returns the claimed position, or -1 if the event is dropped.
+     */
+    private long claim(byte kind) {
+        if (shutdown) {
+            dropped.incrementAndGet();
+            return -1;
+        }
+        // Dropping these would leave counts of running scripts and users off for good
+        boolean lifecycle = kind == SCRIPT_START || kind == SCRIPT_COMPLETE || kind == USER_START
+                || kind == USER_COMPLETE;
+        int spins = 0;
+        while (true) {
+            long pos = tail.get();
+            long seq = sequences.get((int) pos & mask);
+            if (seq == pos) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    kinds[(int) pos & mask] = kind;
+                    return pos;
+                }
+            } else if (seq < pos) {
+                // Full
+                if (shutdown) {
+                    dropped.incrementAndGet();
+                    return -1;
+                }
+                if (!lifecycle && spins == 0 && shouldDrop()) {
+                    dropped.incrementAndGet();
+                    return -1;
+                }
+                backoff(++spins);
+            }
+        }
+    }
+
+    private boolean shouldDrop() {
+        return switch (policy) {
+            case BLOCK -> false;
+            case DROP -> true;
+            case SAMPLE -> sampleCounter++ % SAMPLE_RATE != 0;
+        };
+    }
+
+    private void publish(long pos) {
+        sequences.lazySet((int) pos & mask, pos + 1);
+        if (consumerParked) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    private static void backoff(int spins) {
+        if (spins < 64) {
+            Thread.onSpinWait();
+        } else if (spins < 128) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(50_000);
+        }
+    }
+
+    // ========== Consumer side ==========
+
+    private void drainLoop() {
+        while (true) {
+            int drained = drainBatch();
+            if (drained > 0) {
+                continue;
+            }
+            if (shutdown && isEmpty()) {
+                return;
+            }
+            // A wakeup missed between this check and parking costs at most
+            // one idle period
+            consumerParked = true;
+            if (isEmpty() && !shutdown) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            consumerParked = false;
+        }
+    }
+
+    private int drainBatch() {
+        int count = 0;
+        while (count < BATCH_SIZE) {
+            int i = (int) head & mask;
+            if (sequences.get(i) != head + 1) {
+                break;
+            }
+            deliver(i);
+
+            // Release references before handing the slot back
+            text1[i] = null;
+            text2[i] = null;
+            refs[i] = null;
+            scripts[i] = null;
+            sequences.lazySet(i, head + mask + 1);
+            head++;
+            count++;
+        }
+        return count;
+    }
+
+    private boolean isEmpty() {
+        return sequences.get((int) head & mask) != head + 1;
+    }
+
+    private void deliver(int i) {
+        try {
+            switch (kinds[i]) {
+                case SCRIPT_START -> listener.onScriptStart(
+                        new EventListener.ScriptEvent(text1[i], num1[i]));
+                case REQUEST_START -> listener.onRequestStart(
+                        new EventListener.RequestEvent(text1[i], text2[i], 0, 0, false, num2[i],
+                                (String) refs[i], scripts[i]));
+                case REQUEST_COMPLETE -> listener.onRequestComplete(
+                        new EventListener.RequestEvent(text1[i], text2[i], num1[i], durations[i],
+                                flags[i], num2[i], (String) refs[i], scripts[i]));
+                case ASSERTION_PASS -> listener.onAssertionPass(
+                        new EventListener.AssertionEvent(String.valueOf(refs[i]), true, text1[i], num2[i],
+                                scripts[i]));
+                case ASSERTION_FAIL -> listener.onAssertionFail(
+                        new EventListener.AssertionEvent(String.valueOf(refs[i]), false, text1[i], num2[i],
+                                scripts[i]));
+                case WARNING -> listener.onWarning(new EventListener.WarningEvent((Warning) refs[i], scripts[i]));
+                case SCRIPT_COMPLETE -> listener.onScriptComplete(
+                        new EventListener.CompletionEvent(flags[i], num1[i], num2[i], durations[i], scripts[i]));
+                case USER_START -> listener.onUserStart(new EventListener.UserEvent(num1[i], scripts[i]));
+                case USER_COMPLETE -> listener.onUserComplete(new EventListener.UserEvent(num1[i], scripts[i]));
+                default -> {
+                }
+            }
+            delivered.incrementAndGet();
+        } catch (RuntimeException e) {
+            // A failing listener must not stop delivery to itself or stall the script
+            failures.incrementAndGet();
+        }
+    }
+
+    // ========== Lifecycle and statistics ==========
+
+    public EventListener getListener() {
+        return listener;
+    }
+
+    public BackpressurePolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Events discarded because the buffer was full or the dispatcher shut down.
+     */
+    public long droppedEvents() {
+        return dropped.get();
+    }
+
+    public long deliveredEvents() {
+        return delivered.get();
+    }
+
+    /**
+     * Events whose listener call threw an exception.
+     */
+    public long failedDeliveries() {
+        return failures.get();
+    }
+
+    /**
+     * Stop accepting events; the consumer delivers what is already buffered
+     * and then exits. Does not wait.
+     */
+    public void shutdown() {
+        shutdown = true;
+        LockSupport.unpark(consumer);
+    }
+
+    /**
+     * Stop accepting events and wait until buffered events are delivered.
+     */
+    @Override
+    public void close() {
+        shutdown();
+        try {
+            consumer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
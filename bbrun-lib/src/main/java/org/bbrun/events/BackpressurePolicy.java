@@ -0,0 +1,30 @@
+package org.bbrun.events;
+
+/**
+ * What an {@link AsyncEventDispatcher} does when its buffer is full, i.e.
+ * when the listener falls behind the script.
+ *
+ * <p>
+ * Start and completion events of scripts and virtual users are never
+ * dropped, whatever the policy.
+ */
+public enum BackpressurePolicy {
+
+    /**
+     * Wait for space. Every event is delivered, but a slow listener slows
+     * the script down once the buffer has filled up.
+     */
+    BLOCK,
+
+    /**
+     * Discard the event and count it. The script never waits.
+     */
+    DROP,
+
+    /**
+     * Wait for space for one in every {@link AsyncEventDispatcher#SAMPLE_RATE}
+     * events and discard the rest, so the listener keeps seeing a
+     * representative subset while the script mostly runs unhindered.
+     */
+    SAMPLE
+}
@@ -50,20 +50,68 @@ public interface EventListener {
     default void onScriptComplete(CompletionEvent event) {
     }
 
+    /**
+     * Called when a virtual user of a parallel block starts, on its own
+     * thread.
+     */
+    default void onUserStart(UserEvent event) {
+    }
+
+    /**
+     * Called when a virtual user of a parallel block has finished its
+     * iterations.
+     */
+    default void onUserComplete(UserEvent event) {
+    }
+
+    /**
+     * How events are handled when this listener is attached asynchronously
+     * and cannot keep up. Ignored for synchronous listeners.
+     */
+    default BackpressurePolicy backpressurePolicy() {
+        return BackpressurePolicy.BLOCK;
+    }
+
     // Event records
+    //
+    // Every event carries the path of the script it came from, so a listener
+    // shared by several concurrent executions can tell them apart without
+    // looking at the delivering thread.
 
     record ScriptEvent(String scriptPath, int totalStatements) {
     }
 
+    /**
+     * A request; {@code path} is the full URL sent, {@code endpoint} the
+     * path template it came from, e.g. {@code /users/{}}, for grouping.
+     */
     record RequestEvent(
             String method,
             String path,
             int status,
             long durationMs,
             boolean success,
-            int line) {
+            int line,
+            String endpoint,
+            String scriptPath) {
+
+        /**
+         * A request without a known script.
+         */
+        public RequestEvent(
+                String method, String path, int status, long durationMs, boolean success, int line, String endpoint) {
+            this(method, path, status, durationMs, success, line, endpoint, null);
+        }
+
+        /**
+         * A request without a template, grouped by its URL path.
+         */
+        public RequestEvent(String method, String path, int status, long durationMs, boolean success, int line) {
+            this(method, path, status, durationMs, success, line, RequestMetric.pathOf(path));
+        }
+
         public RequestMetric toMetric() {
-            return new RequestMetric(method, path, status, durationMs, success);
+            return new RequestMetric(method, path, status, durationMs, success, endpoint);
         }
     }
 
@@ -71,16 +119,37 @@ public interface EventListener {
             String expression,
             boolean passed,
             String message,
-            int line) {
+            int line,
+            String scriptPath) {
+
+        public AssertionEvent(String expression, boolean passed, String message, int line) {
+            this(expression, passed, message, line, null);
+        }
     }
 
-    record WarningEvent(Warning warning) {
+    record WarningEvent(Warning warning, String scriptPath) {
+
+        public WarningEvent(Warning warning) {
+            this(warning, null);
+        }
+    }
+
+    /**
+     * A virtual user of a parallel block; {@code user} is the number its
+     * script sees as {@code thread}.
+     */
+    record UserEvent(int user, String scriptPath) {
     }
 
     record CompletionEvent(
             boolean success,
             int passedAssertions,
             int failedAssertions,
-            long durationMs) {
+            long durationMs,
+            String scriptPath) {
+
+        public CompletionEvent(boolean success, int passedAssertions, int failedAssertions, long durationMs) {
+            this(success, passedAssertions, failedAssertions, durationMs, null);
+        }
     }
 }
@@ -0,0 +1,348 @@
+package org.bbrun.events;
+
+import org.bbrun.metrics.GeneratorMonitor;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams execution events as JSON lines while scripts run, so results can
+ * be tailed in real time without the runner holding them in memory.
+ *
+ * <p>
+ * Every line is one object with a {@code type} of {@code script},
+ * {@code request}, {@code assertion}, {@code warning} or
+ * {@code script_end}; {@link #close()} ends the stream with a
+ * {@code summary} line covering everything written. Lines carry the
+ * script they came from and an epoch-millisecond {@code ts}. Figures of
+ * the load generator itself arrive as {@code generator} lines each second
+ * and a {@code generator_summary} line, see {@link GeneratorMonitor}.
+ *
+ * <p>
+ * Output is buffered and flushed every flush interval and at the end of
+ * each script. One sink may be shared by concurrent executions, attached
+ * either synchronously or through an {@link AsyncEventDispatcher}; lines
+ * take their script from the event. After a write error the sink drops further events
+ * and {@link #close()} rethrows the error.
+ */
+public class JsonLinesSink implements EventListener, Closeable {
+
+    public static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofSeconds(1);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Writer writer;
+    private final boolean closeStream;
+    private final ScheduledExecutorService flusher;
+    private final StringBuilder line = new StringBuilder(256);
+    private final long startedAt = System.currentTimeMillis();
+
+    // Summary totals, guarded by this
+    private long scripts;
+    private long failedScripts;
+    private long requests;
+    private long failedRequests;
+    private long passedAssertions;
+    private long failedAssertions;
+    private long warnings;
+
+    private IOException error;
+    private boolean closed;
+
+    /**
+     * Stream to the given output, which is closed with the sink if
+     * {@code closeStream} is set.
+     */
+    public JsonLinesSink(OutputStream out, boolean closeStream, Duration flushInterval) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        this.closeStream = closeStream;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bbrun-results-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = Math.max(1, flushInterval.toMillis());
+        flusher.scheduleWithFixedDelay(this::flush, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stream to a new file, replacing any existing one.
+     */
+    public static JsonLinesSink open(Path file) throws IOException {
+        return new JsonLinesSink(Files.newOutputStream(file), true, DEFAULT_FLUSH_INTERVAL);
+    }
+
+    // ========== EventListener ==========
+
+    @Override
+    public void onScriptStart(ScriptEvent event) {
+        synchronized (this) {
+            begin("script", event.scriptPath());
+            field("statements", event.totalStatements());
+            end();
+        }
+    }
+
+    @Override
+    public void onRequestComplete(RequestEvent event) {
+        synchronized (this) {
+            requests++;
+            if (!event.success()) {
+                failedRequests++;
+            }
+            begin("request", event.scriptPath());
+            field("line", event.line());
+            field("method", event.method());
+            field("url", event.path());
+            field("endpoint", event.endpoint());
+            field("status", event.status());
+            field("durationMs", event.durationMs());
+            field("success", event.success());
+            end();
+        }
+    }
+
+    @Override
+    public void onAssertionPass(AssertionEvent event) {
+        synchronized (this) {
+            passedAssertions++;
+            assertion(event);
+        }
+    }
+
+    @Override
+    public void onAssertionFail(AssertionEvent event) {
+        synchronized (this) {
+            failedAssertions++;
+            assertion(event);
+        }
+    }
+
+    private void assertion(AssertionEvent event) {
+        begin("assertion", event.scriptPath());
+        field("line", event.line());
+        field("expression", event.expression());
+        field("passed", event.passed());
+        if (event.message() != null) {
+            field("message", event.message());
+        }
+        end();
+    }
+
+    @Override
+    public void onWarning(WarningEvent event) {
+        synchronized (this) {
+            warnings++;
+            begin("warning", event.scriptPath());
+            field("line", event.warning().line());
+            field("message", event.warning().message());
+            field("expression", event.warning().expression());
+            end();
+        }
+    }
+
+    @Override
+    public void onScriptComplete(CompletionEvent event) {
+        synchronized (this) {
+            scripts++;
+            if (!event.success()) {
+                failedScripts++;
+            }
+            begin("script_end", event.scriptPath());
+            field("success", event.success());
+            field("passedAssertions", event.passedAssertions());
+            field("failedAssertions", event.failedAssertions());
+            field("durationMs", event.durationMs());
+            end();
+            flush();
+        }
+    }
+
+    // ========== Generator ==========
+
+    /**
+     * Write a sample of the load generator's health, e.g. as a
+     * {@link GeneratorMonitor#onSample} listener.
+     */
+    public void generator(GeneratorMonitor.Sample sample) {
+        synchronized (this) {
+            begin("generator", null);
+            field("processCpuPercent", sample.processCpuPercent());
+            field("machineCpuPercent", sample.machineCpuPercent());
+            field("gcPauses", sample.gcPauses());
+            field("gcPauseMs", sample.gcPauseMs());
+            field("hiccupMaxMs", sample.hiccupMaxMs());
+            field("scheduleLagMaxMs", sample.scheduleLagMaxMs());
+            end();
+        }
+    }
+
+    /**
+     * Write the load generator's figures for the whole run, and whether
+     * they likely distorted it.
+     */
+    public void generator(GeneratorMonitor.Report report) {
+        synchronized (this) {
+            begin("generator_summary", null);
+            field("processCpuPercent", report.processCpuPercent());
+            field("peakProcessCpuPercent", report.peakProcessCpuPercent());
+            field("machineCpuPercent", report.machineCpuPercent());
+            field("gcPauses", report.gcPauses());
+            field("gcPauseMs", report.gcPauseMs());
+            field("maxGcPauseMs", report.maxGcPauseMs());
+            field("hiccupP99Ms", report.hiccups().valueAtPercentile(99) / 1e6);
+            field("hiccupMaxMs", report.hiccups().max() / 1e6);
+            field("scheduleLagP99Ms", report.scheduleLag().valueAtPercentile(99) / 1e6);
+            field("scheduleLagMaxMs", report.scheduleLag().max() / 1e6);
+            field("saturated", report.saturated());
+            line.append(",\"warnings\":[");
+            for (int i = 0; i < report.warnings().size(); i++) {
+                if (i > 0) {
+                    line.append(',');
+                }
+                string(report.warnings().get(i));
+            }
+            line.append(']');
+            end();
+        }
+    }
+
+    // ========== Lifecycle ==========
+
+    /**
+     * Write buffered lines through to the output.
+     */
+    public synchronized void flush() {
+        if (error != null || closed) {
+            return;
+        }
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+
+    /**
+     * Write the summary line, flush and stop. Events arriving afterwards
+     * are ignored.
+     */
+    @Override
+    public void close() throws IOException {
+        flusher.shutdownNow();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            begin("summary", null);
+            field("scripts", scripts);
+            field("failedScripts", failedScripts);
+            field("requests", requests);
+            field("failedRequests", failedRequests);
+            field("passedAssertions", passedAssertions);
+            field("failedAssertions", failedAssertions);
+            field("warnings", warnings);
+            field("durationMs", System.currentTimeMillis() - startedAt);
+            end();
+            flush();
+            closed = true;
+            try {
+                if (closeStream) {
+                    writer.close();
+                }
+            } catch (IOException e) {
+                if (error == null) {
+                    error = e;
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+
+    // ========== Encoding ==========
+    // Lines are built in one reused buffer while holding the lock
+
+    private void begin(String type, String script) {
+        line.setLength(0);
+        line.append("{\"type\":\"").append(type).append('"');
+        field("ts", System.currentTimeMillis());
+        if (script != null) {
+            field("script", script);
+        }
+    }
+
+    private void end() {
+        if (error != null || closed) {
+            return;
+        }
+        line.append("}\n");
+        try {
+            writer.append(line);
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+
+    private void field(String name, long value) {
+        line.append(",\"").append(name).append("\":").append(value);
+    }
+
+    private void field(String name, boolean value) {
+        line.append(",\"").append(name).append("\":").append(value);
+    }
+
+    private void field(String name, double value) {
+        // One decimal place; CPU and milliseconds need no more
+        double rounded = Math.round(value * 10) / 10.0;
+        line.append(",\"").append(name).append("\":");
+        if (rounded == Math.rint(rounded)) {
+            line.append((long) rounded);
+        } else {
+            line.append(rounded);
+        }
+    }
+
+    private void field(String name, String value) {
+        line.append(",\"").append(name).append("\":");
+        if (value == null) {
+            line.append("null");
+            return;
+        }
+        string(value);
+    }
+
+    private void string(String value) {
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> line.append("\\\"");
+                case '\\' -> line.append("\\\\");
+                case '\n' -> line.append("\\n");
+                case '\r' -> line.append("\\r");
+                case '\t' -> line.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        line.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        line.append(c);
+                    }
+                }
+            }
+        }
+        line.append('"');
+    }
+}
@@ -1,7 +1,15 @@
 package org.bbrun.interpreter;
 
+import org.bbrun.ast.StatementNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 /**
  * Execution context holding variables, auth state, and configuration.
@@ -13,11 +21,44 @@ public class Context {
     private String baseUrl;
     private AuthState auth;
     private final Map<String, AuthState> namedAuth = new HashMap<>();
+    // Shared by every copy, so all virtual users draw from the same buckets
+    private final Map<StatementNode, TokenBucket> limits;
+    private TokenBucket limit;
 
     public Context(ExecutionOptions options) {
         this.options = options;
         this.baseUrl = options.getBaseUrl();
         this.variables.putAll(options.getVariables());
+        this.limits = Collections.synchronizedMap(new IdentityHashMap<>());
+    }
+
+    /**
+     * Create an independent copy of another context, e.g. to start a script
+     * from the state left by a shared _init.bbrun run. Maps and lists held
+     * in variables are copied so scripts cannot see each other's changes.
+     */
+    public Context(Context other) {
+        this.options = other.options;
+        this.baseUrl = other.baseUrl;
+        this.auth = other.auth;
+        this.namedAuth.putAll(other.namedAuth);
+        this.limits = other.limits;
+        this.limit = other.limit;
+        other.variables.forEach((name, value) -> variables.put(name, copyValue(value)));
+    }
+
+    private static Object copyValue(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            Map<Object, Object> copy = new LinkedHashMap<>();
+            map.forEach((k, v) -> copy.put(k, copyValue(v)));
+            return copy;
+        }
+        if (value instanceof List<?> list) {
+            List<Object> copy = new ArrayList<>(list.size());
+            list.forEach(v -> copy.add(copyValue(v)));
+            return copy;
+        }
+        return value;
     }
 
     // Variables
@@ -33,6 +74,28 @@ public class Context {
         return variables.containsKey(name);
     }
 
+    // Rate limits
+
+    /**
+     * The bucket of a {@code limit} statement or clause, the same for every
+     * copy of this context.
+     */
+    TokenBucket limit(StatementNode statement, Function<StatementNode, TokenBucket> create) {
+        return limits.computeIfAbsent(statement, create);
+    }
+
+    /**
+     * The bucket of the last {@code limit} statement run, capping every
+     * request that follows it, or null.
+     */
+    TokenBucket getLimit() {
+        return limit;
+    }
+
+    void setLimit(TokenBucket limit) {
+        this.limit = limit;
+    }
+
     // Base URL
     public String getBaseUrl() {
         return baseUrl;
@@ -74,7 +137,7 @@ public class Context {
     // Environment
     public String getEnv(String name) {
         String value = options.getEnvironment().get(name);
-        if (value == null) {
+        if (value == null && options.isInheritEnvironment()) {
             value = System.getenv(name);
         }
         return value;
@@ -1,11 +1,13 @@
 package org.bbrun.interpreter;
 
 import org.bbrun.ExecutionResult;
+import org.bbrun.Warning;
+import org.bbrun.events.AsyncEventDispatcher;
 import org.bbrun.events.EventListener;
 
+import java.util.Collections;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Handle for an async script execution.
@@ -15,14 +17,28 @@ import java.util.concurrent.atomic.AtomicReference;
 public class ExecutionHandle {
 
     private final CompletableFuture<ExecutionResult> future;
-    private final AtomicReference<ExecutionProgress> progress;
     private final CopyOnWriteArrayList<EventListener> listeners;
+    private final CopyOnWriteArrayList<AsyncEventDispatcher> asyncListeners;
+    private final CopyOnWriteArrayList<AsyncEventDispatcher> ownedListeners;
     private volatile boolean cancelled = false;
+    private volatile String scriptPath;
+
+    // Progress is recorded as plain fields and only turned into an
+    // ExecutionProgress snapshot when polled, so statements don't allocate
+    private volatile int totalStatements;
+    private volatile int completedStatements;
+    private volatile String currentStatement;
+    private volatile ExecutionProgress.ExecutionState state = ExecutionProgress.ExecutionState.PENDING;
 
     public ExecutionHandle(CompletableFuture<ExecutionResult> future) {
         this.future = future;
-        this.progress = new AtomicReference<>(ExecutionProgress.initial());
         this.listeners = new CopyOnWriteArrayList<>();
+        this.asyncListeners = new CopyOnWriteArrayList<>();
+        this.ownedListeners = new CopyOnWriteArrayList<>();
+
+        // Let async consumers finish what is buffered and exit; dispatchers
+        // shared through ExecutionOptions outlive a single execution
+        future.whenComplete((result, error) -> ownedListeners.forEach(AsyncEventDispatcher::shutdown));
     }
 
     /**
@@ -36,7 +52,12 @@ public class ExecutionHandle {
      * Poll current progress without blocking.
      */
     public ExecutionProgress poll() {
-        return progress.get();
+        return new ExecutionProgress(
+                totalStatements, completedStatements, 0, 0,
+                Collections.emptyList(),
+                Collections.emptyList(),
+                state,
+                currentStatement);
     }
 
     /**
@@ -68,19 +89,201 @@ public class ExecutionHandle {
         listeners.add(listener);
     }
 
+    /**
+     * Add an event listener that is called on its own thread through a
+     * bounded buffer, so it cannot slow the script down (subject to its
+     * {@link EventListener#backpressurePolicy()}). Use the returned
+     * dispatcher to read drop counts or to wait for delivery with
+     * {@link AsyncEventDispatcher#close()}.
+     */
+    public AsyncEventDispatcher addAsyncEventListener(EventListener listener) {
+        return addAsyncEventListener(listener, AsyncEventDispatcher.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Add an asynchronous event listener with the given buffer capacity.
+     */
+    public AsyncEventDispatcher addAsyncEventListener(EventListener listener, int capacity) {
+        AsyncEventDispatcher dispatcher = new AsyncEventDispatcher(listener, capacity);
+        ownedListeners.add(dispatcher);
+        asyncListeners.add(dispatcher);
+        if (future.isDone()) {
+            dispatcher.shutdown();
+        }
+        return dispatcher;
+    }
+
     /**
      * Remove an event listener.
      */
     public void removeEventListener(EventListener listener) {
         listeners.remove(listener);
+        for (AsyncEventDispatcher dispatcher : asyncListeners) {
+            if (dispatcher.getListener() == listener) {
+                asyncListeners.remove(dispatcher);
+                if (ownedListeners.remove(dispatcher)) {
+                    dispatcher.shutdown();
+                }
+            }
+        }
+    }
+
+    /**
+     * Attach a dispatcher owned by someone else, e.g. one shared by every
+     * execution with the same options. It is not shut down with this
+     * execution.
+     */
+    void attachAsyncDispatcher(AsyncEventDispatcher dispatcher) {
+        asyncListeners.add(dispatcher);
     }
 
     // Internal methods for interpreter to update progress
-    void updateProgress(ExecutionProgress newProgress) {
-        progress.set(newProgress);
+    void startProgress(int total) {
+        totalStatements = total;
+        currentStatement = "Starting";
+        state = ExecutionProgress.ExecutionState.RUNNING;
+    }
+
+    void statementProgress(String statement, int completed) {
+        currentStatement = statement;
+        completedStatements = completed;
+    }
+
+    void finishProgress(ExecutionProgress.ExecutionState finalState) {
+        state = finalState;
+    }
+
+    // ========== Event dispatch ==========
+    // Synchronous listeners are called inline with a shared event record;
+    // asynchronous ones receive the raw fields without any allocation.
+    // Every event carries the path of the script this handle runs.
+
+    void fireScriptStart(String scriptPath, int totalStatements) {
+        this.scriptPath = scriptPath;
+        if (!listeners.isEmpty()) {
+            EventListener.ScriptEvent event = new EventListener.ScriptEvent(scriptPath, totalStatements);
+            for (EventListener listener : listeners) {
+                listener.onScriptStart(event);
+            }
+        }
+        if (!asyncListeners.isEmpty()) {
+            for (AsyncEventDispatcher dispatcher : asyncListeners) {
+                dispatcher.scriptStart(scriptPath, totalStatements);
+            }
+        }
+    }
+
+    void fireRequestStart(String method, String url, int line, String endpoint) {
+        String scriptPath = this.scriptPath;
+        if (!listeners.isEmpty()) {
+            EventListener.RequestEvent event = new EventListener.RequestEvent(method, url, 0, 0, false, line,
+                    endpoint, scriptPath);
+            for (EventListener listener : listeners) {
+                listener.onRequestStart(event);
+            }
+        }
+        if (!asyncListeners.isEmpty()) {
+            for (AsyncEventDispatcher dispatcher : asyncListeners) {
+                dispatcher.requestStart(method, url, line, endpoint, scriptPath);
+            }
+        }
+    }
+
+    void fireRequestComplete(String method, String url, int status, long durationMs, boolean success, int line,
+            String endpoint) {
+        String scriptPath = this.scriptPath;
+        if (!listeners.isEmpty()) {
+            EventListener.RequestEvent event = new EventListener.RequestEvent(
+                    method, url, status, durationMs, success, line, endpoint, scriptPath);
+            for (EventListener listener : listeners) {
+                listener.onRequestComplete(event);
+            }
+        }
+        if (!asyncListeners.isEmpty()) {
+            for (AsyncEventDispatcher dispatcher : asyncListeners) {
+                dispatcher.requestComplete(method, url, status, durationMs, success, line, endpoint, scriptPath);
+            }
+        }
+    }
+
+    void fireAssertion(Object expression, boolean passed, String message, int line) {
+        String scriptPath = this.scriptPath;
+        if (!listeners.isEmpty()) {
+            EventListener.AssertionEvent event = new EventListener.AssertionEvent(
+                    expression.toString(), passed, message, line, scriptPath);
+            for (EventListener listener : listeners) {
+                if (passed) {
+                    listener.onAssertionPass(event);
+                } else {
+                    listener.onAssertionFail(event);
+                }
+            }
+        }
+        if (!asyncListeners.isEmpty()) {
+            for (AsyncEventDispatcher dispatcher : asyncListeners) {
+                dispatcher.assertion(expression, passed, message, line, scriptPath);
+            }
+        }
+    }
+
+    void fireWarning(Warning warning) {
+        String scriptPath = this.scriptPath;
+        if (!listeners.isEmpty()) {
+            EventListener.WarningEvent event = new EventListener.WarningEvent(warning, scriptPath);
+            for (EventListener listener : listeners) {
+                listener.onWarning(event);
+            }
+        }
+        if (!asyncListeners.isEmpty()) {
+            for (AsyncEventDispatcher dispatcher : asyncListeners) {
+                dispatcher.warning(warning, scriptPath);
+            }
+        }
+    }
+
+    void fireUserStart(int user) {
+        String scriptPath = this.scriptPath;
+        if (!listeners.isEmpty()) {
+            EventListener.UserEvent event = new EventListener.UserEvent(user, scriptPath);
+            for (EventListener listener : listeners) {
+                listener.onUserStart(event);
+            }
+        }
+        if (!asyncListeners.isEmpty()) {
+            for (AsyncEventDispatcher dispatcher : asyncListeners) {
+                dispatcher.userStart(user, scriptPath);
+            }
+        }
+    }
+
+    void fireUserComplete(int user) {
+        String scriptPath = this.scriptPath;
+        if (!listeners.isEmpty()) {
+            EventListener.UserEvent event = new EventListener.UserEvent(user, scriptPath);
+            for (EventListener listener : listeners) {
+                listener.onUserComplete(event);
+            }
+        }
+        if (!asyncListeners.isEmpty()) {
+            for (AsyncEventDispatcher dispatcher : asyncListeners) {
+                dispatcher.userComplete(user, scriptPath);
+            }
+        }
     }
 
-    CopyOnWriteArrayList<EventListener> getListeners() {
-        return listeners;
+    void fireScriptComplete(boolean success, int passedAssertions, int failedAssertions, long durationMs) {
+        String scriptPath = this.scriptPath;
+        if (!listeners.isEmpty()) {
+            EventListener.CompletionEvent event = new EventListener.CompletionEvent(
+                    success, passedAssertions, failedAssertions, durationMs, scriptPath);
+            for (EventListener listener : listeners) {
+                listener.onScriptComplete(event);
+            }
+        }
+        if (!asyncListeners.isEmpty()) {
+            for (AsyncEventDispatcher dispatcher : asyncListeners) {
+                dispatcher.scriptComplete(success, passedAssertions, failedAssertions, durationMs, scriptPath);
+            }
+        }
     }
 }
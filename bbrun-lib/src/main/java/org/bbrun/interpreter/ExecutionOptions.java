@@ -1,7 +1,16 @@
 package org.bbrun.interpreter;
 
+import org.bbrun.events.AsyncEventDispatcher;
+import org.bbrun.events.BackpressurePolicy;
+import org.bbrun.events.EventListener;
+import org.bbrun.metrics.GeneratorMonitor;
+import org.bbrun.profile.LineProfiler;
+
+import java.io.PrintStream;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -17,7 +26,15 @@ public class ExecutionOptions {
     private Integer rps;
     private Map<String, Object> variables = new HashMap<>();
     private Map<String, String> environment = new HashMap<>();
+    private boolean inheritEnvironment = true;
     private boolean verbose = false;
+    private PrintStream output = System.out;
+    private List<EventListener> listeners = new ArrayList<>();
+    private List<AsyncEventDispatcher> asyncListeners = new ArrayList<>();
+    private LineProfiler profiler;
+    private GeneratorMonitor monitor;
+    private LoadShare share;
+    private boolean retainRequests = true;
 
     public ExecutionOptions() {
     }
@@ -94,6 +111,21 @@ public class ExecutionOptions {
         return this;
     }
 
+    public boolean isInheritEnvironment() {
+        return inheritEnvironment;
+    }
+
+    /**
+     * Whether {@code env()} falls back to this process's environment for
+     * names not set with {@link #env(String, String)} (default: true). Turn
+     * off when the variables set are a whole environment of their own, such
+     * as a daemon client's.
+     */
+    public ExecutionOptions inheritEnvironment(boolean inheritEnvironment) {
+        this.inheritEnvironment = inheritEnvironment;
+        return this;
+    }
+
     public boolean isVerbose() {
         return verbose;
     }
@@ -102,4 +134,113 @@ public class ExecutionOptions {
         this.verbose = verbose;
         return this;
     }
+
+    public PrintStream getOutput() {
+        return output;
+    }
+
+    /**
+     * Stream that {@code print} statements write to (default: stdout).
+     */
+    public ExecutionOptions output(PrintStream output) {
+        this.output = output;
+        return this;
+    }
+
+    public List<EventListener> getListeners() {
+        return listeners;
+    }
+
+    /**
+     * Listener attached to every execution started with these options,
+     * before its first statement runs.
+     */
+    public ExecutionOptions listener(EventListener listener) {
+        this.listeners.add(listener);
+        return this;
+    }
+
+    public List<AsyncEventDispatcher> getAsyncListeners() {
+        return asyncListeners;
+    }
+
+    /**
+     * Listener attached to every execution started with these options and
+     * called on its own thread through a bounded buffer, so it does not add
+     * to request latency. One buffer is shared by all those executions;
+     * events carry their script path to tell them apart. Call
+     * {@link #closeAsyncListeners()} once the executions are done.
+     */
+    public ExecutionOptions asyncListener(EventListener listener, BackpressurePolicy policy) {
+        return asyncListener(listener, policy, AsyncEventDispatcher.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Asynchronous listener with the given buffer capacity.
+     */
+    public ExecutionOptions asyncListener(EventListener listener, BackpressurePolicy policy, int capacity) {
+        this.asyncListeners.add(new AsyncEventDispatcher(listener, policy, capacity));
+        return this;
+    }
+
+    /**
+     * Wait until asynchronous listeners have received everything published
+     * so far, then stop their threads. Later executions with these options
+     * no longer reach them.
+     */
+    public void closeAsyncListeners() {
+        asyncListeners.forEach(AsyncEventDispatcher::close);
+    }
+
+    public LineProfiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * Profile every statement of executions started with these options
+     * (default: none).
+     */
+    public ExecutionOptions profiler(LineProfiler profiler) {
+        this.profiler = profiler;
+        return this;
+    }
+
+    public GeneratorMonitor getMonitor() {
+        return monitor;
+    }
+
+    /**
+     * Monitor told how late paced iterations start (default: none).
+     */
+    public ExecutionOptions monitor(GeneratorMonitor monitor) {
+        this.monitor = monitor;
+        return this;
+    }
+
+    public LoadShare getShare() {
+        return share;
+    }
+
+    /**
+     * Run only this process's part of every parallel block, in step with
+     * the other parts of a distributed run (default: none, run it all).
+     */
+    public ExecutionOptions share(LoadShare share) {
+        this.share = share;
+        return this;
+    }
+
+    public boolean isRetainRequests() {
+        return retainRequests;
+    }
+
+    /**
+     * Whether every request is kept for {@link org.bbrun.ExecutionResult#requests()}
+     * (default: true). Turn off when a listener streams requests elsewhere,
+     * so long runs use constant memory; the result's list is then empty.
+     */
+    public ExecutionOptions retainRequests(boolean retainRequests) {
+        this.retainRequests = retainRequests;
+        return this;
+    }
 }
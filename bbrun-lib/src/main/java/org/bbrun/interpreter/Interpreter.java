@@ -5,7 +5,6 @@ import org.bbrun.RequestMetric;
 import org.bbrun.Warning;
 import org.bbrun.ast.ScriptNode;
 import org.bbrun.ast.StatementNode;
-import org.bbrun.events.EventListener;
 import org.bbrun.spi.HttpClient;
 import org.bbrun.spi.ProviderRegistry;
 
@@ -19,9 +18,21 @@ import java.util.concurrent.ExecutorService;
  */
 public class Interpreter {
 
+    /**
+     * Display name per statement type, e.g. "Request" for RequestNode,
+     * computed once per class rather than per executed statement.
+     */
+    private static final ClassValue<String> STATEMENT_NAMES = new ClassValue<>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+            return type.getSimpleName().replace("Node", "");
+        }
+    };
+
     private final ExecutionOptions options;
     private final ExecutorService executor;
     private final HttpClient httpClient;
+    private final boolean ownsResources;
 
     public Interpreter(ExecutionOptions options) {
         this.options = options;
@@ -30,18 +41,40 @@ public class Interpreter {
         ProviderRegistry registry = ProviderRegistry.getInstance();
         this.executor = registry.createExecutor(options);
         this.httpClient = registry.createHttpClient(options);
+        this.ownsResources = true;
+    }
+
+    /**
+     * Create an interpreter on an executor and HTTP client owned by the
+     * caller, e.g. shared by all scripts of a suite. {@link #shutdown()}
+     * leaves them running.
+     */
+    public Interpreter(ExecutionOptions options, ExecutorService executor, HttpClient httpClient) {
+        this.options = options;
+        this.executor = executor;
+        this.httpClient = httpClient;
+        this.ownsResources = false;
     }
 
     /**
      * Execute script asynchronously.
      */
     public ExecutionHandle executeAsync(ScriptNode script) {
+        return executeAsync(script, new Context(options));
+    }
+
+    /**
+     * Execute script asynchronously, starting from the given context.
+     */
+    public ExecutionHandle executeAsync(ScriptNode script, Context context) {
         CompletableFuture<ExecutionResult> future = new CompletableFuture<>();
         ExecutionHandle handle = new ExecutionHandle(future);
+        options.getListeners().forEach(handle::addEventListener);
+        options.getAsyncListeners().forEach(handle::attachAsyncDispatcher);
 
         executor.submit(() -> {
             try {
-                ExecutionResult result = execute(script, handle);
+                ExecutionResult result = execute(script, handle, context);
                 future.complete(result);
             } catch (Exception e) {
                 future.completeExceptionally(e);
@@ -55,76 +88,88 @@ public class Interpreter {
      * Execute script synchronously.
      */
     public ExecutionResult execute(ScriptNode script, ExecutionHandle handle) {
+        return execute(script, handle, new Context(options));
+    }
+
+    /**
+     * Execute script synchronously in the given context. The context is left
+     * in its final state, so callers can snapshot it afterwards.
+     */
+    public ExecutionResult execute(ScriptNode script, ExecutionHandle handle, Context context) {
         long startTime = System.currentTimeMillis();
 
-        // Create execution context and statement executor
-        Context context = new Context(options);
-        StatementExecutor stmtExecutor = new StatementExecutor(context, httpClient, handle);
+        // Create statement executor
+        StatementExecutor stmtExecutor = new StatementExecutor(context, httpClient, handle, script.path());
 
         // Notify script start
         int totalStatements = script.statements().size();
         if (handle != null) {
-            handle.updateProgress(ExecutionProgress.initial()
-                    .withStatement("Starting", 0, totalStatements));
-
-            for (EventListener listener : handle.getListeners()) {
-                listener.onScriptStart(new EventListener.ScriptEvent(
-                        script.path(), totalStatements));
-            }
+            handle.startProgress(totalStatements);
+            handle.fireScriptStart(script.path(), totalStatements);
         }
 
         // Execute each statement
         int completed = 0;
         boolean failed = false;
 
-        for (StatementNode statement : script.statements()) {
-            // Check for cancellation
-            if (handle != null && handle.isCancelled()) {
-                return buildResult(stmtExecutor, startTime, totalStatements,
-                        new InterruptedException("Execution cancelled"));
-            }
+        try {
+            for (StatementNode statement : script.statements()) {
+                // Check for cancellation
+                if (handle != null && handle.isCancelled()) {
+                    notifyComplete(handle, stmtExecutor, ExecutionProgress.ExecutionState.CANCELLED, startTime);
+                    return buildResult(stmtExecutor, startTime, totalStatements,
+                            new InterruptedException("Execution cancelled"));
+                }
 
-            // Update progress
-            completed++;
-            if (handle != null) {
-                handle.updateProgress(handle.poll()
-                        .withStatement(getStatementName(statement), completed, totalStatements));
-            }
+                // Update progress
+                completed++;
+                if (handle != null) {
+                    handle.statementProgress(statementName(statement), completed);
+                }
 
-            // Execute statement
-            boolean success = stmtExecutor.execute(statement);
-            if (!success) {
-                failed = true;
-                if (options.isFailFast()) {
-                    break;
+                // Execute statement
+                boolean success = stmtExecutor.execute(statement);
+                if (!success) {
+                    failed = true;
+                    if (options.isFailFast()) {
+                        break;
+                    }
                 }
             }
+        } catch (RuntimeException e) {
+            // Listeners still see the script end, e.g. to release a VU slot
+            notifyComplete(handle, stmtExecutor, ExecutionProgress.ExecutionState.FAILED, startTime);
+            throw e;
         }
 
-        long duration = System.currentTimeMillis() - startTime;
-
         // Build result
         ExecutionResult result = buildResult(stmtExecutor, startTime, totalStatements, null);
 
         // Update final state
-        if (handle != null) {
-            handle.updateProgress(handle.poll()
-                    .withState(stmtExecutor.getFailedAssertions() == 0
-                            ? ExecutionProgress.ExecutionState.COMPLETED
-                            : ExecutionProgress.ExecutionState.FAILED));
-
-            for (EventListener listener : handle.getListeners()) {
-                listener.onScriptComplete(new EventListener.CompletionEvent(
-                        stmtExecutor.getFailedAssertions() == 0,
-                        stmtExecutor.getPassedAssertions(),
-                        stmtExecutor.getFailedAssertions(),
-                        duration));
-            }
-        }
+        notifyComplete(handle, stmtExecutor, stmtExecutor.getFailedAssertions() == 0
+                ? ExecutionProgress.ExecutionState.COMPLETED
+                : ExecutionProgress.ExecutionState.FAILED, startTime);
 
         return result;
     }
 
+    static String statementName(StatementNode statement) {
+        return STATEMENT_NAMES.get(statement.getClass());
+    }
+
+    private void notifyComplete(ExecutionHandle handle, StatementExecutor stmtExecutor,
+            ExecutionProgress.ExecutionState state, long startTime) {
+        if (handle == null) {
+            return;
+        }
+        handle.finishProgress(state);
+        handle.fireScriptComplete(
+                state == ExecutionProgress.ExecutionState.COMPLETED,
+                stmtExecutor.getPassedAssertions(),
+                stmtExecutor.getFailedAssertions(),
+                System.currentTimeMillis() - startTime);
+    }
+
     private ExecutionResult buildResult(StatementExecutor executor, long startTime,
             int totalStatements, Exception error) {
         long duration = System.currentTimeMillis() - startTime;
@@ -136,6 +181,7 @@ public class Interpreter {
                     executor.getFailedAssertions(),
                     executor.getWarnings(),
                     executor.getRequests(),
+                    executor.getRequestCount(),
                     duration,
                     error);
         }
@@ -145,13 +191,10 @@ public class Interpreter {
                 executor.getPassedAssertions(),
                 executor.getWarnings(),
                 executor.getRequests(),
+                executor.getRequestCount(),
                 duration);
     }
 
-    private String getStatementName(StatementNode statement) {
-        return statement.getClass().getSimpleName().replace("Node", "");
-    }
-
     /**
      * Get the HTTP client (for direct access if needed).
      */
@@ -160,9 +203,12 @@ public class Interpreter {
     }
 
     /**
-     * Shutdown the interpreter, releasing resources.
+     * Shutdown the interpreter, releasing resources it created.
      */
     public void shutdown() {
+        if (!ownsResources) {
+            return;
+        }
         executor.shutdown();
         httpClient.close();
     }
@@ -0,0 +1,48 @@
+package org.bbrun.interpreter;
+
+import org.bbrun.metrics.SlidingWindow;
+
+/**
+ * This process's part of a load test split across several generators, see
+ * {@link ExecutionOptions#share(LoadShare)}.
+ *
+ * <p>
+ * Every part runs the same script. Each {@code parallel} block runs this
+ * part's share of the users and of the rate, starts when every part has
+ * reached it, stops when any part aborts it, and judges its thresholds and
+ * fills {@code stats} on the figures of all parts combined. Blocks are
+ * matched up by the order they run in; blocks nested in a virtual user run
+ * locally.
+ */
+public interface LoadShare {
+
+    /**
+     * Number of this part, from 0.
+     */
+    int index();
+
+    int count();
+
+    /**
+     * Wait until every part has reached the next parallel block.
+     *
+     * @return the {@link System#nanoTime()} at which all parts start it
+     */
+    long awaitStart();
+
+    /**
+     * Stop the current block on the other parts too.
+     */
+    void abort(String reason);
+
+    /**
+     * Why another part aborted the current block, or null.
+     */
+    String abortedBy();
+
+    /**
+     * Exchange this part's figures of the current block for those of all
+     * parts.
+     */
+    SlidingWindow.Snapshot combine(SlidingWindow.Snapshot local);
+}
@@ -0,0 +1,615 @@
+package org.bbrun.interpreter;
+
+import org.bbrun.BBRunException;
+import org.bbrun.ast.ExpressionNode;
+import org.bbrun.ast.ParallelNode;
+import org.bbrun.ast.StatementNode;
+import org.bbrun.metrics.LatencyHistogram;
+import org.bbrun.metrics.SlidingWindow;
+import org.bbrun.metrics.Threshold;
+import org.bbrun.spi.ProviderRegistry;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A {@code parallel} block: its body run by several virtual users at once,
+ * each on its own copy of the script's variables.
+ *
+ * <pre>
+ * parallel threads: 20, duration: "30m", thresholds: { p95: 200, errorRate: 1 }, abortOnFail: true {
+ *   get #users/${thread}
+ * }
+ * </pre>
+ *
+ * <p>
+ * Options are {@code threads} (default 1), {@code iterations} per user and
+ * {@code duration} (a number of seconds or a string such as {@code "30s"});
+ * without either, every user runs the body once. {@code rate} caps how many
+ * iterations start per second across all users, {@code limit} how many
+ * requests (see {@link TokenBucket}). The defaults of
+ * {@code threads}, {@code duration} and {@code rate} come from
+ * {@link ExecutionOptions}.
+ *
+ * <p>
+ * {@code thresholds} (see {@link Threshold}) are checked while the block
+ * runs, over a sliding {@code window} of the latest requests (default 10
+ * seconds) once the block has run that long, and once more over the whole
+ * block at the end. With {@code abortOnFail: true}, the first breach stops
+ * every user: they finish the statement in progress, and any still running
+ * {@link #ABORT_GRACE} later are interrupted.
+ *
+ * <p>
+ * {@code capacity: { min: 10, max: 5000, hold: "30s", resolution: 5 }}
+ * searches for the highest rate that meets the thresholds instead. After
+ * one unjudged {@code window} at {@code min} to warm up connections, each
+ * step holds a rate for {@code hold}, ending early on a breach, and is
+ * judged on its last {@code window}. The rate doubles from {@code min}
+ * until a step fails or {@code max} is reached, then the gap between the
+ * last passing and the first failing rate is halved until it is within
+ * {@code resolution} percent. A step also fails when the users reach less
+ * than {@link #MIN_ACHIEVED_RATE} of its rate, so
+ * {@code threads} must be enough to sustain the rates searched.
+ *
+ * <p>
+ * Failed requests and assertions inside the body do not stop a user; they
+ * count towards the error rate and the script's assertions. Afterwards
+ * {@code stats} holds the block's figures, e.g.
+ * {@code assert stats.latency.p95 < 200}; after a search, those of the best
+ * step, with every step and its histogram in {@code stats.capacity}.
+ *
+ * <p>
+ * With a {@link LoadShare}, this process runs its part of the users and
+ * the rate, in step with the other parts; see there.
+ */
+final class ParallelExecution {
+
+    static final Duration DEFAULT_WINDOW = Duration.ofSeconds(10);
+    static final Duration CHECK_INTERVAL = Duration.ofMillis(250);
+    static final Duration ABORT_GRACE = Duration.ofSeconds(5);
+
+    /**
+     * Requests a window needs before thresholds are checked on it, so a
+     * quiet stretch is not judged on a handful of requests.
+     */
+    static final int MIN_WINDOW_REQUESTS = 20;
+
+    /**
+     * Share of a step's rate that must actually be reached for it to pass.
+     */
+    static final double MIN_ACHIEVED_RATE = 0.9;
+
+    static final int MAX_SEARCH_STEPS = 40;
+
+    private static final Pattern DURATION = Pattern.compile("(\\d+)(ms|s|m|h)");
+
+    /**
+     * Creates the executor of a virtual user from its number, the window to
+     * record requests into, the flag that stops it, the
+     * {@link System#nanoTime()} its block ends at ({@link Long#MAX_VALUE} if
+     * none) and the block's request limit, if any.
+     */
+    interface UserFactory {
+        StatementExecutor create(int user, SlidingWindow window, AtomicBoolean stop, long deadline,
+                TokenBucket limit);
+    }
+
+    /**
+     * A threshold exceeded over a window, with the value measured.
+     */
+    record Breach(Threshold threshold, double value, SlidingWindow.Snapshot window, boolean wholeBlock) {
+        String message(boolean aborted) {
+            String where = wholeBlock
+                    ? "over the whole block"
+                    : String.format(Locale.ROOT, "in the window +%.1fs..+%.1fs", window.fromNanos() / 1e9,
+                            window.toNanos() / 1e9);
+            return "Threshold " + threshold + " breached: " + Threshold.format(value) + threshold.unit() + " "
+                    + where + " (" + window.requests() + " requests)" + (aborted ? ", load test aborted" : "");
+        }
+    }
+
+    /**
+     * One run of the users; {@code rate} is null when not paced.
+     */
+    record Step(Double rate, double achievedRate, SlidingWindow.Snapshot total, Breach breach, boolean aborted) {
+        boolean saturated() {
+            return rate != null && achievedRate < rate * MIN_ACHIEVED_RATE;
+        }
+
+        boolean passed() {
+            return breach == null && !saturated();
+        }
+
+        /**
+         * Why the step failed, in a few words.
+         */
+        String reason() {
+            if (breach != null) {
+                return breach.threshold().metric() + " " + Threshold.format(breach.value())
+                        + breach.threshold().unit();
+            }
+            return saturated() ? "reached " + Threshold.format(achievedRate) + "/s" : "pass";
+        }
+    }
+
+    private record Capacity(double min, double max, Duration hold, double resolutionPercent) {
+    }
+
+    private final ParallelNode node;
+    private final ExecutionOptions options;
+    private final LoadShare share;
+    private int threads;
+    private int firstUser;
+    private long iterations = -1;
+    private Duration duration;
+    private Double rate;
+    private Double limit;
+    private List<Threshold> thresholds = List.of();
+    private Duration window = DEFAULT_WINDOW;
+    private boolean abortOnFail;
+    private Capacity capacity;
+
+    private final List<StatementExecutor> finished = new ArrayList<>();
+    private final List<Step> steps = new ArrayList<>();
+    private Step result;
+    private String failure;
+    private volatile BBRunException firstError;
+
+    ParallelExecution(ParallelNode node, Function<ExpressionNode, Object> evaluator, ExecutionOptions options,
+            LoadShare share) {
+        this.node = node;
+        this.options = options;
+        this.share = share;
+        this.threads = options.getThreads();
+        this.duration = options.getDuration();
+        this.rate = options.getRps() != null ? options.getRps().doubleValue() : null;
+        for (Map.Entry<String, ExpressionNode> option : node.options().entrySet()) {
+            String name = option.getKey();
+            Object value = evaluator.apply(option.getValue());
+            switch (name) {
+                case "threads" -> threads = (int) positive(name, value);
+                case "iterations" -> iterations = positive(name, value);
+                case "duration" -> duration = duration(name, value);
+                case "rate" -> rate = positiveRate(name, value);
+                case "limit" -> limit = positiveRate(name, value);
+                case "thresholds" -> thresholds = Threshold.parse(value);
+                case "window" -> window = duration(name, value);
+                case "abortOnFail" -> abortOnFail = Boolean.TRUE.equals(value);
+                case "capacity" -> capacity = capacity(value);
+                default -> throw new BBRunException("Unknown parallel option " + name + ", expected threads, "
+                        + "iterations, duration, rate, limit, thresholds, window, abortOnFail or capacity");
+            }
+        }
+        if (iterations < 0) {
+            iterations = duration != null ? Long.MAX_VALUE : 1;
+        }
+        if (capacity != null && thresholds.isEmpty()) {
+            throw new BBRunException("parallel capacity search needs thresholds to search against");
+        }
+        if (share != null) {
+            if (capacity != null) {
+                throw new BBRunException("parallel capacity search runs on a single generator, not across workers");
+            }
+            // Users are numbered across all parts; the first parts take any remainder
+            int parts = share.count();
+            for (int part = 0; part < share.index(); part++) {
+                firstUser += threads / parts + (part < threads % parts ? 1 : 0);
+            }
+            threads = threads / parts + (share.index() < threads % parts ? 1 : 0);
+            if (rate != null) {
+                rate = rate / parts;
+            }
+            if (limit != null) {
+                limit = limit / parts;
+            }
+        }
+    }
+
+    /**
+     * Run the block to completion, checking thresholds as it goes.
+     */
+    void run(UserFactory factory, ExecutionHandle handle) {
+        if (capacity != null) {
+            search(factory, handle);
+        } else if (share != null) {
+            awaitStart();
+            result = combine(runStep(factory, handle, rate, duration, iterations, abortOnFail, true));
+            steps.add(result);
+            if (result.breach() != null) {
+                failure = result.breach().message(result.aborted());
+            } else if (result.aborted()) {
+                failure = share.abortedBy();
+            }
+        } else {
+            result = runStep(factory, handle, rate, duration, iterations, abortOnFail, true);
+            steps.add(result);
+            if (result.breach() != null) {
+                failure = result.breach().message(result.aborted());
+            }
+        }
+        if (firstError != null && steps.stream().allMatch(step -> step.total().requests() == 0)) {
+            // Nothing was measured, most likely a mistake in the body itself
+            throw firstError;
+        }
+    }
+
+    /**
+     * Run the users once; without {@code judged}, thresholds are not
+     * checked.
+     */
+    private Step runStep(UserFactory factory, ExecutionHandle handle, Double stepRate, Duration length,
+            long maxIterations, boolean abortOnBreach, boolean judged) {
+        SlidingWindow recent = new SlidingWindow(window);
+        AtomicBoolean stop = new AtomicBoolean();
+        RatePacer pacer = stepRate != null ? new RatePacer(stepRate, options.getMonitor()) : null;
+        TokenBucket requests = limit != null ? new TokenBucket(limit) : null;
+        LongAdder started = new LongAdder();
+        long start = System.nanoTime();
+        long deadline = length != null ? start + length.toNanos() : Long.MAX_VALUE;
+
+        ExecutorService pool = ProviderRegistry.getInstance().createExecutor(options);
+        List<StatementExecutor> users = new ArrayList<>(threads);
+        List<Future<?>> futures = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            int number = firstUser + i;
+            StatementExecutor user = factory.create(number, recent, stop, deadline, requests);
+            users.add(user);
+            futures.add(pool.submit(() -> runUser(number, user, handle, stop, deadline, maxIterations, pacer,
+                    started)));
+        }
+        pool.shutdown();
+
+        Breach breach = null;
+        boolean aborted = false;
+        long stoppedAt = 0;
+        try {
+            while (!pool.awaitTermination(CHECK_INTERVAL.toNanos(), TimeUnit.NANOSECONDS)) {
+                // Windows are judged once full, so warm-up alone cannot fail the run
+                boolean full = System.nanoTime() - start >= window.toNanos();
+                if (breach == null && full && judged && !thresholds.isEmpty()) {
+                    breach = check(recent.window(), false);
+                    if (breach != null && abortOnBreach) {
+                        aborted = true;
+                        stop.set(true);
+                        if (share != null) {
+                            share.abort(breach.message(true));
+                        }
+                    }
+                }
+                if (share != null && !stop.get() && share.abortedBy() != null) {
+                    aborted = true;
+                    stop.set(true);
+                }
+                if (handle != null && handle.isCancelled()) {
+                    stop.set(true);
+                }
+                if (stop.get()) {
+                    if (stoppedAt == 0) {
+                        stoppedAt = System.nanoTime();
+                    } else if (System.nanoTime() - stoppedAt > ABORT_GRACE.toNanos()) {
+                        // Users stuck in a request are left behind rather than waited for
+                        pool.shutdownNow();
+                        break;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            stop.set(true);
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new BBRunException("Interrupted while running parallel block", e);
+        }
+
+        for (int i = 0; i < users.size(); i++) {
+            if (futures.get(i).isDone()) {
+                finished.add(users.get(i));
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        SlidingWindow.Snapshot total = recent.total();
+        if (breach == null && judged && !thresholds.isEmpty()) {
+            // Search steps are judged on their settled end, not their start
+            SlidingWindow.Snapshot settled = recent.window();
+            breach = capacity != null && settled.requests() >= MIN_WINDOW_REQUESTS
+                    ? check(settled, false)
+                    : check(total, true);
+        }
+        return new Step(stepRate, elapsed == 0 ? 0 : started.sum() * 1e9 / elapsed, total, breach, aborted);
+    }
+
+    private void runUser(int number, StatementExecutor user, ExecutionHandle handle, AtomicBoolean stop,
+            long deadline, long maxIterations, RatePacer pacer, LongAdder started) {
+        if (handle == null) {
+            iterate(user, stop, deadline, maxIterations, pacer, started);
+            return;
+        }
+        handle.fireUserStart(number);
+        try {
+            iterate(user, stop, deadline, maxIterations, pacer, started);
+        } finally {
+            handle.fireUserComplete(number);
+        }
+    }
+
+    private void iterate(StatementExecutor user, AtomicBoolean stop, long deadline, long maxIterations,
+            RatePacer pacer, LongAdder started) {
+        for (long i = 0; i < maxIterations && !stop.get() && System.nanoTime() < deadline; i++) {
+            if (pacer != null && !pacer.acquire(deadline, stop)) {
+                break;
+            }
+            started.increment();
+            user.setIteration(i);
+            try {
+                for (StatementNode statement : node.body()) {
+                    if (!user.execute(statement)) {
+                        break;
+                    }
+                }
+            } catch (BBRunException e) {
+                if (firstError == null) {
+                    firstError = e;
+                }
+            }
+        }
+    }
+
+    private Breach check(SlidingWindow.Snapshot snapshot, boolean wholeBlock) {
+        if (snapshot.requests() == 0 || !wholeBlock && snapshot.requests() < MIN_WINDOW_REQUESTS) {
+            return null;
+        }
+        for (Threshold threshold : thresholds) {
+            double value = threshold.measure(snapshot);
+            if (threshold.isBreachedBy(value)) {
+                return new Breach(threshold, value, snapshot, wholeBlock);
+            }
+        }
+        return null;
+    }
+
+    // ========== Distribution ==========
+
+    private void awaitStart() {
+        long startAt = share.awaitStart();
+        long wait;
+        while ((wait = startAt - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(wait);
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                throw new BBRunException("Interrupted while waiting for the other workers");
+            }
+        }
+    }
+
+    /**
+     * This part's step with the figures of all parts; the whole block is
+     * judged on them, a breach in this part's own window stands.
+     */
+    private Step combine(Step local) {
+        SlidingWindow.Snapshot total = share.combine(local.total());
+        Breach breach = local.breach();
+        if ((breach == null || breach.wholeBlock()) && !thresholds.isEmpty()) {
+            breach = check(total, true);
+        }
+        return new Step(local.rate(), local.achievedRate(), total, breach, local.aborted());
+    }
+
+    // ========== Capacity search ==========
+
+    private void search(UserFactory factory, ExecutionHandle handle) {
+        PrintStream out = options.getOutput();
+        out.println("Capacity search from " + Threshold.format(capacity.min()) + "/s to "
+                + Threshold.format(capacity.max()) + "/s, " + capacity.hold().toSeconds() + "s per step, "
+                + "thresholds " + thresholdsText());
+        out.println(String.format(Locale.ROOT, "%10s %11s %9s %7s %9s %9s %9s  %s", "target/s", "achieved/s",
+                "requests", "err %", "p50 ms", "p95 ms", "p99 ms", "result"));
+
+        // Connections and JIT warm up first, so they do not count against the lowest rate
+        runStep(factory, handle, capacity.min(), window.compareTo(capacity.hold()) < 0 ? window : capacity.hold(),
+                Long.MAX_VALUE, false, false);
+
+        Step best = null;
+        double passing = 0;
+        double failing = 0;
+
+        // Double the rate until a step fails or the upper bound passes
+        double next = capacity.min();
+        while (failing == 0 && steps.size() < MAX_SEARCH_STEPS && !cancelled(handle)) {
+            Step step = searchStep(factory, handle, next, out);
+            if (step.passed()) {
+                best = step;
+                passing = next;
+                if (next >= capacity.max()) {
+                    break;
+                }
+                next = Math.min(next * 2, capacity.max());
+            } else {
+                failing = next;
+            }
+        }
+
+        // Then halve the gap around the knee
+        while (best != null && failing > 0 && failing - passing > passing * capacity.resolutionPercent() / 100
+                && steps.size() < MAX_SEARCH_STEPS && !cancelled(handle)) {
+            double middle = (passing + failing) / 2;
+            Step step = searchStep(factory, handle, middle, out);
+            if (step.passed()) {
+                best = step;
+                passing = middle;
+            } else {
+                failing = middle;
+            }
+        }
+
+        if (best != null) {
+            result = best;
+            out.println("Highest rate meeting the thresholds: " + Threshold.format(passing) + "/s");
+        } else {
+            result = steps.get(0);
+            failure = "Capacity search: no rate met the thresholds, " + Threshold.format(capacity.min())
+                    + "/s failed with " + result.reason();
+            out.println(failure);
+        }
+    }
+
+    private Step searchStep(UserFactory factory, ExecutionHandle handle, double stepRate, PrintStream out) {
+        Step step = runStep(factory, handle, stepRate, capacity.hold(), Long.MAX_VALUE, true, true);
+        steps.add(step);
+        LatencyHistogram latency = step.total().latency();
+        out.println(String.format(Locale.ROOT, "%10s %11.1f %9d %7.2f %9.2f %9.2f %9.2f  %s",
+                Threshold.format(stepRate), step.achievedRate(), step.total().requests(),
+                step.total().errorRatePercent(), latency.valueAtPercentile(50) / 1e6,
+                latency.valueAtPercentile(95) / 1e6, latency.valueAtPercentile(99) / 1e6, step.reason()));
+        return step;
+    }
+
+    private static boolean cancelled(ExecutionHandle handle) {
+        return handle != null && handle.isCancelled();
+    }
+
+    // ========== Results ==========
+
+    /**
+     * Executors of the users that ended, to collect their assertions and
+     * requests from.
+     */
+    List<StatementExecutor> finishedUsers() {
+        return finished;
+    }
+
+    List<Threshold> thresholds() {
+        return thresholds;
+    }
+
+    /**
+     * Why the block failed, or null if it met its thresholds.
+     */
+    String failure() {
+        return failure;
+    }
+
+    private String thresholdsText() {
+        List<String> limits = new ArrayList<>();
+        thresholds.forEach(threshold -> limits.add(threshold.toString()));
+        return String.join(", ", limits);
+    }
+
+    /**
+     * The {@code stats} object: request counts, throughput and latency in
+     * milliseconds of the block, or of the best step of a search.
+     */
+    Map<String, Object> stats() {
+        Map<String, Object> stats = stats(result);
+        stats.put("aborted", result.aborted() && capacity == null);
+        if (capacity != null) {
+            List<Object> entries = new ArrayList<>();
+            for (Step step : steps) {
+                Map<String, Object> entry = stats(step);
+                entry.put("rate", step.rate());
+                entry.put("achievedRate", step.achievedRate());
+                entry.put("passed", step.passed());
+                List<Object> histogram = new ArrayList<>();
+                step.total().latency().forEachBucket((value, count) -> histogram.add(List.of(value / 1e6, count)));
+                entry.put("histogram", histogram);
+                entries.add(entry);
+            }
+            Map<String, Object> search = new LinkedHashMap<>();
+            search.put("rate", result.passed() ? result.rate() : 0.0);
+            search.put("steps", entries);
+            stats.put("capacity", search);
+        }
+        return stats;
+    }
+
+    private static Map<String, Object> stats(Step step) {
+        SlidingWindow.Snapshot total = step.total();
+        LatencyHistogram latency = total.latency();
+        Map<String, Object> percentiles = new LinkedHashMap<>();
+        percentiles.put("p50", latency.valueAtPercentile(50) / 1e6);
+        percentiles.put("p90", latency.valueAtPercentile(90) / 1e6);
+        percentiles.put("p95", latency.valueAtPercentile(95) / 1e6);
+        percentiles.put("p99", latency.valueAtPercentile(99) / 1e6);
+        percentiles.put("max", latency.max() / 1e6);
+        percentiles.put("mean", latency.mean() / 1e6);
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("requests", total.requests());
+        stats.put("errors", total.errors());
+        stats.put("errorRate", total.errorRatePercent());
+        stats.put("durationMs", total.toNanos() / 1_000_000);
+        stats.put("rps", total.toNanos() == 0 ? 0.0 : total.requests() * 1e9 / total.toNanos());
+        stats.put("latency", percentiles);
+        return stats;
+    }
+
+    // ========== Options ==========
+
+    private static long positive(String name, Object value) {
+        if (!(value instanceof Number number) || number.longValue() < 1) {
+            throw new BBRunException("parallel " + name + " must be a positive number");
+        }
+        return number.longValue();
+    }
+
+    private static double positiveRate(String name, Object value) {
+        if (!(value instanceof Number number) || !(number.doubleValue() > 0)) {
+            throw new BBRunException("parallel " + name + " must be a positive number per second");
+        }
+        return number.doubleValue();
+    }
+
+    private static Capacity capacity(Object value) {
+        if (!(value instanceof Map<?, ?> map)) {
+            throw new BBRunException("capacity must be an object, e.g. { min: 10, max: 5000, hold: \"30s\" }");
+        }
+        double min = 10;
+        double max = 100_000;
+        Duration hold = Duration.ofSeconds(30);
+        double resolution = 5;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            String name = "capacity " + entry.getKey();
+            switch (String.valueOf(entry.getKey())) {
+                case "min" -> min = positiveRate(name, entry.getValue());
+                case "max" -> max = positiveRate(name, entry.getValue());
+                case "hold" -> hold = duration(name, entry.getValue());
+                case "resolution" -> resolution = positiveRate(name, entry.getValue());
+                default -> throw new BBRunException("Unknown capacity option " + entry.getKey()
+                        + ", expected min, max, hold or resolution");
+            }
+        }
+        if (max < min) {
+            throw new BBRunException("capacity max must not be below min");
+        }
+        return new Capacity(min, max, hold, resolution);
+    }
+
+    private static Duration duration(String name, Object value) {
+        if (value instanceof Number number && number.doubleValue() > 0) {
+            return Duration.ofMillis(Math.round(number.doubleValue() * 1000));
+        }
+        Matcher matcher = value instanceof String text ? DURATION.matcher(text.trim()) : null;
+        if (matcher == null || !matcher.matches() || Long.parseLong(matcher.group(1)) == 0) {
+            throw new BBRunException("parallel " + name + " must be seconds or a duration such as \"30s\"");
+        }
+        long amount = Long.parseLong(matcher.group(1));
+        return switch (matcher.group(2)) {
+            case "ms" -> Duration.ofMillis(amount);
+            case "s" -> Duration.ofSeconds(amount);
+            case "m" -> Duration.ofMinutes(amount);
+            default -> Duration.ofHours(amount);
+        };
+    }
+}
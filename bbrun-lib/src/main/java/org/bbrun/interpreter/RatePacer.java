@@ -0,0 +1,73 @@
+package org.bbrun.interpreter;
+
+import org.bbrun.metrics.GeneratorMonitor;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Spaces out the iterations of a parallel block's users to a target rate
+ * across all of them.
+ *
+ * <p>
+ * Each start claims the next free slot on a shared timeline and waits for
+ * it. Slots are never handed out in the past, so users that fall behind
+ * lower the rate achieved instead of bursting to catch up; compare
+ * {@link #started()} with the target to see whether it was sustained.
+ * How late each start is against the slot that was due, whether no user was
+ * free in time or the wakeup itself was late, goes to the monitor, if any.
+ */
+final class RatePacer {
+
+    // Longest single wait, so a stop is noticed quickly
+    private static final long MAX_PARK_NANOS = 50_000_000;
+
+    private final long intervalNanos;
+    private final AtomicLong next = new AtomicLong(System.nanoTime());
+    private final AtomicLong started = new AtomicLong();
+    private final GeneratorMonitor monitor;
+
+    RatePacer(double perSecond, GeneratorMonitor monitor) {
+        this.intervalNanos = Math.max(1, Math.round(1e9 / perSecond));
+        this.monitor = monitor;
+    }
+
+    /**
+     * Wait for the next slot.
+     *
+     * @return false if the slot is past the deadline or the stop flag was
+     *         raised while waiting
+     */
+    boolean acquire(long deadline, AtomicBoolean stop) {
+        long slot;
+        long claimed;
+        do {
+            claimed = next.get();
+            slot = Math.max(claimed, System.nanoTime());
+        } while (!next.compareAndSet(claimed, slot + intervalNanos));
+
+        if (slot - deadline > 0) {
+            return false;
+        }
+        long wait;
+        while ((wait = slot - System.nanoTime()) > 0) {
+            if (stop.get()) {
+                return false;
+            }
+            LockSupport.parkNanos(Math.min(wait, MAX_PARK_NANOS));
+        }
+        if (monitor != null) {
+            monitor.recordScheduleLag(System.nanoTime() - claimed);
+        }
+        started.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Iterations let through so far.
+     */
+    long started() {
+        return started.get();
+    }
+}
@@ -0,0 +1,24 @@
+package org.bbrun.interpreter;
+
+import java.util.List;
+
+/**
+ * A value with members and methods of its own, provided to scripts through
+ * {@link ExecutionOptions#variable(String, Object)}.
+ */
+public interface ScriptObject {
+
+    /**
+     * Value of {@code object.name}, or null if there is none.
+     */
+    default Object member(String name) {
+        return null;
+    }
+
+    /**
+     * Result of {@code object.name(arguments)}, with the arguments already
+     * evaluated. Throw {@link org.bbrun.BBRunException} for unknown methods
+     * or bad arguments.
+     */
+    Object call(String name, List<Object> arguments);
+}
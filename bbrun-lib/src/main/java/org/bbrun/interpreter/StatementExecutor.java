@@ -3,17 +3,31 @@ package org.bbrun.interpreter;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonElement;
-import com.google.gson.JsonParser;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonSerializationContext;
+import com.google.gson.JsonSerializer;
+import com.google.gson.ToNumberPolicy;
 import org.bbrun.BBRunException;
 import org.bbrun.RequestMetric;
 import org.bbrun.Warning;
 import org.bbrun.ast.*;
-import org.bbrun.events.EventListener;
+import org.bbrun.jfr.AssertionEvent;
+import org.bbrun.jfr.Jfr;
+import org.bbrun.jfr.JsonParseEvent;
+import org.bbrun.jfr.RequestEvent;
+import org.bbrun.jfr.StatementEvent;
+import org.bbrun.metrics.SlidingWindow;
+import org.bbrun.profile.LineProfiler;
 import org.bbrun.spi.HttpClient;
 import org.bbrun.spi.HttpClient.HttpRequest;
 import org.bbrun.spi.HttpClient.HttpResponse;
 
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 import java.util.regex.Pattern;
 
 /**
@@ -21,20 +35,65 @@ import java.util.regex.Pattern;
  */
 public class StatementExecutor {
 
+    private static final Map<String, String> DEFAULT_HEADERS = Map.of(
+            "Content-Type", "application/json",
+            "Accept", "application/json");
+
+    // Longest single wait of pace, think and limit, so a stop is noticed quickly
+    private static final long MAX_PARK_NANOS = 50_000_000;
+
     private final Context context;
     private final HttpClient httpClient;
     private final ExecutionHandle handle;
-    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    private final String scriptPath;
+    private LineProfiler.Recorder profile;
+    // Shared so type adapters are built once, not per script run
+    private static final Gson GSON = new GsonBuilder()
+            .setPrettyPrinting()
+            .setObjectToNumberStrategy(ToNumberPolicy.LONG_OR_DOUBLE)
+            .registerTypeAdapter(ResponseObject.class, new ResponseSerializer())
+            .create();
 
     private final List<Warning> warnings = new ArrayList<>();
     private final List<RequestMetric> requests = new ArrayList<>();
+    private long requestCount;
     private int passedAssertions = 0;
     private int failedAssertions = 0;
 
+    // Set on the virtual users of a parallel block
+    private SlidingWindow window;
+    private AtomicBoolean stop;
+    private long deadline = Long.MAX_VALUE;
+    private TokenBucket blockLimit;
+
+    // Start of the current iteration, which pace measures from
+    private long iterationStart = System.nanoTime();
+
+    // Buckets of limit statements and clauses, looked up once per user
+    private final Map<StatementNode, TokenBucket> limits = new IdentityHashMap<>();
+
+    // Rendered URLs of expression-free paths, valid for constantUrlsBase
+    private final Map<PathNode, String> constantUrls = new IdentityHashMap<>();
+    private String constantUrlsBase;
+
+    // Scratch operands for the typed numeric path, used as a stack
+    private Operand[] operands = new Operand[8];
+    private int operandTop = 0;
+
     public StatementExecutor(Context context, HttpClient httpClient, ExecutionHandle handle) {
+        this(context, httpClient, handle, null);
+    }
+
+    /**
+     * @param scriptPath path of the script being run, reported in JFR events
+     */
+    public StatementExecutor(Context context, HttpClient httpClient, ExecutionHandle handle, String scriptPath) {
         this.context = context;
         this.httpClient = httpClient;
         this.handle = handle;
+        this.scriptPath = scriptPath;
+        LineProfiler profiler = context.getOptions().getProfiler();
+        this.profile = profiler != null ? profiler.recorder(scriptPath) : null;
     }
 
     /**
@@ -43,6 +102,42 @@ public class StatementExecutor {
      * @return false if execution should stop (failed assertion with failFast)
      */
     public boolean execute(StatementNode statement) {
+        if (stop != null && stop.get()) {
+            return false;
+        }
+        if (profile == null) {
+            return trace(statement);
+        }
+        profile.enter(statement, Interpreter.statementName(statement));
+        try {
+            return trace(statement);
+        } finally {
+            profile.exit();
+        }
+    }
+
+    /**
+     * Execute a statement inside a JFR event when recording.
+     */
+    private boolean trace(StatementNode statement) {
+        if (!Jfr.isActive()) {
+            return dispatch(statement);
+        }
+        StatementEvent event = new StatementEvent();
+        event.begin();
+        try {
+            return dispatch(statement);
+        } finally {
+            if (event.shouldCommit()) {
+                event.scriptPath = scriptPath;
+                event.line = statement.line();
+                event.statement = Interpreter.statementName(statement);
+                event.commit();
+            }
+        }
+    }
+
+    private boolean dispatch(StatementNode statement) {
         try {
             if (statement instanceof BaseUrlNode n) {
                 return executeBaseUrl(n);
@@ -60,6 +155,14 @@ public class StatementExecutor {
                 return executeIf(n);
             } else if (statement instanceof RepeatNode n) {
                 return executeRepeat(n);
+            } else if (statement instanceof ParallelNode n) {
+                return executeParallel(n);
+            } else if (statement instanceof LimitNode n) {
+                return executeLimit(n);
+            } else if (statement instanceof PaceNode n) {
+                return executePace(n);
+            } else if (statement instanceof ThinkNode n) {
+                return executeThink(n);
             } else {
                 return true; // Unknown statement types are no-ops for now
             }
@@ -87,55 +190,86 @@ public class StatementExecutor {
     }
 
     private boolean executeRequest(RequestNode node) {
+        if (!throttle(node)) {
+            return false;
+        }
         String method = node.method();
         String url = buildUrl(node.path());
+        String endpoint = node.path().endpoint();
 
-        // Build headers
-        Map<String, String> headers = new HashMap<>();
-        headers.put("Content-Type", "application/json");
-        headers.put("Accept", "application/json");
-
-        // Apply auth
-        applyAuth(headers, node.authClause());
+        // Build headers; the shared defaults are used as-is unless auth adds to them
+        Map<String, String> headers = DEFAULT_HEADERS;
+        Context.AuthState auth = resolveAuth(node.authClause());
+        if (auth != null) {
+            headers = new HashMap<>(DEFAULT_HEADERS);
+            auth.apply(headers);
+        }
 
         // Build body
         byte[] body = null;
         if (node.body() != null) {
             Object bodyValue = evaluate(node.body());
-            body = gson.toJson(bodyValue).getBytes();
+            long start = profile != null ? System.nanoTime() : 0;
+            body = GSON.toJson(bodyValue).getBytes();
+            if (profile != null) {
+                profile.json(System.nanoTime() - start);
+            }
         }
 
         // Notify request start
         if (handle != null) {
-            for (EventListener listener : handle.getListeners()) {
-                listener.onRequestStart(new EventListener.RequestEvent(
-                        method, url, 0, 0, false, node.line()));
-            }
+            handle.fireRequestStart(method, url, node.line(), endpoint);
         }
 
         // Execute request
         HttpRequest request = new HttpRequest(method, url, headers, body);
-        HttpResponse response = httpClient.execute(request);
+        HttpResponse response;
+        RequestEvent event = null;
+        if (Jfr.isActive()) {
+            event = new RequestEvent();
+            event.begin();
+        }
+        long start = System.currentTimeMillis();
+        long startNanos = profile != null ? System.nanoTime() : 0;
+        try {
+            response = httpClient.execute(request);
+        } catch (RuntimeException e) {
+            // Report transport failures as status 0 so every start has a completion
+            long elapsed = System.currentTimeMillis() - start;
+            if (window != null) {
+                window.record(elapsed * 1_000_000, false);
+            }
+            if (handle != null) {
+                handle.fireRequestComplete(method, url, 0, elapsed, false, node.line(), endpoint);
+            }
+            commitRequestEvent(event, node, method, url, endpoint, 0, 0);
+            throw e;
+        } finally {
+            if (profile != null) {
+                profile.network(System.nanoTime() - startNanos);
+            }
+        }
+        commitRequestEvent(event, node, method, url, endpoint, response.status(),
+                response.body() != null ? response.body().length : 0);
 
-        // Store response in context
-        ResponseObject responseObj = new ResponseObject(
-                response.status(),
-                response.headers(),
-                parseJson(response.bodyAsString()),
-                response.durationMs());
-        context.setVariable("response", responseObj);
+        // Store response in context; the body is parsed when first read
+        context.setVariable("response", new ResponseObject(response, scriptPath, node.line(), profile));
 
         // Track request metric
         boolean success = response.isSuccess();
-        RequestMetric metric = new RequestMetric(method, url, response.status(), response.durationMs(), success);
-        requests.add(metric);
+        requestCount++;
+        if (window != null) {
+            window.record(response.durationMs() * 1_000_000, success);
+        }
+        if (context.getOptions().isRetainRequests()) {
+            requests.add(new RequestMetric(method, url, response.status(), response.durationMs(), success,
+                    endpoint));
+        }
 
         // Notify request complete
         if (handle != null) {
-            for (EventListener listener : handle.getListeners()) {
-                listener.onRequestComplete(new EventListener.RequestEvent(
-                        method, url, response.status(), response.durationMs(), success, node.line()));
-            }
+            handle.fireRequestComplete(method, url, response.status(), response.durationMs(), success,
+                    node.line(), endpoint);
         }
 
         // Auto-fail on non-2xx (unless inside expect block)
@@ -146,26 +280,46 @@ public class StatementExecutor {
         return true;
     }
 
+    private void commitRequestEvent(RequestEvent event, RequestNode node, String method, String url,
+            String endpoint, int status, long responseBytes) {
+        if (event != null && event.shouldCommit()) {
+            event.scriptPath = scriptPath;
+            event.line = node.line();
+            event.method = method;
+            event.url = url;
+            event.endpoint = endpoint;
+            event.status = status;
+            event.responseBytes = responseBytes;
+            event.commit();
+        }
+    }
+
     private boolean executeAssert(AssertNode node) {
+        AssertionEvent event = null;
+        if (Jfr.isActive()) {
+            event = new AssertionEvent();
+            event.begin();
+        }
         Object result = evaluate(node.condition());
         boolean passed = isTruthy(result);
+        if (event != null && event.shouldCommit()) {
+            event.scriptPath = scriptPath;
+            event.line = node.line();
+            event.expression = node.condition().toString();
+            event.passed = passed;
+            event.commit();
+        }
 
         if (passed) {
             passedAssertions++;
             if (handle != null) {
-                for (EventListener listener : handle.getListeners()) {
-                    listener.onAssertionPass(new EventListener.AssertionEvent(
-                            node.condition().toString(), true, node.message(), node.line()));
-                }
+                handle.fireAssertion(node.condition(), true, node.message(), node.line());
             }
         } else {
             failedAssertions++;
             String message = node.message() != null ? node.message() : "Assertion failed";
             if (handle != null) {
-                for (EventListener listener : handle.getListeners()) {
-                    listener.onAssertionFail(new EventListener.AssertionEvent(
-                            node.condition().toString(), false, message, node.line()));
-                }
+                handle.fireAssertion(node.condition(), false, message, node.line());
             }
             if (context.getOptions().isFailFast()) {
                 throw new BBRunException(message, node.line(), null);
@@ -184,9 +338,7 @@ public class StatementExecutor {
             Warning warning = new Warning(message, node.line(), node.condition().toString());
             warnings.add(warning);
             if (handle != null) {
-                for (EventListener listener : handle.getListeners()) {
-                    listener.onWarning(new EventListener.WarningEvent(warning));
-                }
+                handle.fireWarning(warning);
             }
         }
 
@@ -195,8 +347,8 @@ public class StatementExecutor {
 
     private boolean executePrint(PrintNode node) {
         Object value = evaluate(node.message());
-        String output = (value instanceof String) ? (String) value : gson.toJson(value);
-        System.out.println(output);
+        String output = (value instanceof String) ? (String) value : GSON.toJson(value);
+        context.getOptions().getOutput().println(output);
         return true;
     }
 
@@ -235,20 +387,158 @@ public class StatementExecutor {
     }
 
     private boolean executeRepeat(RepeatNode node) {
-        Object countValue = evaluate(node.count());
-        int count = ((Number) countValue).intValue();
+        int count = (int) evaluateLong(node.count());
 
-        for (int i = 0; i < count; i++) {
-            context.setVariable("iteration", i);
-            for (StatementNode stmt : node.body()) {
-                if (!execute(stmt))
-                    return false;
+        // pace inside the body paces its iterations, and after it the enclosing one again
+        long outerStart = iterationStart;
+        try {
+            for (int i = 0; i < count; i++) {
+                context.setVariable("iteration", i);
+                iterationStart = System.nanoTime();
+                for (StatementNode stmt : node.body()) {
+                    if (!execute(stmt))
+                        return false;
+                }
+            }
+        } finally {
+            iterationStart = outerStart;
+        }
+
+        return true;
+    }
+
+    private boolean executeParallel(ParallelNode node) {
+        // Blocks nested in a virtual user are not matched up across a distributed run
+        LoadShare share = window == null ? context.getOptions().getShare() : null;
+        ParallelExecution parallel = new ParallelExecution(node, this::evaluate, context.getOptions(), share);
+        long start = profile != null ? System.nanoTime() : 0;
+        parallel.run(this::virtualUser, handle);
+        if (profile != null) {
+            // The users book their own statements; this line only waited for them
+            profile.waiting(System.nanoTime() - start);
+        }
+
+        for (StatementExecutor user : parallel.finishedUsers()) {
+            passedAssertions += user.passedAssertions;
+            failedAssertions += user.failedAssertions;
+            warnings.addAll(user.warnings);
+            requestCount += user.requestCount;
+            if (!user.requests.isEmpty()) {
+                requests.addAll(user.requests);
+                user.requests.clear();
             }
         }
+        context.setVariable("stats", parallel.stats());
+
+        String failure = parallel.failure();
+        if (failure == null) {
+            return true;
+        }
+        failedAssertions++;
+        if (handle != null) {
+            handle.fireAssertion(parallel.thresholds(), false, failure, node.line());
+        }
+        if (context.getOptions().isFailFast()) {
+            throw new BBRunException(failure, node.line(), null);
+        }
+        return true;
+    }
+
+    /**
+     * Executor of one virtual user of a parallel block, on a copy of this
+     * script's variables with {@code thread} set to its number.
+     */
+    private StatementExecutor virtualUser(int user, SlidingWindow window, AtomicBoolean stop, long deadline,
+            TokenBucket limit) {
+        Context copy = new Context(context);
+        copy.setVariable("thread", user);
+        StatementExecutor executor = new StatementExecutor(copy, httpClient, handle, scriptPath);
+        if (profile != null) {
+            executor.profile = profile.child();
+        }
+        executor.window = window;
+        executor.stop = stop;
+        executor.deadline = deadline;
+        // A nested block without a limit of its own keeps the enclosing block's
+        executor.blockLimit = limit != null ? limit : blockLimit;
+        return executor;
+    }
+
+    void setIteration(long iteration) {
+        context.setVariable("iteration", iteration);
+        iterationStart = System.nanoTime();
+    }
+
+    // ========== Cadence ==========
 
+    private boolean executeLimit(LimitNode node) {
+        context.setLimit(bucket(node, node.perSecond()));
         return true;
     }
 
+    private boolean executePace(PaceNode node) {
+        return pauseUntil(iterationStart + node.interval().toNanos());
+    }
+
+    private boolean executeThink(ThinkNode node) {
+        long min = node.min().toNanos();
+        long max = node.max().toNanos();
+        long think = max > min ? ThreadLocalRandom.current().nextLong(min, max + 1) : min;
+        return pauseUntil(System.nanoTime() + think);
+    }
+
+    /**
+     * Wait for a token of each limit on a request: the script's, the
+     * block's and the request's own.
+     */
+    private boolean throttle(RequestNode node) {
+        TokenBucket scriptLimit = context.getLimit();
+        if (scriptLimit != null && !pauseUntil(scriptLimit.take())) {
+            return false;
+        }
+        if (blockLimit != null && !pauseUntil(blockLimit.take())) {
+            return false;
+        }
+        return node.limit() == null || pauseUntil(bucket(node, node.limit()).take());
+    }
+
+    private TokenBucket bucket(StatementNode statement, double perSecond) {
+        TokenBucket bucket = limits.get(statement);
+        if (bucket == null) {
+            // Each part of a distributed run keeps to its share
+            LoadShare share = context.getOptions().getShare();
+            double rate = share != null ? perSecond / share.count() : perSecond;
+            bucket = context.limit(statement, key -> new TokenBucket(rate));
+            limits.put(statement, bucket);
+        }
+        return bucket;
+    }
+
+    /**
+     * Wait until the given {@link System#nanoTime()}, parking this thread
+     * in short steps. A wait past the end of the block only lasts until
+     * then, so the user ends with the block rather than starting early on
+     * another iteration.
+     *
+     * @return false if cut short: the block stops or ends first, or the run
+     *         is cancelled
+     */
+    private boolean pauseUntil(long wakeAt) {
+        boolean pastEnd = deadline != Long.MAX_VALUE && wakeAt - deadline > 0;
+        long until = pastEnd ? deadline : wakeAt;
+        long wait;
+        while ((wait = until - System.nanoTime()) > 0) {
+            if (stop != null && stop.get() || handle != null && handle.isCancelled()) {
+                return false;
+            }
+            LockSupport.parkNanos(Math.min(wait, MAX_PARK_NANOS));
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+        }
+        return !pastEnd;
+    }
+
     // ========== Expression Evaluation ==========
 
     public Object evaluate(ExpressionNode expr) {
@@ -262,6 +552,8 @@ public class StatementExecutor {
             return evaluateIndexAccess(n);
         } else if (expr instanceof FunctionCallNode n) {
             return evaluateFunctionCall(n);
+        } else if (expr instanceof MethodCallNode n) {
+            return evaluateMethodCall(n);
         } else if (expr instanceof BinaryOpNode n) {
             return evaluateBinaryOp(n);
         } else if (expr instanceof UnaryOpNode n) {
@@ -274,15 +566,18 @@ public class StatementExecutor {
             return evaluateObjectLiteral(n);
         } else if (expr instanceof ArrayLiteralNode n) {
             return evaluateArrayLiteral(n);
+        } else if (expr instanceof InterpolatedStringNode n) {
+            return evaluateInterpolatedString(n);
         } else {
             return null;
         }
     }
 
     private Object evaluateMemberAccess(MemberAccessNode node) {
-        Object obj = evaluate(node.object());
-        String member = node.member();
+        return member(evaluate(node.object()), node.member());
+    }
 
+    private Object member(Object obj, String member) {
         if (obj instanceof ResponseObject) {
             ResponseObject resp = (ResponseObject) obj;
             switch (member) {
@@ -303,6 +598,10 @@ public class StatementExecutor {
             return ((Map<?, ?>) obj).get(member);
         }
 
+        if (obj instanceof ScriptObject scriptObject) {
+            return scriptObject.member(member);
+        }
+
         return null;
     }
 
@@ -328,7 +627,7 @@ public class StatementExecutor {
         switch (name) {
             case "env":
                 String varName = (String) evaluate(args.get(0));
-                String envValue = System.getenv(varName);
+                String envValue = context.getEnv(varName);
                 if (envValue != null) {
                     return envValue;
                 }
@@ -346,64 +645,97 @@ public class StatementExecutor {
                     return Math.random();
                 } else if (args.size() == 1) {
                     // random(max) - returns 0 to max-1
-                    int max = ((Number) evaluate(args.get(0))).intValue();
+                    int max = (int) evaluateLong(args.get(0));
                     return (int) (Math.random() * max);
                 } else {
                     // random(min, max) - returns min to max (inclusive)
-                    int min = ((Number) evaluate(args.get(0))).intValue();
-                    int max = ((Number) evaluate(args.get(1))).intValue();
+                    int min = (int) evaluateLong(args.get(0));
+                    int max = (int) evaluateLong(args.get(1));
                     return min + (int) (Math.random() * (max - min + 1));
                 }
             case "randomString":
-                int length = args.isEmpty() ? 8 : ((Number) evaluate(args.get(0))).intValue();
+                int length = args.isEmpty() ? 8 : (int) evaluateLong(args.get(0));
                 return generateRandomString(length);
             default:
                 return null;
         }
     }
 
+    private Object evaluateMethodCall(MethodCallNode node) {
+        Object obj = evaluate(node.object());
+        if (!(obj instanceof ScriptObject scriptObject)) {
+            throw new BBRunException("Cannot call " + node.name() + "() on "
+                    + (obj == null ? "null" : obj.getClass().getSimpleName()));
+        }
+        List<Object> args = new ArrayList<>(node.arguments().size());
+        for (ExpressionNode arg : node.arguments()) {
+            args.add(evaluate(arg));
+        }
+        return scriptObject.call(node.name(), args);
+    }
+
     private Object evaluateBinaryOp(BinaryOpNode node) {
-        Object left = evaluate(node.left());
-        Object right = evaluate(node.right());
         String op = node.operator();
 
         switch (op) {
-            case "==":
-                return numericEquals(left, right);
-            case "!=":
-                return !numericEquals(left, right);
-            case "<":
-                return compare(left, right) < 0;
-            case ">":
-                return compare(left, right) > 0;
-            case "<=":
-                return compare(left, right) <= 0;
-            case ">=":
-                return compare(left, right) >= 0;
-            case "+":
-                return add(left, right);
-            case "-":
-                return subtract(left, right);
-            case "*":
-                return multiply(left, right);
-            case "/":
-                return divide(left, right);
             case "and":
-                return isTruthy(left) && isTruthy(right);
-            case "or":
-                return isTruthy(left) || isTruthy(right);
+            case "or": {
+                boolean left = isTruthy(evaluate(node.left()));
+                boolean right = isTruthy(evaluate(node.right()));
+                return op.equals("and") ? left && right : left || right;
+            }
             default:
-                return null;
+                break;
+        }
+
+        Operand left = acquireOperand();
+        Operand right = acquireOperand();
+        try {
+            evaluateOperand(node.left(), left);
+            evaluateOperand(node.right(), right);
+
+            switch (op) {
+                case "==":
+                    return operandEquals(left, right);
+                case "!=":
+                    return !operandEquals(left, right);
+                case "<":
+                    return compareOperands(left, right) < 0;
+                case ">":
+                    return compareOperands(left, right) > 0;
+                case "<=":
+                    return compareOperands(left, right) <= 0;
+                case ">=":
+                    return compareOperands(left, right) >= 0;
+                case "+":
+                case "-":
+                case "*":
+                case "/":
+                    if (arithmetic(op, left, right, left)) {
+                        return left.box();
+                    }
+                    return op.equals("+") ? add(left.box(), right.box()) : null;
+                default:
+                    return null;
+            }
+        } finally {
+            releaseOperands(2);
         }
     }
 
     private Object evaluateUnaryOp(UnaryOpNode node) {
-        Object operand = evaluate(node.operand());
         switch (node.operator()) {
             case "not":
-                return !isTruthy(operand);
-            case "-":
-                return (operand instanceof Number) ? -((Number) operand).doubleValue() : null;
+                return !isTruthy(evaluate(node.operand()));
+            case "-": {
+                Operand operand = acquireOperand();
+                try {
+                    evaluateOperand(node, operand);
+                    return operand.isNumeric() ? operand.box() : null;
+                } finally {
+                    releaseOperands(1);
+                }
+            }
             default:
                 return null;
         }
@@ -477,6 +809,12 @@ public class StatementExecutor {
         return result;
     }
 
+    private Object evaluateInterpolatedString(InterpolatedStringNode node) {
+        StringBuilder sb = new StringBuilder(node.sizeHint());
+        render(node, sb);
+        return sb.toString();
+    }
+
     /**
      * Compare two values for equality, handling numeric type differences.
      */
@@ -488,6 +826,9 @@ public class StatementExecutor {
 
         // Handle numeric comparisons - Integer vs Long etc.
         if (left instanceof Number && right instanceof Number) {
+            if (isIntegral(left) && isIntegral(right)) {
+                return ((Number) left).longValue() == ((Number) right).longValue();
+            }
             // Compare as double to handle int/long/double equality
             return ((Number) left).doubleValue() == ((Number) right).doubleValue();
         }
@@ -498,81 +839,150 @@ public class StatementExecutor {
     // ========== Helpers ==========
 
     private String buildUrl(PathNode path) {
-        StringBuilder sb = new StringBuilder();
-
-        for (PathNode.PathSegment segment : path.segments()) {
-            if (segment instanceof PathNode.LiteralSegment) {
-                PathNode.LiteralSegment lit = (PathNode.LiteralSegment) segment;
-                String value = lit.value();
-                // Check if it's a full URL
-                if (value.startsWith("http://") || value.startsWith("https://")) {
-                    sb.append(value);
-                    continue;
-                }
-                if (sb.length() > 0 || value.startsWith("/")) {
-                    sb.append("/");
-                }
-                sb.append(value);
-            } else if (segment instanceof PathNode.InterpolatedSegment) {
-                PathNode.InterpolatedSegment interp = (PathNode.InterpolatedSegment) segment;
-                Object value = evaluate(interp.expression());
-                sb.append("/").append(value);
+        InterpolatedStringNode template = path.template();
+        boolean constant = path.queryParams().isEmpty()
+                && (template.parts().isEmpty() || template.parts().size() == 1
+                        && template.parts().get(0) instanceof InterpolatedStringNode.TextPart);
+        if (constant) {
+            return constantUrl(path);
+        }
+        return renderUrl(path);
+    }
+
+    /**
+     * URL of a path without expressions. It only depends on the base URL, so
+     * it is built once per base and reused on every iteration.
+     */
+    private String constantUrl(PathNode path) {
+        String base = context.getBaseUrl();
+        if (base != constantUrlsBase) {
+            constantUrls.clear();
+            constantUrlsBase = base;
+        }
+        String url = constantUrls.get(path);
+        if (url == null) {
+            url = renderUrl(path);
+            constantUrls.put(path, url);
+        }
+        return url;
+    }
+
+    private String renderUrl(PathNode path) {
+        InterpolatedStringNode template = path.template();
+        boolean absolute = isAbsoluteUrl(template);
+        String base = "";
+        if (!absolute) {
+            base = context.getBaseUrl();
+            if (base == null) {
+                throw new IllegalStateException("baseUrl not set");
             }
         }
 
-        String pathStr = sb.toString();
+        StringBuilder sb = new StringBuilder(base.length() + template.sizeHint()
+                + path.queryParams().size() * 16);
 
         // Resolve against baseUrl if relative
-        if (!pathStr.startsWith("http://") && !pathStr.startsWith("https://")) {
-            pathStr = context.resolveUrl(pathStr);
+        if (!absolute) {
+            sb.append(base, 0, base.endsWith("/") ? base.length() - 1 : base.length());
+            if (!startsWithSlash(template)) {
+                sb.append('/');
+            }
         }
+        render(template, sb);
 
         // Add query params
         if (!path.queryParams().isEmpty()) {
-            StringBuilder query = new StringBuilder("?");
-            boolean first = true;
+            char separator = '?';
             for (Map.Entry<String, ExpressionNode> entry : path.queryParams().entrySet()) {
-                if (!first)
-                    query.append("&");
-                first = false;
-                query.append(entry.getKey()).append("=").append(evaluate(entry.getValue()));
+                sb.append(separator).append(entry.getKey()).append('=');
+                appendValue(sb, evaluate(entry.getValue()));
+                separator = '&';
             }
-            pathStr += query;
         }
 
-        return pathStr;
+        return sb.toString();
+    }
+
+    /**
+     * Render a precompiled template into the given builder.
+     */
+    private void render(InterpolatedStringNode template, StringBuilder sb) {
+        for (InterpolatedStringNode.StringPart part : template.parts()) {
+            if (part instanceof InterpolatedStringNode.TextPart text) {
+                sb.append(text.text());
+            } else if (part instanceof InterpolatedStringNode.ExpressionPart slot) {
+                appendValue(sb, evaluate(slot.expression()));
+            }
+        }
     }
 
-    private void applyAuth(Map<String, String> headers, AuthClauseNode authClause) {
-        Context.AuthState auth = null;
+    /**
+     * Append a value without intermediate strings. Integral doubles (as decoded
+     * from JSON) are written without a fraction, so ids render as {@code 42}.
+     */
+    private void appendValue(StringBuilder sb, Object value) {
+        if (value instanceof String s) {
+            sb.append(s);
+        } else if (value instanceof Long || value instanceof Integer) {
+            sb.append(((Number) value).longValue());
+        } else if (value instanceof Double d) {
+            double v = d;
+            if (v == Math.rint(v) && Math.abs(v) < 1e15) {
+                sb.append((long) v);
+            } else {
+                sb.append(v);
+            }
+        } else {
+            sb.append(value);
+        }
+    }
+
+    private boolean isAbsoluteUrl(InterpolatedStringNode template) {
+        if (!template.parts().isEmpty()
+                && template.parts().get(0) instanceof InterpolatedStringNode.TextPart text) {
+            return text.text().startsWith("http://") || text.text().startsWith("https://");
+        }
+        return false;
+    }
+
+    private boolean startsWithSlash(InterpolatedStringNode template) {
+        return !template.parts().isEmpty()
+                && template.parts().get(0) instanceof InterpolatedStringNode.TextPart text
+                && text.text().startsWith("/");
+    }
 
+    /**
+     * Authentication for a request: its own clause, else the script default.
+     * Returns null when the request goes out without credentials.
+     */
+    private Context.AuthState resolveAuth(AuthClauseNode authClause) {
         if (authClause == null) {
-            auth = context.getAuth();
+            return context.getAuth();
         } else if (authClause instanceof WithoutAuth) {
-            return; // explicitly no auth
+            return null; // explicitly no auth
         } else if (authClause instanceof UsingClause) {
-            auth = context.getNamedAuth(((UsingClause) authClause).name());
+            return context.getNamedAuth(((UsingClause) authClause).name());
         } else if (authClause instanceof BearerClause) {
             String token = (String) evaluate(((BearerClause) authClause).token());
-            auth = new Context.BearerAuth(token);
+            return new Context.BearerAuth(token);
         } else if (authClause instanceof BasicClause) {
             BasicClause basic = (BasicClause) authClause;
             String user = (String) evaluate(basic.username());
             String pass = (String) evaluate(basic.password());
-            auth = new Context.BasicAuth(user, pass);
-        }
-
-        if (auth != null) {
-            auth.apply(headers);
+            return new Context.BasicAuth(user, pass);
         }
+        return null;
     }
 
-    private Object parseJson(String json) {
-        if (json == null || json.isBlank())
+    private static Object parseJson(byte[] body) {
+        if (body == null || body.length == 0)
+            return null;
+        String json = new String(body, StandardCharsets.UTF_8);
+        if (json.isBlank())
             return null;
         try {
-            JsonElement element = JsonParser.parseString(json);
-            return gson.fromJson(element, Object.class);
+            // Integral JSON numbers decode as Long, the rest as Double
+            return GSON.fromJson(json, Object.class);
         } catch (Exception e) {
             return json; // return as string if not valid JSON
         }
@@ -601,41 +1011,289 @@ public class StatementExecutor {
 
     @SuppressWarnings("unchecked")
     private int compare(Object left, Object right) {
-        if (left instanceof Comparable && right instanceof Comparable) {
+        if (left instanceof Number && right instanceof Number) {
+            if (isIntegral(left) && isIntegral(right)) {
+                return Long.compare(((Number) left).longValue(), ((Number) right).longValue());
+            }
+            return Double.compare(((Number) left).doubleValue(), ((Number) right).doubleValue());
+        }
+        if (left instanceof Comparable && right != null && left.getClass() == right.getClass()) {
             return ((Comparable<Object>) left).compareTo(right);
         }
         return 0;
     }
 
     private Object add(Object left, Object right) {
-        if (left instanceof Number && right instanceof Number) {
-            return ((Number) left).doubleValue() + ((Number) right).doubleValue();
-        }
         if (left instanceof String || right instanceof String) {
-            return String.valueOf(left) + String.valueOf(right);
+            StringBuilder sb = new StringBuilder();
+            appendValue(sb, left);
+            appendValue(sb, right);
+            return sb.toString();
         }
         return null;
     }
 
-    private Object subtract(Object left, Object right) {
-        if (left instanceof Number && right instanceof Number) {
-            return ((Number) left).doubleValue() - ((Number) right).doubleValue();
+    private static boolean isIntegral(Object value) {
+        return value instanceof Long || value instanceof Integer
+                || value instanceof Short || value instanceof Byte;
+    }
+
+    // ========== Typed Numeric Evaluation ==========
+
+    /**
+     * Evaluate an expression as a long. Arithmetic and response fields are
+     * computed on primitives, without boxing intermediate results.
+     */
+    long evaluateLong(ExpressionNode expr) {
+        Operand operand = acquireOperand();
+        try {
+            evaluateOperand(expr, operand);
+            if (operand.kind == Operand.LONG) {
+                return operand.longValue;
+            }
+            if (operand.kind == Operand.DOUBLE) {
+                return (long) operand.doubleValue;
+            }
+            throw new BBRunException("Expected a number but got: " + operand.ref);
+        } finally {
+            releaseOperands(1);
         }
-        return null;
     }
 
-    private Object multiply(Object left, Object right) {
-        if (left instanceof Number && right instanceof Number) {
-            return ((Number) left).doubleValue() * ((Number) right).doubleValue();
+    /**
+     * Evaluate an expression as a double, without boxing intermediate results.
+     */
+    double evaluateDouble(ExpressionNode expr) {
+        Operand operand = acquireOperand();
+        try {
+            evaluateOperand(expr, operand);
+            if (!operand.isNumeric()) {
+                throw new BBRunException("Expected a number but got: " + operand.ref);
+            }
+            return operand.asDouble();
+        } finally {
+            releaseOperands(1);
         }
-        return null;
     }
 
-    private Object divide(Object left, Object right) {
-        if (left instanceof Number && right instanceof Number) {
-            return ((Number) left).doubleValue() / ((Number) right).doubleValue();
+    /**
+     * Evaluate an expression into a scratch operand. Numeric results stay
+     * primitive; anything else is stored as the evaluated object.
+     */
+    private void evaluateOperand(ExpressionNode expr, Operand out) {
+        if (expr instanceof LiteralNode n) {
+            out.set(n.value());
+        } else if (expr instanceof BinaryOpNode n && isArithmetic(n.operator())) {
+            Operand right = acquireOperand();
+            try {
+                evaluateOperand(n.left(), out);
+                evaluateOperand(n.right(), right);
+                if (!arithmetic(n.operator(), out, right, out)) {
+                    out.set(n.operator().equals("+") ? add(out.box(), right.box()) : null);
+                }
+            } finally {
+                releaseOperands(1);
+            }
+        } else if (expr instanceof UnaryOpNode n && n.operator().equals("-")) {
+            evaluateOperand(n.operand(), out);
+            if (out.kind == Operand.LONG) {
+                out.setLong(-out.longValue);
+            } else if (out.kind == Operand.DOUBLE) {
+                out.setDouble(-out.doubleValue);
+            } else {
+                out.set(null);
+            }
+        } else if (expr instanceof MemberAccessNode n) {
+            Object obj = evaluate(n.object());
+            if (obj instanceof ResponseObject resp && n.member().equals("time")) {
+                out.setLong(resp.durationMs());
+            } else if (obj instanceof ResponseObject resp && n.member().equals("status")) {
+                out.setLong(resp.status());
+            } else {
+                out.set(member(obj, n.member()));
+            }
+        } else {
+            out.set(evaluate(expr));
+        }
+    }
+
+    private static boolean isArithmetic(String op) {
+        return op.equals("+") || op.equals("-") || op.equals("*") || op.equals("/");
+    }
+
+    /**
+     * Apply an arithmetic operator to two numeric operands, storing the result
+     * in {@code out} (which may alias {@code a}). Integer semantics are kept
+     * when both operands are integral and the result fits; otherwise the
+     * result is a double.
+     *
+     * @return false if either operand is not numeric
+     */
+    private static boolean arithmetic(String op, Operand a, Operand b, Operand out) {
+        if (!a.isNumeric() || !b.isNumeric()) {
+            return false;
+        }
+
+        if (a.kind == Operand.LONG && b.kind == Operand.LONG) {
+            long x = a.longValue;
+            long y = b.longValue;
+            long r;
+            switch (op) {
+                case "+":
+                    r = x + y;
+                    if (((x ^ r) & (y ^ r)) < 0) {
+                        out.setDouble((double) x + (double) y);
+                    } else {
+                        out.setLong(r);
+                    }
+                    return true;
+                case "-":
+                    r = x - y;
+                    if (((x ^ y) & (x ^ r)) < 0) {
+                        out.setDouble((double) x - (double) y);
+                    } else {
+                        out.setLong(r);
+                    }
+                    return true;
+                case "*":
+                    long high = Math.multiplyHigh(x, y);
+                    r = x * y;
+                    if ((high == 0 && r >= 0) || (high == -1 && r < 0)) {
+                        out.setLong(r);
+                    } else {
+                        out.setDouble((double) x * (double) y);
+                    }
+                    return true;
+                default:
+                    // Exact quotients stay integral, 7 / 2 is 3.5
+                    if (y != 0 && x % y == 0 && !(x == Long.MIN_VALUE && y == -1)) {
+                        out.setLong(x / y);
+                    } else {
+                        out.setDouble((double) x / (double) y);
+                    }
+                    return true;
+            }
+        }
+
+        double x = a.asDouble();
+        double y = b.asDouble();
+        switch (op) {
+            case "+":
+                out.setDouble(x + y);
+                break;
+            case "-":
+                out.setDouble(x - y);
+                break;
+            case "*":
+                out.setDouble(x * y);
+                break;
+            default:
+                out.setDouble(x / y);
+                break;
+        }
+        return true;
+    }
+
+    private boolean operandEquals(Operand left, Operand right) {
+        if (left.isNumeric() && right.isNumeric()) {
+            if (left.kind == Operand.LONG && right.kind == Operand.LONG) {
+                return left.longValue == right.longValue;
+            }
+            return left.asDouble() == right.asDouble();
+        }
+        if (left.isNumeric() || right.isNumeric()) {
+            return false;
+        }
+        return numericEquals(left.ref, right.ref);
+    }
+
+    private int compareOperands(Operand left, Operand right) {
+        if (left.isNumeric() && right.isNumeric()) {
+            if (left.kind == Operand.LONG && right.kind == Operand.LONG) {
+                return Long.compare(left.longValue, right.longValue);
+            }
+            return Double.compare(left.asDouble(), right.asDouble());
+        }
+        if (left.isNumeric() || right.isNumeric()) {
+            return 0;
+        }
+        return compare(left.ref, right.ref);
+    }
+
+    private Operand acquireOperand() {
+        if (operandTop == operands.length) {
+            operands = Arrays.copyOf(operands, operands.length * 2);
+        }
+        Operand operand = operands[operandTop];
+        if (operand == null) {
+            operand = new Operand();
+            operands[operandTop] = operand;
+        }
+        operandTop++;
+        return operand;
+    }
+
+    private void releaseOperands(int count) {
+        for (int i = 0; i < count; i++) {
+            operands[--operandTop].ref = null;
+        }
+    }
+
+    /**
+     * Mutable scratch value for the typed numeric path: a primitive long or
+     * double, or the evaluated object for anything non-numeric.
+     */
+    private static final class Operand {
+        static final int OBJECT = 0;
+        static final int LONG = 1;
+        static final int DOUBLE = 2;
+
+        int kind;
+        long longValue;
+        double doubleValue;
+        Object ref;
+
+        void setLong(long value) {
+            kind = LONG;
+            longValue = value;
+            ref = null;
+        }
+
+        void setDouble(double value) {
+            kind = DOUBLE;
+            doubleValue = value;
+            ref = null;
+        }
+
+        void set(Object value) {
+            if (isIntegral(value)) {
+                setLong(((Number) value).longValue());
+            } else if (value instanceof Double || value instanceof Float) {
+                setDouble(((Number) value).doubleValue());
+            } else {
+                kind = OBJECT;
+                ref = value;
+            }
+        }
+
+        boolean isNumeric() {
+            return kind != OBJECT;
+        }
+
+        double asDouble() {
+            return kind == LONG ? longValue : doubleValue;
+        }
+
+        Object box() {
+            switch (kind) {
+                case LONG:
+                    return longValue;
+                case DOUBLE:
+                    return doubleValue;
+                default:
+                    return ref;
+            }
         }
-        return null;
     }
 
     private static final String ALPHANUMERIC = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
@@ -659,6 +1317,13 @@ public class StatementExecutor {
         return requests;
     }
 
+    /**
+     * Requests sent, whether or not they are retained.
+     */
+    public long getRequestCount() {
+        return requestCount;
+    }
+
     public int getPassedAssertions() {
         return passedAssertions;
     }
@@ -667,12 +1332,93 @@ public class StatementExecutor {
         return failedAssertions;
     }
 
-    // Response object wrapper
-    public record ResponseObject(
-            int status,
-            Map<String, String> headers,
-            Object body,
-            long durationMs) {
+    /**
+     * The {@code response} variable. The body is decoded from JSON the first
+     * time it is read, so requests whose body is never inspected don't pay
+     * for parsing. Parallel users copied from the context that made the
+     * request share it, so the body is parsed once under a lock and
+     * published through a volatile field.
+     */
+    public static final class ResponseObject {
+        private static final Object UNPARSED = new Object();
+
+        private final HttpResponse response;
+        private final String scriptPath;
+        private final int line;
+        private final LineProfiler.Recorder profile;
+        private final Thread owner = Thread.currentThread();
+        private volatile Object body = UNPARSED;
+
+        ResponseObject(HttpResponse response, String scriptPath, int line, LineProfiler.Recorder profile) {
+            this.response = response;
+            this.scriptPath = scriptPath;
+            this.line = line;
+            this.profile = profile;
+        }
+
+        public int status() {
+            return response.status();
+        }
+
+        public Map<String, String> headers() {
+            return response.headers();
+        }
+
+        public Object body() {
+            Object parsed = body;
+            if (parsed == UNPARSED) {
+                synchronized (this) {
+                    parsed = body;
+                    if (parsed == UNPARSED) {
+                        parsed = parse();
+                        body = parsed;
+                    }
+                }
+            }
+            return parsed;
+        }
+
+        private Object parse() {
+            JsonParseEvent event = null;
+            if (Jfr.isActive()) {
+                event = new JsonParseEvent();
+                event.begin();
+            }
+            // The recorder belongs to the thread that made the request
+            LineProfiler.Recorder recorder = Thread.currentThread() == owner ? profile : null;
+            long start = recorder != null ? System.nanoTime() : 0;
+            Object parsed = parseJson(response.body());
+            if (recorder != null) {
+                // Charged to the statement reading the body
+                recorder.json(System.nanoTime() - start);
+            }
+            if (event != null && event.shouldCommit()) {
+                event.scriptPath = scriptPath;
+                event.line = line;
+                event.bytes = response.body() != null ? response.body().length : 0;
+                event.commit();
+            }
+            return parsed;
+        }
+
+        public long durationMs() {
+            return response.durationMs();
+        }
+    }
+
+    /**
+     * Serialize a response with the same fields the variable exposes.
+     */
+    private static final class ResponseSerializer implements JsonSerializer<ResponseObject> {
+        @Override
+        public JsonElement serialize(ResponseObject src, Type type, JsonSerializationContext ctx) {
+            JsonObject json = new JsonObject();
+            json.addProperty("status", src.status());
+            json.add("headers", ctx.serialize(src.headers()));
+            json.add("body", ctx.serialize(src.body()));
+            json.addProperty("durationMs", src.durationMs());
+            return json;
+        }
     }
 
 }
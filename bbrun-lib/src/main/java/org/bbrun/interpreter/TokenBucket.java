@@ -0,0 +1,48 @@
+package org.bbrun.interpreter;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps requests to a rate across every virtual user that draws from it,
+ * see the {@code limit} statement, request clause and parallel option.
+ *
+ * <p>
+ * The bucket is kept as the time its next token is due, so taking one is a
+ * single compare-and-set and nothing is held while waiting for it. Up to
+ * {@link #BURST} of unused rate carries over: users that arrive together
+ * after a slow response catch up instead of losing their turns, which keeps
+ * the rate achieved close to the limit when users contend for it. Compare
+ * {@link RatePacer}, which never hands out a start in the past.
+ */
+final class TokenBucket {
+
+    /**
+     * Unused rate kept for later, as time at the limit.
+     */
+    static final Duration BURST = Duration.ofMillis(100);
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final AtomicLong due = new AtomicLong(System.nanoTime());
+
+    TokenBucket(double perSecond) {
+        this.intervalNanos = Math.max(1, Math.round(1e9 / perSecond));
+        // At least one token, even below ten per second
+        this.toleranceNanos = Math.max(0, BURST.toNanos() - intervalNanos);
+    }
+
+    /**
+     * Take the next token.
+     *
+     * @return the {@link System#nanoTime()} from which it may be used
+     */
+    long take() {
+        long now = System.nanoTime();
+        long claimed;
+        do {
+            claimed = due.get();
+        } while (!due.compareAndSet(claimed, Math.max(claimed, now) + intervalNanos));
+        return Math.max(now, claimed - toleranceNanos);
+    }
+}
@@ -0,0 +1,30 @@
+package org.bbrun.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evaluation of an {@code assert} condition.
+ */
+@Name("bbrun.Assertion")
+@Label("Assertion")
+@Category("BBRun")
+@Description("Evaluation of an assert statement")
+@StackTrace(false)
+public class AssertionEvent extends jdk.jfr.Event {
+
+    @Label("Script")
+    public String scriptPath;
+
+    @Label("Line")
+    public int line;
+
+    @Label("Expression")
+    public String expression;
+
+    @Label("Passed")
+    public boolean passed;
+}
@@ -0,0 +1,23 @@
+package org.bbrun.jfr;
+
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Gate for emitting the bbrun.* events.
+ *
+ * <p>
+ * The first use of any event class registers it with the recorder, which
+ * costs a few hundred milliseconds of startup. Callers check
+ * {@link #isActive()} first, so event classes are only touched once Flight
+ * Recorder has been started in this JVM (by {@code --jfr},
+ * {@code -XX:StartFlightRecording} or {@code jcmd JFR.start}).
+ */
+public final class Jfr {
+
+    private Jfr() {
+    }
+
+    public static boolean isActive() {
+        return FlightRecorder.isInitialized();
+    }
+}
@@ -0,0 +1,30 @@
+package org.bbrun.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Decoding of a response body, which happens when the script first reads
+ * {@code response.body}.
+ */
+@Name("bbrun.JsonParse")
+@Label("JSON Parse")
+@Category("BBRun")
+@Description("Decoding of a JSON response body")
+@StackTrace(false)
+public class JsonParseEvent extends jdk.jfr.Event {
+
+    @Label("Script")
+    public String scriptPath;
+
+    @Label("Line")
+    public int line;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,43 @@
+package org.bbrun.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One HTTP request, from handing it to the client until the response body
+ * has been read. Status 0 means the request failed without a response.
+ */
+@Name("bbrun.Request")
+@Label("HTTP Request")
+@Category("BBRun")
+@Description("HTTP request sent by a script")
+@StackTrace(false)
+public class RequestEvent extends jdk.jfr.Event {
+
+    @Label("Script")
+    public String scriptPath;
+
+    @Label("Line")
+    public int line;
+
+    @Label("Method")
+    public String method;
+
+    @Label("URL")
+    public String url;
+
+    @Label("Endpoint")
+    @Description("Path template of the URL, e.g. /users/{}")
+    public String endpoint;
+
+    @Label("Status")
+    public int status;
+
+    @Label("Response Size")
+    @DataAmount
+    public long responseBytes;
+}
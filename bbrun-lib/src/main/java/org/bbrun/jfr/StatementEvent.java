@@ -0,0 +1,28 @@
+package org.bbrun.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One executed statement. Block statements such as {@code repeat} and
+ * {@code if} span the events of the statements inside them.
+ */
+@Name("bbrun.Statement")
+@Label("Statement")
+@Category("BBRun")
+@Description("Execution of one script statement")
+@StackTrace(false)
+public class StatementEvent extends jdk.jfr.Event {
+
+    @Label("Script")
+    public String scriptPath;
+
+    @Label("Line")
+    public int line;
+
+    @Label("Statement")
+    public String statement;
+}
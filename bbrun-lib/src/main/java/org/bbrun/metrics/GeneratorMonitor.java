@@ -0,0 +1,376 @@
+package org.bbrun.metrics;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.OperatingSystemMXBean;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Watches the load generator itself, so latency measured while bbrun was
+ * stalled or starved of CPU is not taken at face value.
+ *
+ * <p>
+ * Four signals are tracked:
+ * <ul>
+ * <li>GC pauses, from the collectors' notifications, leaving out the
+ * concurrent cycles of ZGC, Shenandoah and G1;</li>
+ * <li>hiccups, the time a thread that only sleeps for
+ * {@link #HICCUP_RESOLUTION} oversleeps, which catches any stall of the
+ * JVM or the machine, GC or not;</li>
+ * <li>CPU used by the process, and by the whole machine where the
+ * platform reports it;</li>
+ * <li>scheduling lag, how late paced iterations start compared to their
+ * slot, see {@link #recordScheduleLag(long)}.</li>
+ * </ul>
+ * Every {@link #SAMPLE_INTERVAL} a {@link Sample} of the interval goes to
+ * the listeners; {@link #report()} covers the run so far and names what
+ * likely distorted it.
+ */
+public class GeneratorMonitor implements AutoCloseable {
+
+    public static final Duration HICCUP_RESOLUTION = Duration.ofMillis(1);
+    public static final Duration SAMPLE_INTERVAL = Duration.ofSeconds(1);
+
+    /**
+     * Shorter runs are not judged; startup and JIT compilation dominate
+     * them.
+     */
+    public static final Duration MIN_JUDGED = Duration.ofSeconds(5);
+
+    // Limits beyond which results are flagged
+    static final double MAX_HICCUP_P99_MS = 10;
+    static final double MAX_SCHEDULE_LAG_P99_MS = 10;
+    static final double MAX_GC_PERCENT = 5;
+    static final double MAX_PROCESS_CPU_PERCENT = 90;
+    static final double MAX_MACHINE_CPU_PERCENT = 95;
+
+    /**
+     * Figures of one sample interval. CPU is a percentage of all
+     * processors, -1 where not available; times are in milliseconds.
+     */
+    public record Sample(
+            long timestamp,
+            double processCpuPercent,
+            double machineCpuPercent,
+            long gcPauses,
+            double gcPauseMs,
+            double hiccupMaxMs,
+            double scheduleLagMaxMs) {
+    }
+
+    /**
+     * Figures of the whole run, with the reasons to distrust its
+     * measurements; none if it looked healthy or was too short to judge.
+     */
+    public record Report(
+            long durationMs,
+            double processCpuPercent,
+            double peakProcessCpuPercent,
+            double machineCpuPercent,
+            long gcPauses,
+            double gcPauseMs,
+            double maxGcPauseMs,
+            LatencyHistogram hiccups,
+            LatencyHistogram scheduleLag,
+            List<String> warnings) {
+
+        /**
+         * Whether the generator was likely saturated or stalled enough to
+         * distort latency and throughput.
+         */
+        public boolean saturated() {
+            return !warnings.isEmpty();
+        }
+
+        /**
+         * One line of figures, e.g. for verbose output.
+         */
+        public String summary() {
+            StringBuilder text = new StringBuilder();
+            text.append("CPU ").append(percent(processCpuPercent))
+                    .append(" (peak ").append(percent(peakProcessCpuPercent)).append(')');
+            if (machineCpuPercent >= 0) {
+                text.append(", machine ").append(percent(machineCpuPercent));
+            }
+            text.append(", GC ").append(gcPauses).append(gcPauses == 1 ? " pause " : " pauses ")
+                    .append(millis(gcPauseMs)).append(" (max ").append(millis(maxGcPauseMs)).append(')');
+            text.append(", hiccups p99 ").append(millis(hiccups.valueAtPercentile(99) / 1e6))
+                    .append(" max ").append(millis(hiccups.max() / 1e6));
+            if (scheduleLag.count() > 0) {
+                text.append(", schedule lag p99 ").append(millis(scheduleLag.valueAtPercentile(99) / 1e6))
+                        .append(" max ").append(millis(scheduleLag.max() / 1e6));
+            }
+            return text.toString();
+        }
+    }
+
+    private final OperatingSystemMXBean os = ManagementFactory.getPlatformMXBean(OperatingSystemMXBean.class);
+    private final int processors = Runtime.getRuntime().availableProcessors();
+    private final List<Consumer<Sample>> listeners = new CopyOnWriteArrayList<>();
+    private final List<NotificationEmitter> collectors = new ArrayList<>();
+    private final NotificationListener gcListener = this::onGc;
+    private final ScheduledExecutorService sampler;
+    private final Thread hiccupThread;
+    private final long startNanos = System.nanoTime();
+    private final long startCpuNanos;
+
+    // Guarded by this
+    private final LatencyHistogram hiccups = new LatencyHistogram();
+    private final LatencyHistogram scheduleLag = new LatencyHistogram();
+    private long gcPauses;
+    private long gcPauseNanos;
+    private long maxGcPauseNanos;
+    private long intervalHiccupMax;
+    private long intervalLagMax;
+    private long intervalGcPauses;
+    private long intervalGcNanos;
+    private long lastSampleNanos;
+    private long lastCpuNanos;
+    private double peakProcessCpu = -1;
+    private double machineCpuSum;
+    private int machineCpuSamples;
+    private Sample latest;
+    private long stopNanos;
+    private long stopCpuNanos;
+    private volatile boolean closed;
+
+    private GeneratorMonitor() {
+        this.startCpuNanos = os.getProcessCpuTime();
+        this.lastSampleNanos = startNanos;
+        this.lastCpuNanos = startCpuNanos;
+
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            // Concurrent cycles run beside the application and stall nothing
+            if (collector instanceof NotificationEmitter emitter && isPause(collector.getName(), "")) {
+                emitter.addNotificationListener(gcListener, null, null);
+                collectors.add(emitter);
+            }
+        }
+
+        this.hiccupThread = new Thread(this::detectHiccups, "bbrun-hiccups");
+        hiccupThread.setDaemon(true);
+        this.sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bbrun-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start monitoring until {@link #close()}.
+     */
+    public static GeneratorMonitor start() {
+        GeneratorMonitor monitor = new GeneratorMonitor();
+        monitor.hiccupThread.start();
+        long interval = SAMPLE_INTERVAL.toMillis();
+        monitor.sampler.scheduleAtFixedRate(monitor::sample, interval, interval, TimeUnit.MILLISECONDS);
+        return monitor;
+    }
+
+    /**
+     * Call each sample with the figures of its interval, on the monitor's
+     * own thread.
+     */
+    public GeneratorMonitor onSample(Consumer<Sample> listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    /**
+     * Record how late an iteration started after the time it was scheduled
+     * for. Safe to call from any thread.
+     */
+    public synchronized void recordScheduleLag(long lateNanos) {
+        long lag = Math.max(0, lateNanos);
+        scheduleLag.record(lag);
+        intervalLagMax = Math.max(intervalLagMax, lag);
+    }
+
+    /**
+     * The last complete sample interval, null before the first.
+     */
+    public synchronized Sample latest() {
+        return latest;
+    }
+
+    // ========== Signals ==========
+
+    private void detectHiccups() {
+        long resolution = HICCUP_RESOLUTION.toNanos();
+        while (!closed) {
+            long before = System.nanoTime();
+            LockSupport.parkNanos(resolution);
+            long hiccup = System.nanoTime() - before - resolution;
+            if (hiccup < 0) {
+                hiccup = 0;
+            }
+            synchronized (this) {
+                hiccups.record(hiccup);
+                // A long stall also hides the wakeups it swallowed; count them
+                // so percentiles reflect the share of time spent stalled
+                for (long missed = hiccup - resolution; missed > 0; missed -= resolution) {
+                    hiccups.record(missed);
+                }
+                intervalHiccupMax = Math.max(intervalHiccupMax, hiccup);
+            }
+        }
+    }
+
+    private void onGc(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        GarbageCollectionNotificationInfo info =
+                GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        if (!isPause(info.getGcName(), info.getGcAction())) {
+            return;
+        }
+        long pause = TimeUnit.MILLISECONDS.toNanos(info.getGcInfo().getDuration());
+        synchronized (this) {
+            gcPauses++;
+            gcPauseNanos += pause;
+            maxGcPauseNanos = Math.max(maxGcPauseNanos, pause);
+            intervalGcPauses++;
+            intervalGcNanos += pause;
+        }
+    }
+
+    /**
+     * Whether a collector's notification stands for a stop-the-world pause.
+     * Concurrent collectors also report whole cycles ("ZGC Cycles",
+     * "Shenandoah Cycles", "end of GC cycle") that last seconds while the
+     * application runs; their pauses come separately ("ZGC Pauses",
+     * "end of GC pause").
+     */
+    static boolean isPause(String collector, String action) {
+        return !collector.contains("Concurrent") && !collector.contains("Cycles")
+                && !action.contains("cycle");
+    }
+
+    private void sample() {
+        Sample sample;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long cpu = os.getProcessCpuTime();
+            double processCpu = cpuPercent(cpu - lastCpuNanos, now - lastSampleNanos);
+            double machineCpu = os.getCpuLoad();
+            peakProcessCpu = Math.max(peakProcessCpu, processCpu);
+            if (machineCpu >= 0) {
+                machineCpuSum += machineCpu * 100;
+                machineCpuSamples++;
+            }
+            sample = new Sample(System.currentTimeMillis(), processCpu, machineCpu >= 0 ? machineCpu * 100 : -1,
+                    intervalGcPauses, intervalGcNanos / 1e6, intervalHiccupMax / 1e6, intervalLagMax / 1e6);
+            latest = sample;
+            lastSampleNanos = now;
+            lastCpuNanos = cpu;
+            intervalGcPauses = 0;
+            intervalGcNanos = 0;
+            intervalHiccupMax = 0;
+            intervalLagMax = 0;
+        }
+        for (Consumer<Sample> listener : listeners) {
+            listener.accept(sample);
+        }
+    }
+
+    private double cpuPercent(long cpuNanos, long wallNanos) {
+        if (cpuNanos < 0 || wallNanos <= 0) {
+            return -1;
+        }
+        return Math.min(100, 100.0 * cpuNanos / wallNanos / processors);
+    }
+
+    // ========== Report ==========
+
+    /**
+     * Figures from the start to now, or to {@link #close()}.
+     */
+    public synchronized Report report() {
+        long end = stopNanos != 0 ? stopNanos : System.nanoTime();
+        long cpu = stopNanos != 0 ? stopCpuNanos : os.getProcessCpuTime();
+        long wall = end - startNanos;
+        double processCpu = cpuPercent(cpu - startCpuNanos, wall);
+        double machineCpu = machineCpuSamples == 0 ? -1 : machineCpuSum / machineCpuSamples;
+        LatencyHistogram hiccupCopy = new LatencyHistogram();
+        hiccupCopy.merge(hiccups);
+        LatencyHistogram lagCopy = new LatencyHistogram();
+        lagCopy.merge(scheduleLag);
+
+        List<String> warnings = new ArrayList<>();
+        if (wall >= MIN_JUDGED.toNanos()) {
+            double hiccupP99 = hiccups.valueAtPercentile(99) / 1e6;
+            if (hiccupP99 > MAX_HICCUP_P99_MS) {
+                warnings.add("the JVM stalled for over " + millis(MAX_HICCUP_P99_MS) + " in more than 1% of the run"
+                        + " (hiccups p99 " + millis(hiccupP99) + ", max " + millis(hiccups.max() / 1e6) + ")");
+            }
+            double gcPercent = 100.0 * gcPauseNanos / wall;
+            if (gcPercent > MAX_GC_PERCENT) {
+                warnings.add("GC pauses took " + percent(gcPercent) + " of the run (" + gcPauses + " pauses, longest "
+                        + millis(maxGcPauseNanos / 1e6) + ")");
+            }
+            if (processCpu >= MAX_PROCESS_CPU_PERCENT) {
+                warnings.add("bbrun used " + percent(processCpu) + " of the CPU available to it");
+            }
+            if (machineCpu >= MAX_MACHINE_CPU_PERCENT) {
+                warnings.add("the machine's CPUs were " + percent(machineCpu) + " busy");
+            }
+            double lagP99 = scheduleLag.valueAtPercentile(99) / 1e6;
+            if (scheduleLag.count() > 0 && lagP99 > MAX_SCHEDULE_LAG_P99_MS) {
+                warnings.add("paced iterations started late, from too few users or a busy generator (schedule lag"
+                        + " p99 " + millis(lagP99) + ", max " + millis(scheduleLag.max() / 1e6) + ")");
+            }
+        }
+        return new Report(TimeUnit.NANOSECONDS.toMillis(wall), processCpu, peakProcessCpu, machineCpu, gcPauses,
+                gcPauseNanos / 1e6, maxGcPauseNanos / 1e6, hiccupCopy, lagCopy, List.copyOf(warnings));
+    }
+
+    /**
+     * Stop monitoring; {@link #report()} keeps covering the time until
+     * now.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            stopNanos = System.nanoTime();
+            stopCpuNanos = os.getProcessCpuTime();
+        }
+        sampler.shutdownNow();
+        LockSupport.unpark(hiccupThread);
+        for (NotificationEmitter collector : collectors) {
+            try {
+                collector.removeNotificationListener(gcListener);
+            } catch (ListenerNotFoundException e) {
+                // Already gone
+            }
+        }
+    }
+
+    private static String millis(double ms) {
+        return String.format(Locale.ROOT, ms < 10 ? "%.1f ms" : "%.0f ms", ms);
+    }
+
+    private static String percent(double value) {
+        return value < 0 ? "n/a" : String.format(Locale.ROOT, "%.0f%%", value);
+    }
+}
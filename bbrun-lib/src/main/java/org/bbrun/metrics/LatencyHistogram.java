@@ -0,0 +1,192 @@
+package org.bbrun.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Log-linear histogram of latencies in nanoseconds, in constant memory
+ * regardless of how many values are recorded.
+ *
+ * <p>
+ * Values below 128 are counted exactly; above that each power of two is
+ * split into 64 buckets, so any reported value is within 1/64 (about
+ * 1.6%) of a recorded one. The bucket array only grows to the largest
+ * value seen, a few KB for typical HTTP latencies. Not thread-safe.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;
+
+    private long[] counts = new long[LINEAR_LIMIT];
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    public void record(long nanos) {
+        record(nanos, 1);
+    }
+
+    /**
+     * Record {@code times} occurrences of a value; negative values count as
+     * zero.
+     */
+    public void record(long nanos, long times) {
+        long value = Math.max(0, nanos);
+        int index = indexOf(value);
+        if (index >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(index + 1, counts.length * 2));
+        }
+        counts[index] += times;
+        count += times;
+        sum += value * times;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Add everything recorded in another histogram.
+     */
+    public void merge(LatencyHistogram other) {
+        if (other.count == 0) {
+            return;
+        }
+        if (other.counts.length > counts.length) {
+            counts = Arrays.copyOf(counts, other.counts.length);
+        }
+        for (int i = 0; i < other.counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Forget everything recorded, keeping the allocated buckets.
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public long min() {
+        return count == 0 ? 0 : min;
+    }
+
+    public long max() {
+        return max;
+    }
+
+    public double mean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Value at the given percentile (0-100): the upper bound of the bucket
+     * holding it, clamped to the recorded range.
+     */
+    public long valueAtPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, percentile) / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.max(min, Math.min(max, upperBound(i)));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Receives the non-empty buckets of a histogram.
+     */
+    @FunctionalInterface
+    public interface BucketConsumer {
+        /**
+         * @param value highest value counted in the bucket; recording it
+         *              again lands in the same bucket
+         */
+        void accept(long value, long count);
+    }
+
+    /**
+     * Visit non-empty buckets in increasing order, e.g. to serialize the
+     * histogram; {@link #record(long, long)} rebuilds it.
+     */
+    public void forEachBucket(BucketConsumer consumer) {
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                consumer.accept(i == indexOf(max) ? max : upperBound(i), counts[i]);
+            }
+        }
+    }
+
+    /**
+     * z-score of a Mann-Whitney U test that values in {@code current} tend
+     * to be larger than in {@code baseline}, with values in the same bucket
+     * counted as ties. Positive means slower; NaN if either is empty.
+     */
+    public static double mannWhitneyZ(LatencyHistogram baseline, LatencyHistogram current) {
+        double n1 = baseline.count;
+        double n2 = current.count;
+        if (n1 == 0 || n2 == 0) {
+            return Double.NaN;
+        }
+        double n = n1 + n2;
+        double rankSum = 0;
+        double ties = 0;
+        double ranked = 0;
+        int buckets = Math.max(baseline.counts.length, current.counts.length);
+        for (int i = 0; i < buckets; i++) {
+            long a = i < baseline.counts.length ? baseline.counts[i] : 0;
+            long b = i < current.counts.length ? current.counts[i] : 0;
+            double t = a + b;
+            if (t == 0) {
+                continue;
+            }
+            // Every value in a bucket gets the group's average rank
+            rankSum += b * (ranked + (t + 1) / 2);
+            ranked += t;
+            ties += t * t * t - t;
+        }
+        double u = rankSum - n2 * (n2 + 1) / 2;
+        double variance = n1 * n2 / 12 * ((n + 1) - ties / (n * (n - 1)));
+        if (variance <= 0) {
+            return 0;
+        }
+        return (u - n1 * n2 / 2) / Math.sqrt(variance);
+    }
+
+    // ========== Buckets ==========
+
+    static int indexOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    static long upperBound(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int k = index - LINEAR_LIMIT;
+        int shift = k / SUB_BUCKETS + 1;
+        long mantissa = k % SUB_BUCKETS + SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
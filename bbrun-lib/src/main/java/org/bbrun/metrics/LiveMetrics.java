@@ -0,0 +1,343 @@
+package org.bbrun.metrics;
+
+import org.bbrun.events.EventListener;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running totals of everything executions report, for watching long runs
+ * while they are in progress.
+ *
+ * <p>
+ * Attach one instance to any number of executions, e.g. with
+ * {@link org.bbrun.interpreter.ExecutionOptions#listener}. Updates go to
+ * striped counters, and {@link #writeOpenMetrics(StringBuilder)} only reads
+ * them, so scraping never blocks the scripts being measured.
+ *
+ * <p>
+ * Endpoints are keyed by method and path template, e.g.
+ * {@code GET /users/{}} for {@code get #users/${id}}, so ids in paths do
+ * not add series. Literal ids still do; as a safety net, endpoints beyond
+ * {@link #MAX_ENDPOINTS} are reported together as {@code endpoint="other"}.
+ *
+ * <p>
+ * With a {@link #generator(GeneratorMonitor) generator monitor}, the load
+ * generator's own CPU, GC pauses, hiccups and scheduling lag are exposed
+ * as {@code bbrun_generator_*} series next to the run's.
+ */
+public class LiveMetrics implements EventListener {
+
+    /**
+     * Upper bounds of the latency histogram buckets, in seconds.
+     */
+    static final double[] BUCKETS = { 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10 };
+
+    public static final int MAX_ENDPOINTS = 200;
+
+    private static final String OTHER = "other";
+
+    private final ConcurrentHashMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failedRequests = new LongAdder();
+    private final LongAdder passedAssertions = new LongAdder();
+    private final LongAdder failedAssertions = new LongAdder();
+    private final LongAdder warnings = new LongAdder();
+    private final LongAdder scriptsSucceeded = new LongAdder();
+    private final LongAdder scriptsFailed = new LongAdder();
+    private final AtomicInteger activeScripts = new AtomicInteger();
+    private final AtomicInteger activeUsers = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final long startedAt = System.currentTimeMillis();
+    private volatile GeneratorMonitor generator;
+
+    // ========== EventListener ==========
+
+    @Override
+    public void onScriptStart(ScriptEvent event) {
+        activeScripts.incrementAndGet();
+    }
+
+    @Override
+    public void onUserStart(UserEvent event) {
+        activeUsers.incrementAndGet();
+    }
+
+    @Override
+    public void onUserComplete(UserEvent event) {
+        activeUsers.decrementAndGet();
+    }
+
+    @Override
+    public void onRequestStart(RequestEvent event) {
+        inFlight.incrementAndGet();
+    }
+
+    @Override
+    public void onRequestComplete(RequestEvent event) {
+        inFlight.decrementAndGet();
+        requests.increment();
+        if (!event.success()) {
+            failedRequests.increment();
+        }
+        endpoint(event.method(), event.endpoint()).record(event.status(), event.durationMs());
+    }
+
+    @Override
+    public void onAssertionPass(AssertionEvent event) {
+        passedAssertions.increment();
+    }
+
+    @Override
+    public void onAssertionFail(AssertionEvent event) {
+        failedAssertions.increment();
+    }
+
+    @Override
+    public void onWarning(WarningEvent event) {
+        warnings.increment();
+    }
+
+    @Override
+    public void onScriptComplete(CompletionEvent event) {
+        activeScripts.decrementAndGet();
+        if (event.success()) {
+            scriptsSucceeded.increment();
+        } else {
+            scriptsFailed.increment();
+        }
+    }
+
+    // ========== Accessors ==========
+
+    /**
+     * Expose the figures of this monitor as well.
+     */
+    public LiveMetrics generator(GeneratorMonitor generator) {
+        this.generator = generator;
+        return this;
+    }
+
+    public long totalRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * Scripts currently executing.
+     */
+    public int activeScripts() {
+        return activeScripts.get();
+    }
+
+    /**
+     * Virtual users of parallel blocks currently running.
+     */
+    public int activeUsers() {
+        return activeUsers.get();
+    }
+
+    public int inFlightRequests() {
+        return inFlight.get();
+    }
+
+    // ========== Exposition ==========
+
+    /**
+     * Append all metrics in OpenMetrics text format, terminated by
+     * {@code # EOF}.
+     */
+    public void writeOpenMetrics(StringBuilder out) {
+        gauge(out, "bbrun_active_vus", "Virtual users of parallel blocks currently running", activeUsers.get());
+        gauge(out, "bbrun_active_scripts", "Scripts currently executing", activeScripts.get());
+        gauge(out, "bbrun_requests_in_flight", "HTTP requests awaiting a response", inFlight.get());
+        gauge(out, "bbrun_start_time_seconds", "Time the metrics were created",
+                startedAt / 1000);
+
+        counter(out, "bbrun_requests", "HTTP requests completed", requests.sum());
+        counter(out, "bbrun_requests_failed", "HTTP requests without a 2xx response", failedRequests.sum());
+        counter(out, "bbrun_warnings", "Warning conditions that failed", warnings.sum());
+
+        header(out, "bbrun_assertions", "counter", "Assertions evaluated");
+        out.append("bbrun_assertions_total{result=\"pass\"} ").append(passedAssertions.sum()).append('\n');
+        out.append("bbrun_assertions_total{result=\"fail\"} ").append(failedAssertions.sum()).append('\n');
+
+        header(out, "bbrun_scripts", "counter", "Scripts completed");
+        out.append("bbrun_scripts_total{result=\"success\"} ").append(scriptsSucceeded.sum()).append('\n');
+        out.append("bbrun_scripts_total{result=\"failure\"} ").append(scriptsFailed.sum()).append('\n');
+
+        GeneratorMonitor monitor = generator;
+        if (monitor != null) {
+            writeGenerator(out, monitor);
+        }
+
+        // Sorted so series keep a stable order between scrapes
+        Map<String, Endpoint> sorted = new TreeMap<>(endpoints);
+
+        header(out, "bbrun_responses", "counter", "HTTP responses by status code");
+        for (Endpoint endpoint : sorted.values()) {
+            Map<Integer, LongAdder> codes = new TreeMap<>(endpoint.statuses);
+            for (Map.Entry<Integer, LongAdder> code : codes.entrySet()) {
+                out.append("bbrun_responses_total{");
+                endpoint.labels(out);
+                out.append(",code=\"").append(code.getKey()).append("\"} ")
+                        .append(code.getValue().sum()).append('\n');
+            }
+        }
+
+        header(out, "bbrun_request_duration_seconds", "histogram", "HTTP request latency");
+        for (Endpoint endpoint : sorted.values()) {
+            endpoint.writeHistogram(out);
+        }
+
+        out.append("# EOF\n");
+    }
+
+    private static void writeGenerator(StringBuilder out, GeneratorMonitor monitor) {
+        GeneratorMonitor.Report report = monitor.report();
+        GeneratorMonitor.Sample latest = monitor.latest();
+        if (latest != null) {
+            // Gauges cover the last sample interval
+            if (latest.processCpuPercent() >= 0) {
+                gauge(out, "bbrun_generator_cpu_ratio", "Share of all processors bbrun used",
+                        latest.processCpuPercent() / 100);
+            }
+            if (latest.machineCpuPercent() >= 0) {
+                gauge(out, "bbrun_generator_machine_cpu_ratio", "Share of all processors the machine used",
+                        latest.machineCpuPercent() / 100);
+            }
+            gauge(out, "bbrun_generator_hiccup_max_seconds", "Longest stall of the JVM in the last interval",
+                    latest.hiccupMaxMs() / 1000);
+            gauge(out, "bbrun_generator_schedule_lag_max_seconds",
+                    "Latest start of a paced iteration in the last interval", latest.scheduleLagMaxMs() / 1000);
+        }
+        counter(out, "bbrun_generator_gc_pauses", "GC pauses of the bbrun JVM", report.gcPauses());
+        counter(out, "bbrun_generator_gc_pause_seconds", "Time the bbrun JVM spent in GC pauses",
+                report.gcPauseMs() / 1000);
+        gauge(out, "bbrun_generator_saturated", "1 if the generator likely distorted measurements",
+                report.saturated() ? 1 : 0);
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    }
+
+    private static void counter(StringBuilder out, String name, String help, double value) {
+        header(out, name, "counter", help);
+        out.append(name).append("_total ");
+        appendNumber(out, value);
+        out.append('\n');
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, double value) {
+        header(out, name, "gauge", help);
+        out.append(name).append(' ');
+        appendNumber(out, value);
+        out.append('\n');
+    }
+
+    private static void appendNumber(StringBuilder out, double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+    }
+
+    // ========== Endpoints ==========
+
+    private Endpoint endpoint(String method, String path) {
+        String key = method + ' ' + path;
+        Endpoint endpoint = endpoints.get(key);
+        if (endpoint == null) {
+            if (endpoints.size() >= MAX_ENDPOINTS) {
+                return endpoints.computeIfAbsent(method + ' ' + OTHER, k -> new Endpoint(method, OTHER));
+            }
+            endpoint = endpoints.computeIfAbsent(key, k -> new Endpoint(method, path));
+        }
+        return endpoint;
+    }
+
+    /**
+     * Per-endpoint status counts and latency histogram.
+     */
+    private static final class Endpoint {
+        final String method;
+        final String path;
+        final ConcurrentHashMap<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        final LongAdder[] buckets = new LongAdder[BUCKETS.length];
+        final LongAdder count = new LongAdder();
+        final LongAdder sumMillis = new LongAdder();
+
+        Endpoint(String method, String path) {
+            this.method = method;
+            this.path = path;
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(int status, long durationMs) {
+            LongAdder code = statuses.get(status);
+            if (code == null) {
+                code = statuses.computeIfAbsent(status, s -> new LongAdder());
+            }
+            code.increment();
+
+            // Non-cumulative here; exposition adds them up
+            double seconds = durationMs / 1000.0;
+            for (int i = 0; i < BUCKETS.length; i++) {
+                if (seconds <= BUCKETS[i]) {
+                    buckets[i].increment();
+                    break;
+                }
+            }
+            count.increment();
+            sumMillis.add(durationMs);
+        }
+
+        void labels(StringBuilder out) {
+            out.append("method=\"");
+            escape(out, method);
+            out.append("\",endpoint=\"");
+            escape(out, path);
+            out.append('"');
+        }
+
+        void writeHistogram(StringBuilder out) {
+            // Read the total first so buckets never exceed it mid-update
+            long total = count.sum();
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS.length; i++) {
+                cumulative = Math.min(total, cumulative + buckets[i].sum());
+                out.append("bbrun_request_duration_seconds_bucket{");
+                labels(out);
+                out.append(",le=\"").append(BUCKETS[i]).append("\"} ").append(cumulative).append('\n');
+            }
+            out.append("bbrun_request_duration_seconds_bucket{");
+            labels(out);
+            out.append(",le=\"+Inf\"} ").append(total).append('\n');
+            out.append("bbrun_request_duration_seconds_count{");
+            labels(out);
+            out.append("} ").append(total).append('\n');
+            out.append("bbrun_request_duration_seconds_sum{");
+            labels(out);
+            out.append("} ").append(sumMillis.sum() / 1000.0).append('\n');
+        }
+
+        private static void escape(StringBuilder out, String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '\\' -> out.append("\\\\");
+                    case '"' -> out.append("\\\"");
+                    case '\n' -> out.append("\\n");
+                    default -> out.append(c);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.bbrun.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Embedded HTTP endpoint serving {@link LiveMetrics} at {@code /metrics} in
+ * OpenMetrics text format, for Prometheus to scrape during long runs.
+ *
+ * <p>
+ * Requests are handled on one daemon thread of the server's own, so
+ * scrapes never compete with the executor running scripts.
+ */
+public class MetricsServer implements AutoCloseable {
+
+    static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private MetricsServer(HttpServer server, ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+    }
+
+    /**
+     * Start serving the given metrics. Port 0 picks a free port, see
+     * {@link #getAddress()}.
+     */
+    public static MetricsServer start(InetSocketAddress address, LiveMetrics metrics) throws IOException {
+        HttpServer server = HttpServer.create(address, 0);
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bbrun-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/metrics", exchange -> serve(exchange, metrics));
+        server.start();
+        return new MetricsServer(server, executor);
+    }
+
+    private static void serve(HttpExchange exchange, LiveMetrics metrics) throws IOException {
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            StringBuilder text = new StringBuilder(4096);
+            metrics.writeOpenMetrics(text);
+            byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            if (method.equals("HEAD")) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /**
+     * Address the server is bound to, with the actual port.
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Stop serving; a scrape in progress is cut off.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,93 @@
+package org.bbrun.metrics;
+
+import org.bbrun.events.EventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-endpoint latency histograms and request counts of a run, for
+ * comparing runs with each other.
+ *
+ * <p>
+ * Endpoints are keyed by method and path template like {@link LiveMetrics},
+ * and bounded the same way. Attach one instance to every execution of the run;
+ * {@link #snapshot()} may be taken while it is in progress.
+ */
+public class RunStatistics implements EventListener {
+
+    private static final String OTHER = "other";
+
+    private final ConcurrentHashMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * Counts and latency of one endpoint, copied out of a run.
+     */
+    public record EndpointStats(String method, String endpoint, long errors, LatencyHistogram latency) {
+        public long count() {
+            return latency.count();
+        }
+    }
+
+    @Override
+    public void onRequestComplete(RequestEvent event) {
+        endpoint(event.method(), event.endpoint()).record(event.success(), event.durationMs() * 1_000_000);
+    }
+
+    /**
+     * Time since the statistics were created, in milliseconds.
+     */
+    public long elapsedMs() {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    /**
+     * Copy of every endpoint's figures so far.
+     */
+    public List<EndpointStats> snapshot() {
+        List<EndpointStats> stats = new ArrayList<>();
+        for (Endpoint endpoint : endpoints.values()) {
+            stats.add(endpoint.snapshot());
+        }
+        return stats;
+    }
+
+    private Endpoint endpoint(String method, String path) {
+        String key = method + ' ' + path;
+        Endpoint endpoint = endpoints.get(key);
+        if (endpoint == null) {
+            if (endpoints.size() >= LiveMetrics.MAX_ENDPOINTS) {
+                return endpoints.computeIfAbsent(method + ' ' + OTHER, k -> new Endpoint(method, OTHER));
+            }
+            endpoint = endpoints.computeIfAbsent(key, k -> new Endpoint(method, path));
+        }
+        return endpoint;
+    }
+
+    private static final class Endpoint {
+        final String method;
+        final String path;
+        final LatencyHistogram latency = new LatencyHistogram();
+        long errors;
+
+        Endpoint(String method, String path) {
+            this.method = method;
+            this.path = path;
+        }
+
+        synchronized void record(boolean success, long durationNanos) {
+            latency.record(durationNanos);
+            if (!success) {
+                errors++;
+            }
+        }
+
+        synchronized EndpointStats snapshot() {
+            LatencyHistogram copy = new LatencyHistogram();
+            copy.merge(latency);
+            return new EndpointStats(method, path, errors, copy);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.bbrun.metrics;
+
+import java.time.Duration;
+
+/**
+ * Latency and errors of the most recent stretch of a run, e.g. the last 10
+ * seconds, next to the totals since the start.
+ *
+ * <p>
+ * The window is split into {@link #SLOTS} slots with a histogram each;
+ * recording goes to the current slot, and the oldest slot is cleared as
+ * time moves on. A window therefore covers between nine and ten tenths of
+ * its length. Safe for any number of recording threads.
+ */
+public class SlidingWindow {
+
+    public static final int SLOTS = 10;
+
+    /**
+     * Figures of a window: the requests in it, those that failed, and their
+     * latency in nanoseconds. Times are relative to the window's creation.
+     */
+    public record Snapshot(long fromNanos, long toNanos, long errors, LatencyHistogram latency) {
+        public long requests() {
+            return latency.count();
+        }
+
+        /**
+         * Percentage of requests that failed, 0 without requests.
+         */
+        public double errorRatePercent() {
+            return requests() == 0 ? 0 : 100.0 * errors / requests();
+        }
+
+        /**
+         * This and another window together, e.g. the same stretch measured
+         * by two generators.
+         */
+        public Snapshot plus(Snapshot other) {
+            LatencyHistogram both = new LatencyHistogram();
+            both.merge(latency);
+            both.merge(other.latency);
+            return new Snapshot(Math.min(fromNanos, other.fromNanos), Math.max(toNanos, other.toNanos),
+                    errors + other.errors, both);
+        }
+    }
+
+    private final long slotNanos;
+    private final long startNanos = System.nanoTime();
+    private final LatencyHistogram[] slots = new LatencyHistogram[SLOTS];
+    private final long[] slotErrors = new long[SLOTS];
+    private long slot;
+
+    private final LatencyHistogram total = new LatencyHistogram();
+    private long totalErrors;
+
+    public SlidingWindow(Duration length) {
+        this.slotNanos = Math.max(1, length.toNanos() / SLOTS);
+        for (int i = 0; i < SLOTS; i++) {
+            slots[i] = new LatencyHistogram();
+        }
+    }
+
+    public synchronized void record(long durationNanos, boolean success) {
+        advance();
+        int i = (int) (slot % SLOTS);
+        slots[i].record(durationNanos);
+        total.record(durationNanos);
+        if (!success) {
+            slotErrors[i]++;
+            totalErrors++;
+        }
+    }
+
+    /**
+     * The window ending now.
+     */
+    public synchronized Snapshot window() {
+        advance();
+        LatencyHistogram latency = new LatencyHistogram();
+        long errors = 0;
+        for (int i = 0; i < SLOTS; i++) {
+            latency.merge(slots[i]);
+            errors += slotErrors[i];
+        }
+        long to = System.nanoTime() - startNanos;
+        return new Snapshot(Math.max(0, (slot - SLOTS + 1) * slotNanos), to, errors, latency);
+    }
+
+    /**
+     * Everything recorded since the window was created.
+     */
+    public synchronized Snapshot total() {
+        LatencyHistogram latency = new LatencyHistogram();
+        latency.merge(total);
+        return new Snapshot(0, System.nanoTime() - startNanos, totalErrors, latency);
+    }
+
+    /**
+     * Clear the slots time has moved past.
+     */
+    private void advance() {
+        long now = (System.nanoTime() - startNanos) / slotNanos;
+        long stale = Math.min(now - slot, SLOTS);
+        for (long s = 1; s <= stale; s++) {
+            int i = (int) ((slot + s) % SLOTS);
+            slots[i].reset();
+            slotErrors[i] = 0;
+        }
+        slot = now;
+    }
+}
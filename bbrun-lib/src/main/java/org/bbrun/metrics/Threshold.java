@@ -0,0 +1,86 @@
+package org.bbrun.metrics;
+
+import org.bbrun.BBRunException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Upper limit on a figure of a run, e.g. {@code p95: 200} for a 95th
+ * percentile latency of at most 200 ms.
+ *
+ * <p>
+ * Metrics are {@code p50}, {@code p90}, {@code p95}, {@code p99},
+ * {@code max} and {@code mean} in milliseconds, and {@code errorRate} as a
+ * percentage of requests.
+ */
+public record Threshold(String metric, double limit) {
+
+    private static final List<String> METRICS = List.of("p50", "p90", "p95", "p99", "max", "mean", "errorRate");
+
+    public Threshold {
+        if (!METRICS.contains(metric)) {
+            throw new BBRunException("Unknown threshold " + metric + ", expected one of " + METRICS);
+        }
+        if (!(limit >= 0)) {
+            throw new BBRunException("Threshold " + metric + " must be a non-negative number");
+        }
+    }
+
+    /**
+     * Thresholds of a script object such as {@code { p95: 200, errorRate: 1 }}.
+     */
+    public static List<Threshold> parse(Object value) {
+        if (!(value instanceof Map<?, ?> map)) {
+            throw new BBRunException("thresholds must be an object, e.g. { p95: 200, errorRate: 1 }");
+        }
+        List<Threshold> thresholds = new ArrayList<>();
+        map.forEach((metric, limit) -> {
+            if (!(limit instanceof Number number)) {
+                throw new BBRunException("Threshold " + metric + " must be a number");
+            }
+            thresholds.add(new Threshold(String.valueOf(metric), number.doubleValue()));
+        });
+        return thresholds;
+    }
+
+    /**
+     * Value of the metric in a window, in milliseconds or percent.
+     */
+    public double measure(SlidingWindow.Snapshot window) {
+        LatencyHistogram latency = window.latency();
+        return switch (metric) {
+            case "p50" -> latency.valueAtPercentile(50) / 1e6;
+            case "p90" -> latency.valueAtPercentile(90) / 1e6;
+            case "p95" -> latency.valueAtPercentile(95) / 1e6;
+            case "p99" -> latency.valueAtPercentile(99) / 1e6;
+            case "max" -> latency.max() / 1e6;
+            case "mean" -> latency.mean() / 1e6;
+            default -> window.errorRatePercent();
+        };
+    }
+
+    public boolean isBreachedBy(double value) {
+        return value > limit;
+    }
+
+    /**
+     * Readable limit, e.g. {@code p95 <= 200 ms}.
+     */
+    @Override
+    public String toString() {
+        return metric + " <= " + format(limit) + unit();
+    }
+
+    public String unit() {
+        return metric.equals("errorRate") ? "%" : " ms";
+    }
+
+    public static String format(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15
+                ? Long.toString((long) value)
+                : String.format(Locale.ROOT, "%.1f", value);
+    }
+}
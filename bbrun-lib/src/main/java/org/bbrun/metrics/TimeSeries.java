@@ -0,0 +1,118 @@
+package org.bbrun.metrics;
+
+import org.bbrun.events.EventListener;
+
+import java.util.Arrays;
+
+/**
+ * Per-second throughput, errors, latency percentiles and the peak number of
+ * running virtual users of a run, for charts over time.
+ *
+ * <p>
+ * Requests count towards the second they complete in. Each second keeps
+ * one histogram only until the next second starts; what remains is a row
+ * of numbers, so a day-long run takes a few MB. Attach one instance to
+ * every execution of the run.
+ */
+public class TimeSeries implements EventListener {
+
+    /**
+     * Receives the rows of a series; latencies in nanoseconds.
+     */
+    @FunctionalInterface
+    public interface RowConsumer {
+        void accept(int second, long requests, long errors, long p50, long p90, long p95, long p99, long max,
+                int activeUsers);
+    }
+
+    private static final int COLUMNS = 8;
+    private static final int REQUESTS = 0;
+    private static final int ERRORS = 1;
+    private static final int P50 = 2;
+    private static final int P90 = 3;
+    private static final int P95 = 4;
+    private static final int P99 = 5;
+    private static final int MAX = 6;
+    private static final int ACTIVE = 7;
+
+    private final long startEpochMillis = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+
+    // Closed seconds, row-major
+    private long[] rows = new long[64 * COLUMNS];
+    private int size;
+
+    private long second;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private long errors;
+    private int activeUsers;
+    private int peakActiveUsers;
+
+    @Override
+    public synchronized void onUserStart(UserEvent event) {
+        advance();
+        activeUsers++;
+        peakActiveUsers = Math.max(peakActiveUsers, activeUsers);
+    }
+
+    @Override
+    public synchronized void onUserComplete(UserEvent event) {
+        advance();
+        activeUsers--;
+    }
+
+    @Override
+    public synchronized void onRequestComplete(RequestEvent event) {
+        advance();
+        latency.record(event.durationMs() * 1_000_000);
+        if (!event.success()) {
+            errors++;
+        }
+    }
+
+    public long startEpochMillis() {
+        return startEpochMillis;
+    }
+
+    /**
+     * Visit every second from the start to now, the current one included.
+     */
+    public synchronized void forEach(RowConsumer consumer) {
+        advance();
+        for (int i = 0; i < size; i++) {
+            int base = i * COLUMNS;
+            consumer.accept(i, rows[base + REQUESTS], rows[base + ERRORS], rows[base + P50], rows[base + P90],
+                    rows[base + P95], rows[base + P99], rows[base + MAX], (int) rows[base + ACTIVE]);
+        }
+        consumer.accept(size, latency.count(), errors, latency.valueAtPercentile(50),
+                latency.valueAtPercentile(90), latency.valueAtPercentile(95), latency.valueAtPercentile(99),
+                latency.max(), peakActiveUsers);
+    }
+
+    /**
+     * Close the seconds that have passed.
+     */
+    private void advance() {
+        long now = (System.nanoTime() - startNanos) / 1_000_000_000;
+        while (second < now) {
+            if (rows.length < (size + 1) * COLUMNS) {
+                rows = Arrays.copyOf(rows, rows.length * 2);
+            }
+            int base = size * COLUMNS;
+            rows[base + REQUESTS] = latency.count();
+            rows[base + ERRORS] = errors;
+            rows[base + P50] = latency.valueAtPercentile(50);
+            rows[base + P90] = latency.valueAtPercentile(90);
+            rows[base + P95] = latency.valueAtPercentile(95);
+            rows[base + P99] = latency.valueAtPercentile(99);
+            rows[base + MAX] = latency.max();
+            rows[base + ACTIVE] = peakActiveUsers;
+            size++;
+
+            latency.reset();
+            errors = 0;
+            peakActiveUsers = activeUsers;
+            second++;
+        }
+    }
+}
@@ -1,11 +1,15 @@
 package org.bbrun.parser;
 
 import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.*;
 import org.bbrun.BBRunException;
 import org.bbrun.ast.*;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.function.Function;
 
 /**
  * Builds AST from ANTLR parse tree.
@@ -22,25 +26,39 @@ public class AstBuilder extends BBRunBaseVisitor<Object> {
      * Parse source code and build AST.
      */
     public static ScriptNode parse(String source, String sourcePath) {
-        CharStream input = CharStreams.fromString(source);
-        BBRunLexer lexer = new BBRunLexer(input);
+        BBRunParser.ScriptContext scriptCtx = parseRule(source, sourcePath, 0, BBRunParser::script);
+        AstBuilder builder = new AstBuilder(sourcePath);
+        return builder.visitScript(scriptCtx);
+    }
+
+    /**
+     * Run a parser rule in two stages. The fast SLL pass bails out on the
+     * first error; only then is the input re-parsed with full LL prediction
+     * and the error listener, which also gives the precise error message.
+     *
+     * <p>
+     * The generated lexer and parser keep their DFA caches in static fields,
+     * so predictions learned on one file are reused by every later parse in
+     * the JVM.
+     */
+    private static <T extends ParserRuleContext> T parseRule(String source, String sourcePath,
+            int lineOffset, Function<BBRunParser, T> rule) {
+        BBRunLexer lexer = new BBRunLexer(CharStreams.fromString(source));
         CommonTokenStream tokens = new CommonTokenStream(lexer);
         BBRunParser parser = new BBRunParser(tokens);
 
-        // Custom error handling
         parser.removeErrorListeners();
-        parser.addErrorListener(new BaseErrorListener() {
-            @Override
-            public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol,
-                    int line, int charPositionInLine, String msg,
-                    RecognitionException e) {
-                throw new BBRunException("Syntax error: " + msg, line, sourcePath);
-            }
-        });
-
-        BBRunParser.ScriptContext scriptCtx = parser.script();
-        AstBuilder builder = new AstBuilder(sourcePath);
-        return builder.visitScript(scriptCtx);
+        parser.setErrorHandler(new BailErrorStrategy());
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        try {
+            return rule.apply(parser);
+        } catch (ParseCancellationException e) {
+            parser.reset();
+            parser.addErrorListener(new ThrowingErrorListener(sourcePath, lineOffset));
+            parser.setErrorHandler(new DefaultErrorStrategy());
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            return rule.apply(parser);
+        }
     }
 
     @Override
@@ -75,7 +93,7 @@ public class AstBuilder extends BBRunBaseVisitor<Object> {
 
     @Override
     public Object visitVariableDecl(BBRunParser.VariableDeclContext ctx) {
-        String name = ctx.IDENTIFIER().getText();
+        String name = ctx.name().getText();
         ExpressionNode value = (ExpressionNode) visit(ctx.expression());
         return new VariableNode(name, value, ctx.getStart().getLine());
     }
@@ -104,7 +122,9 @@ public class AstBuilder extends BBRunBaseVisitor<Object> {
             authClause = (AuthClauseNode) visit(ctx.authClause());
         }
 
-        return new RequestNode(method, path, body, authClause, ctx.getStart().getLine());
+        Double limit = ctx.requestLimit() != null ? perSecond(ctx.requestLimit().rate()) : null;
+
+        return new RequestNode(method, path, body, authClause, limit, ctx.getStart().getLine());
     }
 
     @Override
@@ -112,10 +132,15 @@ public class AstBuilder extends BBRunBaseVisitor<Object> {
         if (ctx.STRING() != null) {
             // Full URL as string
             String url = stripQuotes(ctx.STRING().getText());
+            int line = ctx.getStart().getLine();
+            InterpolatedStringNode template = url.contains("${")
+                    ? interpolate(url, line)
+                    : new InterpolatedStringNode(List.of(new InterpolatedStringNode.TextPart(url)));
             return new PathNode(
                     List.of(new PathNode.LiteralSegment(url)),
                     Map.of(),
-                    ctx.getStart().getLine());
+                    template,
+                    line);
         }
 
         // Path segments: #users/${id}/posts
@@ -128,14 +153,14 @@ public class AstBuilder extends BBRunBaseVisitor<Object> {
         Map<String, ExpressionNode> queryParams = new LinkedHashMap<>();
         if (ctx.queryParams() != null) {
             for (BBRunParser.QueryParamContext qp : ctx.queryParams().queryParam()) {
-                String key = qp.IDENTIFIER(0).getText();
+                String key = qp.name(0).getText();
                 ExpressionNode value;
                 if (qp.STRING() != null) {
-                    value = new LiteralNode(stripQuotes(qp.STRING().getText()), LiteralNode.LiteralType.STRING);
+                    value = stringExpression(qp.STRING());
                 } else if (qp.interpolation() != null) {
                     value = (ExpressionNode) visit(qp.interpolation().expression());
-                } else if (qp.IDENTIFIER().size() > 1) {
-                    value = new IdentifierNode(qp.IDENTIFIER(1).getText());
+                } else if (qp.name().size() > 1) {
+                    value = new IdentifierNode(qp.name(1).getText());
                 } else {
                     value = new LiteralNode("", LiteralNode.LiteralType.STRING);
                 }
@@ -216,6 +241,74 @@ public class AstBuilder extends BBRunBaseVisitor<Object> {
         return new RepeatNode(count, body, ctx.getStart().getLine());
     }
 
+    @Override
+    public Object visitParallelStatement(BBRunParser.ParallelStatementContext ctx) {
+        Map<String, ExpressionNode> options = new LinkedHashMap<>();
+        for (BBRunParser.ParallelOptionContext option : ctx.parallelOptions().parallelOption()) {
+            options.put(option.name().getText(), (ExpressionNode) visit(option.expression()));
+        }
+        List<StatementNode> body = parseBlock(ctx.block());
+        return new ParallelNode(options, body, ctx.getStart().getLine());
+    }
+
+    @Override
+    public Object visitLimitStatement(BBRunParser.LimitStatementContext ctx) {
+        return new LimitNode(perSecond(ctx.rate()), ctx.getStart().getLine());
+    }
+
+    @Override
+    public Object visitPaceStatement(BBRunParser.PaceStatementContext ctx) {
+        return new PaceNode(duration(ctx.duration()), ctx.getStart().getLine());
+    }
+
+    @Override
+    public Object visitThinkStatement(BBRunParser.ThinkStatementContext ctx) {
+        Duration min = duration(ctx.duration(0));
+        Duration max = ctx.duration().size() > 1 ? duration(ctx.duration(1)) : min;
+        if (max.compareTo(min) < 0) {
+            throw new BBRunException("think range must not end before it starts", ctx.getStart().getLine(),
+                    sourcePath);
+        }
+        return new ThinkNode(min, max, ctx.getStart().getLine());
+    }
+
+    /**
+     * A rate such as {@code 50/s} or {@code 600/m}, per second.
+     */
+    private double perSecond(BBRunParser.RateContext ctx) {
+        double amount = Double.parseDouble(ctx.NUMBER().getText());
+        double seconds = switch (ctx.IDENTIFIER().getText()) {
+            case "s" -> 1;
+            case "m" -> 60;
+            case "h" -> 3600;
+            default -> throw new BBRunException("Unknown rate unit " + ctx.IDENTIFIER().getText()
+                    + ", expected s, m or h", ctx.getStart().getLine(), sourcePath);
+        };
+        if (!(amount > 0)) {
+            throw new BBRunException("limit must be a positive rate", ctx.getStart().getLine(), sourcePath);
+        }
+        return amount / seconds;
+    }
+
+    /**
+     * A duration such as {@code 500ms}, {@code 2s} or {@code 1.5m}.
+     */
+    private Duration duration(BBRunParser.DurationContext ctx) {
+        double amount = Double.parseDouble(ctx.NUMBER().getText());
+        double millis = switch (ctx.IDENTIFIER().getText()) {
+            case "ms" -> 1;
+            case "s" -> 1_000;
+            case "m" -> 60_000;
+            case "h" -> 3_600_000;
+            default -> throw new BBRunException("Unknown duration unit " + ctx.IDENTIFIER().getText()
+                    + ", expected ms, s, m or h", ctx.getStart().getLine(), sourcePath);
+        };
+        if (amount < 0) {
+            throw new BBRunException("Duration must not be negative", ctx.getStart().getLine(), sourcePath);
+        }
+        return Duration.ofMillis(Math.round(amount * millis));
+    }
+
     private List<StatementNode> parseBlock(BBRunParser.BlockContext ctx) {
         List<StatementNode> statements = new ArrayList<>();
         for (BBRunParser.StatementContext stmtCtx : ctx.statement()) {
@@ -239,7 +332,7 @@ public class AstBuilder extends BBRunBaseVisitor<Object> {
         // Member access: expr.member
         if (ctx.DOT() != null) {
             ExpressionNode obj = (ExpressionNode) visit(ctx.expression(0));
-            String member = ctx.IDENTIFIER().getText();
+            String member = ctx.name().getText();
             return new MemberAccessNode(obj, member);
         }
 
@@ -262,6 +355,15 @@ public class AstBuilder extends BBRunBaseVisitor<Object> {
                 }
                 return new FunctionCallNode(id.name(), args);
             }
+            if (callee instanceof MemberAccessNode member) {
+                List<ExpressionNode> args = new ArrayList<>();
+                if (ctx.argumentList() != null) {
+                    for (BBRunParser.ExpressionContext argCtx : ctx.argumentList().expression()) {
+                        args.add((ExpressionNode) visit(argCtx));
+                    }
+                }
+                return new MethodCallNode(member.object(), member.member(), args);
+            }
         }
 
         // Binary comparisons
@@ -336,7 +438,7 @@ public class AstBuilder extends BBRunBaseVisitor<Object> {
         }
 
         if (ctx.STRING() != null) {
-            return new LiteralNode(stripQuotes(ctx.STRING().getText()), LiteralNode.LiteralType.STRING);
+            return stringExpression(ctx.STRING());
         }
 
         if (ctx.TRUE() != null) {
@@ -349,8 +451,8 @@ public class AstBuilder extends BBRunBaseVisitor<Object> {
             return new LiteralNode(null, LiteralNode.LiteralType.NULL);
         }
 
-        if (ctx.IDENTIFIER() != null) {
-            return new IdentifierNode(ctx.IDENTIFIER().getText());
+        if (ctx.name() != null) {
+            return new IdentifierNode(ctx.name().getText());
         }
 
         // Built-in objects
@@ -395,7 +497,7 @@ public class AstBuilder extends BBRunBaseVisitor<Object> {
             if (propCtx.STRING() != null) {
                 key = stripQuotes(propCtx.STRING().getText());
             } else {
-                key = propCtx.IDENTIFIER().getText();
+                key = propCtx.name().getText();
             }
             ExpressionNode value = (ExpressionNode) visit(propCtx.expression());
             properties.put(key, value);
@@ -424,8 +526,94 @@ public class AstBuilder extends BBRunBaseVisitor<Object> {
         return new FunctionCallNode(name, args);
     }
 
+    // ========== String Interpolation ==========
+
+    /**
+     * Build a string expression. Strings without {@code ${...}} stay plain
+     * literals; the rest are precompiled into literal chunks and expression slots.
+     */
+    private ExpressionNode stringExpression(TerminalNode token) {
+        String text = stripQuotes(token.getText());
+        if (!text.contains("${")) {
+            return new LiteralNode(text, LiteralNode.LiteralType.STRING);
+        }
+        return interpolate(text, token.getSymbol().getLine());
+    }
+
+    private InterpolatedStringNode interpolate(String text, int line) {
+        List<InterpolatedStringNode.StringPart> parts = new ArrayList<>();
+        int pos = 0;
+
+        while (pos < text.length()) {
+            int start = text.indexOf("${", pos);
+            if (start < 0) {
+                parts.add(new InterpolatedStringNode.TextPart(text.substring(pos)));
+                break;
+            }
+            int end = findClosingBrace(text, start + 2);
+            if (end < 0) {
+                throw new BBRunException("Unterminated interpolation in string", line, sourcePath);
+            }
+            if (start > pos) {
+                parts.add(new InterpolatedStringNode.TextPart(text.substring(pos, start)));
+            }
+            ExpressionNode expr = parseEmbeddedExpression(text.substring(start + 2, end), line);
+            parts.add(new InterpolatedStringNode.ExpressionPart(expr));
+            pos = end + 1;
+        }
+
+        return new InterpolatedStringNode(List.copyOf(parts));
+    }
+
+    private int findClosingBrace(String text, int from) {
+        int depth = 0;
+        for (int i = from; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                if (depth == 0) {
+                    return i;
+                }
+                depth--;
+            }
+        }
+        return -1;
+    }
+
+    private ExpressionNode parseEmbeddedExpression(String source, int line) {
+        String expr = source.strip();
+        BBRunParser.ExpressionContext exprCtx = parseRule(expr, sourcePath, line - 1, BBRunParser::expression);
+        // The expression rule has no EOF anchor, so check it consumed everything
+        if (exprCtx.getStop() == null || exprCtx.getStop().getStopIndex() != expr.length() - 1) {
+            throw new BBRunException("Invalid interpolation: ${" + source + "}", line, sourcePath);
+        }
+        return (ExpressionNode) visit(exprCtx);
+    }
+
     // ========== Helpers ==========
 
+    /**
+     * Error listener that fails on the first syntax error.
+     * {@code lineOffset} maps lines of embedded sources back to the script.
+     */
+    private static final class ThrowingErrorListener extends BaseErrorListener {
+        private final String sourcePath;
+        private final int lineOffset;
+
+        ThrowingErrorListener(String sourcePath, int lineOffset) {
+            this.sourcePath = sourcePath;
+            this.lineOffset = lineOffset;
+        }
+
+        @Override
+        public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol,
+                int line, int charPositionInLine, String msg,
+                RecognitionException e) {
+            throw new BBRunException("Syntax error: " + msg, line + lineOffset, sourcePath);
+        }
+    }
+
     private String stripQuotes(String s) {
         if (s.startsWith("\"") && s.endsWith("\"")) {
             return s.substring(1, s.length() - 1);
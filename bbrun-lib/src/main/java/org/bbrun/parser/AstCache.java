@@ -0,0 +1,250 @@
+package org.bbrun.parser;
+
+import org.bbrun.ast.ScriptNode;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache of parsed scripts keyed by content hash.
+ *
+ * <p>
+ * Two levels: an in-memory map shared within the JVM, holding the latest
+ * AST of up to {@value #MAX_MEMORY_ENTRIES} recently used paths, and an optional disk
+ * directory holding {@link AstCodec} files. Disk entries live under a
+ * directory named after the grammar fingerprint, so a new grammar, AST
+ * builder or AST format never reads stale entries. A hit at either level skips ANTLR
+ * entirely.
+ *
+ * <p>
+ * The disk location defaults to {@code $BBRUN_CACHE_DIR}, or
+ * {@code ~/.cache/bbrun/ast} if unset. Set {@code BBRUN_CACHE_DIR=off} to
+ * keep the cache in memory only.
+ */
+public final class AstCache {
+
+    private static final AstCache SHARED = new AstCache(defaultDirectory());
+
+    static final int MAX_MEMORY_ENTRIES = 1024;
+
+    private final Path directory;
+    // Keyed by path, so edits to a script replace its entry rather than add to a long-running daemon's heap
+    private final Map<String, MemoryEntry> memory = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, MemoryEntry> eldest) {
+            return size() > MAX_MEMORY_ENTRIES;
+        }
+    };
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong memoryNanos = new AtomicLong();
+    private final AtomicLong diskNanos = new AtomicLong();
+    private final AtomicLong parseNanos = new AtomicLong();
+
+    /**
+     * @param directory disk cache root, or null for an in-memory cache only
+     */
+    public AstCache(Path directory) {
+        this.directory = directory != null ? directory.resolve(GrammarVersion.ID) : null;
+    }
+
+    /**
+     * Cache shared by every {@link ScriptLoader} in this JVM.
+     */
+    public static AstCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Return the cached AST for {@code content}, parsing it on a miss.
+     */
+    public ScriptNode get(String content, String sourcePath, Supplier<ScriptNode> parser) {
+        long start = System.nanoTime();
+        String key = hash(content);
+
+        String path = sourcePath != null ? sourcePath : key;
+        ScriptNode cached = fromMemory(path, key);
+        if (cached != null) {
+            memoryHits.incrementAndGet();
+            memoryNanos.addAndGet(System.nanoTime() - start);
+            return withPath(cached, sourcePath);
+        }
+
+        cached = readDisk(key, sourcePath);
+        if (cached != null) {
+            toMemory(path, key, cached);
+            diskHits.incrementAndGet();
+            diskNanos.addAndGet(System.nanoTime() - start);
+            return cached;
+        }
+
+        ScriptNode parsed = parser.get();
+        toMemory(path, key, parsed);
+        writeDisk(key, parsed);
+        misses.incrementAndGet();
+        parseNanos.addAndGet(System.nanoTime() - start);
+        return parsed;
+    }
+
+    /**
+     * Drop all in-memory entries. Disk entries are kept.
+     */
+    public void clear() {
+        synchronized (memory) {
+            memory.clear();
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public Stats stats() {
+        return new Stats(
+                misses.get(), parseNanos.get(),
+                diskHits.get(), diskNanos.get(),
+                memoryHits.get(), memoryNanos.get());
+    }
+
+    /**
+     * Parse timings split by outcome: cold (full ANTLR parse), cached (read
+     * from disk) and warm (already in memory).
+     */
+    public record Stats(
+            long parsed, long parseNanos,
+            long diskHits, long diskNanos,
+            long memoryHits, long memoryNanos) {
+    }
+
+    // ========== Memory ==========
+
+    private record MemoryEntry(String key, ScriptNode script) {
+    }
+
+    private ScriptNode fromMemory(String path, String key) {
+        synchronized (memory) {
+            MemoryEntry entry = memory.get(path);
+            return entry != null && entry.key().equals(key) ? entry.script() : null;
+        }
+    }
+
+    private void toMemory(String path, String key, ScriptNode script) {
+        synchronized (memory) {
+            memory.put(path, new MemoryEntry(key, script));
+        }
+    }
+
+    // ========== Disk ==========
+
+    private ScriptNode readDisk(String key, String sourcePath) {
+        if (directory == null) {
+            return null;
+        }
+        Path file = directory.resolve(key + ".ast");
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            return AstCodec.decode(new BufferedInputStream(in), sourcePath);
+        } catch (IOException | RuntimeException e) {
+            // Corrupt or unreadable entry: drop it and parse again
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+            }
+            return null;
+        }
+    }
+
+    private void writeDisk(String key, ScriptNode script) {
+        if (directory == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            Path target = directory.resolve(key + ".ast");
+            Path tmp = Files.createTempFile(directory, key, ".tmp");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+                AstCodec.encode(script, out);
+            }
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException e) {
+            // The cache is best-effort; a read-only home must not fail the run
+        }
+    }
+
+    // ========== Helpers ==========
+
+    private static ScriptNode withPath(ScriptNode script, String sourcePath) {
+        if (sourcePath == null || sourcePath.equals(script.path())) {
+            return script;
+        }
+        return new ScriptNode(sourcePath, script.statements(), script.cleanupBlocks());
+    }
+
+    private static String hash(String content) {
+        return HexFormat.of().formatHex(sha256(content));
+    }
+
+    private static byte[] sha256(String content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static Path defaultDirectory() {
+        String configured = System.getenv("BBRUN_CACHE_DIR");
+        if (configured != null && !configured.isBlank()) {
+            return configured.equalsIgnoreCase("off") ? null : Path.of(configured);
+        }
+        String home = System.getProperty("user.home");
+        return home != null ? Path.of(home, ".cache", "bbrun", "ast") : null;
+    }
+
+    /**
+     * Fingerprint of the grammar, AST builder and AST format. The serialized
+     * ATNs are compile-time constants and the builder is read as a resource,
+     * so computing this does not load the parser.
+     */
+    private static final class GrammarVersion {
+        static final String ID = HexFormat.of().formatHex(sha256(
+                BBRunLexer._serializedATN + '\0' + BBRunParser._serializedATN
+                        + '\0' + AstCodec.FORMAT_VERSION
+                        + '\0' + classHash("AstBuilder.class") + '\0' + classHash("AstCodec.class")))
+                .substring(0, 16);
+
+        private static String classHash(String resource) {
+            try (InputStream in = AstCache.class.getResourceAsStream(resource)) {
+                if (in == null) {
+                    return "";
+                }
+                return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(in.readAllBytes()));
+            } catch (IOException | NoSuchAlgorithmException e) {
+                return "";
+            }
+        }
+    }
+}
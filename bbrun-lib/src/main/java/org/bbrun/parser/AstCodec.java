@@ -0,0 +1,830 @@
+package org.bbrun.parser;
+
+import org.bbrun.ast.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of a parsed {@link ScriptNode}.
+ *
+ * <p>
+ * Layout: magic, format version, a string table, then the node tree. Each
+ * node is a one-byte tag followed by its fields; strings are written once
+ * and referenced by index, ints use a variable-length encoding.
+ *
+ * <p>
+ * The script path is not stored. It is supplied on decode so that identical
+ * files at different locations share one entry.
+ */
+public final class AstCodec {
+
+    /** Bump whenever the AST records or this encoding change. */
+    public static final int FORMAT_VERSION = 4;
+
+    private static final int MAGIC = 0x42424153; // "BBAS"
+
+    // Statements
+    private static final int BASE_URL = 1;
+    private static final int BEARER_AUTH = 2;
+    private static final int BASIC_AUTH = 3;
+    private static final int API_KEY_AUTH = 4;
+    private static final int NAMED_AUTH = 5;
+    private static final int OAUTH = 6;
+    private static final int VARIABLE = 7;
+    private static final int REQUEST = 8;
+    private static final int ASSERT = 9;
+    private static final int WARN = 10;
+    private static final int PRINT = 11;
+    private static final int IF = 12;
+    private static final int REPEAT = 13;
+    private static final int PARALLEL = 14;
+    private static final int EXPECT = 15;
+    private static final int MACRO = 16;
+    private static final int RUN = 17;
+    private static final int CLEANUP = 18;
+    private static final int EXPRESSION_STATEMENT = 19;
+    private static final int LIMIT = 20;
+    private static final int PACE = 21;
+    private static final int THINK = 22;
+
+    // Expressions
+    private static final int NULL = 0;
+    private static final int LITERAL = 32;
+    private static final int IDENTIFIER = 33;
+    private static final int MEMBER_ACCESS = 34;
+    private static final int INDEX_ACCESS = 35;
+    private static final int FUNCTION_CALL = 36;
+    private static final int BINARY_OP = 37;
+    private static final int UNARY_OP = 38;
+    private static final int IS_CHECK = 39;
+    private static final int CONTAINS = 40;
+    private static final int MATCHES_SCHEMA = 41;
+    private static final int IGNORING = 42;
+    private static final int OBJECT_LITERAL = 43;
+    private static final int ARRAY_LITERAL = 44;
+    private static final int INTERPOLATED_STRING = 45;
+    private static final int METHOD_CALL = 46;
+
+    // Auth clauses
+    private static final int BEARER_CLAUSE = 64;
+    private static final int BASIC_CLAUSE = 65;
+    private static final int USING_CLAUSE = 66;
+    private static final int WITHOUT_AUTH = 67;
+
+    // Literal values
+    private static final int VALUE_NULL = 0;
+    private static final int VALUE_STRING = 1;
+    private static final int VALUE_LONG = 2;
+    private static final int VALUE_DOUBLE = 3;
+    private static final int VALUE_TRUE = 4;
+    private static final int VALUE_FALSE = 5;
+
+    private AstCodec() {
+    }
+
+    // ========== Encoding ==========
+
+    /**
+     * Encode a script to the given stream.
+     */
+    public static void encode(ScriptNode script, OutputStream out) throws IOException {
+        Writer writer = new Writer();
+        writer.statements(script.statements());
+        writer.count(script.cleanupBlocks().size());
+        for (CleanupNode cleanup : script.cleanupBlocks()) {
+            writer.statement(cleanup);
+        }
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(FORMAT_VERSION);
+        writeVarInt(data, writer.strings.size());
+        for (String s : writer.strings.keySet()) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(data, bytes.length);
+            data.write(bytes);
+        }
+        writer.body.writeTo(data);
+        data.flush();
+    }
+
+    public static byte[] encode(ScriptNode script) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        encode(script, bytes);
+        return bytes.toByteArray();
+    }
+
+    private static final class Writer {
+        private final Map<String, Integer> strings = new LinkedHashMap<>();
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(body);
+
+        void tag(int tag) throws IOException {
+            out.writeByte(tag);
+        }
+
+        void count(int n) throws IOException {
+            writeVarInt(out, n);
+        }
+
+        void string(String s) throws IOException {
+            if (s == null) {
+                writeVarInt(out, 0);
+                return;
+            }
+            Integer index = strings.get(s);
+            if (index == null) {
+                index = strings.size();
+                strings.put(s, index);
+            }
+            writeVarInt(out, index + 1);
+        }
+
+        void bool(boolean b) throws IOException {
+            out.writeBoolean(b);
+        }
+
+        void optionalDouble(Double value) throws IOException {
+            bool(value != null);
+            if (value != null) {
+                out.writeDouble(value);
+            }
+        }
+
+        void statements(List<StatementNode> statements) throws IOException {
+            if (statements == null) {
+                writeVarInt(out, 0);
+                return;
+            }
+            writeVarInt(out, statements.size() + 1);
+            for (StatementNode stmt : statements) {
+                statement(stmt);
+            }
+        }
+
+        void statement(StatementNode node) throws IOException {
+            if (node instanceof BaseUrlNode n) {
+                tag(BASE_URL);
+                string(n.url());
+            } else if (node instanceof BearerAuthNode n) {
+                tag(BEARER_AUTH);
+                expression(n.token());
+            } else if (node instanceof BasicAuthNode n) {
+                tag(BASIC_AUTH);
+                expression(n.username());
+                expression(n.password());
+            } else if (node instanceof ApiKeyAuthNode n) {
+                tag(API_KEY_AUTH);
+                string(n.header());
+                expression(n.value());
+            } else if (node instanceof NamedAuthNode n) {
+                tag(NAMED_AUTH);
+                string(n.name());
+                statement(n.auth());
+            } else if (node instanceof OAuthNode n) {
+                tag(OAUTH);
+                string(n.flowType());
+                expressionMap(n.config());
+            } else if (node instanceof VariableNode n) {
+                tag(VARIABLE);
+                string(n.name());
+                expression(n.value());
+            } else if (node instanceof RequestNode n) {
+                tag(REQUEST);
+                string(n.method());
+                path(n.path());
+                expression(n.body());
+                authClause(n.authClause());
+                optionalDouble(n.limit());
+            } else if (node instanceof AssertNode n) {
+                tag(ASSERT);
+                expression(n.condition());
+                string(n.message());
+            } else if (node instanceof WarnNode n) {
+                tag(WARN);
+                expression(n.condition());
+                string(n.message());
+            } else if (node instanceof PrintNode n) {
+                tag(PRINT);
+                expression(n.message());
+            } else if (node instanceof IfNode n) {
+                tag(IF);
+                expression(n.condition());
+                statements(n.thenBlock());
+                count(n.elseIfClauses().size());
+                for (IfNode.ElseIfClause clause : n.elseIfClauses()) {
+                    expression(clause.condition());
+                    statements(clause.block());
+                }
+                statements(n.elseBlock());
+            } else if (node instanceof RepeatNode n) {
+                tag(REPEAT);
+                expression(n.count());
+                statements(n.body());
+            } else if (node instanceof ParallelNode n) {
+                tag(PARALLEL);
+                expressionMap(n.options());
+                statements(n.body());
+            } else if (node instanceof ExpectNode n) {
+                tag(EXPECT);
+                expression(n.expectedStatus());
+                statements(n.body());
+            } else if (node instanceof MacroNode n) {
+                tag(MACRO);
+                string(n.name());
+                strings(n.params());
+                statements(n.body());
+            } else if (node instanceof RunNode n) {
+                tag(RUN);
+                string(n.scriptPath());
+                expressionMap(n.params());
+            } else if (node instanceof CleanupNode n) {
+                tag(CLEANUP);
+                statements(n.body());
+            } else if (node instanceof ExpressionStatementNode n) {
+                tag(EXPRESSION_STATEMENT);
+                expression(n.expression());
+            } else if (node instanceof LimitNode n) {
+                tag(LIMIT);
+                out.writeDouble(n.perSecond());
+            } else if (node instanceof PaceNode n) {
+                tag(PACE);
+                out.writeLong(n.interval().toMillis());
+            } else if (node instanceof ThinkNode n) {
+                tag(THINK);
+                out.writeLong(n.min().toMillis());
+                out.writeLong(n.max().toMillis());
+            } else {
+                throw new IOException("Unsupported statement: " + node.getClass().getSimpleName());
+            }
+            count(node.line());
+        }
+
+        void expression(ExpressionNode node) throws IOException {
+            if (node == null) {
+                tag(NULL);
+            } else if (node instanceof LiteralNode n) {
+                tag(LITERAL);
+                out.writeByte(n.type().ordinal());
+                value(n.value());
+            } else if (node instanceof IdentifierNode n) {
+                tag(IDENTIFIER);
+                string(n.name());
+            } else if (node instanceof MemberAccessNode n) {
+                tag(MEMBER_ACCESS);
+                expression(n.object());
+                string(n.member());
+            } else if (node instanceof IndexAccessNode n) {
+                tag(INDEX_ACCESS);
+                expression(n.object());
+                expression(n.index());
+            } else if (node instanceof FunctionCallNode n) {
+                tag(FUNCTION_CALL);
+                string(n.name());
+                expressions(n.arguments());
+            } else if (node instanceof MethodCallNode n) {
+                tag(METHOD_CALL);
+                expression(n.object());
+                string(n.name());
+                expressions(n.arguments());
+            } else if (node instanceof BinaryOpNode n) {
+                tag(BINARY_OP);
+                expression(n.left());
+                string(n.operator());
+                expression(n.right());
+            } else if (node instanceof UnaryOpNode n) {
+                tag(UNARY_OP);
+                string(n.operator());
+                expression(n.operand());
+            } else if (node instanceof IsCheckNode n) {
+                tag(IS_CHECK);
+                expression(n.expression());
+                string(n.typeOrFormat());
+                bool(n.isRegex());
+            } else if (node instanceof ContainsNode n) {
+                tag(CONTAINS);
+                expression(n.container());
+                expression(n.item());
+                bool(n.negated());
+                out.writeByte(n.mode().ordinal());
+            } else if (node instanceof MatchesSchemaNode n) {
+                tag(MATCHES_SCHEMA);
+                expression(n.expression());
+                expression(n.schema());
+            } else if (node instanceof IgnoringNode n) {
+                tag(IGNORING);
+                expression(n.expression());
+                strings(n.fields());
+            } else if (node instanceof ObjectLiteralNode n) {
+                tag(OBJECT_LITERAL);
+                expressionMap(n.properties());
+            } else if (node instanceof ArrayLiteralNode n) {
+                tag(ARRAY_LITERAL);
+                expressions(n.elements());
+            } else if (node instanceof InterpolatedStringNode n) {
+                tag(INTERPOLATED_STRING);
+                interpolated(n);
+            } else {
+                throw new IOException("Unsupported expression: " + node.getClass().getSimpleName());
+            }
+        }
+
+        void interpolated(InterpolatedStringNode node) throws IOException {
+            count(node.parts().size());
+            for (InterpolatedStringNode.StringPart part : node.parts()) {
+                if (part instanceof InterpolatedStringNode.TextPart text) {
+                    bool(true);
+                    string(text.text());
+                } else if (part instanceof InterpolatedStringNode.ExpressionPart slot) {
+                    bool(false);
+                    expression(slot.expression());
+                }
+            }
+        }
+
+        void path(PathNode path) throws IOException {
+            count(path.segments().size());
+            for (PathNode.PathSegment segment : path.segments()) {
+                if (segment instanceof PathNode.LiteralSegment lit) {
+                    bool(true);
+                    string(lit.value());
+                } else if (segment instanceof PathNode.InterpolatedSegment interp) {
+                    bool(false);
+                    expression(interp.expression());
+                }
+            }
+            expressionMap(path.queryParams());
+            interpolated(path.template());
+            count(path.line());
+        }
+
+        void authClause(AuthClauseNode clause) throws IOException {
+            if (clause == null) {
+                tag(NULL);
+            } else if (clause instanceof BearerClause c) {
+                tag(BEARER_CLAUSE);
+                expression(c.token());
+            } else if (clause instanceof BasicClause c) {
+                tag(BASIC_CLAUSE);
+                expression(c.username());
+                expression(c.password());
+            } else if (clause instanceof UsingClause c) {
+                tag(USING_CLAUSE);
+                string(c.name());
+            } else if (clause instanceof WithoutAuth) {
+                tag(WITHOUT_AUTH);
+            } else {
+                throw new IOException("Unsupported auth clause: " + clause.getClass().getSimpleName());
+            }
+        }
+
+        void value(Object value) throws IOException {
+            if (value == null) {
+                out.writeByte(VALUE_NULL);
+            } else if (value instanceof String s) {
+                out.writeByte(VALUE_STRING);
+                string(s);
+            } else if (value instanceof Long || value instanceof Integer) {
+                out.writeByte(VALUE_LONG);
+                out.writeLong(((Number) value).longValue());
+            } else if (value instanceof Number n) {
+                out.writeByte(VALUE_DOUBLE);
+                out.writeDouble(n.doubleValue());
+            } else if (value instanceof Boolean b) {
+                out.writeByte(b ? VALUE_TRUE : VALUE_FALSE);
+            } else {
+                throw new IOException("Unsupported literal: " + value.getClass().getSimpleName());
+            }
+        }
+
+        void expressions(List<ExpressionNode> list) throws IOException {
+            count(list.size());
+            for (ExpressionNode expr : list) {
+                expression(expr);
+            }
+        }
+
+        void expressionMap(Map<String, ExpressionNode> map) throws IOException {
+            count(map.size());
+            for (Map.Entry<String, ExpressionNode> entry : map.entrySet()) {
+                string(entry.getKey());
+                expression(entry.getValue());
+            }
+        }
+
+        void strings(List<String> list) throws IOException {
+            count(list.size());
+            for (String s : list) {
+                string(s);
+            }
+        }
+    }
+
+    // ========== Decoding ==========
+
+    /**
+     * Decode a script previously written by {@link #encode}.
+     *
+     * @throws IOException if the data is truncated, corrupt or from another
+     *                     format version
+     */
+    public static ScriptNode decode(InputStream in, String sourcePath) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a BBRun AST file");
+        }
+        int version = data.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported AST format version " + version);
+        }
+
+        String[] strings = new String[readVarInt(data)];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[readVarInt(data)];
+            data.readFully(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        Reader reader = new Reader(data, strings);
+        List<StatementNode> statements = reader.statements();
+        int cleanupCount = reader.count();
+        List<CleanupNode> cleanupBlocks = new ArrayList<>(cleanupCount);
+        for (int i = 0; i < cleanupCount; i++) {
+            cleanupBlocks.add((CleanupNode) reader.statement());
+        }
+        return new ScriptNode(sourcePath, statements, cleanupBlocks);
+    }
+
+    public static ScriptNode decode(byte[] bytes, String sourcePath) throws IOException {
+        return decode(new ByteArrayInputStream(bytes), sourcePath);
+    }
+
+    private static final class Reader {
+        private final DataInputStream in;
+        private final String[] strings;
+
+        Reader(DataInputStream in, String[] strings) {
+            this.in = in;
+            this.strings = strings;
+        }
+
+        int tag() throws IOException {
+            return in.readUnsignedByte();
+        }
+
+        int count() throws IOException {
+            return readVarInt(in);
+        }
+
+        String string() throws IOException {
+            int index = readVarInt(in);
+            if (index == 0) {
+                return null;
+            }
+            if (index > strings.length) {
+                throw new IOException("Invalid string reference " + index);
+            }
+            return strings[index - 1];
+        }
+
+        boolean bool() throws IOException {
+            return in.readBoolean();
+        }
+
+        Double optionalDouble() throws IOException {
+            return bool() ? in.readDouble() : null;
+        }
+
+        List<StatementNode> statements() throws IOException {
+            int n = readVarInt(in);
+            if (n == 0) {
+                return null;
+            }
+            List<StatementNode> list = new ArrayList<>(n - 1);
+            for (int i = 0; i < n - 1; i++) {
+                list.add(statement());
+            }
+            return list;
+        }
+
+        StatementNode statement() throws IOException {
+            int tag = tag();
+            switch (tag) {
+                case BASE_URL: {
+                    String url = string();
+                    return new BaseUrlNode(url, count());
+                }
+                case BEARER_AUTH: {
+                    ExpressionNode token = expression();
+                    return new BearerAuthNode(token, count());
+                }
+                case BASIC_AUTH: {
+                    ExpressionNode username = expression();
+                    ExpressionNode password = expression();
+                    return new BasicAuthNode(username, password, count());
+                }
+                case API_KEY_AUTH: {
+                    String header = string();
+                    ExpressionNode value = expression();
+                    return new ApiKeyAuthNode(header, value, count());
+                }
+                case NAMED_AUTH: {
+                    String name = string();
+                    AuthNode auth = (AuthNode) statement();
+                    return new NamedAuthNode(name, auth, count());
+                }
+                case OAUTH: {
+                    String flowType = string();
+                    Map<String, ExpressionNode> config = expressionMap();
+                    return new OAuthNode(flowType, config, count());
+                }
+                case VARIABLE: {
+                    String name = string();
+                    ExpressionNode value = expression();
+                    return new VariableNode(name, value, count());
+                }
+                case REQUEST: {
+                    String method = string();
+                    PathNode path = path();
+                    ExpressionNode body = expression();
+                    AuthClauseNode authClause = authClause();
+                    Double limit = optionalDouble();
+                    return new RequestNode(method, path, body, authClause, limit, count());
+                }
+                case ASSERT: {
+                    ExpressionNode condition = expression();
+                    String message = string();
+                    return new AssertNode(condition, message, count());
+                }
+                case WARN: {
+                    ExpressionNode condition = expression();
+                    String message = string();
+                    return new WarnNode(condition, message, count());
+                }
+                case PRINT: {
+                    ExpressionNode message = expression();
+                    return new PrintNode(message, count());
+                }
+                case IF: {
+                    ExpressionNode condition = expression();
+                    List<StatementNode> thenBlock = statements();
+                    int clauseCount = count();
+                    List<IfNode.ElseIfClause> clauses = new ArrayList<>(clauseCount);
+                    for (int i = 0; i < clauseCount; i++) {
+                        ExpressionNode clauseCondition = expression();
+                        clauses.add(new IfNode.ElseIfClause(clauseCondition, statements()));
+                    }
+                    List<StatementNode> elseBlock = statements();
+                    return new IfNode(condition, thenBlock, clauses, elseBlock, count());
+                }
+                case REPEAT: {
+                    ExpressionNode countExpr = expression();
+                    List<StatementNode> body = statements();
+                    return new RepeatNode(countExpr, body, count());
+                }
+                case PARALLEL: {
+                    Map<String, ExpressionNode> options = expressionMap();
+                    List<StatementNode> body = statements();
+                    return new ParallelNode(options, body, count());
+                }
+                case EXPECT: {
+                    ExpressionNode expectedStatus = expression();
+                    List<StatementNode> body = statements();
+                    return new ExpectNode(expectedStatus, body, count());
+                }
+                case MACRO: {
+                    String name = string();
+                    List<String> params = strings();
+                    List<StatementNode> body = statements();
+                    return new MacroNode(name, params, body, count());
+                }
+                case RUN: {
+                    String scriptPath = string();
+                    Map<String, ExpressionNode> params = expressionMap();
+                    return new RunNode(scriptPath, params, count());
+                }
+                case CLEANUP: {
+                    List<StatementNode> body = statements();
+                    return new CleanupNode(body, count());
+                }
+                case EXPRESSION_STATEMENT: {
+                    ExpressionNode expression = expression();
+                    return new ExpressionStatementNode(expression, count());
+                }
+                case LIMIT: {
+                    double perSecond = in.readDouble();
+                    return new LimitNode(perSecond, count());
+                }
+                case PACE: {
+                    Duration interval = Duration.ofMillis(in.readLong());
+                    return new PaceNode(interval, count());
+                }
+                case THINK: {
+                    Duration min = Duration.ofMillis(in.readLong());
+                    Duration max = Duration.ofMillis(in.readLong());
+                    return new ThinkNode(min, max, count());
+                }
+                default:
+                    throw new IOException("Unknown statement tag " + tag);
+            }
+        }
+
+        ExpressionNode expression() throws IOException {
+            int tag = tag();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case LITERAL: {
+                    LiteralNode.LiteralType type = LiteralNode.LiteralType.values()[in.readUnsignedByte()];
+                    return new LiteralNode(value(), type);
+                }
+                case IDENTIFIER:
+                    return new IdentifierNode(string());
+                case MEMBER_ACCESS: {
+                    ExpressionNode object = expression();
+                    return new MemberAccessNode(object, string());
+                }
+                case INDEX_ACCESS: {
+                    ExpressionNode object = expression();
+                    return new IndexAccessNode(object, expression());
+                }
+                case FUNCTION_CALL: {
+                    String name = string();
+                    return new FunctionCallNode(name, expressions());
+                }
+                case METHOD_CALL: {
+                    ExpressionNode object = expression();
+                    String name = string();
+                    return new MethodCallNode(object, name, expressions());
+                }
+                case BINARY_OP: {
+                    ExpressionNode left = expression();
+                    String operator = string();
+                    return new BinaryOpNode(left, operator, expression());
+                }
+                case UNARY_OP: {
+                    String operator = string();
+                    return new UnaryOpNode(operator, expression());
+                }
+                case IS_CHECK: {
+                    ExpressionNode expression = expression();
+                    String typeOrFormat = string();
+                    return new IsCheckNode(expression, typeOrFormat, bool());
+                }
+                case CONTAINS: {
+                    ExpressionNode container = expression();
+                    ExpressionNode item = expression();
+                    boolean negated = bool();
+                    ContainsNode.ContainsMode mode = ContainsNode.ContainsMode.values()[in.readUnsignedByte()];
+                    return new ContainsNode(container, item, negated, mode);
+                }
+                case MATCHES_SCHEMA: {
+                    ExpressionNode expression = expression();
+                    return new MatchesSchemaNode(expression, expression());
+                }
+                case IGNORING: {
+                    ExpressionNode expression = expression();
+                    return new IgnoringNode(expression, strings());
+                }
+                case OBJECT_LITERAL:
+                    return new ObjectLiteralNode(expressionMap());
+                case ARRAY_LITERAL:
+                    return new ArrayLiteralNode(expressions());
+                case INTERPOLATED_STRING:
+                    return interpolated();
+                default:
+                    throw new IOException("Unknown expression tag " + tag);
+            }
+        }
+
+        InterpolatedStringNode interpolated() throws IOException {
+            int n = count();
+            List<InterpolatedStringNode.StringPart> parts = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                if (bool()) {
+                    parts.add(new InterpolatedStringNode.TextPart(string()));
+                } else {
+                    parts.add(new InterpolatedStringNode.ExpressionPart(expression()));
+                }
+            }
+            return new InterpolatedStringNode(List.copyOf(parts));
+        }
+
+        PathNode path() throws IOException {
+            int n = count();
+            List<PathNode.PathSegment> segments = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                if (bool()) {
+                    segments.add(new PathNode.LiteralSegment(string()));
+                } else {
+                    segments.add(new PathNode.InterpolatedSegment(expression()));
+                }
+            }
+            Map<String, ExpressionNode> queryParams = expressionMap();
+            InterpolatedStringNode template = interpolated();
+            return new PathNode(segments, queryParams, template, count());
+        }
+
+        AuthClauseNode authClause() throws IOException {
+            int tag = tag();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case BEARER_CLAUSE:
+                    return new BearerClause(expression());
+                case BASIC_CLAUSE: {
+                    ExpressionNode username = expression();
+                    return new BasicClause(username, expression());
+                }
+                case USING_CLAUSE:
+                    return new UsingClause(string());
+                case WITHOUT_AUTH:
+                    return new WithoutAuth();
+                default:
+                    throw new IOException("Unknown auth clause tag " + tag);
+            }
+        }
+
+        Object value() throws IOException {
+            int kind = in.readUnsignedByte();
+            switch (kind) {
+                case VALUE_NULL:
+                    return null;
+                case VALUE_STRING:
+                    return string();
+                case VALUE_LONG:
+                    return in.readLong();
+                case VALUE_DOUBLE:
+                    return in.readDouble();
+                case VALUE_TRUE:
+                    return true;
+                case VALUE_FALSE:
+                    return false;
+                default:
+                    throw new IOException("Unknown literal kind " + kind);
+            }
+        }
+
+        List<ExpressionNode> expressions() throws IOException {
+            int n = count();
+            List<ExpressionNode> list = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                list.add(expression());
+            }
+            return list;
+        }
+
+        Map<String, ExpressionNode> expressionMap() throws IOException {
+            int n = count();
+            Map<String, ExpressionNode> map = new LinkedHashMap<>(Math.max(4, n * 2));
+            for (int i = 0; i < n; i++) {
+                String key = string();
+                map.put(key, expression());
+            }
+            return map;
+        }
+
+        List<String> strings() throws IOException {
+            int n = count();
+            List<String> list = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                list.add(string());
+            }
+            return list;
+        }
+    }
+
+    // ========== Varints ==========
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -17,11 +17,32 @@ public class ScriptLoader {
 
     private static final String INIT_FILE = "_init.bbrun";
 
+    private final AstCache cache;
+
+    public ScriptLoader() {
+        this(AstCache.shared());
+    }
+
+    /**
+     * @param cache parsed-AST cache, or null to always parse
+     */
+    public ScriptLoader(AstCache cache) {
+        this.cache = cache;
+    }
+
     /**
      * Load a script with _init.bbrun files merged.
      */
     public ScriptNode loadWithInit(Path scriptPath) {
-        List<ScriptNode> scripts = new ArrayList<>();
+        return load(scriptPath).merged();
+    }
+
+    /**
+     * Load a script and its _init.bbrun chain without merging them.
+     */
+    public LoadedScript load(Path scriptPath) {
+        List<Path> initPaths = new ArrayList<>();
+        List<ScriptNode> inits = new ArrayList<>();
 
         try {
             // 1. Find project root (directory containing _init.bbrun or build.gradle)
@@ -31,27 +52,26 @@ public class ScriptLoader {
             if (root != null) {
                 Path rootInit = root.resolve(INIT_FILE);
                 if (Files.exists(rootInit)) {
-                    scripts.add(parse(rootInit));
+                    initPaths.add(rootInit);
+                    inits.add(parse(rootInit));
                 }
             }
 
             // 3. Load folder _init.bbrun if different from root
-            Path scriptParent = scriptPath.getParent();
+            Path scriptParent = scriptPath.toAbsolutePath().getParent();
             if (scriptParent != null) {
                 Path folderInit = scriptParent.resolve(INIT_FILE);
                 if (Files.exists(folderInit)) {
                     Path rootInit = root != null ? root.resolve(INIT_FILE) : null;
                     if (!folderInit.equals(rootInit)) {
-                        scripts.add(parse(folderInit));
+                        initPaths.add(folderInit);
+                        inits.add(parse(folderInit));
                     }
                 }
             }
 
             // 4. Load main script
-            scripts.add(parse(scriptPath));
-
-            // 5. Merge all scripts
-            return mergeScripts(scripts, scriptPath.toString());
+            return new LoadedScript(initPaths, inits, parse(scriptPath));
 
         } catch (IOException e) {
             throw new BBRunException("Failed to load script: " + scriptPath, e);
@@ -67,17 +87,24 @@ public class ScriptLoader {
     }
 
     /**
-     * Parse script content using ANTLR.
+     * Parse script content, using the AST cache when available.
      */
     public ScriptNode parse(String content, String sourcePath) {
-        return AstBuilder.parse(content, sourcePath);
+        if (cache == null) {
+            return AstBuilder.parse(content, sourcePath);
+        }
+        return cache.get(content, sourcePath, () -> AstBuilder.parse(content, sourcePath));
+    }
+
+    public AstCache getCache() {
+        return cache;
     }
 
     /**
      * Find project root by looking for _init.bbrun or build.gradle.
      */
     private Path findProjectRoot(Path startPath) {
-        Path current = startPath.getParent();
+        Path current = startPath.toAbsolutePath().getParent();
         while (current != null) {
             if (Files.exists(current.resolve(INIT_FILE)) ||
                     Files.exists(current.resolve("build.gradle.kts")) ||
@@ -90,12 +117,47 @@ public class ScriptLoader {
         return null;
     }
 
+    /**
+     * A script together with its _init.bbrun chain (root first, then folder).
+     */
+    public record LoadedScript(List<Path> initPaths, List<ScriptNode> inits, ScriptNode script) {
+
+        /**
+         * Identity of the init chain; scripts with equal keys share the same
+         * setup.
+         */
+        public String initKey() {
+            StringBuilder key = new StringBuilder();
+            for (Path path : initPaths) {
+                key.append(path.toAbsolutePath().normalize()).append('\n');
+            }
+            return key.toString();
+        }
+
+        /**
+         * The init chain as one script, without the main script.
+         */
+        public ScriptNode init() {
+            String path = initPaths.isEmpty() ? script.path() : initPaths.get(initPaths.size() - 1).toString();
+            return mergeScripts(inits, path);
+        }
+
+        /**
+         * Init chain and main script merged into one script.
+         */
+        public ScriptNode merged() {
+            List<ScriptNode> scripts = new ArrayList<>(inits);
+            scripts.add(script);
+            return mergeScripts(scripts, script.path());
+        }
+    }
+
     /**
      * Merge multiple scripts into one.
      * - Statements from _init.bbrun run first
      * - Cleanup blocks run in reverse order (folder first, then root)
      */
-    private ScriptNode mergeScripts(List<ScriptNode> scripts, String mainPath) {
+    private static ScriptNode mergeScripts(List<ScriptNode> scripts, String mainPath) {
         List<StatementNode> allStatements = new ArrayList<>();
 
         for (ScriptNode script : scripts) {
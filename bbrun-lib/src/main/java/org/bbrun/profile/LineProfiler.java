@@ -0,0 +1,402 @@
+package org.bbrun.profile;
+
+import org.bbrun.ast.ScriptNode;
+import org.bbrun.ast.StatementNode;
+import org.bbrun.parser.ScriptLoader;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Attributes wall time and allocated bytes to script lines.
+ *
+ * <p>
+ * Every executed statement, including those nested in blocks, is timed.
+ * A statement's own time (excluding the statements inside it) is split
+ * into network (the HTTP client call), JSON (request serialization and
+ * response parsing), waiting (a parallel block waiting for its virtual
+ * users) and evaluation, which is everything else the interpreter does for
+ * that line. Allocation is measured on the executing thread, so it
+ * includes what the HTTP client allocates there.
+ *
+ * <p>
+ * Statements run by the virtual users of a parallel block are booked under
+ * the block, with the time of every user added up; the block's own line
+ * shows its wall time as waiting.
+ *
+ * <p>
+ * Results come out as an annotated listing of each script
+ * ({@link #writeListing}) and as collapsed stacks for flame graph tools
+ * ({@link #writeCollapsedStacks}), in microseconds.
+ *
+ * <p>
+ * Statements of _init.bbrun files are attributed to those files when the
+ * script was {@linkplain #register(ScriptLoader.LoadedScript) registered};
+ * otherwise to the script being executed.
+ */
+public class LineProfiler {
+
+    private static final String NETWORK = "[network]";
+    private static final String JSON = "[json]";
+    private static final String WAIT = "[wait]";
+    private static final String EVAL = "[eval]";
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final boolean allocationSupported;
+
+    // Top-level statement -> source file, for merged init chains
+    private final Map<StatementNode, String> sources = Collections.synchronizedMap(new IdentityHashMap<>());
+    private final Set<String> sourceOrder = Collections.synchronizedSet(new LinkedHashSet<>());
+
+    private final ConcurrentHashMap<String, Map<Integer, LineStats>> lines = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> stacks = new ConcurrentHashMap<>();
+
+    public LineProfiler() {
+        boolean supported = threads instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported();
+        if (supported) {
+            ((com.sun.management.ThreadMXBean) threads).setThreadAllocatedMemoryEnabled(true);
+        }
+        this.allocationSupported = supported;
+    }
+
+    /**
+     * Record which file each statement of a script and its init chain comes
+     * from, before executing {@link ScriptLoader.LoadedScript#merged()}.
+     */
+    public void register(ScriptLoader.LoadedScript loaded) {
+        for (int i = 0; i < loaded.inits().size(); i++) {
+            register(loaded.inits().get(i), loaded.initPaths().get(i).toString());
+        }
+        register(loaded.script(), loaded.script().path());
+    }
+
+    private void register(ScriptNode script, String path) {
+        sourceOrder.add(path);
+        for (StatementNode statement : script.statements()) {
+            sources.put(statement, path);
+        }
+    }
+
+    /**
+     * Create a recorder for one execution of the given script. Recorders are
+     * used by a single thread; any number may feed the same profiler.
+     */
+    public Recorder recorder(String scriptPath) {
+        sourceOrder.add(scriptPath);
+        return new Recorder(scriptPath, null);
+    }
+
+    public boolean isAllocationSupported() {
+        return allocationSupported;
+    }
+
+    private long allocatedBytes() {
+        return allocationSupported
+                ? ((com.sun.management.ThreadMXBean) threads).getCurrentThreadAllocatedBytes()
+                : 0;
+    }
+
+    private LineStats lineStats(String source, int line) {
+        return lines.computeIfAbsent(source, s -> new ConcurrentHashMap<>())
+                .computeIfAbsent(line, l -> new LineStats());
+    }
+
+    private LongAdder stack(String key) {
+        return stacks.computeIfAbsent(key, k -> new LongAdder());
+    }
+
+    // ========== Output ==========
+
+    /**
+     * Append each profiled script with per-line figures in front of its
+     * source. Files that can no longer be read are listed without source.
+     */
+    public void writeListing(StringBuilder out) {
+        List<String> files;
+        synchronized (sourceOrder) {
+            files = new ArrayList<>(sourceOrder);
+        }
+        for (String file : files) {
+            Map<Integer, LineStats> stats = lines.get(file);
+            if (stats == null) {
+                continue;
+            }
+            List<String> source = readLines(file);
+            int lastLine = Math.max(source.size(), stats.keySet().stream().mapToInt(Integer::intValue).max().orElse(0));
+
+            out.append("Profile of ").append(file);
+            if (!allocationSupported) {
+                out.append(" (allocation not measured on this JVM)");
+            }
+            out.append('\n');
+            out.append(String.format("%5s %8s %10s %10s %10s %10s %10s %9s  %s%n",
+                    "line", "calls", "total ms", "network ms", "json ms", "wait ms", "eval ms", "alloc", "source"));
+            for (int line = 1; line <= lastLine; line++) {
+                String text = line <= source.size() ? source.get(line - 1) : "";
+                LineStats s = stats.get(line);
+                if (s == null) {
+                    out.append(String.format("%5d %8s %10s %10s %10s %10s %10s %9s  %s%n",
+                            line, "", "", "", "", "", "", "", text));
+                } else {
+                    out.append(String.format("%5d %8d %10s %10s %10s %10s %10s %9s  %s%n",
+                            line, s.calls.sum(),
+                            millis(s.totalNanos.sum()), millis(s.networkNanos.sum()),
+                            millis(s.jsonNanos.sum()), millis(s.waitNanos.sum()), millis(s.evalNanos.sum()),
+                            allocationSupported ? bytes(s.allocatedBytes.sum()) : "-", text));
+                }
+            }
+            out.append('\n');
+        }
+    }
+
+    /**
+     * Append one {@code frame;frame;... microseconds} line per distinct
+     * stack, the input format of flamegraph.pl, speedscope and similar.
+     * Leaf frames are [network], [json], [wait] and [eval].
+     */
+    public void writeCollapsedStacks(StringBuilder out) {
+        Map<String, LongAdder> sorted = new TreeMap<>(stacks);
+        for (Map.Entry<String, LongAdder> entry : sorted.entrySet()) {
+            long micros = entry.getValue().sum() / 1000;
+            if (micros > 0) {
+                out.append(entry.getKey()).append(' ').append(micros).append('\n');
+            }
+        }
+    }
+
+    private static List<String> readLines(String file) {
+        try {
+            return Files.readAllLines(Path.of(file));
+        } catch (IOException | RuntimeException e) {
+            return List.of();
+        }
+    }
+
+    private static String millis(long nanos) {
+        return nanos == 0 ? "-" : String.format("%.2f", nanos / 1_000_000.0);
+    }
+
+    private static String bytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        } else if (bytes < 1024 * 1024) {
+            return String.format("%.1f KB", bytes / 1024.0);
+        }
+        return String.format("%.1f MB", bytes / (1024.0 * 1024));
+    }
+
+    // ========== Recording ==========
+
+    /**
+     * Aggregates for one source line, across all executions.
+     */
+    private static final class LineStats {
+        final LongAdder calls = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final LongAdder networkNanos = new LongAdder();
+        final LongAdder jsonNanos = new LongAdder();
+        final LongAdder waitNanos = new LongAdder();
+        final LongAdder evalNanos = new LongAdder();
+        final LongAdder allocatedBytes = new LongAdder();
+    }
+
+    /**
+     * A statement node in its position in the script, with its aggregates
+     * resolved once so recording does no lookups.
+     */
+    private static final class Site {
+        final String source;
+        final String stack;
+        final LineStats stats;
+        final LongAdder network;
+        final LongAdder json;
+        final LongAdder wait;
+        final LongAdder eval;
+
+        Site(String source, String stack, LineStats stats, LongAdder network, LongAdder json, LongAdder wait,
+                LongAdder eval) {
+            this.source = source;
+            this.stack = stack;
+            this.stats = stats;
+            this.network = network;
+            this.json = json;
+            this.wait = wait;
+            this.eval = eval;
+        }
+    }
+
+    private static final class Frame {
+        Site site;
+        long startNanos;
+        long startAllocated;
+        long childNanos;
+        long childAllocated;
+        long networkNanos;
+        long jsonNanos;
+        long waitNanos;
+    }
+
+    /**
+     * Per-execution recording state: a stack of the statements currently
+     * running on one thread.
+     */
+    public final class Recorder {
+
+        private final String scriptPath;
+        private final String root;
+        // Statement this recorder's stack grows from, when it runs a virtual user
+        private final Site base;
+        private final Map<StatementNode, Site> sites = new IdentityHashMap<>();
+        private Frame[] frames = new Frame[8];
+        private int depth = 0;
+
+        private Recorder(String scriptPath, Site base) {
+            this.scriptPath = scriptPath;
+            this.root = frameName(scriptPath);
+            this.base = base;
+        }
+
+        /**
+         * Create a recorder for a virtual user started by the statement
+         * running now, e.g. a parallel block, so what the user executes is
+         * booked under that statement. Call on this recorder's thread; the
+         * new one is then used by the user's thread.
+         */
+        public Recorder child() {
+            return new Recorder(scriptPath, depth > 0 ? frames[depth - 1].site : base);
+        }
+
+        /**
+         * A statement starts executing.
+         */
+        public void enter(StatementNode statement, String name) {
+            Site site = sites.get(statement);
+            if (site == null) {
+                site = site(statement, name);
+                sites.put(statement, site);
+            }
+            if (depth == frames.length) {
+                frames = Arrays.copyOf(frames, depth * 2);
+            }
+            Frame frame = frames[depth];
+            if (frame == null) {
+                frame = new Frame();
+                frames[depth] = frame;
+            }
+            depth++;
+            frame.site = site;
+            frame.childNanos = 0;
+            frame.childAllocated = 0;
+            frame.networkNanos = 0;
+            frame.jsonNanos = 0;
+            frame.waitNanos = 0;
+            frame.startAllocated = allocatedBytes();
+            frame.startNanos = System.nanoTime();
+        }
+
+        /**
+         * The statement entered last has finished.
+         */
+        public void exit() {
+            long now = System.nanoTime();
+            Frame frame = frames[--depth];
+            long total = now - frame.startNanos;
+            long allocated = allocatedBytes() - frame.startAllocated;
+            long self = total - frame.childNanos;
+            long eval = Math.max(0, self - frame.networkNanos - frame.jsonNanos - frame.waitNanos);
+
+            Site site = frame.site;
+            site.stats.calls.increment();
+            site.stats.totalNanos.add(total);
+            site.stats.networkNanos.add(frame.networkNanos);
+            site.stats.jsonNanos.add(frame.jsonNanos);
+            site.stats.waitNanos.add(frame.waitNanos);
+            site.stats.evalNanos.add(eval);
+            site.stats.allocatedBytes.add(allocated - frame.childAllocated);
+            if (frame.networkNanos > 0) {
+                site.network.add(frame.networkNanos);
+            }
+            if (frame.jsonNanos > 0) {
+                site.json.add(frame.jsonNanos);
+            }
+            if (frame.waitNanos > 0) {
+                site.wait.add(frame.waitNanos);
+            }
+            site.eval.add(eval);
+
+            if (depth > 0) {
+                Frame parent = frames[depth - 1];
+                parent.childNanos += total;
+                parent.childAllocated += allocated;
+            }
+            frame.site = null;
+        }
+
+        /**
+         * Time the current statement spent in the HTTP client.
+         */
+        public void network(long nanos) {
+            if (depth > 0) {
+                frames[depth - 1].networkNanos += nanos;
+            }
+        }
+
+        /**
+         * Time the current statement spent serializing or parsing JSON.
+         */
+        public void json(long nanos) {
+            if (depth > 0) {
+                frames[depth - 1].jsonNanos += nanos;
+            }
+        }
+
+        /**
+         * Time the current statement spent waiting for work on other
+         * threads, which those threads record themselves.
+         */
+        public void waiting(long nanos) {
+            if (depth > 0) {
+                frames[depth - 1].waitNanos += nanos;
+            }
+        }
+
+        private Site site(StatementNode statement, String name) {
+            String source;
+            String parentStack;
+            Site parent = depth > 0 ? frames[depth - 1].site : base;
+            if (parent != null) {
+                source = parent.source;
+                parentStack = parent.stack;
+            } else {
+                source = sources.getOrDefault(statement, scriptPath);
+                parentStack = root;
+            }
+            sourceOrder.add(source);
+            String stack = parentStack + ';' + frameName(source) + ':' + statement.line() + ' ' + name;
+            return new Site(source, stack, lineStats(source, statement.line()),
+                    stack(stack + ';' + NETWORK), stack(stack + ';' + JSON), stack(stack + ';' + WAIT),
+                    stack(stack + ';' + EVAL));
+        }
+    }
+
+    private static String frameName(String path) {
+        Path fileName = Path.of(path).getFileName();
+        // Collapsed stacks use ';' between frames and ' ' before the value
+        return (fileName != null ? fileName.toString() : path).replace(';', '_');
+    }
+}
@@ -0,0 +1,205 @@
+package org.bbrun.report;
+
+import org.bbrun.BBRunException;
+import org.bbrun.metrics.LatencyHistogram;
+import org.bbrun.metrics.RunStatistics;
+import org.bbrun.metrics.RunStatistics.EndpointStats;
+import org.bbrun.metrics.TimeSeries;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single-file HTML report of a load run: summary, configuration,
+ * throughput, latency percentiles and error rate per second, and a latency
+ * histogram per endpoint.
+ *
+ * <p>
+ * Styles, scripts and data are all inlined, so the file opens offline. The
+ * data is streamed into the page from {@link TimeSeries} and
+ * {@link RunStatistics} aggregates; nothing per request is needed.
+ */
+public class HtmlReport {
+
+    private static final String TEMPLATE = "report.html";
+    private static final String DATA_MARKER = "/*BBRUN-DATA*/";
+
+    private String title = "BBRun report";
+    private final Map<String, String> configuration = new LinkedHashMap<>();
+
+    public HtmlReport title(String title) {
+        this.title = title;
+        return this;
+    }
+
+    /**
+     * Add a line to the configuration table, e.g. threads or target rate;
+     * shown in insertion order.
+     */
+    public HtmlReport configuration(String name, String value) {
+        this.configuration.put(name, value);
+        return this;
+    }
+
+    public void write(Writer out, TimeSeries series, RunStatistics statistics) throws IOException {
+        String template = template();
+        int marker = template.indexOf(DATA_MARKER);
+        out.write(template, 0, marker);
+        writeData(new Json(out), series, statistics);
+        out.write(template, marker + DATA_MARKER.length(), template.length() - marker - DATA_MARKER.length());
+        out.flush();
+    }
+
+    private static String template() throws IOException {
+        try (InputStream in = HtmlReport.class.getResourceAsStream(TEMPLATE)) {
+            if (in == null) {
+                throw new BBRunException("Report template not found");
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    // ========== Data ==========
+
+    private void writeData(Json json, TimeSeries series, RunStatistics statistics) throws IOException {
+        List<EndpointStats> endpoints = new ArrayList<>(statistics.snapshot());
+        endpoints.sort(Comparator.comparingLong(EndpointStats::count).reversed());
+        LatencyHistogram total = new LatencyHistogram();
+        long totalErrors = 0;
+        for (EndpointStats endpoint : endpoints) {
+            total.merge(endpoint.latency());
+            totalErrors += endpoint.errors();
+        }
+
+        json.raw("{\"title\":").string(title);
+        json.raw(",\"start\":").number(series.startEpochMillis());
+        json.raw(",\"generated\":").number(System.currentTimeMillis());
+
+        json.raw(",\"config\":[");
+        boolean first = true;
+        for (Map.Entry<String, String> entry : configuration.entrySet()) {
+            json.raw(first ? "[" : ",[").string(entry.getKey()).raw(",").string(entry.getValue()).raw("]");
+            first = false;
+        }
+        json.raw("]");
+
+        json.raw(",\"summary\":{\"requests\":").number(total.count());
+        json.raw(",\"errors\":").number(totalErrors);
+        json.raw(",\"durationMs\":").number(statistics.elapsedMs());
+        json.raw(",\"p50\":").millis(total.valueAtPercentile(50));
+        json.raw(",\"p95\":").millis(total.valueAtPercentile(95));
+        json.raw(",\"p99\":").millis(total.valueAtPercentile(99));
+        json.raw(",\"max\":").millis(total.max());
+        json.raw("}");
+
+        // One row per second: requests, errors, p50, p90, p95, p99, max, active virtual users
+        json.raw(",\"seconds\":[");
+        series.forEach((second, requests, errors, p50, p90, p95, p99, max, active) -> {
+            json.raw(second == 0 ? "[" : ",[").number(requests).raw(",").number(errors);
+            json.raw(",").latency(requests, p50).raw(",").latency(requests, p90).raw(",").latency(requests, p95);
+            json.raw(",").latency(requests, p99).raw(",").latency(requests, max);
+            json.raw(",").number(active).raw("]");
+        });
+        json.raw("]");
+
+        json.raw(",\"endpoints\":[");
+        first = true;
+        for (EndpointStats endpoint : endpoints) {
+            LatencyHistogram latency = endpoint.latency();
+            json.raw(first ? "{\"name\":" : ",{\"name\":").string(endpoint.method() + ' ' + endpoint.endpoint());
+            json.raw(",\"count\":").number(latency.count());
+            json.raw(",\"errors\":").number(endpoint.errors());
+            json.raw(",\"p50\":").millis(latency.valueAtPercentile(50));
+            json.raw(",\"p95\":").millis(latency.valueAtPercentile(95));
+            json.raw(",\"p99\":").millis(latency.valueAtPercentile(99));
+            json.raw(",\"max\":").millis(latency.max());
+            json.raw(",\"buckets\":[");
+            boolean[] firstBucket = { true };
+            latency.forEachBucket((value, count) -> {
+                json.raw(firstBucket[0] ? "[" : ",[").millis(value).raw(",").number(count).raw("]");
+                firstBucket[0] = false;
+            });
+            json.raw("]}");
+            first = false;
+        }
+        json.raw("]}");
+        json.check();
+    }
+
+    /**
+     * Minimal streaming JSON writer. Errors are kept until {@link #check()}
+     * so it can be used from the series callbacks.
+     */
+    private static final class Json {
+        private final Writer out;
+        private IOException error;
+
+        Json(Writer out) {
+            this.out = out;
+        }
+
+        Json raw(String text) {
+            if (error == null) {
+                try {
+                    out.write(text);
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+            return this;
+        }
+
+        Json number(long value) {
+            return raw(Long.toString(value));
+        }
+
+        Json millis(long nanos) {
+            // Three decimals are enough for milliseconds and keep the page small
+            long micros = Math.round(nanos / 1000.0);
+            return raw(micros % 1000 == 0 ? Long.toString(micros / 1000) : Double.toString(micros / 1000.0));
+        }
+
+        /**
+         * A latency of a second, or null without requests so charts leave
+         * a gap.
+         */
+        Json latency(long requests, long nanos) {
+            return requests == 0 ? raw("null") : millis(nanos);
+        }
+
+        Json string(String value) {
+            StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"' -> quoted.append("\\\"");
+                    case '\\' -> quoted.append("\\\\");
+                    case '\n' -> quoted.append("\\n");
+                    // Keeps "</script>" in data from closing the script element
+                    case '<' -> quoted.append("\\u003c");
+                    default -> {
+                        if (c < 0x20) {
+                            quoted.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            quoted.append(c);
+                        }
+                    }
+                }
+            }
+            return raw(quoted.append('"').toString());
+        }
+
+        void check() throws IOException {
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package org.bbrun.results;
+
+import org.bbrun.BBRunException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a file written by {@link BinaryResultsWriter} through read-only
+ * memory-mapped windows, so files of any size are scanned without being
+ * loaded into the heap. Only the endpoint dictionary is kept in memory.
+ *
+ * <p>
+ * A file that is still being written, or was cut short by a crash, reads
+ * up to its last complete block.
+ */
+public class BinaryResultsReader implements Closeable {
+
+    private static final long MAX_WINDOW = 1L << 30;
+
+    private final FileChannel channel;
+    private final long size;
+    private final long startEpochMillis;
+
+    private final List<String> methods = new ArrayList<>();
+    private final List<String> endpoints = new ArrayList<>();
+
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    /**
+     * Receives the records of a file in the order they were written.
+     */
+    @FunctionalInterface
+    public interface RecordVisitor {
+        /**
+         * @param endpoint   dictionary index, see {@link #method(int)} and
+         *                   {@link #endpoint(int)}
+         * @param startNanos start of the request relative to the file's start
+         */
+        void visit(int endpoint, int status, boolean success, long startNanos, long durationNanos);
+    }
+
+    private BinaryResultsReader(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        if (size < ResultsFormat.HEADER_SIZE) {
+            throw new BBRunException("Not a results file (too short)");
+        }
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, ResultsFormat.HEADER_SIZE);
+        if (header.getInt() != ResultsFormat.MAGIC) {
+            throw new BBRunException("Not a results file");
+        }
+        short version = header.getShort();
+        if (version != ResultsFormat.VERSION) {
+            throw new BBRunException("Unsupported results file version " + version);
+        }
+        header.getShort();
+        this.startEpochMillis = header.getLong();
+    }
+
+    public static BinaryResultsReader open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new BinaryResultsReader(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Wall-clock time the file was started, which record start times are
+     * relative to.
+     */
+    public long startEpochMillis() {
+        return startEpochMillis;
+    }
+
+    /**
+     * Visit every record. May be called more than once; each call rescans
+     * the file and extends the dictionary as it goes.
+     */
+    public void forEach(RecordVisitor visitor) throws IOException {
+        long position = ResultsFormat.HEADER_SIZE;
+        while (position + ResultsFormat.FRAME_HEADER_SIZE <= size) {
+            ByteBuffer buffer = map(position, ResultsFormat.FRAME_HEADER_SIZE);
+            byte type = buffer.get();
+            int length = buffer.getInt();
+            if (type == ResultsFormat.END || length < 0
+                    || position + ResultsFormat.FRAME_HEADER_SIZE + length > size) {
+                return;
+            }
+            ByteBuffer payload = map(position + ResultsFormat.FRAME_HEADER_SIZE, length);
+            if (type == ResultsFormat.DICTIONARY) {
+                readDictionary(payload);
+            } else if (type == ResultsFormat.BLOCK) {
+                readBlock(payload, visitor);
+            }
+            position += ResultsFormat.FRAME_HEADER_SIZE + length;
+        }
+    }
+
+    /**
+     * Number of endpoints seen so far by {@link #forEach}.
+     */
+    public int endpointCount() {
+        return endpoints.size();
+    }
+
+    public String method(int endpoint) {
+        return methods.get(endpoint);
+    }
+
+    public String endpoint(int endpoint) {
+        return endpoints.get(endpoint);
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    // ========== Decoding ==========
+
+    private void readDictionary(ByteBuffer payload) {
+        int id = (int) ResultsFormat.getVarint(payload);
+        String method = ResultsFormat.getString(payload);
+        String endpoint = ResultsFormat.getString(payload);
+        if (id == endpoints.size()) {
+            methods.add(method);
+            endpoints.add(endpoint);
+        }
+    }
+
+    private void readBlock(ByteBuffer payload, RecordVisitor visitor) {
+        int count = (int) ResultsFormat.getVarint(payload);
+        int idsLength = payload.getInt();
+        int startsLength = payload.getInt();
+        int durationsLength = payload.getInt();
+
+        // One cursor per column, advanced together row by row
+        int offset = payload.position();
+        ByteBuffer ids = payload.slice(offset, idsLength);
+        offset += idsLength;
+        ByteBuffer statuses = payload.slice(offset, count * 2);
+        offset += count * 2;
+        ByteBuffer successes = payload.slice(offset, (count + 7) / 8);
+        offset += (count + 7) / 8;
+        ByteBuffer starts = payload.slice(offset, startsLength);
+        offset += startsLength;
+        ByteBuffer durations = payload.slice(offset, durationsLength);
+
+        long start = 0;
+        long duration = 0;
+        for (int i = 0; i < count; i++) {
+            int endpoint = (int) ResultsFormat.getVarint(ids);
+            int status = statuses.getShort();
+            boolean success = (successes.get(i >>> 3) & (1 << (i & 7))) != 0;
+            start += ResultsFormat.getZigzag(starts);
+            duration += ResultsFormat.getZigzag(durations);
+            visitor.visit(endpoint, status, success, start, duration);
+        }
+    }
+
+    /**
+     * A buffer over {@code length} bytes at {@code position}, remapping the
+     * window if it does not cover them.
+     */
+    private ByteBuffer map(long position, int length) throws IOException {
+        if (window == null || position < windowStart || position + length > windowStart + window.capacity()) {
+            long windowSize = Math.min(size - position, Math.max(MAX_WINDOW, length));
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+            windowStart = position;
+        }
+        return window.slice((int) (position - windowStart), length);
+    }
+}
@@ -0,0 +1,246 @@
+package org.bbrun.results;
+
+import org.bbrun.events.EventListener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Records every completed request into a compact binary results file, for
+ * later analysis with {@link ResultsAnalysis}.
+ *
+ * <p>
+ * Requests are buffered in columns and written as blocks of
+ * {@link #BLOCK_RECORDS}: method and endpoint as an index into a
+ * dictionary written alongside, status as a short, success as a bit, and
+ * start time and duration in nanoseconds, delta-encoded. A typical record
+ * takes 6-8 bytes. Blocks are appended through a memory-mapped window of
+ * the file, so writing is a copy into the page cache.
+ *
+ * <p>
+ * Endpoints are keyed by method and path template, or URL path for requests
+ * written without one; past {@link #MAX_ENDPOINTS}, new ones are recorded as
+ * {@code other} of their method. Durations come from the HTTP client in
+ * milliseconds. A crash loses at most the block being filled.
+ */
+public class BinaryResultsWriter implements EventListener, Closeable {
+
+    public static final int BLOCK_RECORDS = 4096;
+    public static final int MAX_ENDPOINTS = 65536;
+
+    private static final long MAP_WINDOW = 64L << 20;
+    private static final String OTHER = "other";
+
+    private final FileChannel channel;
+    private final long startNanos = System.nanoTime();
+    private MappedByteBuffer map;
+    private long mapStart;
+
+    private final Map<String, Integer> dictionary = new HashMap<>();
+
+    // Columns of the block being filled
+    private final int[] endpoints = new int[BLOCK_RECORDS];
+    private final short[] statuses = new short[BLOCK_RECORDS];
+    private final boolean[] successes = new boolean[BLOCK_RECORDS];
+    private final long[] starts = new long[BLOCK_RECORDS];
+    private final long[] durations = new long[BLOCK_RECORDS];
+    private int size;
+
+    // Worst case per record: 3 + 2 + 1 + 10 + 10 bytes
+    private ByteBuffer scratch = ByteBuffer.allocate(BLOCK_RECORDS * 26 + 32);
+    private IOException error;
+    private boolean closed;
+
+    private BinaryResultsWriter(FileChannel channel) throws IOException {
+        this.channel = channel;
+        ensureWritable(ResultsFormat.HEADER_SIZE);
+        map.putInt(ResultsFormat.MAGIC);
+        map.putShort(ResultsFormat.VERSION);
+        map.putShort((short) 0);
+        map.putLong(System.currentTimeMillis());
+    }
+
+    /**
+     * Create the file, replacing any existing one.
+     */
+    public static BinaryResultsWriter open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            return new BinaryResultsWriter(channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void onRequestComplete(RequestEvent event) {
+        long durationNanos = event.durationMs() * 1_000_000;
+        record(event.method(), event.endpoint(), event.status(), event.success(),
+                System.nanoTime() - startNanos - durationNanos, durationNanos);
+    }
+
+    /**
+     * Append one request.
+     *
+     * @param startNanos start of the request, relative to the file's start
+     */
+    public synchronized void record(String method, String endpoint, int status, boolean success,
+            long startNanos, long durationNanos) {
+        if (closed || error != null) {
+            return;
+        }
+        int i = size;
+        endpoints[i] = endpointId(method, endpoint);
+        statuses[i] = (short) status;
+        successes[i] = success;
+        starts[i] = startNanos;
+        durations[i] = durationNanos;
+        size++;
+        if (size == BLOCK_RECORDS) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * Write the partial block and truncate the file to its contents.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        if (size > 0) {
+            writeBlock();
+        }
+        closed = true;
+        try {
+            long end = mapStart + map.position();
+            map.force();
+            map = null;
+            channel.truncate(end);
+        } catch (IOException e) {
+            if (error == null) {
+                error = e;
+            }
+        } finally {
+            channel.close();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    // ========== Encoding ==========
+
+    private int endpointId(String method, String endpoint) {
+        String key = method + ' ' + endpoint;
+        Integer id = dictionary.get(key);
+        if (id != null) {
+            return id;
+        }
+        if (dictionary.size() >= MAX_ENDPOINTS && !endpoint.equals(OTHER)) {
+            // Past the cap only each method's other is added
+            return endpointId(method, OTHER);
+        }
+        int newId = dictionary.size();
+        dictionary.put(key, newId);
+
+        int bytes = 16 + 3 * (method.length() + endpoint.length());
+        if (bytes > scratch.capacity()) {
+            scratch = ByteBuffer.allocate(bytes);
+        }
+        scratch.clear();
+        ResultsFormat.putVarint(scratch, newId);
+        ResultsFormat.putString(scratch, method);
+        ResultsFormat.putString(scratch, endpoint);
+        writeFrame(ResultsFormat.DICTIONARY);
+        return newId;
+    }
+
+    private void writeBlock() {
+        int count = size;
+        size = 0;
+        scratch.clear();
+        ResultsFormat.putVarint(scratch, count);
+        int lengths = scratch.position();
+        scratch.position(lengths + 12);
+
+        int idsStart = scratch.position();
+        for (int i = 0; i < count; i++) {
+            ResultsFormat.putVarint(scratch, endpoints[i]);
+        }
+        int idsLength = scratch.position() - idsStart;
+
+        for (int i = 0; i < count; i++) {
+            scratch.putShort(statuses[i]);
+        }
+        for (int i = 0; i < count; i += 8) {
+            int bits = 0;
+            for (int j = 0; j < 8 && i + j < count; j++) {
+                if (successes[i + j]) {
+                    bits |= 1 << j;
+                }
+            }
+            scratch.put((byte) bits);
+        }
+
+        int startsStart = scratch.position();
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            ResultsFormat.putZigzag(scratch, starts[i] - previous);
+            previous = starts[i];
+        }
+        int startsLength = scratch.position() - startsStart;
+
+        int durationsStart = scratch.position();
+        previous = 0;
+        for (int i = 0; i < count; i++) {
+            ResultsFormat.putZigzag(scratch, durations[i] - previous);
+            previous = durations[i];
+        }
+        int durationsLength = scratch.position() - durationsStart;
+
+        scratch.putInt(lengths, idsLength);
+        scratch.putInt(lengths + 4, startsLength);
+        scratch.putInt(lengths + 8, durationsLength);
+        writeFrame(ResultsFormat.BLOCK);
+    }
+
+    /**
+     * Append the scratch buffer's contents as a frame.
+     */
+    private void writeFrame(byte type) {
+        scratch.flip();
+        int length = scratch.remaining();
+        try {
+            ensureWritable(ResultsFormat.FRAME_HEADER_SIZE + length);
+        } catch (IOException e) {
+            error = e;
+            return;
+        }
+        map.put(type);
+        map.putInt(length);
+        map.put(scratch);
+    }
+
+    /**
+     * Map a new window at the current end if the current one lacks room.
+     */
+    private void ensureWritable(int bytes) throws IOException {
+        if (map != null && map.remaining() >= bytes) {
+            return;
+        }
+        long position = map != null ? mapStart + map.position() : 0;
+        map = channel.map(FileChannel.MapMode.READ_WRITE, position, Math.max(MAP_WINDOW, bytes));
+        mapStart = position;
+    }
+}
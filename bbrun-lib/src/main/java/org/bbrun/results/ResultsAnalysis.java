@@ -0,0 +1,263 @@
+package org.bbrun.results;
+
+import org.bbrun.BBRunException;
+import org.bbrun.metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Latency percentiles, per-endpoint breakdowns and time windows computed
+ * from a binary results file in one pass over the records.
+ *
+ * <p>
+ * Memory depends on the number of endpoints and windows, not on the number
+ * of requests: every figure comes from a {@link LatencyHistogram}.
+ * Endpoints beyond {@link #MAX_ENDPOINTS} are folded into {@code other}.
+ */
+public class ResultsAnalysis {
+
+    public static final int MAX_ENDPOINTS = 1000;
+    public static final int MAX_WINDOWS = 10_000;
+
+    private static final Duration[] AUTO_WINDOWS = {
+            Duration.ofSeconds(1), Duration.ofSeconds(5), Duration.ofSeconds(10), Duration.ofSeconds(30),
+            Duration.ofMinutes(1), Duration.ofMinutes(5), Duration.ofMinutes(10), Duration.ofMinutes(30),
+            Duration.ofHours(1) };
+    private static final int AUTO_WINDOW_COUNT = 60;
+    private static final int REPORTED_ENDPOINTS = 50;
+    private static final double[] PERCENTILES = { 50, 90, 95, 99, 99.9 };
+
+    private final long startEpochMillis;
+    private final long windowNanos;
+    private final Stats total = new Stats("", "");
+    private final List<Stats> endpoints = new ArrayList<>();
+    private final List<Stats> windows = new ArrayList<>();
+    private long firstStart = Long.MAX_VALUE;
+    private long lastEnd;
+
+    /**
+     * Statistics of a group of requests.
+     */
+    public static final class Stats {
+        private final String method;
+        private final String endpoint;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private long errors;
+
+        Stats(String method, String endpoint) {
+            this.method = method;
+            this.endpoint = endpoint;
+        }
+
+        void record(boolean success, long durationNanos) {
+            latency.record(durationNanos);
+            if (!success) {
+                errors++;
+            }
+        }
+
+        public String method() {
+            return method;
+        }
+
+        public String endpoint() {
+            return endpoint;
+        }
+
+        public long count() {
+            return latency.count();
+        }
+
+        public long errors() {
+            return errors;
+        }
+
+        /**
+         * Durations in nanoseconds.
+         */
+        public LatencyHistogram latency() {
+            return latency;
+        }
+
+        double errorPercent() {
+            return count() == 0 ? 0 : 100.0 * errors / count();
+        }
+    }
+
+    private ResultsAnalysis(long startEpochMillis, long windowNanos) {
+        this.startEpochMillis = startEpochMillis;
+        this.windowNanos = windowNanos;
+    }
+
+    /**
+     * Analyze a file, grouping time windows by the given length, or by one
+     * that yields about 60 windows if null.
+     */
+    public static ResultsAnalysis of(BinaryResultsReader reader, Duration window) throws IOException {
+        long windowNanos;
+        if (window != null) {
+            windowNanos = window.toNanos();
+            if (windowNanos <= 0) {
+                throw new BBRunException("Window must be positive");
+            }
+        } else {
+            long[] end = { 0 };
+            reader.forEach((endpoint, status, success, start, duration) -> end[0] = Math.max(end[0], start + duration));
+            windowNanos = autoWindow(end[0]).toNanos();
+        }
+
+        ResultsAnalysis analysis = new ResultsAnalysis(reader.startEpochMillis(), windowNanos);
+        reader.forEach((endpoint, status, success, start, duration) -> {
+            analysis.total.record(success, duration);
+            analysis.endpoint(reader, endpoint).record(success, duration);
+            analysis.window(start).record(success, duration);
+            analysis.firstStart = Math.min(analysis.firstStart, start);
+            analysis.lastEnd = Math.max(analysis.lastEnd, start + duration);
+        });
+        return analysis;
+    }
+
+    private static Duration autoWindow(long spanNanos) {
+        for (Duration candidate : AUTO_WINDOWS) {
+            if (spanNanos / candidate.toNanos() < AUTO_WINDOW_COUNT) {
+                return candidate;
+            }
+        }
+        return AUTO_WINDOWS[AUTO_WINDOWS.length - 1];
+    }
+
+    private Stats endpoint(BinaryResultsReader reader, int id) {
+        int index = Math.min(id, MAX_ENDPOINTS);
+        while (endpoints.size() <= index) {
+            int next = endpoints.size();
+            endpoints.add(next == MAX_ENDPOINTS
+                    ? new Stats("*", "other")
+                    : new Stats(reader.method(next), reader.endpoint(next)));
+        }
+        return endpoints.get(index);
+    }
+
+    private Stats window(long startNanos) {
+        long index = Math.max(0, startNanos) / windowNanos;
+        if (index >= MAX_WINDOWS) {
+            throw new BBRunException("Run spans more than " + MAX_WINDOWS + " windows of "
+                    + formatDuration(windowNanos) + "; use a longer window");
+        }
+        while (windows.size() <= index) {
+            windows.add(new Stats("", ""));
+        }
+        return windows.get((int) index);
+    }
+
+    // ========== Accessors ==========
+
+    public Stats total() {
+        return total;
+    }
+
+    /**
+     * Endpoints by descending request count.
+     */
+    public List<Stats> endpoints() {
+        List<Stats> sorted = new ArrayList<>(endpoints);
+        sorted.removeIf(s -> s.count() == 0);
+        sorted.sort(Comparator.comparingLong(Stats::count).reversed());
+        return sorted;
+    }
+
+    /**
+     * Consecutive windows from the start of the file; empty ones included.
+     */
+    public List<Stats> windows() {
+        return windows;
+    }
+
+    public Duration window() {
+        return Duration.ofNanos(windowNanos);
+    }
+
+    /**
+     * From the first request's start to the last one's end.
+     */
+    public Duration span() {
+        return total.count() == 0 ? Duration.ZERO : Duration.ofNanos(lastEnd - firstStart);
+    }
+
+    // ========== Report ==========
+
+    /**
+     * Append a plain-text report: totals, overall percentiles, endpoints and
+     * time windows.
+     */
+    public void writeReport(StringBuilder out) {
+        double spanSeconds = span().toNanos() / 1e9;
+        out.append(String.format("Started   %s%n", Instant.ofEpochMilli(startEpochMillis)));
+        out.append(String.format("Span      %s%n", formatDuration(span().toNanos())));
+        out.append(String.format("Requests  %d (%.1f/s)%n", total.count(),
+                spanSeconds > 0 ? total.count() / spanSeconds : 0));
+        out.append(String.format("Errors    %d (%.2f%%)%n", total.errors(), total.errorPercent()));
+        out.append('\n');
+
+        out.append("Latency (ms)");
+        for (double p : PERCENTILES) {
+            out.append(String.format("  p%s %s", percentileLabel(p), millis(total.latency().valueAtPercentile(p))));
+        }
+        out.append(String.format("  max %s  mean %.2f%n%n", millis(total.latency().max()),
+                total.latency().mean() / 1e6));
+
+        List<Stats> sorted = endpoints();
+        out.append(String.format("%-40s %10s %8s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "err %", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+        for (int i = 0; i < Math.min(REPORTED_ENDPOINTS, sorted.size()); i++) {
+            Stats s = sorted.get(i);
+            out.append(String.format("%-40s %10d %8.2f %9s %9s %9s %9s%n",
+                    s.method() + ' ' + s.endpoint(), s.count(), s.errorPercent(),
+                    millis(s.latency().valueAtPercentile(50)), millis(s.latency().valueAtPercentile(95)),
+                    millis(s.latency().valueAtPercentile(99)), millis(s.latency().max())));
+        }
+        if (sorted.size() > REPORTED_ENDPOINTS) {
+            out.append(String.format("... %d more endpoints%n", sorted.size() - REPORTED_ENDPOINTS));
+        }
+        out.append('\n');
+
+        double windowSeconds = windowNanos / 1e9;
+        out.append(String.format("%-10s %10s %9s %8s %9s %9s %9s %9s%n",
+                "window", "requests", "rps", "err %", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+        for (int i = 0; i < windows.size(); i++) {
+            Stats w = windows.get(i);
+            out.append(String.format("%-10s %10d %9.1f %8.2f %9s %9s %9s %9s%n",
+                    "+" + formatDuration(i * windowNanos), w.count(), w.count() / windowSeconds, w.errorPercent(),
+                    millis(w.latency().valueAtPercentile(50)), millis(w.latency().valueAtPercentile(95)),
+                    millis(w.latency().valueAtPercentile(99)), millis(w.latency().max())));
+        }
+    }
+
+    private static String percentileLabel(double p) {
+        return p == Math.rint(p) ? String.valueOf((long) p) : String.valueOf(p);
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.2f", nanos / 1e6);
+    }
+
+    private static String formatDuration(long nanos) {
+        long seconds = nanos / 1_000_000_000;
+        if (seconds == 0) {
+            return (nanos / 1_000_000) + "ms";
+        }
+        long h = seconds / 3600;
+        long m = seconds % 3600 / 60;
+        long s = seconds % 60;
+        if (h > 0) {
+            return String.format("%dh%02dm%02ds", h, m, s);
+        } else if (m > 0) {
+            return String.format("%dm%02ds", m, s);
+        }
+        return s + "s";
+    }
+}
@@ -0,0 +1,80 @@
+package org.bbrun.results;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Layout of binary results files and the variable-length encodings they
+ * use.
+ *
+ * <pre>
+ * file   := header frame*
+ * header := magic:int version:short reserved:short startEpochMillis:long
+ * frame  := type:byte length:int payload[length]
+ *
+ * DICTIONARY payload := id:varint method:string endpoint:string
+ * BLOCK payload      := count:varint idsLength:int startsLength:int durationsLength:int
+ *                       ids:varint[count] statuses:short[count] success:bit[count]
+ *                       starts:zigzag[count] durations:zigzag[count]
+ * </pre>
+ *
+ * Starts and durations are nanoseconds, each stored as the difference from
+ * the previous record in the block. A frame type of 0, or a frame running
+ * past the end of the file, ends the file.
+ */
+final class ResultsFormat {
+
+    static final int MAGIC = 0x42425231; // "BBR1"
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 16;
+
+    static final byte END = 0;
+    static final byte DICTIONARY = 1;
+    static final byte BLOCK = 2;
+
+    static final int FRAME_HEADER_SIZE = 5;
+
+    private ResultsFormat() {
+    }
+
+    static void putVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static long getVarint(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint");
+    }
+
+    static void putZigzag(ByteBuffer buffer, long value) {
+        putVarint(buffer, (value << 1) ^ (value >> 63));
+    }
+
+    static long getZigzag(ByteBuffer buffer) {
+        long encoded = getVarint(buffer);
+        return (encoded >>> 1) ^ -(encoded & 1);
+    }
+
+    static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putVarint(buffer, bytes.length);
+        buffer.put(bytes);
+    }
+
+    static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[(int) getVarint(buffer)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
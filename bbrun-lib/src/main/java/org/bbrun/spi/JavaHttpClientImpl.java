@@ -7,10 +7,18 @@ import java.net.URI;
 import java.net.http.HttpRequest.BodyPublisher;
 import java.net.http.HttpRequest.BodyPublishers;
 import java.net.http.HttpResponse.BodyHandlers;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
-import java.util.HashMap;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.net.ssl.SSLContext;
 
 /**
  * Default HTTP client implementation using Java 11+ HttpClient.
@@ -19,16 +27,43 @@ import java.util.concurrent.CompletableFuture;
 public class JavaHttpClientImpl implements HttpClient {
 
     private final java.net.http.HttpClient client;
+    private final ExecutorService callbackExecutor;
     private final Duration timeout;
 
     public JavaHttpClientImpl(ExecutionOptions options) {
         this.timeout = options.getTimeout();
+        // Own the client's callback threads so close() can release them;
+        // the JDK default pool lives until the client is garbage collected
+        this.callbackExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "bbrun-http");
+            thread.setDaemon(true);
+            return thread;
+        });
         this.client = java.net.http.HttpClient.newBuilder()
                 .connectTimeout(timeout)
                 .followRedirects(java.net.http.HttpClient.Redirect.NORMAL)
+                .executor(callbackExecutor)
                 .build();
     }
 
+    /**
+     * Start initializing the default TLS context in the background. The JDK
+     * client loads it (cipher suites, trust store) when it is built, which is
+     * the largest single cost of a cold CLI run; calling this early overlaps
+     * that work with the rest of startup.
+     */
+    public static void prewarm() {
+        Thread thread = new Thread(() -> {
+            try {
+                SSLContext.getDefault();
+            } catch (NoSuchAlgorithmException e) {
+                // The client will report it when it is built
+            }
+        }, "bbrun-tls-prewarm");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
     @Override
     public HttpResponse execute(HttpRequest request) {
         long start = System.currentTimeMillis();
@@ -55,7 +90,7 @@ public class JavaHttpClientImpl implements HttpClient {
 
     @Override
     public void close() {
-        // Java HttpClient doesn't require explicit cleanup
+        callbackExecutor.shutdown();
     }
 
     private java.net.http.HttpRequest buildRequest(HttpRequest request) {
@@ -86,13 +121,46 @@ public class JavaHttpClientImpl implements HttpClient {
     }
 
     private HttpResponse toHttpResponse(java.net.http.HttpResponse<byte[]> response, long durationMs) {
-        Map<String, String> headers = new HashMap<>();
-        response.headers().map().forEach((name, values) -> {
-            if (!values.isEmpty()) {
-                headers.put(name, values.get(0));
-            }
-        });
+        return new HttpResponse(response.statusCode(), new FirstValueHeaders(response.headers().map()),
+                response.body(), durationMs);
+    }
 
-        return new HttpResponse(response.statusCode(), headers, response.body(), durationMs);
+    /**
+     * Read-only view of the JDK's multi-valued headers exposing the first
+     * value of each, instead of copying them into a new map per response.
+     * Lookups are case-insensitive, like the underlying map.
+     */
+    private static final class FirstValueHeaders extends AbstractMap<String, String> {
+        private final Map<String, List<String>> values;
+        private Set<Entry<String, String>> entries;
+
+        FirstValueHeaders(Map<String, List<String>> values) {
+            this.values = values;
+        }
+
+        @Override
+        public String get(Object name) {
+            List<String> list = values.get(name);
+            return list == null || list.isEmpty() ? null : list.get(0);
+        }
+
+        @Override
+        public boolean containsKey(Object name) {
+            return get(name) != null;
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            if (entries == null) {
+                Map<String, String> first = new LinkedHashMap<>();
+                values.forEach((name, list) -> {
+                    if (!list.isEmpty()) {
+                        first.put(name, list.get(0));
+                    }
+                });
+                entries = Collections.unmodifiableMap(first).entrySet();
+            }
+            return entries;
+        }
     }
 }
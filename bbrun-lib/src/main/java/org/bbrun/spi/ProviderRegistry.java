@@ -6,57 +6,55 @@ import java.util.Comparator;
 import java.util.ServiceLoader;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.logging.Logger;
 
 /**
  * Registry that discovers and provides SPI implementations.
  * Uses ServiceLoader to find the best available provider.
+ *
+ * <p>
+ * Each provider type is discovered on first use, so the ServiceLoader scan
+ * for one does not delay the other. Nothing is logged; the selected
+ * providers are available from {@link #getHttpClientName()} and
+ * {@link #getExecutorName()}.
  */
 public final class ProviderRegistry {
 
-    private static final Logger LOG = Logger.getLogger(ProviderRegistry.class.getName());
-
-    private static volatile ProviderRegistry instance;
-
-    private final HttpClientProvider httpClientProvider;
-    private final ExecutorProvider executorProvider;
+    private static final ProviderRegistry INSTANCE = new ProviderRegistry();
 
     private ProviderRegistry() {
-        this.httpClientProvider = discoverHttpClientProvider();
-        this.executorProvider = discoverExecutorProvider();
-
-        LOG.info(() -> "BBRun SPI: HTTP client = " + httpClientProvider.name() +
-                ", Executor = " + executorProvider.name());
     }
 
     public static ProviderRegistry getInstance() {
-        if (instance == null) {
-            synchronized (ProviderRegistry.class) {
-                if (instance == null) {
-                    instance = new ProviderRegistry();
-                }
-            }
-        }
-        return instance;
+        return INSTANCE;
     }
 
     public HttpClient createHttpClient(ExecutionOptions options) {
-        return httpClientProvider.create(options);
+        return HttpClientHolder.PROVIDER.create(options);
     }
 
     public ExecutorService createExecutor(ExecutionOptions options) {
-        return executorProvider.create(options);
+        return ExecutorHolder.PROVIDER.create(options);
     }
 
     public String getHttpClientName() {
-        return httpClientProvider.name();
+        return HttpClientHolder.PROVIDER.name();
     }
 
     public String getExecutorName() {
-        return executorProvider.name();
+        return ExecutorHolder.PROVIDER.name();
+    }
+
+    // Lazy holders: the JVM runs each discovery once, on first access
+
+    private static final class HttpClientHolder {
+        static final HttpClientProvider PROVIDER = discoverHttpClientProvider();
+    }
+
+    private static final class ExecutorHolder {
+        static final ExecutorProvider PROVIDER = discoverExecutorProvider();
     }
 
-    private HttpClientProvider discoverHttpClientProvider() {
+    private static HttpClientProvider discoverHttpClientProvider() {
         return ServiceLoader.load(HttpClientProvider.class)
                 .stream()
                 .map(ServiceLoader.Provider::get)
@@ -64,7 +62,7 @@ public final class ProviderRegistry {
                 .orElseGet(DefaultHttpClientProvider::new);
     }
 
-    private ExecutorProvider discoverExecutorProvider() {
+    private static ExecutorProvider discoverExecutorProvider() {
         return ServiceLoader.load(ExecutorProvider.class)
                 .stream()
                 .map(ServiceLoader.Provider::get)
@@ -0,0 +1,101 @@
+package org.bbrun.suite;
+
+import org.bbrun.BBRunException;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Expands script arguments into the list of scripts to run.
+ *
+ * <p>
+ * An argument can be a script file, a directory (searched recursively for
+ * {@code *.bbrun}) or a glob such as {@code tests/**}{@code /*.bbrun}.
+ * {@code _init.bbrun} files are never returned; they are merged into each
+ * script by the loader.
+ */
+public final class ScriptDiscovery {
+
+    private static final String EXTENSION = ".bbrun";
+    private static final String INIT_FILE = "_init.bbrun";
+
+    private ScriptDiscovery() {
+    }
+
+    /**
+     * Expand arguments into a sorted, de-duplicated list of scripts.
+     */
+    public static List<Path> expand(List<String> arguments) {
+        return expand(Path.of(""), arguments);
+    }
+
+    /**
+     * Expand arguments relative to the given directory instead of the
+     * process working directory.
+     */
+    public static List<Path> expand(Path baseDir, List<String> arguments) {
+        Set<Path> scripts = new TreeSet<>();
+
+        for (String argument : arguments) {
+            if (isGlob(argument)) {
+                scripts.addAll(glob(baseDir, argument));
+                continue;
+            }
+            Path path = baseDir.resolve(argument);
+            if (Files.isDirectory(path)) {
+                scripts.addAll(walk(path, p -> true));
+            } else if (Files.exists(path)) {
+                scripts.add(path.normalize());
+            } else {
+                throw new BBRunException("Script not found: " + argument);
+            }
+        }
+
+        return List.copyOf(scripts);
+    }
+
+    private static boolean isGlob(String argument) {
+        return argument.indexOf('*') >= 0 || argument.indexOf('?') >= 0
+                || argument.indexOf('[') >= 0 || argument.indexOf('{') >= 0;
+    }
+
+    private static List<Path> glob(Path baseDir, String pattern) {
+        // Walk from the longest directory prefix without wildcards
+        String normalized = pattern.replace('\\', '/');
+        int split = 0;
+        for (int i = 0; i < normalized.length() && !isGlob(normalized.substring(i, i + 1)); i++) {
+            if (normalized.charAt(i) == '/') {
+                split = i + 1;
+            }
+        }
+
+        Path base = baseDir.resolve(split == 0 ? "." : normalized.substring(0, split));
+        if (!Files.isDirectory(base)) {
+            return List.of();
+        }
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + normalized.substring(split));
+        return walk(base, p -> matcher.matches(base.relativize(p)));
+    }
+
+    private static List<Path> walk(Path dir, Predicate<Path> filter) {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files
+                    .filter(Files::isRegularFile)
+                    .filter(p -> p.getFileName().toString().endsWith(EXTENSION))
+                    .filter(p -> !p.getFileName().toString().equals(INIT_FILE))
+                    .filter(filter)
+                    .map(Path::normalize)
+                    .toList();
+        } catch (IOException e) {
+            throw new BBRunException("Failed to list scripts in " + dir, e);
+        }
+    }
+}
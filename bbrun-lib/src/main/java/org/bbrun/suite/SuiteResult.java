@@ -0,0 +1,78 @@
+package org.bbrun.suite;
+
+import org.bbrun.ExecutionResult;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Aggregated result of running a suite of scripts.
+ *
+ * <p>
+ * With shared init, {@code initRuns} is the number of distinct _init.bbrun
+ * chains executed and {@code setupRequestsAvoided} the requests that would
+ * have been sent had every script re-run its own setup.
+ */
+public record SuiteResult(
+        List<ScriptResult> scripts,
+        long durationMs,
+        int initRuns,
+        int setupRequestsAvoided) {
+
+    public SuiteResult(List<ScriptResult> scripts, long durationMs) {
+        this(scripts, durationMs, 0, 0);
+    }
+
+    /**
+     * Outcome of one script. {@code result} is null if the script could not
+     * be loaded or parsed, in which case {@code error} says why.
+     */
+    public record ScriptResult(
+            Path script,
+            ExecutionResult result,
+            Throwable error) {
+        public boolean isSuccess() {
+            return error == null && result != null && result.isSuccess();
+        }
+    }
+
+    public boolean isSuccess() {
+        return scripts.stream().allMatch(ScriptResult::isSuccess);
+    }
+
+    public int passedScripts() {
+        return (int) scripts.stream().filter(ScriptResult::isSuccess).count();
+    }
+
+    public int failedScripts() {
+        return scripts.size() - passedScripts();
+    }
+
+    public int passedAssertions() {
+        return scripts.stream()
+                .filter(s -> s.result() != null)
+                .mapToInt(s -> s.result().passedAssertions())
+                .sum();
+    }
+
+    public int failedAssertions() {
+        return scripts.stream()
+                .filter(s -> s.result() != null)
+                .mapToInt(s -> s.result().failedAssertions())
+                .sum();
+    }
+
+    public long totalRequests() {
+        return scripts.stream()
+                .filter(s -> s.result() != null)
+                .mapToLong(s -> s.result().requestCount())
+                .sum();
+    }
+
+    public int totalWarnings() {
+        return scripts.stream()
+                .filter(s -> s.result() != null)
+                .mapToInt(s -> s.result().warnings().size())
+                .sum();
+    }
+}
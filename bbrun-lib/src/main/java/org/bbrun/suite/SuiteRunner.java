@@ -0,0 +1,243 @@
+package org.bbrun.suite;
+
+import org.bbrun.BBRunEngine;
+import org.bbrun.BBRunException;
+import org.bbrun.ExecutionResult;
+import org.bbrun.ast.ScriptNode;
+import org.bbrun.interpreter.Context;
+import org.bbrun.interpreter.ExecutionHandle;
+import org.bbrun.interpreter.ExecutionOptions;
+import org.bbrun.parser.ScriptLoader;
+import org.bbrun.parser.ScriptLoader.LoadedScript;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs many scripts on one {@link BBRunEngine}, i.e. one shared executor
+ * and HTTP client.
+ *
+ * <p>
+ * All scripts are parsed in parallel up front, then executed with at most
+ * {@code concurrency} scripts in flight. Since most script time is spent
+ * waiting on the network, overlapping scripts shortens a suite roughly by
+ * the concurrency factor.
+ *
+ * <p>
+ * With {@link #shareInit(boolean)}, each distinct _init.bbrun chain runs
+ * once per suite instead of once per script. Its final {@link Context}
+ * (variables, baseUrl, default and named auth) is copied into every script
+ * that uses the chain, so login and token requests are not repeated.
+ *
+ * <pre>{@code
+ * SuiteRunner runner = new SuiteRunner(new ScriptLoader(), new ExecutionOptions(), 8);
+ * SuiteResult result = runner.run(ScriptDiscovery.expand(List.of("tests/")));
+ * }</pre>
+ */
+public class SuiteRunner {
+
+    private final ScriptLoader scriptLoader;
+    private final ExecutionOptions options;
+    private final BBRunEngine engine;
+    private final int concurrency;
+    private boolean shareInit = false;
+    private final Set<ExecutionHandle> started = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled;
+
+    /**
+     * Create a runner that starts a private engine for each
+     * {@link #run(List)} and closes it afterwards.
+     */
+    public SuiteRunner(ScriptLoader scriptLoader, ExecutionOptions options, int concurrency) {
+        this(scriptLoader, options, null, concurrency);
+    }
+
+    /**
+     * Create a runner on an engine owned by the caller, which stays open
+     * after each run.
+     */
+    public SuiteRunner(BBRunEngine engine, int concurrency) {
+        this(engine, engine.getOptions(), concurrency);
+    }
+
+    /**
+     * Create a runner on a caller-owned engine, executing scripts with the
+     * given options instead of the engine defaults.
+     */
+    public SuiteRunner(BBRunEngine engine, ExecutionOptions options, int concurrency) {
+        this(engine.getScriptLoader(), options, engine, concurrency);
+    }
+
+    private SuiteRunner(ScriptLoader scriptLoader, ExecutionOptions options, BBRunEngine engine,
+            int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be at least 1");
+        }
+        this.scriptLoader = scriptLoader;
+        this.options = options;
+        this.engine = engine;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Run each distinct _init.bbrun chain once and share its resulting
+     * context between scripts.
+     */
+    public SuiteRunner shareInit(boolean shareInit) {
+        this.shareInit = shareInit;
+        return this;
+    }
+
+    /**
+     * Cancel the scripts running now and fail the ones not yet started.
+     * May be called from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+        started.forEach(ExecutionHandle::cancel);
+    }
+
+    /**
+     * Run all scripts and wait for them to finish.
+     */
+    public SuiteResult run(List<Path> scripts) {
+        return run(scripts, result -> {
+        });
+    }
+
+    /**
+     * Run all scripts, reporting each result as soon as its script finishes.
+     * The callback may be invoked concurrently from several threads.
+     */
+    public SuiteResult run(List<Path> scripts, Consumer<SuiteResult.ScriptResult> onComplete) {
+        long startTime = System.currentTimeMillis();
+
+        BBRunEngine engine = this.engine != null ? this.engine : new BBRunEngine(options, scriptLoader);
+
+        Map<String, InitRun> initRuns = new ConcurrentHashMap<>();
+
+        try {
+            // Parse everything in parallel before the first request goes out
+            List<CompletableFuture<LoadedScript>> parsed = new ArrayList<>(scripts.size());
+            for (Path script : scripts) {
+                parsed.add(CompletableFuture.supplyAsync(() -> scriptLoader.load(script)));
+            }
+
+            Semaphore permits = new Semaphore(concurrency);
+            List<CompletableFuture<SuiteResult.ScriptResult>> running = new ArrayList<>(scripts.size());
+
+            for (int i = 0; i < scripts.size(); i++) {
+                Path script = scripts.get(i);
+                LoadedScript loaded;
+                try {
+                    loaded = parsed.get(i).join();
+                } catch (CompletionException e) {
+                    SuiteResult.ScriptResult failed = new SuiteResult.ScriptResult(script, null, e.getCause());
+                    onComplete.accept(failed);
+                    running.add(CompletableFuture.completedFuture(failed));
+                    continue;
+                }
+
+                permits.acquireUninterruptibly();
+                CompletableFuture<ExecutionResult> execution;
+                if (cancelled) {
+                    execution = CompletableFuture.failedFuture(new CancellationException("Suite cancelled"));
+                } else if (shareInit && !loaded.inits().isEmpty()) {
+                    InitRun init = initRuns.computeIfAbsent(loaded.initKey(),
+                            key -> startInit(engine, loaded));
+                    init.uses.incrementAndGet();
+                    execution = init.context.thenCompose(context -> track(engine
+                            .execute(loaded.script(), new Context(context), options)));
+                } else {
+                    execution = track(engine.execute(loaded.merged(), options));
+                }
+
+                CompletableFuture<SuiteResult.ScriptResult> future = execution
+                        .handle((result, error) -> new SuiteResult.ScriptResult(script, result, unwrap(error)))
+                        .whenComplete((result, error) -> {
+                            permits.release();
+                            onComplete.accept(result);
+                        });
+                running.add(future);
+            }
+
+            List<SuiteResult.ScriptResult> results = new ArrayList<>(running.size());
+            for (CompletableFuture<SuiteResult.ScriptResult> future : running) {
+                results.add(future.join());
+            }
+
+            int avoided = 0;
+            for (InitRun init : initRuns.values()) {
+                avoided += init.requests * (init.uses.get() - 1);
+            }
+            return new SuiteResult(results, System.currentTimeMillis() - startTime,
+                    initRuns.size(), avoided);
+
+        } finally {
+            if (engine != this.engine) {
+                engine.close();
+            }
+        }
+    }
+
+    /**
+     * Start an init chain in a fresh context. The returned run completes
+     * with that context; a failing init fails every script that uses it.
+     */
+    private InitRun startInit(BBRunEngine engine, LoadedScript loaded) {
+        InitRun init = new InitRun();
+        ScriptNode initScript = loaded.init();
+        Context context = new Context(options);
+        init.context = track(engine.execute(initScript, context, options))
+                .handle((result, error) -> {
+                    if (error != null) {
+                        Throwable cause = unwrap(error);
+                        throw new BBRunException(
+                                "Init failed: " + initScript.path() + ": " + cause.getMessage(), cause);
+                    }
+                    init.requests = (int) result.requestCount();
+                    if (!result.isSuccess()) {
+                        throw new BBRunException("Init failed: " + initScript.path(), result.error());
+                    }
+                    return context;
+                });
+        return init;
+    }
+
+    /**
+     * Keep a started execution cancellable until it completes.
+     */
+    private CompletableFuture<ExecutionResult> track(ExecutionHandle handle) {
+        started.add(handle);
+        if (cancelled) {
+            handle.cancel();
+        }
+        return handle.future().whenComplete((result, error) -> started.remove(handle));
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            return error.getCause();
+        }
+        return error;
+    }
+
+    /**
+     * One shared execution of an init chain.
+     */
+    private static final class InitRun {
+        final AtomicInteger uses = new AtomicInteger();
+        volatile int requests;
+        CompletableFuture<Context> context;
+    }
+}
@@ -0,0 +1,26 @@
+package org.bbrun;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.bbrun.events.EventListener;
+import org.junit.jupiter.api.Test;
+
+class RequestMetricTest {
+
+    @Test
+    void requestsWithoutTemplateAreGroupedByUrlPath() {
+        assertEquals("/users/7", new RequestMetric("GET", "https://api.example.com/users/7?full=1", 200, 12, true)
+                .endpoint());
+        assertEquals("/", new RequestMetric("GET", "https://api.example.com", 200, 12, true).endpoint());
+        assertEquals("/users", new EventListener.RequestEvent("POST", "/users", 201, 5, true, 3).endpoint());
+    }
+
+    @Test
+    void eventKeepsItsTemplateInTheMetric() {
+        EventListener.RequestEvent event = new EventListener.RequestEvent(
+                "GET", "https://api.example.com/users/7", 200, 12, true, 3, "/users/{}");
+
+        assertEquals(new RequestMetric("GET", "https://api.example.com/users/7", 200, 12, true, "/users/{}"),
+                event.toMetric());
+    }
+}
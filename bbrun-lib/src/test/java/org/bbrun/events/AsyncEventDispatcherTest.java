@@ -0,0 +1,203 @@
+package org.bbrun.events;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.bbrun.BBRunEngine;
+import org.bbrun.interpreter.ExecutionHandle;
+import org.bbrun.interpreter.ExecutionOptions;
+import org.bbrun.parser.AstBuilder;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Backpressure policies of the dispatcher, checked against a listener that
+ * only returns when the test hands it a permit, and listeners attached
+ * through {@link ExecutionOptions#asyncListener}.
+ */
+class AsyncEventDispatcherTest {
+
+    private static final int CAPACITY = 4;
+    private static final long TIMEOUT_MILLIS = 5_000;
+
+    @Test
+    void blockWaitsForSpaceAndDropsNothing() throws Exception {
+        GatedListener listener = new GatedListener();
+        AsyncEventDispatcher dispatcher = new AsyncEventDispatcher(listener, BackpressurePolicy.BLOCK, CAPACITY);
+
+        Thread producer = publish(dispatcher, CAPACITY + 10);
+        producer.join(200);
+        assertTrue(producer.isAlive(), "producer should wait while the buffer is full");
+        assertEquals(0, dispatcher.droppedEvents());
+
+        listener.release(Integer.MAX_VALUE / 2);
+        producer.join(TIMEOUT_MILLIS);
+        dispatcher.close();
+        assertEquals(0, dispatcher.droppedEvents());
+        assertEquals(CAPACITY + 10, dispatcher.deliveredEvents());
+    }
+
+    @Test
+    void dropNeverWaitsAndCountsWhatItDiscards() {
+        GatedListener listener = new GatedListener();
+        AsyncEventDispatcher dispatcher = new AsyncEventDispatcher(listener, BackpressurePolicy.DROP, CAPACITY);
+
+        // The listener holds on to the first event, so exactly CAPACITY fit
+        for (int i = 0; i < CAPACITY + 20; i++) {
+            dispatcher.requestComplete("GET", "http://localhost/" + i, 200, 1, true, i);
+        }
+        assertEquals(20, dispatcher.droppedEvents());
+
+        listener.release(Integer.MAX_VALUE / 2);
+        dispatcher.close();
+        assertEquals(CAPACITY, dispatcher.deliveredEvents());
+        assertEquals(20, dispatcher.droppedEvents());
+    }
+
+    @Test
+    void sampleWaitsForOneEventInEverySampleRate() throws Exception {
+        GatedListener listener = new GatedListener();
+        AsyncEventDispatcher dispatcher = new AsyncEventDispatcher(listener, BackpressurePolicy.SAMPLE, CAPACITY);
+        int rate = AsyncEventDispatcher.SAMPLE_RATE;
+
+        // Fill the buffer, then overflow it by two sampling periods plus one
+        for (int i = 0; i < CAPACITY; i++) {
+            dispatcher.requestComplete("GET", "http://localhost/" + i, 200, 1, true, i);
+        }
+        Thread producer = publish(dispatcher, 2 * rate + 1);
+
+        // The first overflowing event waits instead of being dropped
+        producer.join(200);
+        assertTrue(producer.isAlive());
+        assertEquals(0, dispatcher.droppedEvents());
+
+        // Each freed slot lets one event in, the next rate - 1 are dropped,
+        // and the one after that waits again
+        listener.release(1);
+        awaitEquals(rate - 1, dispatcher::droppedEvents);
+        assertTrue(producer.isAlive());
+
+        listener.release(1);
+        awaitEquals(2 * (rate - 1), dispatcher::droppedEvents);
+        assertTrue(producer.isAlive());
+
+        listener.release(Integer.MAX_VALUE / 2);
+        producer.join(TIMEOUT_MILLIS);
+        dispatcher.close();
+        assertEquals(2 * (rate - 1), dispatcher.droppedEvents());
+        assertEquals(CAPACITY + 3, dispatcher.deliveredEvents());
+    }
+
+    @Test
+    void lifecycleEventsAreNeverDropped() throws Exception {
+        GatedListener listener = new GatedListener();
+        AsyncEventDispatcher dispatcher = new AsyncEventDispatcher(listener, BackpressurePolicy.DROP, CAPACITY);
+
+        for (int i = 0; i < CAPACITY; i++) {
+            dispatcher.requestComplete("GET", "http://localhost/" + i, 200, 1, true, i);
+        }
+        Thread producer = new Thread(() -> dispatcher.scriptComplete(true, 0, 0, 1, "a.bbrun"));
+        producer.start();
+        producer.join(200);
+        assertTrue(producer.isAlive(), "completion should wait for space even under DROP");
+
+        listener.release(Integer.MAX_VALUE / 2);
+        producer.join(TIMEOUT_MILLIS);
+        dispatcher.close();
+        assertEquals(0, dispatcher.droppedEvents());
+        assertEquals(CAPACITY + 1, dispatcher.deliveredEvents());
+    }
+
+    @Test
+    void optionsListenerSeesEveryEventTaggedWithItsScript() {
+        List<String> events = new ArrayList<>();
+        EventListener recorder = new EventListener() {
+            @Override
+            public void onScriptStart(ScriptEvent event) {
+                events.add("start " + event.scriptPath());
+            }
+
+            @Override
+            public void onAssertionPass(AssertionEvent event) {
+                events.add("assert " + event.scriptPath());
+            }
+
+            @Override
+            public void onScriptComplete(CompletionEvent event) {
+                events.add("end " + event.scriptPath());
+            }
+        };
+        ExecutionOptions options = new ExecutionOptions().asyncListener(recorder, BackpressurePolicy.BLOCK);
+
+        try (BBRunEngine engine = new BBRunEngine()) {
+            ExecutionHandle first = engine.execute(AstBuilder.parse("assert 1 == 1", "a.bbrun"), options);
+            ExecutionHandle second = engine.execute(AstBuilder.parse("assert 2 == 2", "b.bbrun"), options);
+            first.future().join();
+            second.future().join();
+        }
+        options.closeAsyncListeners();
+
+        // Registered before the scripts were submitted, so nothing is missed
+        for (String script : List.of("a.bbrun", "b.bbrun")) {
+            List<String> own = events.stream().filter(event -> event.endsWith(" " + script)).toList();
+            assertEquals(List.of("start " + script, "assert " + script, "end " + script), own);
+        }
+        assertEquals(0, options.getAsyncListeners().get(0).droppedEvents());
+    }
+
+    // ========== Helpers ==========
+
+    private static Thread publish(AsyncEventDispatcher dispatcher, int count) {
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                dispatcher.requestComplete("GET", "http://localhost/" + i, 200, 1, true, i);
+            }
+        });
+        producer.setDaemon(true);
+        producer.start();
+        return producer;
+    }
+
+    private static void awaitEquals(long expected, LongSupplier actual) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (actual.getAsLong() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, actual.getAsLong());
+    }
+
+    /**
+     * Takes one permit per delivered event, so the consumer thread stalls on
+     * its current event until the test releases it.
+     */
+    private static final class GatedListener implements EventListener {
+
+        private final Semaphore permits = new Semaphore(0);
+
+        void release(int count) {
+            permits.release(count);
+        }
+
+        @Override
+        public void onScriptComplete(CompletionEvent event) {
+            await();
+        }
+
+        @Override
+        public void onRequestComplete(RequestEvent event) {
+            await();
+        }
+
+        private void await() {
+            try {
+                permits.tryAcquire(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
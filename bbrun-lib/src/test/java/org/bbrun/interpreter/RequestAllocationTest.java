@@ -0,0 +1,118 @@
+package org.bbrun.interpreter;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.bbrun.ExecutionResult;
+import org.bbrun.ast.ScriptNode;
+import org.bbrun.parser.AstBuilder;
+import org.bbrun.spi.HttpClient;
+import org.bbrun.spi.JavaHttpClientImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Bytes the interpreter allocates per request on top of what the HTTP client
+ * itself allocates, measured on the thread running the script against a
+ * loopback server.
+ */
+class RequestAllocationTest {
+
+    private static final int REQUESTS = 1000;
+    private static final int ROUNDS = 2;
+
+    // The result keeps a RequestMetric per request; anything more is a regression
+    private static final long BUDGET_BYTES = 512;
+
+    private static final byte[] BODY = "{\"id\":42,\"name\":\"item\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    static {
+        // Otherwise Nagle holds back each response body behind its headers
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private HttpClient client;
+    private String baseUrl;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, BODY.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(BODY);
+            }
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        executor = Executors.newSingleThreadExecutor();
+        client = new JavaHttpClientImpl(new ExecutionOptions().timeout(Duration.ofSeconds(5)));
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        client.close();
+        executor.shutdownNow();
+        server.stop(0);
+    }
+
+    @Test
+    void requestStatementsAllocateOnlyTheirMetric() throws Exception {
+        assertWithinBudget("get #items");
+    }
+
+    @Test
+    void statusAssertionsAllocateNothingMore() throws Exception {
+        assertWithinBudget("get #items\n  assert response.status == 200");
+    }
+
+    private void assertWithinBudget(String body) throws Exception {
+        ScriptNode script = AstBuilder.parse(
+                "baseUrl \"" + baseUrl + "\"\nrepeat " + REQUESTS + " {\n  " + body + "\n}\n", "alloc.bbrun");
+        Interpreter interpreter = new Interpreter(new ExecutionOptions(), executor, client);
+        long tid = executor.submit(() -> Thread.currentThread().getId()).get();
+
+        long raw = Long.MAX_VALUE;
+        long interpreted = Long.MAX_VALUE;
+        // Warm-up round included; the minimum filters out JIT and GC noise
+        for (int round = 0; round <= ROUNDS; round++) {
+            raw = Math.min(raw, executor.submit(() -> rawBytes(tid)).get());
+            long before = threads.getThreadAllocatedBytes(tid);
+            ExecutionResult result = interpreter.executeAsync(script).future().get();
+            long after = threads.getThreadAllocatedBytes(tid);
+            assertTrue(result.isSuccess(), () -> String.valueOf(result.error()));
+            interpreted = Math.min(interpreted, after - before);
+        }
+
+        long perRequest = (interpreted - raw) / REQUESTS;
+        assertTrue(perRequest <= BUDGET_BYTES, "Interpreter allocated " + perRequest
+                + " bytes per request over the raw client (" + raw / REQUESTS + " bytes)");
+    }
+
+    private long rawBytes(long tid) {
+        // The headers a request statement sends by default
+        HttpClient.HttpRequest request = HttpClient.HttpRequest.get(baseUrl + "/items",
+                Map.of("Content-Type", "application/json", "Accept", "application/json"));
+        long before = threads.getThreadAllocatedBytes(tid);
+        for (int i = 0; i < REQUESTS; i++) {
+            client.execute(request);
+        }
+        return threads.getThreadAllocatedBytes(tid) - before;
+    }
+}
@@ -0,0 +1,68 @@
+package org.bbrun.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.bbrun.BBRunEngine;
+import org.bbrun.ExecutionResult;
+import org.bbrun.events.EventListener;
+import org.bbrun.interpreter.ExecutionOptions;
+import org.bbrun.parser.AstBuilder;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The active-user gauges follow the virtual users of a parallel block, not
+ * the scripts running it.
+ */
+class ActiveUsersTest {
+
+    private static final String SCRIPT = """
+            parallel threads: 4, duration: "300ms" {
+              think 10ms
+            }
+            """;
+
+    @Test
+    void gaugesCountVirtualUsers() {
+        LiveMetrics metrics = new LiveMetrics();
+        TimeSeries series = new TimeSeries();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        AtomicInteger peakGauge = new AtomicInteger();
+        EventListener probe = new EventListener() {
+            @Override
+            public void onUserStart(UserEvent event) {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                // Listeners run in registration order, so the gauge has counted this user
+                peakGauge.accumulateAndGet(metrics.activeUsers(), Math::max);
+            }
+
+            @Override
+            public void onUserComplete(UserEvent event) {
+                running.decrementAndGet();
+            }
+        };
+        ExecutionOptions options = new ExecutionOptions().listener(metrics).listener(series).listener(probe);
+
+        try (BBRunEngine engine = new BBRunEngine()) {
+            ExecutionResult result = engine.execute(AstBuilder.parse(SCRIPT, "users.bbrun"), options)
+                    .future().join();
+            assertTrue(result.isSuccess());
+        }
+
+        assertEquals(4, peak.get());
+        assertTrue(peakGauge.get() > 1, "gauge should count users, not the one script");
+        assertEquals(0, metrics.activeUsers());
+        assertEquals(0, metrics.activeScripts());
+
+        StringBuilder exposition = new StringBuilder();
+        metrics.writeOpenMetrics(exposition);
+        assertTrue(exposition.toString().contains("bbrun_active_vus 0\n"));
+
+        int[] peakColumn = new int[1];
+        series.forEach((second, requests, errors, p50, p90, p95, p99, max, active) ->
+                peakColumn[0] = Math.max(peakColumn[0], active));
+        assertEquals(4, peakColumn[0]);
+    }
+}
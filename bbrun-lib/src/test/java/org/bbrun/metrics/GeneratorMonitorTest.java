@@ -0,0 +1,28 @@
+package org.bbrun.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Only stop-the-world pauses count as GC pauses, with the collector and
+ * action names the JDK's collectors report.
+ */
+class GeneratorMonitorTest {
+
+    @Test
+    void concurrentCyclesAreNotPauses() {
+        assertFalse(GeneratorMonitor.isPause("ZGC Cycles", "end of GC cycle"));
+        assertFalse(GeneratorMonitor.isPause("Shenandoah Cycles", "end of GC cycle"));
+        assertFalse(GeneratorMonitor.isPause("G1 Concurrent GC", "end of concurrent GC pause"));
+    }
+
+    @Test
+    void pausesAreCounted() {
+        assertTrue(GeneratorMonitor.isPause("ZGC Pauses", "end of GC pause"));
+        assertTrue(GeneratorMonitor.isPause("Shenandoah Pauses", "Final Mark"));
+        assertTrue(GeneratorMonitor.isPause("G1 Young Generation", "end of minor GC"));
+        assertTrue(GeneratorMonitor.isPause("G1 Old Generation", "end of major GC"));
+    }
+}
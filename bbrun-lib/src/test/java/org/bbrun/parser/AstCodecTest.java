@@ -0,0 +1,114 @@
+package org.bbrun.parser;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.bbrun.ast.ScriptNode;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+/**
+ * Every example and training script decodes to the AST it was encoded
+ * from, so a disk cache hit runs exactly what a fresh parse would.
+ */
+class AstCodecTest {
+
+    private static final Path ROOT = Path.of("..");
+    private static final List<Path> SCRIPT_DIRECTORIES = List.of(
+            ROOT.resolve("spec/examples"), ROOT.resolve("dist/training"));
+
+    // One of each statement, request form and cadence form, beyond what the examples use
+    private static final String EVERY_STATEMENT = """
+            baseUrl "http://localhost:8080"
+            auth bearer "token"
+            auth "admin" bearer env("ADMIN_TOKEN")
+            auth basic "user" "secret"
+            oauth service {
+              let tokenUrl = "http://localhost/token"
+            }
+            let limit = 5
+            let body = { "name": "Bob", "tags": [1, 2.5, true, null], "nested": { "x": -1 } }
+            macro create(name) {
+              post { "name": name } to #users
+              assert response.status == 201 : "created"
+            }
+            get #users/${limit}?page=${limit}&sort=name limit 50/s
+            get "http://localhost/health"
+            put body to #users/1
+            patch { "active": not false } to #users/1
+            delete #users/1
+            warn response.body.items contains 1 : "has item"
+            assert response.body.name is string and response.body.tags not contains 3 or limit >= 2
+            expect response.status {
+              assert response.status != 500
+            }
+            if limit < 3 {
+              print "small"
+            } else if limit > 10 {
+              print "large"
+            } else {
+              print "mid ${limit * 2 - 1}"
+            }
+            repeat 2 {
+              think 1ms..2ms
+            }
+            parallel threads: 2, iterations: 3 {
+              pace 10ms
+              limit 100/s
+              get #items/${thread.id}
+            }
+            run "other.bbrun" with {
+              let id = 1
+            }
+            cleanup {
+              delete #users/${body.nested["x"]}
+            }
+            """;
+
+    @Test
+    void everyStatementRoundTrips() throws IOException {
+        assertRoundTrip(AstBuilder.parse(EVERY_STATEMENT, "every.bbrun"), "every.bbrun");
+    }
+
+    @TestFactory
+    Stream<DynamicTest> scriptsRoundTrip() throws IOException {
+        List<Path> scripts = new ArrayList<>();
+        for (Path directory : SCRIPT_DIRECTORIES) {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.filter(file -> file.toString().endsWith(".bbrun")).sorted().forEach(scripts::add);
+            }
+        }
+        assertFalse(scripts.isEmpty(), "no scripts under " + ROOT.toAbsolutePath());
+
+        return scripts.stream().map(script -> DynamicTest.dynamicTest(ROOT.relativize(script).toString(), () -> {
+            String path = script.toString();
+            ScriptNode parsed;
+            try {
+                parsed = AstBuilder.parse(Files.readString(script), path);
+            } catch (RuntimeException e) {
+                // Some examples show syntax the grammar does not accept yet; nothing to encode
+                Assumptions.abort("does not parse: " + e.getMessage());
+                return;
+            }
+
+            assertRoundTrip(parsed, path);
+        }));
+    }
+
+    private static void assertRoundTrip(ScriptNode parsed, String path) throws IOException {
+        byte[] encoded = AstCodec.encode(parsed);
+        ScriptNode decoded = AstCodec.decode(encoded, path);
+
+        assertEquals(parsed, decoded);
+        assertArrayEquals(encoded, AstCodec.encode(decoded));
+    }
+}
@@ -0,0 +1,70 @@
+package org.bbrun.parser;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.bbrun.BBRunEngine;
+import org.bbrun.ExecutionResult;
+import org.bbrun.ast.LimitNode;
+import org.bbrun.ast.PaceNode;
+import org.bbrun.ast.ScriptNode;
+import org.bbrun.ast.ThinkNode;
+import org.bbrun.interpreter.ExecutionOptions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@code limit}, {@code pace} and {@code think} start statements, yet scripts
+ * written before them still use the words as variable names and keys.
+ */
+class CadenceKeywordTest {
+
+    @Test
+    void keysAndMemberAccess() {
+        assertRuns("""
+                let x = { limit: 5, pace: 2, think: 3 }
+                assert x.limit == 5
+                assert x.pace == 2
+                assert x.think == 3
+                """);
+    }
+
+    @Test
+    void variables() {
+        assertRuns("""
+                let limit = 5
+                assert limit == 5
+                let pace = limit + 1
+                let think = [limit, pace]
+                assert think[1] == 6
+                """);
+    }
+
+    @Test
+    void statementsNextToVariables() {
+        ScriptNode script = AstBuilder.parse("""
+                let limit = 5
+                limit 1000/s
+                pace 1ms
+                think 1ms..2ms
+                assert limit == 5
+                """, "test.bbrun");
+
+        assertInstanceOf(LimitNode.class, script.statements().get(1));
+        assertInstanceOf(PaceNode.class, script.statements().get(2));
+        assertInstanceOf(ThinkNode.class, script.statements().get(3));
+        assertRuns(script);
+    }
+
+    private static void assertRuns(String source) {
+        assertRuns(AstBuilder.parse(source, "test.bbrun"));
+    }
+
+    private static void assertRuns(ScriptNode script) {
+        try (BBRunEngine engine = new BBRunEngine()) {
+            ExecutionResult result = engine.execute(script, new ExecutionOptions()).future().join();
+            assertNull(result.error());
+            assertTrue(result.isSuccess());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.bbrun.parser;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.bbrun.ast.ScriptNode;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Parse speed over a generated corpus mixing requests, object literals,
+ * interpolation and nested blocks. Valid scripts are meant to parse in the
+ * SLL stage alone; a grammar change that sends them to the LL fallback
+ * shows up here first.
+ *
+ * <p>
+ * The timed test is tagged {@code benchmark} and runs with
+ * {@code gradle benchmark} only.
+ */
+class ParseThroughputTest {
+
+    private static final int BLOCKS = 250;
+    private static final int ROUNDS = 5;
+
+    // Far below the ~1 MB/s seen on one core, so only gross regressions fail;
+    // falling back to LL is caught by corpusParsesWithSllAlone
+    private static final double MIN_BYTES_PER_SECOND = 200_000;
+
+    private static final String CORPUS = corpus();
+
+    @Test
+    void corpusParsesWithSllAlone() {
+        BBRunParser parser = new BBRunParser(new CommonTokenStream(new BBRunLexer(CharStreams.fromString(CORPUS))));
+        parser.removeErrorListeners();
+        parser.setErrorHandler(new BailErrorStrategy());
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+
+        assertDoesNotThrow(parser::script);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void steadyThroughput() {
+        long bytes = CORPUS.getBytes(StandardCharsets.UTF_8).length;
+        // Warm-up rounds fill the static DFA caches and get the parser compiled
+        for (int i = 0; i < ROUNDS; i++) {
+            assertEquals(1 + 9 * BLOCKS, AstBuilder.parse(CORPUS, "corpus.bbrun").statements().size());
+        }
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            ScriptNode script = AstBuilder.parse(CORPUS, "corpus.bbrun");
+            best = Math.min(best, System.nanoTime() - start);
+            assertEquals(1 + 9 * BLOCKS, script.statements().size());
+        }
+
+        double perSecond = bytes * 1e9 / best;
+        String figure = String.format("Parsed %d bytes in %.1f ms (%.0f KB/s)", bytes, best / 1e6, perSecond / 1024);
+        System.out.println(figure);
+        assertTrue(perSecond >= MIN_BYTES_PER_SECOND, figure);
+    }
+
+    private static String corpus() {
+        StringBuilder out = new StringBuilder("baseUrl \"http://127.0.0.1:8080\"\n");
+        for (int i = 0; i < BLOCKS; i++) {
+            out.append("""
+                    let user%1$d = { "name": "user%1$d", "age": %2$d, "tags": ["a", "b"], "city": "c%1$d" }
+                    post user%1$d to #users
+                    assert response.status == 201
+                    get #users/${response.body.id}?fields=name
+                    assert response.body.name == "user%1$d" and response.body.age > 18
+                    if response.body.age > 40 {
+                        print "older ${user%1$d.name}"
+                    } else {
+                        warn response.durationMs < 500
+                    }
+                    repeat 3 {
+                        get #items/%1$d
+                        assert response.body.price is number
+                    }
+                    put { "age": %3$d } to #users/%1$d
+                    delete #users/%1$d
+                    """.formatted(i, 18 + i % 60, 19 + i % 60));
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,37 @@
+package org.bbrun.results;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BinaryResultsWriterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void endpointsPastTheCapAreOther() throws IOException {
+        Path file = dir.resolve("results.bin");
+        int distinct = BinaryResultsWriter.MAX_ENDPOINTS + 10;
+        try (BinaryResultsWriter writer = BinaryResultsWriter.open(file)) {
+            for (int i = 0; i < distinct; i++) {
+                writer.record(i % 2 == 0 ? "GET" : "POST", "/items/" + i, 200, true, i, 1000);
+            }
+        }
+
+        Map<String, Integer> counts = new HashMap<>();
+        try (BinaryResultsReader reader = BinaryResultsReader.open(file)) {
+            reader.forEach((endpoint, status, success, startNanos, durationNanos) -> counts.merge(
+                    reader.method(endpoint) + ' ' + reader.endpoint(endpoint), 1, Integer::sum));
+            assertEquals(BinaryResultsWriter.MAX_ENDPOINTS + 2, reader.endpointCount());
+        }
+        assertEquals(distinct, counts.values().stream().mapToInt(Integer::intValue).sum());
+        assertEquals(5, counts.get("GET other"));
+        assertEquals(5, counts.get("POST other"));
+    }
+}
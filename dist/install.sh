@@ -74,6 +74,10 @@ main() {
     # Make scripts executable
     chmod +x "$INSTALL_DIR/bin/"*
 
+    # The class-data sharing archive only works with the JVM that built it
+    info "Generating class-data sharing archive for this Java"
+    BBRUN_CDS=train "$INSTALL_DIR/bin/bbrun-cli" || warn "Could not generate CDS archive; startup will be slower"
+
     # Create symlink
     ln -sf "$INSTALL_DIR/bin/bbrun-cli" "$BIN_DIR/bbrun"
 